@@ -0,0 +1,71 @@
+/*
+ *     Copyright 2017 EntIT Software LLC, a Micro Focus company, L.P.
+ *     Licensed under the Apache License, Version 2.0 (the "License");
+ *     you may not use this file except in compliance with the License.
+ *     You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *     Unless required by applicable law or agreed to in writing, software
+ *     distributed under the License is distributed on an "AS IS" BASIS,
+ *     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *     See the License for the specific language governing permissions and
+ *     limitations under the License.
+ */
+
+package com.hp.octane.integrations.benchmarks;
+
+import com.hp.octane.integrations.executor.TestsToRunConverterResult;
+import com.hp.octane.integrations.executor.converters.CustomConverter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Conversion of the tests to run (as provided by Octane) into the test runner's format, custom format with the typical replacements
+ */
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CustomConverterBenchmark {
+	private static final String FORMAT = "{" +
+			"\"testPattern\": \"$package.$class#$testName\"," +
+			"\"testDelimiter\": \",\"," +
+			"\"prefix\": \"-Dtest=\"," +
+			"\"replacements\": [" +
+			"{\"type\":\"replaceRegex\",\"target\":\"$package\",\"regex\":\"com\\\\.example\\\\.\",\"replacement\":\"\"}," +
+			"{\"type\":\"replaceString\",\"target\":\"$class\",\"string\":\"Test\",\"replacement\":\"IT\"}," +
+			"{\"type\":\"notLatinAndDigitToOctal\",\"target\":\"$testName\"}" +
+			"]}";
+
+	@Param({"100", "5000"})
+	public int tests;
+
+	private CustomConverter converter;
+	private String rawTests;
+
+	@Setup
+	public void setUp() {
+		converter = new CustomConverter(FORMAT);
+		rawTests = PayloadGenerators.rawTestsToRun(tests);
+	}
+
+	@Benchmark
+	public TestsToRunConverterResult convert() {
+		return converter.convert(rawTests, "");
+	}
+}
@@ -0,0 +1,107 @@
+/*
+ *     Copyright 2017 EntIT Software LLC, a Micro Focus company, L.P.
+ *     Licensed under the Apache License, Version 2.0 (the "License");
+ *     you may not use this file except in compliance with the License.
+ *     You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *     Unless required by applicable law or agreed to in writing, software
+ *     distributed under the License is distributed on an "AS IS" BASIS,
+ *     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *     See the License for the specific language governing permissions and
+ *     limitations under the License.
+ */
+
+package com.hp.octane.integrations.benchmarks;
+
+import com.hp.octane.integrations.dto.DTOBase;
+import com.hp.octane.integrations.dto.DTOFactory;
+import com.hp.octane.integrations.dto.events.CIEventsList;
+import com.hp.octane.integrations.dto.general.CIJobsList;
+import com.hp.octane.integrations.dto.pipelines.PipelineNode;
+import com.hp.octane.integrations.dto.tests.TestsResult;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JSON (de)serialization of the DTOs sent to / received from Octane: events, pipeline structure, jobs list and tests result
+ * Small scale is a typical single push, large scale is the upper end seen on the busy CI servers
+ */
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DTOSerializationBenchmark {
+	private static final DTOFactory dtoFactory = DTOFactory.getInstance();
+
+	@Param({"CIEventsList", "PipelineNode", "CIJobsList", "TestsResult"})
+	public String dtoType;
+
+	@Param({"small", "large"})
+	public String scale;
+
+	private DTOBase dto;
+	private Class<? extends DTOBase> targetType;
+	private String json;
+	private final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+
+	@Setup
+	public void setUp() {
+		boolean large = "large".equals(scale);
+		switch (dtoType) {
+			case "CIEventsList":
+				dto = PayloadGenerators.eventsList(large ? 500 : 10);
+				targetType = CIEventsList.class;
+				break;
+			case "PipelineNode":
+				dto = large ? PayloadGenerators.pipeline(3, 5, 3) : PayloadGenerators.pipeline(2, 3, 1);
+				targetType = PipelineNode.class;
+				break;
+			case "CIJobsList":
+				dto = PayloadGenerators.jobsList(large ? 5000 : 50);
+				targetType = CIJobsList.class;
+				break;
+			case "TestsResult":
+				dto = PayloadGenerators.testsResult(large ? 10000 : 100);
+				targetType = TestsResult.class;
+				break;
+			default:
+				throw new IllegalArgumentException("unsupported DTO type " + dtoType);
+		}
+		json = dtoFactory.dtoToJson(dto);
+	}
+
+	@Benchmark
+	public String dtoToJson() {
+		return dtoFactory.dtoToJson(dto);
+	}
+
+	@Benchmark
+	public int dtoToJsonStream() throws IOException {
+		outputStream.reset();
+		dtoFactory.dtoToJsonStream(dto, outputStream);
+		return outputStream.size();
+	}
+
+	@Benchmark
+	public DTOBase dtoFromJson() {
+		return dtoFactory.dtoFromJson(json, targetType);
+	}
+}
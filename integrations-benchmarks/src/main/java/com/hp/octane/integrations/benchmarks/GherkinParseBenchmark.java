@@ -0,0 +1,78 @@
+/*
+ *     Copyright 2017 EntIT Software LLC, a Micro Focus company, L.P.
+ *     Licensed under the Apache License, Version 2.0 (the "License");
+ *     you may not use this file except in compliance with the License.
+ *     You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *     Unless required by applicable law or agreed to in writing, software
+ *     distributed under the License is distributed on an "AS IS" BASIS,
+ *     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *     See the License for the specific language governing permissions and
+ *     limitations under the License.
+ */
+
+package com.hp.octane.integrations.benchmarks;
+
+import com.hp.octane.integrations.testresults.GherkinUtils;
+import com.hp.octane.integrations.testresults.XmlWritableTestResult;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parsing of the Gherkin results files (one per test runner fork), files are read from the (warm) OS cache
+ */
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class GherkinParseBenchmark {
+
+	@Param({"1", "10"})
+	public int files;
+
+	@Param({"20", "200"})
+	public int featuresPerFile;
+
+	private File directory;
+	private List<File> gherkinFiles;
+
+	@Setup
+	public void setUp() throws IOException {
+		directory = Files.createTempDirectory("gherkin-benchmark").toFile();
+		gherkinFiles = PayloadGenerators.gherkinResultsFiles(directory, files, featuresPerFile, 10);
+	}
+
+	@TearDown
+	public void tearDown() throws IOException {
+		for (File file : gherkinFiles) {
+			Files.deleteIfExists(file.toPath());
+		}
+		Files.deleteIfExists(directory.toPath());
+	}
+
+	@Benchmark
+	public List<XmlWritableTestResult> parseFiles() throws Exception {
+		return GherkinUtils.parseFiles(gherkinFiles);
+	}
+}
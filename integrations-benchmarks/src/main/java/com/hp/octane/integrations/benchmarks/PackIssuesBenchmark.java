@@ -0,0 +1,103 @@
+/*
+ *     Copyright 2017 EntIT Software LLC, a Micro Focus company, L.P.
+ *     Licensed under the Apache License, Version 2.0 (the "License");
+ *     you may not use this file except in compliance with the License.
+ *     You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *     Unless required by applicable law or agreed to in writing, software
+ *     distributed under the License is distributed on an "AS IS" BASIS,
+ *     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *     See the License for the specific language governing permissions and
+ *     limitations under the License.
+ */
+
+package com.hp.octane.integrations.benchmarks;
+
+import com.hp.octane.integrations.services.vulnerabilities.IssuesReconciler;
+import com.hp.octane.integrations.services.vulnerabilities.PackIssuesToOctaneUtils;
+import com.hp.octane.integrations.services.vulnerabilities.RawVulnerability;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Diffing of the vulnerabilities found by the scan against the ones kept open in Octane
+ * Overlap is the percentage of the scanned issues already known to Octane, the rest of Octane's issues are to be closed
+ * packToOctaneIssues includes the creation of the closed Octane issues, reconcile is the classification only
+ */
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PackIssuesBenchmark {
+
+	@Param({"10000", "100000"})
+	public int issues;
+
+	@Param({"50", "90"})
+	public int overlap;
+
+	private List<BenchmarkVulnerability> rawIssues;
+	private List<String> octaneIssues;
+	private final IssuesReconciler<BenchmarkVulnerability> reconciler = IssuesReconciler.forRawVulnerabilities();
+
+	@Setup
+	public void setUp() {
+		int known = issues * overlap / 100;
+		rawIssues = new ArrayList<>(issues);
+		int index = 0;
+		for (String remoteId : PayloadGenerators.remoteIds(issues, 0)) {
+			rawIssues.add(new BenchmarkVulnerability(remoteId, index++ >= known));
+		}
+		//  issues known to Octane, then the ones fixed since the last scan
+		octaneIssues = new ArrayList<>(PayloadGenerators.remoteIds(known, 0));
+		octaneIssues.addAll(PayloadGenerators.remoteIds(issues - known, issues));
+	}
+
+	@Benchmark
+	public PackIssuesToOctaneUtils.SortedIssues<BenchmarkVulnerability> packToOctaneIssues() {
+		return PackIssuesToOctaneUtils.packToOctaneIssues(rawIssues, octaneIssues, true);
+	}
+
+	@Benchmark
+	public IssuesReconciler.Result<BenchmarkVulnerability> reconcile() {
+		return reconciler.reconcile(rawIssues, octaneIssues);
+	}
+
+	public static final class BenchmarkVulnerability implements RawVulnerability {
+		private final String remoteId;
+		private final boolean isNew;
+
+		private BenchmarkVulnerability(String remoteId, boolean isNew) {
+			this.remoteId = remoteId;
+			this.isNew = isNew;
+		}
+
+		@Override
+		public boolean isNew() {
+			return isNew;
+		}
+
+		@Override
+		public String getRemoteId() {
+			return remoteId;
+		}
+	}
+}
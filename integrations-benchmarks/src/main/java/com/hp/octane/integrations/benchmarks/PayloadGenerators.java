@@ -0,0 +1,298 @@
+/*
+ *     Copyright 2017 EntIT Software LLC, a Micro Focus company, L.P.
+ *     Licensed under the Apache License, Version 2.0 (the "License");
+ *     you may not use this file except in compliance with the License.
+ *     You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *     Unless required by applicable law or agreed to in writing, software
+ *     distributed under the License is distributed on an "AS IS" BASIS,
+ *     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *     See the License for the specific language governing permissions and
+ *     limitations under the License.
+ */
+
+package com.hp.octane.integrations.benchmarks;
+
+import com.hp.octane.integrations.dto.DTOFactory;
+import com.hp.octane.integrations.dto.causes.CIEventCause;
+import com.hp.octane.integrations.dto.causes.CIEventCauseType;
+import com.hp.octane.integrations.dto.events.CIEvent;
+import com.hp.octane.integrations.dto.events.CIEventType;
+import com.hp.octane.integrations.dto.events.CIEventsList;
+import com.hp.octane.integrations.dto.general.CIJobsList;
+import com.hp.octane.integrations.dto.general.CIServerInfo;
+import com.hp.octane.integrations.dto.parameters.CIParameter;
+import com.hp.octane.integrations.dto.parameters.CIParameterType;
+import com.hp.octane.integrations.dto.pipelines.PipelineNode;
+import com.hp.octane.integrations.dto.pipelines.PipelinePhase;
+import com.hp.octane.integrations.dto.snapshots.CIBuildResult;
+import com.hp.octane.integrations.dto.tests.BuildContext;
+import com.hp.octane.integrations.dto.tests.TestRun;
+import com.hp.octane.integrations.dto.tests.TestRunError;
+import com.hp.octane.integrations.dto.tests.TestRunResult;
+import com.hp.octane.integrations.dto.tests.TestsResult;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Synthetic, yet realistically shaped payloads of the benchmarks
+ * Generators are seeded, so the same size always yields the same payload and the results are comparable across the releases
+ */
+
+public final class PayloadGenerators {
+	private static final DTOFactory dtoFactory = DTOFactory.getInstance();
+	private static final long SEED = 20170101L;
+	private static final String[] MODULES = {"core", "web", "persistence", "integration-tests", "ui"};
+	private static final String[] ERROR_TYPES = {"java.lang.AssertionError", "java.lang.NullPointerException", "org.openqa.selenium.TimeoutException"};
+
+	private PayloadGenerators() {
+	}
+
+	/**
+	 * @param eventsCount events in the list, STARTED and FINISHED of the builds triggered by the upstream builds
+	 * @return events list as sent by the events service
+	 */
+	public static CIEventsList eventsList(int eventsCount) {
+		Random random = new Random(SEED);
+		List<CIEvent> events = new ArrayList<>(eventsCount);
+		for (int i = 0; i < eventsCount; i++) {
+			String job = "folder-" + (i % 7) + "/job-" + (i % 50);
+			boolean finished = i % 2 == 1;
+			CIEvent event = dtoFactory.newDTO(CIEvent.class)
+					.setEventType(finished ? CIEventType.FINISHED : CIEventType.STARTED)
+					.setProject(job)
+					.setProjectDisplayName("Job " + (i % 50))
+					.setBuildCiId(String.valueOf(1000 + i / 2))
+					.setNumber(String.valueOf(1000 + i / 2))
+					.setStartTime(1500000000000L + i * 1000L)
+					.setEstimatedDuration(60000L + random.nextInt(60000))
+					.setCauses(Collections.singletonList(upstreamCause("pipelines/root-" + (i % 5), 3)))
+					.setParameters(parameters(random, 5));
+			if (finished) {
+				event.setResult(random.nextInt(10) == 0 ? CIBuildResult.FAILURE : CIBuildResult.SUCCESS)
+						.setDuration(30000L + random.nextInt(120000))
+						.setTestResultExpected(random.nextBoolean());
+			}
+			events.add(event);
+		}
+		return dtoFactory.newDTO(CIEventsList.class)
+				.setServer(serverInfo())
+				.setEvents(events);
+	}
+
+	/**
+	 * @param phases       phases of the root and of each of the nested pipelines
+	 * @param jobsPerPhase jobs in each phase
+	 * @param depth        nesting levels of the pipelines
+	 * @return pipeline structure as provided to Octane on pipeline creation
+	 */
+	public static PipelineNode pipeline(int phases, int jobsPerPhase, int depth) {
+		return pipeline(new Random(SEED), "pipelines/root", phases, jobsPerPhase, depth);
+	}
+
+	/**
+	 * @param jobsCount jobs in the list
+	 * @return jobs list as provided to Octane on the jobs browsing
+	 */
+	public static CIJobsList jobsList(int jobsCount) {
+		Random random = new Random(SEED);
+		PipelineNode[] jobs = new PipelineNode[jobsCount];
+		for (int i = 0; i < jobsCount; i++) {
+			jobs[i] = dtoFactory.newDTO(PipelineNode.class)
+					.setJobCiId("folder-" + (i % 20) + "/job-" + i)
+					.setName("Job " + i)
+					.setParameters(parameters(random, random.nextInt(4)));
+		}
+		return dtoFactory.newDTO(CIJobsList.class).setJobs(jobs);
+	}
+
+	/**
+	 * @param testRunsCount test runs in the result, ~10% failed with error and stack trace, ~5% skipped
+	 * @return tests result as pushed by the tests service
+	 */
+	public static TestsResult testsResult(int testRunsCount) {
+		Random random = new Random(SEED);
+		List<TestRun> testRuns = new ArrayList<>(testRunsCount);
+		for (int i = 0; i < testRunsCount; i++) {
+			int outcome = random.nextInt(20);
+			TestRun testRun = dtoFactory.newDTO(TestRun.class)
+					.setModuleName(MODULES[i % MODULES.length])
+					.setPackageName("com.example." + MODULES[i % MODULES.length] + ".pkg" + (i % 30))
+					.setClassName("Component" + (i % 200) + "Test")
+					.setTestName("testScenario" + i)
+					.setStarted(1500000000000L + i * 10L)
+					.setDuration(random.nextInt(5000))
+					.setResult(outcome < 2 ? TestRunResult.FAILED : outcome == 2 ? TestRunResult.SKIPPED : TestRunResult.PASSED);
+			if (outcome < 2) {
+				testRun.setError(dtoFactory.newDTO(TestRunError.class)
+						.setErrorType(ERROR_TYPES[i % ERROR_TYPES.length])
+						.setErrorMessage("expected:<" + i + "> but was:<" + (i + 1) + ">")
+						.setStackTrace(stackTrace(random, 25)));
+			}
+			testRuns.add(testRun);
+		}
+		return dtoFactory.newDTO(TestsResult.class)
+				.setBuildContext(dtoFactory.newDTO(BuildContext.class)
+						.setServerId("instance-id")
+						.setJobId("folder-1/job-1")
+						.setJobName("job-1")
+						.setBuildId("1000")
+						.setBuildName("1000"))
+				.setTestRuns(testRuns);
+	}
+
+	/**
+	 * Writes Gherkin results files (as produced by the Octane cucumber formatter)
+	 *
+	 * @param directory         target directory
+	 * @param filesCount        files to write
+	 * @param featuresPerFile   features in each file
+	 * @param scenariosPerFeature scenarios in each feature, 4 steps each
+	 * @return written files
+	 * @throws IOException failure to write the files
+	 */
+	public static List<File> gherkinResultsFiles(File directory, int filesCount, int featuresPerFile, int scenariosPerFeature) throws IOException {
+		Random random = new Random(SEED);
+		List<File> result = new ArrayList<>(filesCount);
+		for (int f = 0; f < filesCount; f++) {
+			File file = new File(directory, "OctaneGherkinResults" + f + ".xml");
+			try (Writer writer = new OutputStreamWriter(Files.newOutputStream(file.toPath()), StandardCharsets.UTF_8)) {
+				writer.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<features version=\"1\">");
+				for (int feature = 0; feature < featuresPerFile; feature++) {
+					String name = "Feature " + f + "-" + feature;
+					writer.write("<feature name=\"" + name + "\" path=\"src/test/features/feature" + feature + ".feature\" started=\"1500000000000\" tag=\"@TID" + (2000 + feature) + "REV0.2.0\">");
+					StringBuilder source = new StringBuilder("#Auto generated NGA revision tag\n@TID" + (2000 + feature) + "REV0.2.0\nFeature: " + name + "\n");
+					StringBuilder scenarios = new StringBuilder("<scenarios>");
+					for (int scenario = 0; scenario < scenariosPerFeature; scenario++) {
+						source.append("\tScenario: scenario ").append(scenario).append("\n\t\tGiven state\n\t\tAnd more state\n\t\tWhen action\n\t\tThen outcome\n");
+						scenarios.append("<scenario name=\"scenario ").append(scenario).append("\"><steps>");
+						for (String step : new String[]{"Given state", "And more state", "When action", "Then outcome"}) {
+							scenarios.append("<step duration=\"").append(random.nextInt(1000)).append("\" name=\"").append(step).append("\" status=\"")
+									.append(random.nextInt(20) == 0 ? "failed" : "passed").append("\"/>");
+						}
+						scenarios.append("</steps></scenario>");
+					}
+					scenarios.append("</scenarios>");
+					writer.write("<file><![CDATA[" + source + "]]></file>");
+					writer.write(scenarios.toString());
+					writer.write("</feature>");
+				}
+				writer.write("</features>");
+			}
+			result.add(file);
+		}
+		return result;
+	}
+
+	/**
+	 * @param testsCount tests to run
+	 * @return tests to run in the textual (v1) format, as provided by Octane to the test runner
+	 */
+	public static String rawTestsToRun(int testsCount) {
+		StringBuilder result = new StringBuilder("v1:");
+		for (int i = 0; i < testsCount; i++) {
+			if (i > 0) {
+				result.append(';');
+			}
+			result.append("com.example.").append(MODULES[i % MODULES.length]).append(".pkg").append(i % 30)
+					.append('|').append("Component").append(i % 200).append("Test")
+					.append('|').append("testScenario").append(i);
+			if (i % 10 == 0) {
+				result.append("|dataSet=set").append(i % 3);
+			}
+		}
+		return result.toString();
+	}
+
+	/**
+	 * @param count     IDs to generate
+	 * @param offset    first ID
+	 * @return remote IDs of the vulnerabilities, as kept by Octane
+	 */
+	public static List<String> remoteIds(int count, int offset) {
+		List<String> result = new ArrayList<>(count);
+		for (int i = 0; i < count; i++) {
+			result.add(String.format("%08X-4C2D-4E9A-B1C3-%012X", offset + i, (offset + i) * 7919L));
+		}
+		return result;
+	}
+
+	private static PipelineNode pipeline(Random random, String jobCiId, int phases, int jobsPerPhase, int depth) {
+		PipelineNode node = dtoFactory.newDTO(PipelineNode.class)
+				.setJobCiId(jobCiId)
+				.setName(jobCiId.substring(jobCiId.lastIndexOf('/') + 1))
+				.setParameters(parameters(random, 3));
+		if (depth > 0) {
+			List<PipelinePhase> internal = new ArrayList<>(phases);
+			for (int p = 0; p < phases; p++) {
+				List<PipelineNode> jobs = new ArrayList<>(jobsPerPhase);
+				for (int j = 0; j < jobsPerPhase; j++) {
+					jobs.add(pipeline(random, jobCiId + "/phase-" + p + "-job-" + j, phases, jobsPerPhase, depth - 1));
+				}
+				internal.add(dtoFactory.newDTO(PipelinePhase.class)
+						.setName("phase " + p)
+						.setBlocking(p % 2 == 0)
+						.setJobs(jobs));
+			}
+			node.setPhasesInternal(internal);
+			node.setPhasesPostBuild(new ArrayList<>());
+		}
+		return node;
+	}
+
+	private static CIEventCause upstreamCause(String rootJob, int depth) {
+		CIEventCause cause = dtoFactory.newDTO(CIEventCause.class).setType(CIEventCauseType.USER).setUser("admin");
+		for (int level = depth; level > 0; level--) {
+			cause = dtoFactory.newDTO(CIEventCause.class)
+					.setType(CIEventCauseType.UPSTREAM)
+					.setProject(level == depth ? rootJob : rootJob + "/stage-" + level)
+					.setBuildCiId(String.valueOf(100 + level))
+					.setCauses(Collections.singletonList(cause));
+		}
+		return cause;
+	}
+
+	private static List<CIParameter> parameters(Random random, int count) {
+		List<CIParameter> result = new ArrayList<>(count);
+		for (int i = 0; i < count; i++) {
+			boolean flag = i % 3 == 0;
+			result.add(dtoFactory.newDTO(CIParameter.class)
+					.setType(flag ? CIParameterType.BOOLEAN : CIParameterType.STRING)
+					.setName("PARAM_" + i)
+					.setDescription("parameter number " + i)
+					.setDefaultValue(flag ? "false" : "default-" + i)
+					.setValue(flag ? String.valueOf(random.nextBoolean()) : "value-" + random.nextInt(1000)));
+		}
+		return result;
+	}
+
+	private static CIServerInfo serverInfo() {
+		return dtoFactory.newDTO(CIServerInfo.class)
+				.setType("jenkins")
+				.setVersion("2.289.1")
+				.setUrl("http://ci.example.com:8080")
+				.setInstanceId("instance-id")
+				.setInstanceIdFrom(1500000000000L)
+				.setSendingTime(1500000000000L);
+	}
+
+	private static String stackTrace(Random random, int frames) {
+		StringBuilder result = new StringBuilder();
+		for (int i = 0; i < frames; i++) {
+			result.append("\tat com.example.core.pkg").append(random.nextInt(30)).append(".Component").append(random.nextInt(200))
+					.append(".method").append(i).append("(Component.java:").append(random.nextInt(900) + 10).append(")\n");
+		}
+		return result.toString();
+	}
+}
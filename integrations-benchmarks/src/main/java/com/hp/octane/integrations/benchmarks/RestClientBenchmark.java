@@ -0,0 +1,127 @@
+/*
+ *     Copyright 2017 EntIT Software LLC, a Micro Focus company, L.P.
+ *     Licensed under the Apache License, Version 2.0 (the "License");
+ *     you may not use this file except in compliance with the License.
+ *     You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *     Unless required by applicable law or agreed to in writing, software
+ *     distributed under the License is distributed on an "AS IS" BASIS,
+ *     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *     See the License for the specific language governing permissions and
+ *     limitations under the License.
+ */
+
+package com.hp.octane.integrations.benchmarks;
+
+import com.hp.octane.integrations.OctaneClient;
+import com.hp.octane.integrations.OctaneSDK;
+import com.hp.octane.integrations.dto.DTOFactory;
+import com.hp.octane.integrations.dto.connectivity.HttpMethod;
+import com.hp.octane.integrations.dto.connectivity.OctaneRequest;
+import com.hp.octane.integrations.dto.connectivity.OctaneResponse;
+import com.hp.octane.integrations.end2end.basic.OctaneConfigurationBasicFunctionalityTest;
+import com.hp.octane.integrations.end2end.basic.PluginServicesBasicFunctionalityTest;
+import com.hp.octane.integrations.services.rest.OctaneRestClient;
+import com.hp.octane.integrations.services.rest.RestService;
+import com.hp.octane.integrations.testhelpers.OctaneSPEndpointSimulator;
+import com.hp.octane.integrations.utils.CIPluginSDKUtils;
+import org.apache.http.HttpStatus;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Round trip of the Octane REST client against the local Octane endpoint simulator (same one the SDK tests use)
+ * Measures the client side overhead: authentication handling, request building, body compression and response reading; PUT body is the events list
+ */
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(4)
+@Fork(1)
+public class RestClientBenchmark {
+	private static final DTOFactory dtoFactory = DTOFactory.getInstance();
+
+	@Param({"10", "500"})
+	public int events;
+
+	private String spId;
+	private OctaneClient client;
+	private OctaneRestClient restClient;
+	private String baseUrl;
+	private byte[] body;
+
+	@Setup
+	public void setUp() {
+		spId = UUID.randomUUID().toString();
+		OctaneSPEndpointSimulator simulator = OctaneSPEndpointSimulator.addInstance(spId);
+		simulator.installApiHandler(org.eclipse.jetty.http.HttpMethod.PUT, "^.*echo$", request -> {
+			try {
+				String content = CIPluginSDKUtils.inputStreamToUTF8String(new GZIPInputStream(request.getInputStream()));
+				request.getResponse().setStatus(HttpStatus.SC_OK);
+				request.getResponse().getWriter().write(content);
+				request.getResponse().getWriter().flush();
+			} catch (IOException ioe) {
+				throw new RuntimeException(ioe);
+			}
+		});
+
+		client = OctaneSDK.addClient(
+				new OctaneConfigurationBasicFunctionalityTest(
+						UUID.randomUUID().toString(),
+						OctaneSPEndpointSimulator.getSimulatorUrl(),
+						spId,
+						"client_SP_A",
+						"secret_SP_A"),
+				PluginServicesBasicFunctionalityTest.class);
+		restClient = client.getRestService().obtainOctaneRestClient();
+		baseUrl = OctaneSPEndpointSimulator.getSimulatorUrl() + RestService.SHARED_SPACE_INTERNAL_API_PATH_PART + spId + RestService.ANALYTICS_CI_PATH_PART;
+
+		body = dtoFactory.dtoToJson(PayloadGenerators.eventsList(events)).getBytes(StandardCharsets.UTF_8);
+	}
+
+	@TearDown
+	public void tearDown() {
+		if (client != null) {
+			OctaneSDK.removeClient(client);
+		}
+		OctaneSPEndpointSimulator.removeInstance(spId);
+	}
+
+	@Benchmark
+	public OctaneResponse getConnectivityStatus() throws IOException {
+		return restClient.execute(dtoFactory.newDTO(OctaneRequest.class)
+				.setMethod(HttpMethod.GET)
+				.setUrl(baseUrl + "servers/connectivity/status"));
+	}
+
+	@Benchmark
+	public OctaneResponse putEcho() throws IOException {
+		return restClient.execute(dtoFactory.newDTO(OctaneRequest.class)
+				.setMethod(HttpMethod.PUT)
+				.setUrl(baseUrl + "echo")
+				.setBody(new ByteArrayInputStream(body)));
+	}
+}
@@ -0,0 +1,109 @@
+/*
+ *     Copyright 2017 EntIT Software LLC, a Micro Focus company, L.P.
+ *     Licensed under the Apache License, Version 2.0 (the "License");
+ *     you may not use this file except in compliance with the License.
+ *     You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *     Unless required by applicable law or agreed to in writing, software
+ *     distributed under the License is distributed on an "AS IS" BASIS,
+ *     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *     See the License for the specific language governing permissions and
+ *     limitations under the License.
+ */
+
+package com.hp.octane.integrations.services.configuration;
+
+import com.hp.octane.integrations.dto.DTOFactory;
+import com.hp.octane.integrations.dto.causes.CIEventCause;
+import com.hp.octane.integrations.dto.causes.CIEventCauseType;
+import com.hp.octane.integrations.utils.CIPluginSDKUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Relevance of the published event by its cause tree (roots cache enabled): root jobs collected into a set vs resolved in place
+ * Cause tree is 'fanOut' upstream chains of 'depth' levels each; the event is relevant by the root of the last chain only, or not relevant at all
+ * Run with -prof gc to see the allocation rate
+ */
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RootJobResolutionBenchmark {
+	private static final DTOFactory dtoFactory = DTOFactory.getInstance();
+	private static final int ROOTS_COUNT = 1000;
+
+	@Param({"4", "32"})
+	public int depth;
+
+	@Param({"1", "8"})
+	public int fanOut;
+
+	@Param({"true", "false"})
+	public boolean relevant;
+
+	private OctaneRootsCache rootsCache;
+	private List<CIEventCause> causes;
+
+	@Setup
+	public void setUp() {
+		List<String> roots = new ArrayList<>(ROOTS_COUNT);
+		for (int i = 0; i < ROOTS_COUNT; i++) {
+			roots.add("pipelines/root-" + i);
+		}
+		rootsCache = new OctaneRootsCache(job -> null);
+		rootsCache.replace(roots, null);
+
+		causes = new ArrayList<>(fanOut);
+		for (int chain = 0; chain < fanOut; chain++) {
+			String rootJob = relevant && chain == fanOut - 1 ? "pipelines/root-" + chain : "jobs/not-a-root-" + chain;
+			//  built from the root (the innermost upstream cause) to the direct upstream of the published job
+			CIEventCause cause = dtoFactory.newDTO(CIEventCause.class).setType(CIEventCauseType.USER);
+			for (int level = depth; level > 0; level--) {
+				String project = level == depth ? rootJob : "jobs/chain-" + chain + "/level-" + level;
+				cause = dtoFactory.newDTO(CIEventCause.class)
+						.setType(CIEventCauseType.UPSTREAM)
+						.setProject(project)
+						.setBuildCiId(String.valueOf(level))
+						.setCauses(Collections.singletonList(cause));
+			}
+			causes.add(cause);
+		}
+		if (rootsCache.isRelevant("jobs/published", causes) != relevant) {
+			throw new IllegalStateException("synthetic cause tree does not match the expected relevance");
+		}
+	}
+
+	@Benchmark
+	public boolean collectRootJobs() {
+		Set<String> parents = new HashSet<>();
+		CIPluginSDKUtils.getRootJobCiIds("jobs/published", causes, parents);
+		return rootsCache.isRelevant(parents);
+	}
+
+	@Benchmark
+	public boolean resolveInPlace() {
+		return rootsCache.isRelevant("jobs/published", causes);
+	}
+}
@@ -0,0 +1,165 @@
+/*
+ *     Copyright 2017 EntIT Software LLC, a Micro Focus company, L.P.
+ *     Licensed under the Apache License, Version 2.0 (the "License");
+ *     you may not use this file except in compliance with the License.
+ *     You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *     Unless required by applicable law or agreed to in writing, software
+ *     distributed under the License is distributed on an "AS IS" BASIS,
+ *     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *     See the License for the specific language governing permissions and
+ *     limitations under the License.
+ */
+
+package com.hp.octane.integrations.services.queueing;
+
+import com.hp.octane.integrations.utils.CIPluginSDKUtils;
+import com.squareup.tape.FileObjectQueue;
+import com.squareup.tape.ObjectQueue;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Enqueue/dequeue of the queue items through the file queue backing QueueingService, segmented queue vs tape's FileObjectQueue
+ * QueueingService itself can only be created by the SDK (it needs the SDK's configurer), so the queues are driven directly, with the items serialized as in QueueingServiceImpl
+ * Each invocation enqueues and then dequeues ITEMS items; segmented queue is flushed once per invocation, as the background flush of QueueingServiceImpl would
+ */
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FileQueueBenchmark {
+	private static final int ITEMS = 100;
+
+	@Param({"tape", "segmented", "segmentedBatched"})
+	public String queueType;
+
+	private File location;
+	private ObjectQueue<BenchmarkItem> queue;
+	private SegmentedFileObjectQueue<BenchmarkItem> segmented;
+	private List<BenchmarkItem> items;
+
+	@Setup(Level.Iteration)
+	public void setUp() throws IOException {
+		if ("tape".equals(queueType)) {
+			location = File.createTempFile("queue-benchmark", ".dat");
+			Files.delete(location.toPath());
+			queue = new FileObjectQueue<>(location, new JacksonConverter());
+		} else {
+			location = Files.createTempDirectory("queue-benchmark").toFile();
+			segmented = new SegmentedFileObjectQueue<>(location, new JacksonConverter(), 1024 * 1024);
+			queue = segmented;
+		}
+		items = new ArrayList<>(ITEMS);
+		for (int i = 0; i < ITEMS; i++) {
+			items.add(new BenchmarkItem("job-" + (i % 10), String.valueOf(i)));
+		}
+	}
+
+	@TearDown(Level.Iteration)
+	public void tearDown() throws IOException {
+		if (segmented != null) {
+			segmented.close();
+			segmented = null;
+		} else if (queue instanceof FileObjectQueue) {
+			((FileObjectQueue<BenchmarkItem>) queue).close();
+		}
+		delete(location);
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(ITEMS)
+	public int enqueueDequeue() {
+		int dequeued = 0;
+		if ("segmentedBatched".equals(queueType)) {
+			segmented.addAll(items);
+			segmented.flush();
+			while (segmented.size() > 0) {
+				List<BenchmarkItem> chunk = segmented.peek(ITEMS);
+				segmented.remove(chunk.size());
+				dequeued += chunk.size();
+			}
+		} else {
+			for (BenchmarkItem item : items) {
+				queue.add(item);
+			}
+			if (segmented != null) {
+				segmented.flush();
+			}
+			while (queue.size() > 0) {
+				if (queue.peek() != null) {
+					dequeued++;
+				}
+				queue.remove();
+			}
+		}
+		return dequeued;
+	}
+
+	private static void delete(File file) throws IOException {
+		File[] children = file.listFiles();
+		if (children != null) {
+			for (File child : children) {
+				delete(child);
+			}
+		}
+		Files.deleteIfExists(file.toPath());
+	}
+
+	private static final class BenchmarkItem implements QueueingService.QueueItem {
+		private String jobId;
+		private String buildId;
+
+		//  default constructor is needed by the deserialization
+		private BenchmarkItem() {
+		}
+
+		private BenchmarkItem(String jobId, String buildId) {
+			this.jobId = jobId;
+			this.buildId = buildId;
+		}
+	}
+
+	private static final class JacksonConverter implements FileObjectQueue.Converter<BenchmarkItem>, SegmentedFileObjectQueue.Converter<BenchmarkItem> {
+
+		@Override
+		public BenchmarkItem from(byte[] bytes) throws IOException {
+			return CIPluginSDKUtils.getObjectMapper().readValue(bytes, BenchmarkItem.class);
+		}
+
+		@Override
+		public BenchmarkItem from(byte[] bytes, int offset, int length) throws IOException {
+			return CIPluginSDKUtils.getObjectMapper().readValue(bytes, offset, length, BenchmarkItem.class);
+		}
+
+		@Override
+		public void toStream(BenchmarkItem item, OutputStream outputStream) throws IOException {
+			CIPluginSDKUtils.getObjectMapper().writeValue(outputStream, item);
+		}
+	}
+}
@@ -0,0 +1,141 @@
+/*
+ *     Copyright 2017 EntIT Software LLC, a Micro Focus company, L.P.
+ *     Licensed under the Apache License, Version 2.0 (the "License");
+ *     you may not use this file except in compliance with the License.
+ *     You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *     Unless required by applicable law or agreed to in writing, software
+ *     distributed under the License is distributed on an "AS IS" BASIS,
+ *     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *     See the License for the specific language governing permissions and
+ *     limitations under the License.
+ */
+
+package com.hp.octane.integrations.services.tests;
+
+import com.hp.octane.integrations.utils.CIPluginSDKUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedWriter;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Build element rewrite of the legacy test results (TestsResultBuildRewriter), streaming vs the former String/regex based one
+ * Both flavors write the result into a gzip stream (as the request entity does), discarding the compressed bytes
+ * Heap footprint (constant vs proportional to the size) is seen with the GC profiler: java -jar benchmarks.jar TestsResultBuildRewriteBenchmark -prof gc
+ */
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class TestsResultBuildRewriteBenchmark {
+
+	@Param({"10", "100"})
+	public int sizeMB;
+
+	@Param({"streaming", "regex"})
+	public String flavor;
+
+	private File source;
+	private TestsResultBuildRewriter rewriter;
+
+	@Setup
+	public void setUp() throws IOException {
+		source = File.createTempFile("tests-result-benchmark", ".xml");
+		generate(source, sizeMB * 1024L * 1024L);
+		rewriter = new TestsResultBuildRewriter("server-a", "job-a", "1");
+	}
+
+	@TearDown
+	public void tearDown() throws IOException {
+		Files.deleteIfExists(source.toPath());
+	}
+
+	@Benchmark
+	public long rewrite() throws IOException {
+		CountingOutputStream compressed = new CountingOutputStream();
+		try (InputStream in = new BufferedInputStream(new FileInputStream(source));
+		     GZIPOutputStream out = new GZIPOutputStream(compressed, 8192)) {
+			if ("streaming".equals(flavor)) {
+				rewriter.rewrite(in, out);
+			} else {
+				rewriteWithRegex(in, out);
+			}
+		}
+		return compressed.count;
+	}
+
+	//  the former flavor, as it was done in TestsServiceImpl
+	private static void rewriteWithRegex(InputStream in, OutputStream out) throws IOException {
+		String testResultXML = CIPluginSDKUtils.inputStreamToUTF8String(in);
+		testResultXML = testResultXML.replaceAll("<build.*?>",
+				"<build server_id=\"server-a\" job_id=\"job-a\" build_id=\"1\"/>")
+				.replace("</build>", "");
+		InputStream rewritten = new ByteArrayInputStream(testResultXML.getBytes(StandardCharsets.UTF_8));
+		byte[] buffer = new byte[8192];
+		int read;
+		while ((read = rewritten.read(buffer)) != -1) {
+			out.write(buffer, 0, read);
+		}
+	}
+
+	private static void generate(File target, long size) throws IOException {
+		try (Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(target), StandardCharsets.UTF_8))) {
+			writer.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<test_result><build server_id=\"to-be-replaced\" job_id=\"job-a\" build_id=\"1\"/>" +
+					"<test_fields><test_field type=\"Framework\" value=\"JUnit\"/></test_fields><test_runs>\n");
+			long written = 0;
+			for (int i = 0; written < size; i++) {
+				String testRun = "<test_run module=\"module-" + (i % 50) + "\" package=\"com.example.package" + (i % 200) + "\" class=\"ExampleTest" + (i % 1000) +
+						"\" name=\"testNumber" + i + "\" duration=\"" + (i % 3000) + "\" status=\"" + (i % 10 == 0 ? "Failed" : "Passed") + "\" started=\"1500000000000\">" +
+						(i % 10 == 0 ? "<error type=\"java.lang.AssertionError\" message=\"expected &lt;1&gt; but was &lt;2&gt;\">at com.example.ExampleTest.testNumber" + i + "(ExampleTest.java:42)</error>" : "") +
+						"</test_run>\n";
+				writer.write(testRun);
+				written += testRun.length();
+			}
+			writer.write("</test_runs></test_result>\n");
+		}
+	}
+
+	private static final class CountingOutputStream extends OutputStream {
+		private long count;
+
+		@Override
+		public void write(int b) {
+			count++;
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) {
+			count += len;
+		}
+	}
+}
@@ -16,6 +16,7 @@
 
 package com.hp.octane.integrations.dto;
 
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.ObjectMapper;
@@ -43,6 +44,7 @@ import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
@@ -87,6 +89,27 @@ public final class DTOFactory {
 		return dtoToStream(dto,configuration.objectMapper);
 	}
 
+	/**
+	 * Serializes DTO as JSON straight into the provided stream, without buffering it in memory; the stream is NOT closed
+	 *
+	 * @param dto          DTO to serialize
+	 * @param outputStream target stream
+	 * @param <T>          type of DTO
+	 * @throws IOException failure to write into the stream
+	 */
+	public <T extends DTOBase> void dtoToJsonStream(T dto, OutputStream outputStream) throws IOException {
+		if (dto == null) {
+			throw new IllegalArgumentException("dto MUST NOT be null");
+		}
+		if (outputStream == null) {
+			throw new IllegalArgumentException("output stream MUST NOT be null");
+		}
+
+		configuration.objectMapper.writer()
+				.without(JsonGenerator.Feature.AUTO_CLOSE_TARGET)
+				.writeValue(outputStream, dto);
+	}
+
 	public <T extends DTOBase> InputStream dtoToXmlStream(T dto) {
 		return dtoToStream(dto, configuration.getXmlMapper());
 	}
@@ -21,6 +21,8 @@ import com.hp.octane.integrations.dto.general.CIPluginInfo;
 import com.hp.octane.integrations.dto.general.CIServerInfo;
 import org.junit.Test;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -147,6 +149,14 @@ public class DTOFactoryTest {
 		assertEquals("1.2.3", CIPluginInfoImplDes.getVersion());
 	}
 
+	@Test
+	public void test_A_stream() throws IOException {
+		CIPluginInfo ciPluginInfo = dtoFactory.newDTO(CIPluginInfo.class).setVersion("1.2.3");
+		ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+		dtoFactory.dtoToJsonStream(ciPluginInfo, outputStream);
+		assertEquals(dtoFactory.dtoToJson(ciPluginInfo), outputStream.toString("UTF-8"));
+	}
+
 	@Test
 	public void test_B() {
 		CIServerInfo ciServerInfo = dtoFactory.newDTO(CIServerInfo.class)
@@ -18,6 +18,7 @@ package com.hp.octane.integrations;
 import com.hp.octane.integrations.dto.general.OctaneConnectivityStatus;
 import com.hp.octane.integrations.exceptions.OctaneConnectivityException;
 import com.hp.octane.integrations.exceptions.OctaneValidationException;
+import com.hp.octane.integrations.services.QueueWorkersScheduler;
 import com.hp.octane.integrations.services.bridge.BridgeService;
 import com.hp.octane.integrations.services.configuration.ConfigurationService;
 import com.hp.octane.integrations.services.coverage.CoverageService;
@@ -355,6 +356,7 @@ final class OctaneClientImpl implements OctaneClient {
             map.put("supportedSdkVersion", status.getSupportedSdkVersion());
         }
         map.put("started", new Date(started));
+        map.putAll(QueueWorkersScheduler.getInstance().getMetrics());
         return map;
     }
 }
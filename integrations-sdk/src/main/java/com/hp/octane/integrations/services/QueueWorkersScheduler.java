@@ -0,0 +1,277 @@
+/*
+ *     Copyright 2017 EntIT Software LLC, a Micro Focus company, L.P.
+ *     Licensed under the Apache License, Version 2.0 (the "License");
+ *     you may not use this file except in compliance with the License.
+ *     You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *     Unless required by applicable law or agreed to in writing, software
+ *     distributed under the License is distributed on an "AS IS" BASIS,
+ *     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *     See the License for the specific language governing permissions and
+ *     limitations under the License.
+ */
+
+package com.hp.octane.integrations.services;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Process wide scheduler of the queue workers of all the Octane clients
+ * - worker is a step function, running one iteration and returning the pause before the next one; no thread is held while pausing
+ * - steps run on a shared pool, which grows with the number of steps running at the same time and shrinks back when idle
+ * - breakable pause is cut short by wakeUp (eg when an item is added to the queue), unbreakable one (eg breathing after error) is not
+ * - steps of the same worker never run concurrently
+ */
+
+public final class QueueWorkersScheduler {
+	private static final Logger logger = LogManager.getLogger(QueueWorkersScheduler.class);
+	private static final Object INSTANCE_LOCK = new Object();
+	private static volatile QueueWorkersScheduler instance;
+
+	/**
+	 * Step result to run the next iteration right away
+	 */
+	public static final long NO_PAUSE = 0;
+	private static final long STEP_FAILURE_PAUSE = 1000;
+
+	private final int MAX_THREADS = System.getProperty("octane.sdk.workers.max-threads") != null ? Integer.parseInt(System.getProperty("octane.sdk.workers.max-threads")) : Math.max(4, Runtime.getRuntime().availableProcessors() * 2);
+	private final long THREAD_KEEP_ALIVE = System.getProperty("octane.sdk.workers.thread-keep-alive") != null ? Long.parseLong(System.getProperty("octane.sdk.workers.thread-keep-alive")) : 60000;
+
+	private final ThreadPoolExecutor workersPool;
+	private final ScheduledThreadPoolExecutor pausesTimer;
+	private final AtomicInteger workersCount = new AtomicInteger();
+	private final AtomicLong stepsCount = new AtomicLong();
+
+	private QueueWorkersScheduler() {
+		workersPool = new ThreadPoolExecutor(MAX_THREADS, MAX_THREADS, THREAD_KEEP_ALIVE, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(), new QueueWorkersThreadFactory("QueueWorker-"));
+		workersPool.allowCoreThreadTimeOut(true);
+		pausesTimer = new ScheduledThreadPoolExecutor(1, new QueueWorkersThreadFactory("QueueWorkersTimer-"));
+		pausesTimer.setRemoveOnCancelPolicy(true);
+	}
+
+	public static QueueWorkersScheduler getInstance() {
+		if (instance == null) {
+			synchronized (INSTANCE_LOCK) {
+				if (instance == null) {
+					instance = new QueueWorkersScheduler();
+				}
+			}
+		}
+		return instance;
+	}
+
+	/**
+	 * Pause that is cut short by wakeUp, to be used when waiting for new work
+	 *
+	 * @param millis pause duration
+	 * @return step result
+	 */
+	public static long breakablePause(long millis) {
+		return Math.max(1, millis);
+	}
+
+	/**
+	 * Pause that is NOT cut short by wakeUp, to be used when breathing after failure
+	 *
+	 * @param millis pause duration
+	 * @return step result
+	 */
+	public static long pause(long millis) {
+		return -Math.max(1, millis);
+	}
+
+	/**
+	 * Registers the worker and runs its first step right away
+	 *
+	 * @param name worker name, for logging
+	 * @param step worker iteration, returns NO_PAUSE, breakablePause or pause
+	 * @return worker handle
+	 */
+	public Worker register(String name, Step step) {
+		if (step == null) {
+			throw new IllegalArgumentException("step MUST NOT be null");
+		}
+		Worker worker = new Worker(name, step);
+		workersCount.incrementAndGet();
+		worker.wakeUp();
+		return worker;
+	}
+
+	/**
+	 * Runs the task once on the shared pool after the delay
+	 *
+	 * @param task   task to run
+	 * @param millis delay
+	 */
+	public void schedule(Runnable task, long millis) {
+		pausesTimer.schedule(() -> workersPool.execute(task), millis, TimeUnit.MILLISECONDS);
+	}
+
+	public Map<String, Object> getMetrics() {
+		Map<String, Object> result = new LinkedHashMap<>();
+		result.put("workers.count", workersCount.get());
+		result.put("workers.threads", workersPool.getPoolSize());
+		result.put("workers.activeThreads", workersPool.getActiveCount());
+		result.put("workers.largestThreads", workersPool.getLargestPoolSize());
+		result.put("workers.stepsCount", stepsCount.get());
+		return result;
+	}
+
+	@FunctionalInterface
+	public interface Step {
+
+		/**
+		 * Runs one iteration of the worker
+		 *
+		 * @return NO_PAUSE, breakablePause(millis) or pause(millis)
+		 */
+		long run();
+	}
+
+	/**
+	 * Handle of the registered worker; states: WAITING (paused or idle), QUEUED (submitted to the pool), RUNNING, RUNNING_WOKEN (woken while running)
+	 */
+	public final class Worker implements Runnable {
+		private static final int WAITING = 0;
+		private static final int QUEUED = 1;
+		private static final int RUNNING = 2;
+		private static final int RUNNING_WOKEN = 3;
+		private static final int SHUTDOWN = 4;
+
+		private final String name;
+		private final Step step;
+		private final AtomicInteger state = new AtomicInteger(WAITING);
+		private volatile boolean breakable = true;
+		private volatile ScheduledFuture<?> pendingWakeUp;
+
+		private Worker(String name, Step step) {
+			this.name = name;
+			this.step = step;
+		}
+
+		/**
+		 * Runs the next step as soon as possible, unless the worker is in unbreakable pause
+		 */
+		public void wakeUp() {
+			if (breakable) {
+				submit();
+			}
+		}
+
+		public void shutdown() {
+			if (state.getAndSet(SHUTDOWN) != SHUTDOWN) {
+				workersCount.decrementAndGet();
+				ScheduledFuture<?> wakeUp = pendingWakeUp;
+				if (wakeUp != null) {
+					wakeUp.cancel(false);
+				}
+			}
+		}
+
+		public boolean isShutdown() {
+			return state.get() == SHUTDOWN;
+		}
+
+		@Override
+		public void run() {
+			if (!state.compareAndSet(QUEUED, RUNNING)) {
+				return;
+			}
+
+			long result;
+			try {
+				stepsCount.incrementAndGet();
+				result = step.run();
+			} catch (Throwable t) {
+				logger.error("worker " + name + " failed unexpectedly, pausing " + STEP_FAILURE_PAUSE + "ms", t);
+				result = pause(STEP_FAILURE_PAUSE);
+			}
+
+			if (result == NO_PAUSE) {
+				if (state.compareAndSet(RUNNING, QUEUED) || state.compareAndSet(RUNNING_WOKEN, QUEUED)) {
+					execute();
+				}
+			} else if (result > 0) {
+				if (state.compareAndSet(RUNNING, WAITING)) {
+					pendingWakeUp = pausesTimer.schedule(this::resume, result, TimeUnit.MILLISECONDS);
+				} else if (state.compareAndSet(RUNNING_WOKEN, QUEUED)) {
+					execute();
+				}
+			} else {
+				breakable = false;
+				if (state.compareAndSet(RUNNING, WAITING) || state.compareAndSet(RUNNING_WOKEN, WAITING)) {
+					pendingWakeUp = pausesTimer.schedule(this::resume, -result, TimeUnit.MILLISECONDS);
+				}
+			}
+		}
+
+		/**
+		 * Runs the next step as soon as possible, cutting short any pause (eg when the condition the worker was waiting for is gone)
+		 */
+		public void resume() {
+			breakable = true;
+			submit();
+		}
+
+		private void submit() {
+			while (true) {
+				int current = state.get();
+				if (current == WAITING) {
+					if (state.compareAndSet(WAITING, QUEUED)) {
+						ScheduledFuture<?> wakeUp = pendingWakeUp;
+						if (wakeUp != null) {
+							wakeUp.cancel(false);
+						}
+						execute();
+						return;
+					}
+				} else if (current == RUNNING) {
+					if (state.compareAndSet(RUNNING, RUNNING_WOKEN)) {
+						return;
+					}
+				} else {
+					return;
+				}
+			}
+		}
+
+		private void execute() {
+			workersPool.execute(this);
+		}
+
+		@Override
+		public String toString() {
+			return "Worker {" + name + "}";
+		}
+	}
+
+	private static final class QueueWorkersThreadFactory implements ThreadFactory {
+		private final String namePrefix;
+
+		private QueueWorkersThreadFactory(String namePrefix) {
+			this.namePrefix = namePrefix;
+		}
+
+		@Override
+		public Thread newThread(Runnable runnable) {
+			Thread result = new Thread(runnable);
+			result.setName(namePrefix + result.getId());
+			result.setDaemon(true);
+			return result;
+		}
+	}
+}
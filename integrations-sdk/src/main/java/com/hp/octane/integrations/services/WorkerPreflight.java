@@ -1,81 +1,207 @@
 package com.hp.octane.integrations.services;
 
 import com.hp.octane.integrations.services.configuration.ConfigurationService;
-import com.hp.octane.integrations.utils.CIPluginSDKUtils;
 import org.apache.logging.log4j.Logger;
 
 import java.util.Date;
 import java.util.Map;
-
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Drives the queue worker of the service on the shared QueueWorkersScheduler
+ * Each iteration first checks that the worker may proceed (queue not empty, client enabled and connected), then runs the service's step
+ * - no pause between the steps while draining the backlog, temporary errors are backed off exponentially with jitter
+ * - worker waits for new items and for the reconnection without polling: it is woken up on enqueue and on the connectivity transitions
+ */
 public class WorkerPreflight {
 
 
     private final static int QUEUE_EMPTY_INTERVAL = 10000;
-    private final static int REGULAR_CYCLE_PAUSE = 400;
     private final static int NO_CONNECTION_PAUSE = 30000;
     private final static int AFTER_RECONNECTION_PAUSE = 90000;
-    private final Object EMPTY_QUEUE_MONITOR = new Object();
+    private final static int DRAIN_RATE_WINDOW = 10000;
+    private final static int MAX_BACKOFF_EXPONENT = 16;
+
+    private final long MAX_ERROR_BACKOFF = System.getProperty("octane.sdk.workers.max-error-backoff") != null ? Long.parseLong(System.getProperty("octane.sdk.workers.max-error-backoff")) : 300000;
 
     private ConfigurationService confService;
     private HasQueueService service;
     private Logger logger;
+    private volatile QueueWorkersScheduler.Worker worker;
+    private final ConfigurationService.ConnectivityListener connectivityListener = this::onConnectivityChanged;
 
-    private boolean previousIterationWasNotConnected;
-    private long lastIterationTime = 0;
+    private volatile boolean previousIterationWasNotConnected;
+    private volatile long lastIterationTime = 0;
     private boolean waitAfterConnected = true;
 
+    //  adaptive backoff and drain rate state
+    private final AtomicInteger consecutiveFailures = new AtomicInteger();
+    private volatile long lastBackoff = 0;
+    private final AtomicLong addedItemsCount = new AtomicLong();
+    private final AtomicLong clearedItemsCount = new AtomicLong();
+    private long initialQueueSize;
+    private long drainRateWindowStart;
+    private long drainRateWindowStartDrained;
+    private double drainRate;
+
     public WorkerPreflight(HasQueueService service, ConfigurationService confService, Logger logger) {
         this.service = service;
         this.logger = logger;
         this.confService = confService;
     }
 
-    public boolean preflight() {
+    /**
+     * Starts the worker on the shared scheduler
+     *
+     * @param workerName name of the worker, for logging
+     * @param step       processing of the queue head, returns QueueWorkersScheduler.NO_PAUSE or the pause requested by the service (eg backoff after temporary error)
+     */
+    public void start(String workerName, QueueWorkersScheduler.Step step) {
+        synchronized (this) {
+            initialQueueSize = service.getQueueSize();
+            drainRateWindowStart = System.currentTimeMillis();
+        }
+        confService.addConnectivityListener(connectivityListener);
+        worker = QueueWorkersScheduler.getInstance().register(confService.getConfiguration().getLocationForLog() + workerName, () -> {
+            long pause = preflight();
+            if (pause != QueueWorkersScheduler.NO_PAUSE) {
+                return pause;
+            }
+            pause = step.run();
+            if (pause == QueueWorkersScheduler.NO_PAUSE) {
+                consecutiveFailures.set(0);
+            }
+            sampleDrainRate();
+            return pause;
+        });
+    }
+
+    public void shutdown() {
+        confService.removeConnectivityListener(connectivityListener);
+        if (worker != null) {
+            worker.shutdown();
+        }
+    }
+
+    public boolean isShutdown() {
+        return worker != null && worker.isShutdown();
+    }
+
+    /**
+     * Checks if the worker may process the queue right now
+     *
+     * @return QueueWorkersScheduler.NO_PAUSE if it may, otherwise the pause before the next check
+     */
+    public long preflight() {
 
         lastIterationTime = System.currentTimeMillis();
-        CIPluginSDKUtils.doWait(REGULAR_CYCLE_PAUSE);
 
         if (service.getQueueSize() == 0) {
-            CIPluginSDKUtils.doBreakableWait(QUEUE_EMPTY_INTERVAL, EMPTY_QUEUE_MONITOR);
-            return false;
+            return QueueWorkersScheduler.breakablePause(QUEUE_EMPTY_INTERVAL);
         }
 
         if (confService.getConfiguration().isDisabled()) {
-            logger.error(confService.getConfiguration().getLocationForLog() + "client is disabled, removing " + service.getQueueSize() + " items from queue");
+            long queueSize = service.getQueueSize();
+            logger.error(confService.getConfiguration().getLocationForLog() + "client is disabled, removing " + queueSize + " items from queue");
             service.clearQueue();
-            return false;
+            clearedItemsCount.addAndGet(queueSize);
+            return QueueWorkersScheduler.breakablePause(QUEUE_EMPTY_INTERVAL);
         }
 
         if (!confService.isConnected()) {
-            //logger.warn(confService.getConfiguration().geLocationForLog() + "client is not connected. waiting " + NO_CONNECTION_PAUSE / 1000 + " sec");
-            CIPluginSDKUtils.doWait(NO_CONNECTION_PAUSE);
+            //  woken up on reconnection, the pause is only a safety net
             previousIterationWasNotConnected = true;
-            return false;
+            return QueueWorkersScheduler.breakablePause(NO_CONNECTION_PAUSE);
         }
         if (previousIterationWasNotConnected && waitAfterConnected) {
             logger.warn(confService.getConfiguration().getLocationForLog() + "client is connected now. Giving time to events to be sent.");
-            CIPluginSDKUtils.doWait(AFTER_RECONNECTION_PAUSE);
             previousIterationWasNotConnected = false;
-            return false;
+            return QueueWorkersScheduler.pause(AFTER_RECONNECTION_PAUSE);
         }
+        previousIterationWasNotConnected = false;
+
+        return QueueWorkersScheduler.NO_PAUSE;
+    }
+
+    /**
+     * Pause to be returned by the step on temporary error: base interval doubled on each consecutive failure, up to max error backoff, with jitter
+     * Consecutive failures are reset once the step succeeds
+     *
+     * @param baseInterval pause after the first failure
+     * @return step result
+     */
+    public long backoff(long baseInterval) {
+        int failures = consecutiveFailures.incrementAndGet();
+        long interval = Math.min(MAX_ERROR_BACKOFF, baseInterval << Math.min(failures - 1, MAX_BACKOFF_EXPONENT));
+        //  equal jitter: half of the interval is kept, the other half is randomized, so that the clients failing together do not retry together
+        long result = interval / 2 + ThreadLocalRandom.current().nextLong(interval / 2 + 1);
+        lastBackoff = result;
+        return QueueWorkersScheduler.pause(result);
+    }
 
-        return true;
+    /**
+     * Resets the consecutive failures, for the workers completing the items off the step (the step only hands them out)
+     */
+    public void resetBackoff() {
+        consecutiveFailures.set(0);
     }
 
     /**
      * Indicate preflight that item is added to queue, If preflight is waiting on emptyList, waiting time will be shortened.
      */
     public void itemAddedToQueue() {
-        synchronized (EMPTY_QUEUE_MONITOR) {
-            EMPTY_QUEUE_MONITOR.notify();
+        addedItemsCount.incrementAndGet();
+        wakeUp();
+    }
+
+    /**
+     * Cuts short the breakable pause of the worker (eg when work that was waited for is available)
+     */
+    public void wakeUp() {
+        QueueWorkersScheduler.Worker current = worker;
+        if (current != null) {
+            current.wakeUp();
         }
     }
 
     public void addMetrics(Map<String, Object> metricsMap){
         metricsMap.put("lastIterationTime", new Date(lastIterationTime));
+        metricsMap.put("consecutiveFailures", consecutiveFailures.get());
+        metricsMap.put("lastErrorBackoff", lastBackoff);
+        synchronized (this) {
+            sampleDrainRate();
+            metricsMap.put("drainedItemsCount", getDrainedItemsCount());
+            metricsMap.put("drainRatePerSecond", Math.round(drainRate * 100) / 100.0);
+        }
     }
 
     public void setWaitAfterConnection(boolean waitAfterConnected) {
         this.waitAfterConnected = waitAfterConnected;
     }
+
+    private void onConnectivityChanged(boolean connected) {
+        QueueWorkersScheduler.Worker current = worker;
+        if (connected && current != null) {
+            //  backoff of the failures caused by the disconnection is not relevant anymore
+            consecutiveFailures.set(0);
+            current.resume();
+        }
+    }
+
+    //  items that left the queue other than by clearing it; concurrent enqueue may skew a single sample, never the trend
+    private long getDrainedItemsCount() {
+        return Math.max(0, initialQueueSize + addedItemsCount.get() - clearedItemsCount.get() - service.getQueueSize());
+    }
+
+    private synchronized void sampleDrainRate() {
+        long now = System.currentTimeMillis();
+        if (now - drainRateWindowStart >= DRAIN_RATE_WINDOW) {
+            long drained = getDrainedItemsCount();
+            drainRate = Math.max(0, drained - drainRateWindowStartDrained) * 1000.0 / (now - drainRateWindowStart);
+            drainRateWindowStart = now;
+            drainRateWindowStartDrained = drained;
+        }
+    }
 }
@@ -24,6 +24,7 @@ import com.hp.octane.integrations.dto.general.CIServerTypes;
 import com.hp.octane.integrations.services.configuration.ConfigurationService;
 import com.hp.octane.integrations.services.configuration.ConfigurationServiceImpl;
 import com.hp.octane.integrations.services.rest.OctaneRestClient;
+import com.hp.octane.integrations.services.rest.OctaneRequestBodyWriter;
 import com.hp.octane.integrations.services.rest.RestService;
 import com.hp.octane.integrations.services.tasking.TasksProcessor;
 import com.hp.octane.integrations.utils.CIPluginSDKUtils;
@@ -33,7 +34,6 @@ import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 import java.io.IOException;
-import java.io.InputStream;
 import java.io.InterruptedIOException;
 import java.net.SocketException;
 import java.net.UnknownHostException;
@@ -302,7 +302,7 @@ final class BridgeServiceImpl implements BridgeService {
                     int submitStatus = putAbridgedResult(
                             configurer.octaneConfiguration.getInstanceId(),
                             result.getId(),
-                            dtoFactory.dtoToJsonStream(result));
+                            outputStream -> dtoFactory.dtoToJsonStream(result, outputStream));
                     logger.info(configurer.octaneConfiguration.getLocationForLog() + "result for task '" + result.getId() + "' submitted with status " + submitStatus);
                 });
             }
@@ -311,7 +311,7 @@ final class BridgeServiceImpl implements BridgeService {
         }
     }
 
-    private int putAbridgedResult(String selfIdentity, String taskId, InputStream contentJSON) {
+    private int putAbridgedResult(String selfIdentity, String taskId, OctaneRequestBodyWriter contentJSON) {
         OctaneRestClient octaneRestClientImpl = restService.obtainOctaneRestClient();
         Map<String, String> headers = new LinkedHashMap<>();
         headers.put(RestService.CONTENT_TYPE_HEADER, ContentType.APPLICATION_JSON.getMimeType());
@@ -320,11 +320,9 @@ final class BridgeServiceImpl implements BridgeService {
                 .setUrl(configurer.octaneConfiguration.getUrl() +
                         RestService.SHARED_SPACE_INTERNAL_API_PATH_PART + configurer.octaneConfiguration.getSharedSpace() +
                         RestService.ANALYTICS_CI_PATH_PART + "servers/" + selfIdentity + "/tasks/" + taskId + "/result")
-                .setHeaders(headers)
-                .setBody(contentJSON);
+                .setHeaders(headers);
         try {
-            OctaneResponse octaneResponse = octaneRestClientImpl.execute(octaneRequest);
-            return octaneResponse.getStatus();
+            return octaneRestClientImpl.execute(octaneRequest, contentJSON, (response, body) -> response.getStatus());
         } catch (IOException ioe) {
             logger.error(configurer.octaneConfiguration.getLocationForLog() + "failed to submit abridged task's result", ioe);
             return 0;
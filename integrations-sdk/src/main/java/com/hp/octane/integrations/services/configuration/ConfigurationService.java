@@ -17,12 +17,17 @@ package com.hp.octane.integrations.services.configuration;
 
 import com.hp.octane.integrations.OctaneConfiguration;
 import com.hp.octane.integrations.OctaneSDK;
+import com.hp.octane.integrations.dto.causes.CIEventCause;
 import com.hp.octane.integrations.dto.general.OctaneConnectivityStatus;
 import com.hp.octane.integrations.services.HasMetrics;
 import com.hp.octane.integrations.services.rest.RestService;
+import com.hp.octane.integrations.utils.CIPluginSDKUtils;
 
 import java.io.IOException;
 import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
 import java.util.concurrent.Future;
 
 public interface ConfigurationService extends HasMetrics {
@@ -63,6 +68,22 @@ public interface ConfigurationService extends HasMetrics {
 
 	boolean isConnected();
 
+	/**
+	 * Registers listener to be notified on the transitions of the connectivity state (as reported by isConnected)
+	 *
+	 * - default implementation does not notify, the listeners then fall back to polling isConnected (queue workers re-check it on their no-connection pause)
+	 *
+	 * @param listener listener, called on the thread that detected the transition
+	 */
+	default void addConnectivityListener(ConnectivityListener listener) {
+		if (listener == null) {
+			throw new IllegalArgumentException("listener MUST NOT be null");
+		}
+	}
+
+	default void removeConnectivityListener(ConnectivityListener listener) {
+	}
+
 	Collection<String> getOctaneRootsCacheCollection();
 
 	Future<Boolean> resetOctaneRootsCache();
@@ -72,4 +93,35 @@ public interface ConfigurationService extends HasMetrics {
 	boolean removeFromOctaneRoots(String rootJob);
 
 	boolean isRelevantForOctane(Collection<String> rootJobs);
+
+	/**
+	 * Relevance of the build by its causes, same as isRelevantForOctane of the root jobs resolved by CIPluginSDKUtils.getRootJobCiIds
+	 * - resolves the root jobs in place, without allocations, thus preferred on the hot paths (eg events publishing)
+	 * - default implementation collects the root jobs and delegates to isRelevantForOctane(Collection)
+	 *
+	 * @param jobId  job of the build
+	 * @param causes causes of the build
+	 * @return true if the build may be relevant for Octane
+	 */
+	default boolean isRelevantForOctane(String jobId, List<CIEventCause> causes) {
+		Set<String> rootJobs = new HashSet<>();
+		CIPluginSDKUtils.getRootJobCiIds(jobId, causes, rootJobs);
+		return isRelevantForOctane(rootJobs);
+	}
+
+	/**
+	 * Provides the cache of the preflight answers, shared by the services of THIS OctaneClient instance
+	 * - invalidated when the pipeline roots cache is refreshed
+	 * - default implementation provides the disabled cache, every preflight goes to Octane as before
+	 *
+	 * @return preflight cache
+	 */
+	default PreflightCache getPreflightCache() {
+		return PreflightCache.DISABLED;
+	}
+
+	@FunctionalInterface
+	interface ConnectivityListener {
+		void onConnectivityChanged(boolean connected);
+	}
 }
@@ -19,6 +19,7 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import com.hp.octane.integrations.OctaneConfiguration;
 import com.hp.octane.integrations.OctaneSDK;
 import com.hp.octane.integrations.dto.DTOFactory;
+import com.hp.octane.integrations.dto.causes.CIEventCause;
 import com.hp.octane.integrations.dto.connectivity.HttpMethod;
 import com.hp.octane.integrations.dto.connectivity.OctaneRequest;
 import com.hp.octane.integrations.dto.connectivity.OctaneResponse;
@@ -28,17 +29,17 @@ import com.hp.octane.integrations.services.configurationparameters.factory.Confi
 import com.hp.octane.integrations.services.rest.RestService;
 import com.hp.octane.integrations.utils.CIPluginSDKUtils;
 import com.hp.octane.integrations.utils.SdkConstants;
-import com.hp.octane.integrations.utils.SdkStringUtils;
+import org.apache.http.HttpStatus;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 import java.io.IOException;
 import java.util.*;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
-import java.util.stream.Collectors;
 
 /**
  * Base implementation of Configuration Service API
@@ -52,15 +53,25 @@ public final class ConfigurationServiceImpl implements ConfigurationService {
 
     private static final String PIPELINE_ROOTS_URL = "/analytics/ci/servers/%s/pipeline-roots";//{%s - ciServerIdentity}
     private static final String OCTANE_ROOTS_VERSION = "15.1.8";
-    private Set<String> octaneRoots = null;
+    private static final String ETAG_HEADER = "ETag";
+    private static final String IF_NONE_MATCH_HEADER = "If-None-Match";
+    private final OctaneRootsCache octaneRoots;
     private static final ObjectMapper mapper = new ObjectMapper();
 
     private final OctaneSDK.SDKServicesConfigurer configurer;
     private final RestService restService;
     private OctaneConnectivityStatus octaneConnectivityStatus;
     private volatile boolean isConnected;
+    private final List<ConnectivityListener> connectivityListeners = new CopyOnWriteArrayList<>();
+    private final Object CONNECTIVITY_LOCK = new Object();
     private ExecutorService octaneRootsCacheExecutor = Executors.newSingleThreadExecutor();
 
+    //  preflight answers cache, TTL 0 disables it
+    private final long PREFLIGHT_CACHE_TTL = System.getProperty("octane.sdk.preflight-cache.ttl") != null ? Long.parseLong(System.getProperty("octane.sdk.preflight-cache.ttl")) : 300000;
+    private final long PREFLIGHT_CACHE_NEGATIVE_TTL = System.getProperty("octane.sdk.preflight-cache.negative-ttl") != null ? Long.parseLong(System.getProperty("octane.sdk.preflight-cache.negative-ttl")) : 60000;
+    private final int PREFLIGHT_CACHE_MAX_SIZE = System.getProperty("octane.sdk.preflight-cache.max-size") != null ? Integer.parseInt(System.getProperty("octane.sdk.preflight-cache.max-size")) : 1000;
+    private final PreflightCache preflightCache = new PreflightCache(PREFLIGHT_CACHE_TTL, PREFLIGHT_CACHE_NEGATIVE_TTL, PREFLIGHT_CACHE_MAX_SIZE);
+
     ConfigurationServiceImpl(OctaneSDK.SDKServicesConfigurer configurer, RestService restService) {
         if (configurer == null) {
             throw new IllegalArgumentException("invalid configurer");
@@ -71,6 +82,7 @@ public final class ConfigurationServiceImpl implements ConfigurationService {
 
         this.configurer = configurer;
         this.restService = restService;
+        this.octaneRoots = new OctaneRootsCache(rootJob -> configurer.pluginServices.getParentJobName(rootJob));
         logger.info(configurer.octaneConfiguration.getLocationForLog() + "initialized SUCCESSFULLY");
     }
 
@@ -90,7 +102,7 @@ public final class ConfigurationServiceImpl implements ConfigurationService {
             if (forceFetch || octaneConnectivityStatus == null) {
                 octaneConnectivityStatus = validateConfigurationAndGetConnectivityStatus();
                 logger.info(configurer.octaneConfiguration.getLocationForLog() + "octaneConnectivityStatus : " + octaneConnectivityStatus);
-                isConnected = true;
+                setConnected(true);
                 resetOctaneRootsCache();
             }
         } catch (Exception e) {
@@ -133,15 +145,38 @@ public final class ConfigurationServiceImpl implements ConfigurationService {
     }
 
     public void setConnected(boolean connected) {
-        isConnected = connected;
+        boolean changed;
+        synchronized (CONNECTIVITY_LOCK) {
+            changed = isConnected != connected;
+            isConnected = connected;
+        }
+        if (changed) {
+            for (ConnectivityListener listener : connectivityListeners) {
+                try {
+                    listener.onConnectivityChanged(connected);
+                } catch (Throwable t) {
+                    logger.error(configurer.octaneConfiguration.getLocationForLog() + "connectivity listener failed", t);
+                }
+            }
+        }
     }
 
     @Override
-    public Collection<String> getOctaneRootsCacheCollection() {
-        if (octaneRoots == null) {
-            return Collections.EMPTY_SET;
+    public void addConnectivityListener(ConnectivityListener listener) {
+        if (listener == null) {
+            throw new IllegalArgumentException("listener MUST NOT be null");
         }
-        return Collections.unmodifiableCollection(octaneRoots.stream().sorted().collect(Collectors.toList()));
+        connectivityListeners.add(listener);
+    }
+
+    @Override
+    public void removeConnectivityListener(ConnectivityListener listener) {
+        connectivityListeners.remove(listener);
+    }
+
+    @Override
+    public Collection<String> getOctaneRootsCacheCollection() {
+        return octaneRoots.getSortedRoots();
     }
 
     @Override
@@ -154,11 +189,31 @@ public final class ConfigurationServiceImpl implements ConfigurationService {
                     String url = configurer.octaneConfiguration.getUrl() + RestService.SHARED_SPACE_INTERNAL_API_PATH_PART +
                             configurer.octaneConfiguration.getSharedSpace() + String.format(PIPELINE_ROOTS_URL, configurer.octaneConfiguration.getInstanceId());
                     OctaneRequest request = dtoFactory.newDTO(OctaneRequest.class).setMethod(HttpMethod.GET).setUrl(url);
+                    //  roots version known - Octane may answer that nothing has changed since
+                    String version = octaneRoots.getVersion();
+                    if (version != null && octaneRoots.isLoaded()) {
+                        Map<String, String> headers = new HashMap<>();
+                        headers.put(IF_NONE_MATCH_HEADER, version);
+                        request.setHeaders(headers);
+                    }
 
                     OctaneResponse response = restService.obtainOctaneRestClient().execute(request, configurer.octaneConfiguration);
-                    octaneRoots = mapper.readValue(response.getBody(), mapper.getTypeFactory().constructCollectionType(Set.class, String.class));
+                    if (response.getStatus() == HttpStatus.SC_NOT_MODIFIED) {
+                        octaneRoots.unchanged();
+                        logger.info(configurer.octaneConfiguration.getLocationForLog() + "resetOctaneRootCache: octane roots are not modified, " + octaneRoots.size() + " roots");
+                        return true;
+                    }
+                    if (response.getStatus() != HttpStatus.SC_OK) {
+                        logger.info(configurer.octaneConfiguration.getLocationForLog() + "Failed to resetOctaneRootCache : status " + response.getStatus());
+                        return false;
+                    }
+                    Set<String> roots = mapper.readValue(response.getBody(), mapper.getTypeFactory().constructCollectionType(Set.class, String.class));
+                    int changes = octaneRoots.replace(roots, getHeader(response, ETAG_HEADER));
+                    if (changes != 0) {
+                        preflightCache.invalidate();
+                    }
                     logger.info(configurer.octaneConfiguration.getLocationForLog() + "resetOctaneRootCache: successfully update octane roots, found " +
-                            octaneRoots.size() + " roots, processing time is " + ((System.currentTimeMillis() - startTime) / 1000) + " seconds");
+                            roots.size() + " roots" + (changes > 0 ? " (" + changes + " changed)" : "") + ", processing time is " + ((System.currentTimeMillis() - startTime) / 1000) + " seconds");
                     return true;
                 } catch (Exception e) {
                     logger.info(configurer.octaneConfiguration.getLocationForLog() + "Failed to resetOctaneRootCache : " + e.getMessage());
@@ -166,29 +221,24 @@ public final class ConfigurationServiceImpl implements ConfigurationService {
                 }
             });
         } else {
-            if (octaneRoots != null) {
+            if (octaneRoots.isLoaded()) {
                 logger.info(configurer.octaneConfiguration.getLocationForLog() + "resetOctaneRootsCache : cache is cleared");
             }
-            octaneRoots = null;
+            octaneRoots.clear();
             return CompletableFuture.completedFuture(false);
         }
     }
 
     @Override
     public void addToOctaneRootsCache(String rootJob) {
-        if (octaneRoots != null && SdkStringUtils.isNotEmpty(rootJob)) {
-            if (octaneRoots.add(rootJob)) {
-                logger.info(configurer.octaneConfiguration.getLocationForLog() + "addToOctaneRootsCache: new root is added [" + rootJob + "]");
-            }
+        if (octaneRoots.add(rootJob)) {
+            logger.info(configurer.octaneConfiguration.getLocationForLog() + "addToOctaneRootsCache: new root is added [" + rootJob + "]");
         }
     }
 
     @Override
     public boolean removeFromOctaneRoots(String rootJob) {
-        if (octaneRoots != null) {
-            return octaneRoots.remove(rootJob);
-        }
-        return false;
+        return octaneRoots.remove(rootJob);
     }
 
     public boolean isRelevantForOctane(String rootJobs) {
@@ -206,25 +256,28 @@ public final class ConfigurationServiceImpl implements ConfigurationService {
 
     @Override
     public boolean isRelevantForOctane(Collection<String> rootJobs) {
-        if (isOctaneRootsCacheActivated() && octaneRoots != null && rootJobs != null && !rootJobs.isEmpty()) {
-            for (String rootJob : rootJobs) {
-                if (SdkStringUtils.isEmpty(rootJob)) {
-                    continue;
-                }
-                if (octaneRoots.contains(rootJob)) {
-                    return true;
-                }
-                //multibranch handling
-                String parentJobName = configurer.pluginServices.getParentJobName(rootJob);
-                if (parentJobName != null && octaneRoots.contains(parentJobName)) {
-                    addToOctaneRootsCache(rootJob);
-                    return true;
-                }
+        return !isOctaneRootsCacheActivated() || octaneRoots.isRelevant(rootJobs);
+    }
 
+    @Override
+    public boolean isRelevantForOctane(String jobId, List<CIEventCause> causes) {
+        return !isOctaneRootsCacheActivated() || octaneRoots.isRelevant(jobId, causes);
+    }
+
+    @Override
+    public PreflightCache getPreflightCache() {
+        return preflightCache;
+    }
+
+    private static String getHeader(OctaneResponse response, String name) {
+        if (response.getHeaders() != null) {
+            for (Map.Entry<String, String> header : response.getHeaders().entrySet()) {
+                if (name.equalsIgnoreCase(header.getKey())) {
+                    return header.getValue();
+                }
             }
-            return false;
         }
-        return true;
+        return null;
     }
 
     private boolean isOctaneRootsCacheActivated() {
@@ -235,9 +288,11 @@ public final class ConfigurationServiceImpl implements ConfigurationService {
     public Map<String, Object> getMetrics() {
         Map<String, Object> map = new LinkedHashMap<>();
         map.put("isOctaneRootsCacheActivated", isOctaneRootsCacheActivated());
-        if (isOctaneRootsCacheActivated() && octaneRoots != null) {
+        if (isOctaneRootsCacheActivated() && octaneRoots.isLoaded()) {
             map.put("octaneRootsCache_jobCount", octaneRoots.size());
+            octaneRoots.addMetrics(map);
         }
+        preflightCache.addMetrics(map);
         return map;
     }
 }
@@ -0,0 +1,320 @@
+/*
+ *     Copyright 2017 EntIT Software LLC, a Micro Focus company, L.P.
+ *     Licensed under the Apache License, Version 2.0 (the "License");
+ *     you may not use this file except in compliance with the License.
+ *     You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *     Unless required by applicable law or agreed to in writing, software
+ *     distributed under the License is distributed on an "AS IS" BASIS,
+ *     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *     See the License for the specific language governing permissions and
+ *     limitations under the License.
+ */
+
+package com.hp.octane.integrations.services.configuration;
+
+import com.hp.octane.integrations.dto.causes.CIEventCause;
+import com.hp.octane.integrations.dto.causes.CIEventCauseType;
+import com.hp.octane.integrations.utils.SdkStringUtils;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Octane pipeline roots known to the CI server, used to tell the relevance of the jobs without asking Octane
+ * - roots are kept as immutable snapshot, replaced (copy-on-write) on refresh and on single root change, so the relevance checks read it without locking
+ * - refresh keeps the version (ETag) of the roots, so that the next refresh may be answered with 'not modified'
+ * - parent job names of the multibranch jobs are memoized, the plugin is asked once per job
+ * Roots are not loaded (NULL snapshot) until the first refresh, meanwhile every job is relevant
+ */
+
+final class OctaneRootsCache {
+	private static final int MAX_PARENT_JOB_NAMES = 10000;
+	private static final String NO_PARENT = "";
+
+	//  results of the cause tree walk
+	private static final int NO_ROOTS = 0;
+	private static final int RELEVANT_ROOT = 1;
+	private static final int IRRELEVANT_ROOTS = 2;
+
+	private final Function<String, String> parentJobNameResolver;
+	private final Map<String, String> parentJobNames = new ConcurrentHashMap<>();
+	private final Object ROOTS_LOCK = new Object();
+	private volatile Snapshot snapshot;
+	private volatile String version;
+
+	private final AtomicLong hitsCount = new AtomicLong();
+	private final AtomicLong missesCount = new AtomicLong();
+	private final AtomicLong parentLookupsCount = new AtomicLong();
+	private final AtomicLong refreshesCount = new AtomicLong();
+	private final AtomicLong unchangedRefreshesCount = new AtomicLong();
+
+	/**
+	 * @param parentJobNameResolver provides the parent job name of multibranch job, NULL if there is no parent
+	 */
+	OctaneRootsCache(Function<String, String> parentJobNameResolver) {
+		if (parentJobNameResolver == null) {
+			throw new IllegalArgumentException("parent job name resolver MUST NOT be null");
+		}
+		this.parentJobNameResolver = parentJobNameResolver;
+	}
+
+	boolean isLoaded() {
+		return snapshot != null;
+	}
+
+	int size() {
+		Snapshot current = snapshot;
+		return current == null ? 0 : current.roots.size();
+	}
+
+	/**
+	 * @return version of the loaded roots, NULL if unknown
+	 */
+	String getVersion() {
+		return version;
+	}
+
+	/**
+	 * @return sorted roots, empty if not loaded
+	 */
+	List<String> getSortedRoots() {
+		Snapshot current = snapshot;
+		return current == null ? Collections.emptyList() : current.getSorted();
+	}
+
+	/**
+	 * Replaces the roots with the refreshed ones
+	 *
+	 * @param roots   roots as provided by Octane
+	 * @param version version of the roots, may be NULL
+	 * @return count of the roots added and removed by the refresh, -1 if the roots were not loaded before
+	 */
+	int replace(Collection<String> roots, String version) {
+		Set<String> refreshed = Collections.unmodifiableSet(new HashSet<>(roots));
+		int changes;
+		synchronized (ROOTS_LOCK) {
+			Snapshot current = snapshot;
+			if (current == null) {
+				changes = -1;
+			} else {
+				changes = 0;
+				for (String root : refreshed) {
+					if (!current.roots.contains(root)) {
+						changes++;
+					}
+				}
+				for (String root : current.roots) {
+					if (!refreshed.contains(root)) {
+						changes++;
+					}
+				}
+			}
+			if (changes != 0) {
+				snapshot = new Snapshot(refreshed);
+			}
+			this.version = version;
+		}
+		refreshesCount.incrementAndGet();
+		if (changes == 0) {
+			unchangedRefreshesCount.incrementAndGet();
+		}
+		return changes;
+	}
+
+	/**
+	 * Marks refresh answered with 'not modified'
+	 */
+	void unchanged() {
+		refreshesCount.incrementAndGet();
+		unchangedRefreshesCount.incrementAndGet();
+	}
+
+	/**
+	 * @param root root job to add
+	 * @return true if added, false if already present or roots are not loaded
+	 */
+	boolean add(String root) {
+		if (SdkStringUtils.isEmpty(root)) {
+			return false;
+		}
+		synchronized (ROOTS_LOCK) {
+			Snapshot current = snapshot;
+			if (current == null || current.roots.contains(root)) {
+				return false;
+			}
+			Set<String> roots = new HashSet<>(current.roots);
+			roots.add(root);
+			snapshot = new Snapshot(Collections.unmodifiableSet(roots));
+			//  local change, the next refresh should bring the full roots
+			version = null;
+			return true;
+		}
+	}
+
+	/**
+	 * @param root root job to remove
+	 * @return true if removed
+	 */
+	boolean remove(String root) {
+		synchronized (ROOTS_LOCK) {
+			Snapshot current = snapshot;
+			if (current == null || !current.roots.contains(root)) {
+				return false;
+			}
+			Set<String> roots = new HashSet<>(current.roots);
+			roots.remove(root);
+			snapshot = new Snapshot(Collections.unmodifiableSet(roots));
+			version = null;
+			return true;
+		}
+	}
+
+	/**
+	 * Drops the roots, so that every job is relevant until the next refresh
+	 */
+	void clear() {
+		synchronized (ROOTS_LOCK) {
+			snapshot = null;
+			version = null;
+		}
+		parentJobNames.clear();
+	}
+
+	/**
+	 * @param rootJobs root jobs of the build
+	 * @return true if any of the root jobs (or its multibranch parent) is known root, or if the roots are not loaded
+	 */
+	boolean isRelevant(Collection<String> rootJobs) {
+		Snapshot current = snapshot;
+		if (current == null || rootJobs == null || rootJobs.isEmpty()) {
+			return true;
+		}
+		for (String rootJob : rootJobs) {
+			if (SdkStringUtils.isEmpty(rootJob)) {
+				continue;
+			}
+			if (isRelevantRoot(current, rootJob)) {
+				hitsCount.incrementAndGet();
+				return true;
+			}
+		}
+		missesCount.incrementAndGet();
+		return false;
+	}
+
+	/**
+	 * Relevance of the build by its causes, same as isRelevant of the root jobs resolved from the causes (see CIPluginSDKUtils.getRootJobCiIds)
+	 * Walks the cause tree in place, without collecting the root jobs, and stops on the first relevant one - nothing is allocated on the way
+	 *
+	 * @param jobId  job of the build
+	 * @param causes causes of the build
+	 * @return true if any of the root jobs (or its multibranch parent) is known root, or if there are no root jobs or the roots are not loaded
+	 */
+	boolean isRelevant(String jobId, List<CIEventCause> causes) {
+		Snapshot current = snapshot;
+		if (current == null) {
+			return true;
+		}
+		int result = walkCauses(current, jobId, causes);
+		if (result == IRRELEVANT_ROOTS) {
+			missesCount.incrementAndGet();
+			return false;
+		}
+		if (result == RELEVANT_ROOT) {
+			hitsCount.incrementAndGet();
+		}
+		return true;
+	}
+
+	void addMetrics(Map<String, Object> metricsMap) {
+		metricsMap.put("octaneRootsCache_hitsCount", hitsCount.get());
+		metricsMap.put("octaneRootsCache_missesCount", missesCount.get());
+		metricsMap.put("octaneRootsCache_parentLookupsCount", parentLookupsCount.get());
+		metricsMap.put("octaneRootsCache_refreshesCount", refreshesCount.get());
+		metricsMap.put("octaneRootsCache_unchangedRefreshesCount", unchangedRefreshesCount.get());
+	}
+
+	private int walkCauses(Snapshot current, String jobId, List<CIEventCause> causes) {
+		if (causes == null) {
+			return NO_ROOTS;
+		}
+		int result = NO_ROOTS;
+		for (int i = 0, size = causes.size(); i < size; i++) {
+			CIEventCause cause = causes.get(i);
+			int causeResult;
+			if (CIEventCauseType.UPSTREAM.equals(cause.getType())) {
+				causeResult = walkCauses(current, cause.getProject(), cause.getCauses());
+			} else if (SdkStringUtils.isEmpty(jobId)) {
+				causeResult = NO_ROOTS;
+			} else {
+				causeResult = isRelevantRoot(current, jobId) ? RELEVANT_ROOT : IRRELEVANT_ROOTS;
+			}
+			if (causeResult == RELEVANT_ROOT) {
+				return RELEVANT_ROOT;
+			}
+			result = Math.max(result, causeResult);
+		}
+		return result;
+	}
+
+	private boolean isRelevantRoot(Snapshot current, String rootJob) {
+		if (current.roots.contains(rootJob)) {
+			return true;
+		}
+		//  multibranch handling
+		String parentJobName = getParentJobName(rootJob);
+		if (parentJobName != null && current.roots.contains(parentJobName)) {
+			add(rootJob);
+			return true;
+		}
+		return false;
+	}
+
+	private String getParentJobName(String job) {
+		String parentJobName = parentJobNames.get(job);
+		if (parentJobName == null) {
+			parentLookupsCount.incrementAndGet();
+			parentJobName = parentJobNameResolver.apply(job);
+			if (parentJobName == null) {
+				parentJobName = NO_PARENT;
+			}
+			if (parentJobNames.size() >= MAX_PARENT_JOB_NAMES) {
+				parentJobNames.clear();
+			}
+			parentJobNames.put(job, parentJobName);
+		}
+		return NO_PARENT.equals(parentJobName) ? null : parentJobName;
+	}
+
+	private static final class Snapshot {
+		private final Set<String> roots;
+		private volatile List<String> sorted;
+
+		private Snapshot(Set<String> roots) {
+			this.roots = roots;
+		}
+
+		//  sorted once per snapshot, on demand
+		private List<String> getSorted() {
+			List<String> result = sorted;
+			if (result == null) {
+				List<String> list = new ArrayList<>(roots);
+				Collections.sort(list);
+				result = Collections.unmodifiableList(list);
+				sorted = result;
+			}
+			return result;
+		}
+	}
+}
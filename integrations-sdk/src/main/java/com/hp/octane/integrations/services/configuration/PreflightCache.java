@@ -0,0 +1,197 @@
+/*
+ *     Copyright 2017 EntIT Software LLC, a Micro Focus company, L.P.
+ *     Licensed under the Apache License, Version 2.0 (the "License");
+ *     you may not use this file except in compliance with the License.
+ *     You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *     Unless required by applicable law or agreed to in writing, software
+ *     distributed under the License is distributed on an "AS IS" BASIS,
+ *     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *     See the License for the specific language governing permissions and
+ *     limitations under the License.
+ */
+
+package com.hp.octane.integrations.services.configuration;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * Cache of the preflight (relevance) answers of Octane, shared by the services of the client
+ * - answer is usually the same for all the builds of the same job / root job, so it is kept for TTL, negative answers for the (shorter) negative TTL
+ * - size bounded, least recently used entries are evicted first
+ * - invalidated as a whole when the pipelines change (pipeline created / run from Octane, pipeline roots refreshed); loads started before the invalidation are not cached
+ * Loader failures are not cached, they are propagated to the caller as is
+ */
+
+public final class PreflightCache {
+
+	public enum Kind {
+		TESTS(true),
+		LOGS(true),
+		COVERAGE(true),
+		//  positive answer of vulnerabilities preflight carries the baseline date of the build, only the negative one is cached
+		VULNERABILITIES(false);
+
+		private final boolean cachePositive;
+
+		Kind(boolean cachePositive) {
+			this.cachePositive = cachePositive;
+		}
+	}
+
+	//  no answer is kept, each get loads
+	static final PreflightCache DISABLED = new PreflightCache(0, 0, 1);
+
+	private final long ttl;
+	private final long negativeTtl;
+	private final int maxSize;
+	private final Map<Key, Entry> entries;
+	private final Object CACHE_LOCK = new Object();
+	private long generation = 0;
+
+	private final AtomicLong hitsCount = new AtomicLong();
+	private final AtomicLong missesCount = new AtomicLong();
+	private final AtomicLong invalidationsCount = new AtomicLong();
+
+	/**
+	 * @param ttl         time to keep the positive answer in millis, 0 to disable the cache
+	 * @param negativeTtl time to keep the negative answer in millis, 0 to not cache the negative answers
+	 * @param maxSize     max number of the cached answers
+	 */
+	PreflightCache(long ttl, long negativeTtl, int maxSize) {
+		if (ttl < 0 || negativeTtl < 0) {
+			throw new IllegalArgumentException("TTL MUST NOT be negative");
+		}
+		if (maxSize <= 0) {
+			throw new IllegalArgumentException("max size MUST be positive");
+		}
+		this.ttl = ttl;
+		this.negativeTtl = negativeTtl;
+		this.maxSize = maxSize;
+		this.entries = new LinkedHashMap<Key, Entry>(16, 0.75f, true) {
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Key, Entry> eldest) {
+				return size() > PreflightCache.this.maxSize;
+			}
+		};
+	}
+
+	/**
+	 * Provides the cached preflight answer, loading (and caching) it if there is no valid one
+	 *
+	 * @param kind       preflight kind
+	 * @param instanceId CI server instance ID the preflight is done for
+	 * @param jobId      job CI ID
+	 * @param rootJobId  root job CI ID, may be NULL
+	 * @param loader     performs the preflight request
+	 * @param isNegative tells if the answer is negative (not relevant)
+	 * @param <T>        type of the answer
+	 * @return preflight answer
+	 */
+	@SuppressWarnings("unchecked")
+	public <T> T get(Kind kind, String instanceId, String jobId, String rootJobId, Supplier<T> loader, Predicate<T> isNegative) {
+		if (ttl == 0) {
+			return loader.get();
+		}
+
+		Key key = new Key(kind, instanceId, jobId, rootJobId);
+		long loadGeneration;
+		synchronized (CACHE_LOCK) {
+			Entry entry = entries.get(key);
+			if (entry != null) {
+				if (entry.expiration > System.currentTimeMillis()) {
+					hitsCount.incrementAndGet();
+					return (T) entry.value;
+				}
+				entries.remove(key);
+			}
+			loadGeneration = generation;
+		}
+
+		missesCount.incrementAndGet();
+		T value = loader.get();
+		boolean negative = isNegative.test(value);
+		long keepFor = negative ? negativeTtl : (kind.cachePositive ? ttl : 0);
+		if (keepFor > 0) {
+			synchronized (CACHE_LOCK) {
+				if (loadGeneration == generation) {
+					entries.put(key, new Entry(value, System.currentTimeMillis() + keepFor));
+				}
+			}
+		}
+		return value;
+	}
+
+	/**
+	 * Drops all the cached answers
+	 */
+	public void invalidate() {
+		synchronized (CACHE_LOCK) {
+			generation++;
+			entries.clear();
+		}
+		invalidationsCount.incrementAndGet();
+	}
+
+	public int size() {
+		synchronized (CACHE_LOCK) {
+			return entries.size();
+		}
+	}
+
+	void addMetrics(Map<String, Object> metricsMap) {
+		metricsMap.put("preflightCache_size", size());
+		metricsMap.put("preflightCache_hitsCount", hitsCount.get());
+		metricsMap.put("preflightCache_missesCount", missesCount.get());
+		metricsMap.put("preflightCache_invalidationsCount", invalidationsCount.get());
+	}
+
+	private static final class Key {
+		private final Kind kind;
+		private final String instanceId;
+		private final String jobId;
+		private final String rootJobId;
+		private final int hash;
+
+		private Key(Kind kind, String instanceId, String jobId, String rootJobId) {
+			this.kind = kind;
+			this.instanceId = instanceId;
+			this.jobId = jobId;
+			this.rootJobId = rootJobId;
+			this.hash = Objects.hash(kind, instanceId, jobId, rootJobId);
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (this == o) return true;
+			if (o == null || getClass() != o.getClass()) return false;
+			Key key = (Key) o;
+			return kind == key.kind &&
+					Objects.equals(instanceId, key.instanceId) &&
+					Objects.equals(jobId, key.jobId) &&
+					Objects.equals(rootJobId, key.rootJobId);
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+	}
+
+	private static final class Entry {
+		private final Object value;
+		private final long expiration;
+
+		private Entry(Object value, long expiration) {
+			this.value = value;
+			this.expiration = expiration;
+		}
+	}
+}
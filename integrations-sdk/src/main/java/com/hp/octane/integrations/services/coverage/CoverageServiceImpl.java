@@ -23,9 +23,11 @@ import com.hp.octane.integrations.dto.connectivity.OctaneResponse;
 import com.hp.octane.integrations.dto.coverage.CoverageReportType;
 import com.hp.octane.integrations.exceptions.PermanentException;
 import com.hp.octane.integrations.exceptions.TemporaryException;
+import com.hp.octane.integrations.services.QueueWorkersScheduler;
 import com.hp.octane.integrations.services.WorkerPreflight;
 import com.hp.octane.integrations.services.configuration.ConfigurationService;
 import com.hp.octane.integrations.services.configuration.ConfigurationServiceImpl;
+import com.hp.octane.integrations.services.configuration.PreflightCache;
 import com.hp.octane.integrations.services.configurationparameters.factory.ConfigurationParameterFactory;
 import com.hp.octane.integrations.services.queueing.QueueingService;
 import com.hp.octane.integrations.services.rest.RestService;
@@ -42,9 +44,6 @@ import java.net.URISyntaxException;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.Map;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ThreadFactory;
 
 import static com.hp.octane.integrations.services.rest.RestService.CORRELATION_ID_HEADER;
 
@@ -57,7 +56,6 @@ class CoverageServiceImpl implements CoverageService {
 	private static final Logger logger = LogManager.getLogger(CoverageServiceImpl.class);
 	private static final DTOFactory dtoFactory = DTOFactory.getInstance();
 
-	private final ExecutorService coveragePushExecutor = Executors.newSingleThreadExecutor(new CoveragePushWorkerThreadFactory());
 	private final String BUILD_COVERAGE_QUEUE_FILE = "coverage-push-queue.dat";
 	private final ObjectQueue<CoverageQueueItem> coveragePushQueue;
 	private final OctaneSDK.SDKServicesConfigurer configurer;
@@ -93,34 +91,29 @@ class CoverageServiceImpl implements CoverageService {
 		}
 
 		logger.info(configurer.octaneConfiguration.getLocationForLog() + "starting background worker...");
-		coveragePushExecutor.execute(this::worker);
+		workerPreflight.start("CoveragePushWorker", this::worker);
 		logger.info(configurer.octaneConfiguration.getLocationForLog() + "initialized SUCCESSFULLY (backed by " + coveragePushQueue.getClass().getSimpleName() + ")");
 	}
 
-	// infallible everlasting background worker
-	private void worker() {
-		while (!coveragePushExecutor.isShutdown()) {
-			if(!workerPreflight.preflight()){
-				continue;
-			}
-
-			CoverageQueueItem coverageQueueItem = null;
-			try {
-				coverageQueueItem = coveragePushQueue.peek();
-				pushCoverageWithPreflight(coverageQueueItem);
-				logger.debug(configurer.octaneConfiguration.getLocationForLog() + "successfully processed " + coverageQueueItem);
-				coveragePushQueue.remove();
-			} catch (TemporaryException te) {
-				logger.error(configurer.octaneConfiguration.getLocationForLog() + "temporary error on " + coverageQueueItem + ", breathing " + TEMPORARY_ERROR_BREATHE_INTERVAL + "ms and retrying", te);
-				CIPluginSDKUtils.doWait(TEMPORARY_ERROR_BREATHE_INTERVAL);
-			} catch (PermanentException pe) {
-				logger.error(configurer.octaneConfiguration.getLocationForLog() + "permanent error on " + coverageQueueItem + ", passing over", pe);
-				coveragePushQueue.remove();
-			} catch (Throwable t) {
-				logger.error(configurer.octaneConfiguration.getLocationForLog() + "unexpected error on build coverage item '" + coverageQueueItem + "', passing over", t);
-				coveragePushQueue.remove();
-			}
+	// infallible background worker step, scheduled by the worker preflight
+	private long worker() {
+		CoverageQueueItem coverageQueueItem = null;
+		try {
+			coverageQueueItem = coveragePushQueue.peek();
+			pushCoverageWithPreflight(coverageQueueItem);
+			logger.debug(configurer.octaneConfiguration.getLocationForLog() + "successfully processed " + coverageQueueItem);
+			coveragePushQueue.remove();
+		} catch (TemporaryException te) {
+			logger.error(configurer.octaneConfiguration.getLocationForLog() + "temporary error on " + coverageQueueItem + ", breathing " + TEMPORARY_ERROR_BREATHE_INTERVAL + "ms and retrying", te);
+			return workerPreflight.backoff(TEMPORARY_ERROR_BREATHE_INTERVAL);
+		} catch (PermanentException pe) {
+			logger.error(configurer.octaneConfiguration.getLocationForLog() + "permanent error on " + coverageQueueItem + ", passing over", pe);
+			coveragePushQueue.remove();
+		} catch (Throwable t) {
+			logger.error(configurer.octaneConfiguration.getLocationForLog() + "unexpected error on build coverage item '" + coverageQueueItem + "', passing over", t);
+			coveragePushQueue.remove();
 		}
+		return QueueWorkersScheduler.NO_PAUSE;
 	}
 
 	@Override
@@ -129,6 +122,12 @@ class CoverageServiceImpl implements CoverageService {
 			throw new IllegalArgumentException("job ID MUST NOT be null nor empty");
 		}
 
+		return configurationService.getPreflightCache().get(PreflightCache.Kind.COVERAGE, configurer.octaneConfiguration.getInstanceId(), jobId, null,
+				() -> sonarReportPreflightRequest(jobId), relevant -> !relevant);
+	}
+
+	private boolean sonarReportPreflightRequest(String jobId) {
+
 		boolean result = false;
 		OctaneResponse response;
 
@@ -251,12 +250,12 @@ class CoverageServiceImpl implements CoverageService {
 
 	@Override
 	public void shutdown() {
-		coveragePushExecutor.shutdown();
+		workerPreflight.shutdown();
 	}
 
 	@Override
 	public boolean isShutdown() {
-		return coveragePushExecutor.isShutdown();
+		return workerPreflight.isShutdown();
 	}
 
 	private void pushCoverageWithPreflight(CoverageQueueItem queueItem) {
@@ -329,15 +328,4 @@ class CoverageServiceImpl implements CoverageService {
 			return reportType + " of '" + jobId + " #" + buildId + "' " + " [optional fileName: " + reportFileName + "]";
 		}
 	}
-
-	private static final class CoveragePushWorkerThreadFactory implements ThreadFactory {
-
-		@Override
-		public Thread newThread(Runnable runnable) {
-			Thread result = new Thread(runnable);
-			result.setName("CoveragePushWorker-" + result.getId());
-			result.setDaemon(true);
-			return result;
-		}
-	}
 }
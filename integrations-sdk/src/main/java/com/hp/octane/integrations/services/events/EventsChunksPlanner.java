@@ -0,0 +1,161 @@
+/*
+ *     Copyright 2017 EntIT Software LLC, a Micro Focus company, L.P.
+ *     Licensed under the Apache License, Version 2.0 (the "License");
+ *     you may not use this file except in compliance with the License.
+ *     You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *     Unless required by applicable law or agreed to in writing, software
+ *     distributed under the License is distributed on an "AS IS" BASIS,
+ *     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *     See the License for the specific language governing permissions and
+ *     limitations under the License.
+ */
+
+package com.hp.octane.integrations.services.events;
+
+import java.util.*;
+import java.util.function.Function;
+import java.util.function.IntFunction;
+import java.util.function.Predicate;
+
+/**
+ * Plans the chunks of the pipelined events sending and keeps track of the chunks in flight
+ * - events are ordered by their ordering keys: an event is taken only if no earlier event sharing any of its keys is still waiting or being sent
+ * - chunks are independent of each other and of the chunks in flight, so they may be sent in parallel
+ * - barrier event closes its chunk and nothing is planned until that chunk is released
+ *
+ * @param <T> type of the planned events
+ */
+
+final class EventsChunksPlanner<T> {
+	private static final int SCAN_WINDOW_FACTOR = 10;
+
+	private final int maxChunksInFlight;
+	private final Function<T, Set<String>> orderingKeys;
+	private final Predicate<T> barrier;
+
+	//  chunks currently in flight and the sequences of the events they hold (guarded by this)
+	private final List<Chunk<T>> chunksInFlight = new LinkedList<>();
+	private final Set<Long> eventsInFlight = new HashSet<>();
+
+	EventsChunksPlanner(int maxChunksInFlight, Function<T, Set<String>> orderingKeys, Predicate<T> barrier) {
+		if (maxChunksInFlight <= 0) {
+			throw new IllegalArgumentException("max chunks in flight MUST be positive");
+		}
+		if (orderingKeys == null) {
+			throw new IllegalArgumentException("ordering keys function MUST NOT be null");
+		}
+		if (barrier == null) {
+			throw new IllegalArgumentException("barrier predicate MUST NOT be null");
+		}
+		this.maxChunksInFlight = maxChunksInFlight;
+		this.orderingKeys = orderingKeys;
+		this.barrier = barrier;
+	}
+
+	/**
+	 * Prepares chunks that may be sent in parallel with each other and with the chunks already in flight
+	 *
+	 * @param maxInBulk max events in one chunk
+	 * @param peek      provider of the pending events in their order, called only if there is a free slot
+	 * @return list of chunks, each one to be sent in a separate request; empty list if nothing may be sent now
+	 */
+	List<Chunk<T>> plan(int maxInBulk, IntFunction<List<EventsRingBuffer.Node<T>>> peek) {
+		Set<String> blockedKeys = new HashSet<>();
+		Set<Long> inFlight;
+		int freeSlots;
+		synchronized (this) {
+			freeSlots = maxChunksInFlight - chunksInFlight.size();
+			for (Chunk<T> chunk : chunksInFlight) {
+				if (chunk.barrier) {
+					return Collections.emptyList();
+				}
+				blockedKeys.addAll(chunk.keys);
+			}
+			inFlight = new HashSet<>(eventsInFlight);
+		}
+		if (freeSlots <= 0) {
+			return Collections.emptyList();
+		}
+
+		List<Chunk<T>> result = new ArrayList<>();
+		for (EventsRingBuffer.Node<T> node : peek.apply(maxChunksInFlight * maxInBulk * SCAN_WINDOW_FACTOR)) {
+			//  keys of the events in flight are already blocked
+			if (inFlight.contains(node.getSeq())) {
+				continue;
+			}
+
+			Set<String> keys = orderingKeys.apply(node.getItem());
+			if (!Collections.disjoint(blockedKeys, keys)) {
+				blockedKeys.addAll(keys);
+				continue;
+			}
+
+			Chunk<T> target = null;
+			int related = 0;
+			for (Chunk<T> chunk : result) {
+				if (!Collections.disjoint(chunk.keys, keys)) {
+					target = chunk;
+					related++;
+				}
+			}
+			if (related == 0 && result.size() < freeSlots) {
+				target = new Chunk<>();
+				result.add(target);
+			} else if (related == 0) {
+				target = result.stream().min(Comparator.comparingInt(c -> c.entries.size())).orElse(null);
+			}
+			if (related > 1 || target == null || target.entries.size() >= maxInBulk) {
+				//  the event depends on more than one lane or has no room - it and all its followers wait for the next round
+				blockedKeys.addAll(keys);
+				continue;
+			}
+
+			target.entries.add(node);
+			target.keys.addAll(keys);
+			if (barrier.test(node.getItem())) {
+				target.barrier = true;
+				break;
+			}
+		}
+		return result;
+	}
+
+	synchronized void dispatched(Chunk<T> chunk) {
+		chunksInFlight.add(chunk);
+		chunk.entries.forEach(node -> eventsInFlight.add(node.getSeq()));
+	}
+
+	synchronized void released(Chunk<T> chunk) {
+		chunksInFlight.remove(chunk);
+		chunk.entries.forEach(node -> eventsInFlight.remove(node.getSeq()));
+	}
+
+	synchronized int getChunksInFlightCount() {
+		return chunksInFlight.size();
+	}
+
+	synchronized int getEventsInFlightCount() {
+		return eventsInFlight.size();
+	}
+
+	static final class Chunk<T> {
+		private final List<EventsRingBuffer.Node<T>> entries = new ArrayList<>();
+		private final Set<String> keys = new HashSet<>();
+		private boolean barrier;
+
+		List<EventsRingBuffer.Node<T>> getEntries() {
+			return entries;
+		}
+
+		Set<String> getKeys() {
+			return keys;
+		}
+
+		boolean isBarrier() {
+			return barrier;
+		}
+	}
+}
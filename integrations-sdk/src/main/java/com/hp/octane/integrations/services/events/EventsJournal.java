@@ -0,0 +1,388 @@
+/*
+ *     Copyright 2017 EntIT Software LLC, a Micro Focus company, L.P.
+ *     Licensed under the Apache License, Version 2.0 (the "License");
+ *     you may not use this file except in compliance with the License.
+ *     You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *     Unless required by applicable law or agreed to in writing, software
+ *     distributed under the License is distributed on an "AS IS" BASIS,
+ *     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *     See the License for the specific language governing permissions and
+ *     limitations under the License.
+ */
+
+package com.hp.octane.integrations.services.events;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only, segmented journal of pending events
+ * - append/ack only enqueue the record, a single background writer flushes the records in batches and fsyncs once per batch (group commit)
+ * - records of a segment are written in order: [int payload length][byte type][long seq][payload][int crc32]
+ * - segment is deleted once all the events appended in it and in all the older segments are acknowledged
+ * - replay reads the segments in order and returns the events that were appended and not acknowledged; a torn tail is ignored
+ */
+
+final class EventsJournal {
+	private static final Logger logger = LogManager.getLogger(EventsJournal.class);
+	private static final String SEGMENT_PREFIX = "events-";
+	private static final String SEGMENT_SUFFIX = ".journal";
+	private static final byte APPEND = 1;
+	private static final byte ACK = 2;
+	private static final int RECORD_OVERHEAD = 4 + 1 + 8 + 4;
+	private static final int MAX_PAYLOAD_SIZE = 64 * 1024 * 1024;
+
+	private final File directory;
+	private final long segmentMaxSize;
+	private final ConcurrentLinkedQueue<Record> pendingRecords = new ConcurrentLinkedQueue<>();
+	private final ScheduledExecutorService journalWriter = Executors.newSingleThreadScheduledExecutor(new EventsJournalWorkerThreadFactory());
+	private final AtomicLong nextSeq = new AtomicLong();
+	private final Object WRITE_LOCK = new Object();
+
+	//  writer state, guarded by WRITE_LOCK
+	private final LinkedList<Segment> segments = new LinkedList<>();
+	//  segments are named in the order they are created; record sequences can not be used, acknowledgements carry the older sequences
+	private long nextSegmentId;
+	private final Map<Long, Segment> liveSeqToSegment = new HashMap<>();
+	private ByteBuffer writeBuffer = ByteBuffer.allocate(64 * 1024);
+	private boolean closed;
+
+	//  metrics
+	private final AtomicLong flushCount = new AtomicLong();
+	private final AtomicLong writeFailuresCount = new AtomicLong();
+
+	EventsJournal(File directory, long segmentMaxSize, long flushIntervalMillis) throws IOException {
+		if (directory == null) {
+			throw new IllegalArgumentException("directory MUST NOT be null");
+		}
+		if (!directory.isDirectory() && !directory.mkdirs()) {
+			throw new IOException("failed to create events journal directory " + directory);
+		}
+		this.directory = directory;
+		this.segmentMaxSize = segmentMaxSize;
+		this.journalWriter.scheduleWithFixedDelay(this::flushQuietly, flushIntervalMillis, flushIntervalMillis, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Reads all the existing segments and returns the events that are still pending, in the order they were appended
+	 * Should be called once, before any append
+	 *
+	 * @return map of sequence to the payload of the pending events
+	 * @throws IOException failure to read the segments
+	 */
+	LinkedHashMap<Long, byte[]> replay() throws IOException {
+		LinkedHashMap<Long, byte[]> result = new LinkedHashMap<>();
+		File[] files = directory.listFiles((dir, name) -> name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX));
+		if (files == null) {
+			return result;
+		}
+		Arrays.sort(files, Comparator.comparingLong(EventsJournal::segmentId));
+
+		long maxSeq = -1;
+		synchronized (WRITE_LOCK) {
+			for (File file : files) {
+				Segment segment = new Segment(segmentId(file), file);
+				segments.add(segment);
+				try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+					long validLength = readSegment(raf, segment, result);
+					if (validLength < raf.length()) {
+						logger.warn("events journal segment " + file.getName() + " has a torn tail, truncating it from " + raf.length() + " to " + validLength + " bytes");
+						raf.setLength(validLength);
+					}
+					segment.size = validLength;
+				}
+				maxSeq = Math.max(maxSeq, segment.maxSeq);
+				if (segment.id != Long.MAX_VALUE) {
+					nextSegmentId = Math.max(nextSegmentId, segment.id + 1);
+				}
+			}
+			nextSeq.set(maxSeq + 1);
+			deleteReleasedSegments();
+		}
+		return result;
+	}
+
+	/**
+	 * Enqueues the payload to be written by the next flush
+	 *
+	 * @param payload serialized event
+	 * @return journal sequence of the event, to be used for the acknowledgement
+	 */
+	long append(byte[] payload) {
+		long seq = nextSeq.getAndIncrement();
+		pendingRecords.add(new Record(APPEND, seq, payload));
+		return seq;
+	}
+
+	/**
+	 * Enqueues the acknowledgement of the event, so that it won't be replayed anymore
+	 *
+	 * @param seq journal sequence of the event
+	 */
+	void ack(long seq) {
+		pendingRecords.add(new Record(ACK, seq, null));
+	}
+
+	/**
+	 * Writes all the enqueued records and fsyncs them in one go
+	 *
+	 * @throws IOException failure to write
+	 */
+	void flush() throws IOException {
+		synchronized (WRITE_LOCK) {
+			if (closed || pendingRecords.isEmpty()) {
+				return;
+			}
+
+			Segment segment = currentSegment();
+			Record record;
+			while ((record = pendingRecords.poll()) != null) {
+				if (segment.size >= segmentMaxSize) {
+					writeBuffered(segment);
+					segment.channel.force(false);
+					segment.closeChannel();
+					segment = newSegment();
+				}
+				int length = RECORD_OVERHEAD + (record.payload != null ? record.payload.length : 0);
+				if (writeBuffer.remaining() < length) {
+					writeBuffered(segment);
+					if (writeBuffer.capacity() < length) {
+						writeBuffer = ByteBuffer.allocate(length);
+					}
+				}
+				encode(record, writeBuffer);
+				segment.size += length;
+				segment.maxSeq = Math.max(segment.maxSeq, record.seq);
+				if (record.type == APPEND) {
+					segment.live++;
+					liveSeqToSegment.put(record.seq, segment);
+				} else {
+					Segment appendedIn = liveSeqToSegment.remove(record.seq);
+					if (appendedIn != null) {
+						appendedIn.live--;
+					}
+				}
+			}
+			writeBuffered(segment);
+			segment.channel.force(false);
+			flushCount.incrementAndGet();
+			deleteReleasedSegments();
+		}
+	}
+
+	void close() {
+		journalWriter.shutdown();
+		synchronized (WRITE_LOCK) {
+			try {
+				flush();
+			} catch (IOException ioe) {
+				logger.error("failed to flush events journal on close", ioe);
+			}
+			closed = true;
+			segments.forEach(Segment::closeChannel);
+		}
+	}
+
+	int getSegmentsCount() {
+		synchronized (WRITE_LOCK) {
+			return segments.size();
+		}
+	}
+
+	long getFlushCount() {
+		return flushCount.get();
+	}
+
+	long getWriteFailuresCount() {
+		return writeFailuresCount.get();
+	}
+
+	private void flushQuietly() {
+		try {
+			flush();
+		} catch (Throwable t) {
+			writeFailuresCount.incrementAndGet();
+			logger.error("failed to flush events journal in " + directory, t);
+		}
+	}
+
+	private long readSegment(RandomAccessFile raf, Segment segment, LinkedHashMap<Long, byte[]> pending) throws IOException {
+		long position = 0;
+		long length = raf.length();
+		CRC32 crc = new CRC32();
+		while (position + RECORD_OVERHEAD <= length) {
+			raf.seek(position);
+			int payloadLength = raf.readInt();
+			if (payloadLength < 0 || payloadLength > MAX_PAYLOAD_SIZE || position + RECORD_OVERHEAD + payloadLength > length) {
+				break;
+			}
+			byte type = raf.readByte();
+			long seq = raf.readLong();
+			byte[] payload = new byte[payloadLength];
+			raf.readFully(payload);
+			int storedCrc = raf.readInt();
+			crc.reset();
+			crc.update(type);
+			crc.update(ByteBuffer.allocate(8).putLong(0, seq).array());
+			crc.update(payload);
+			if ((int) crc.getValue() != storedCrc) {
+				break;
+			}
+
+			segment.maxSeq = Math.max(segment.maxSeq, seq);
+			if (type == APPEND) {
+				pending.put(seq, payload);
+				segment.live++;
+				liveSeqToSegment.put(seq, segment);
+			} else if (type == ACK) {
+				pending.remove(seq);
+				Segment appendedIn = liveSeqToSegment.remove(seq);
+				if (appendedIn != null) {
+					appendedIn.live--;
+				}
+			} else {
+				break;
+			}
+			position += RECORD_OVERHEAD + payloadLength;
+		}
+		return position;
+	}
+
+	private static void encode(Record record, ByteBuffer buffer) {
+		byte[] payload = record.payload != null ? record.payload : new byte[0];
+		CRC32 crc = new CRC32();
+		crc.update(record.type);
+		crc.update(ByteBuffer.allocate(8).putLong(0, record.seq).array());
+		crc.update(payload);
+		buffer.putInt(payload.length)
+				.put(record.type)
+				.putLong(record.seq)
+				.put(payload)
+				.putInt((int) crc.getValue());
+	}
+
+	private void writeBuffered(Segment segment) throws IOException {
+		((Buffer) writeBuffer).flip();
+		while (writeBuffer.hasRemaining()) {
+			segment.channel.write(writeBuffer);
+		}
+		((Buffer) writeBuffer).clear();
+	}
+
+	private Segment currentSegment() throws IOException {
+		Segment last = segments.peekLast();
+		if (last == null) {
+			return newSegment();
+		}
+		if (last.channel == null) {
+			last.openChannel();
+		}
+		return last;
+	}
+
+	private Segment newSegment() throws IOException {
+		long id = nextSegmentId++;
+		File file = new File(directory, String.format("%s%020d%s", SEGMENT_PREFIX, id, SEGMENT_SUFFIX));
+		Segment segment = new Segment(id, file);
+		segment.openChannel();
+		segments.add(segment);
+		return segment;
+	}
+
+	//  only the oldest segments are deleted, so that acknowledgements kept in newer segments never refer to a resurrected event
+	private void deleteReleasedSegments() {
+		while (segments.size() > 1 && segments.peekFirst().live == 0) {
+			Segment segment = segments.removeFirst();
+			segment.closeChannel();
+			if (!segment.file.delete()) {
+				logger.warn("failed to delete released events journal segment " + segment.file);
+			}
+		}
+	}
+
+	private static long segmentId(File file) {
+		String name = file.getName();
+		try {
+			return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+		} catch (NumberFormatException nfe) {
+			return Long.MAX_VALUE;
+		}
+	}
+
+	private static final class Record {
+		private final byte type;
+		private final long seq;
+		private final byte[] payload;
+
+		private Record(byte type, long seq, byte[] payload) {
+			this.type = type;
+			this.seq = seq;
+			this.payload = payload;
+		}
+	}
+
+	private static final class Segment {
+		private final long id;
+		private final File file;
+		private FileChannel channel;
+		private long size;
+		private long maxSeq = -1;
+		private int live;
+
+		private Segment(long id, File file) {
+			this.id = id;
+			this.file = file;
+		}
+
+		private void openChannel() throws IOException {
+			channel = new RandomAccessFile(file, "rw").getChannel();
+			channel.position(channel.size());
+			size = channel.size();
+		}
+
+		private void closeChannel() {
+			if (channel != null) {
+				try {
+					channel.close();
+				} catch (IOException ioe) {
+					logger.warn("failed to close events journal segment " + file, ioe);
+				}
+				channel = null;
+			}
+		}
+
+		@Override
+		public String toString() {
+			return "Segment {" + id + ", live: " + live + "}";
+		}
+	}
+
+	private static final class EventsJournalWorkerThreadFactory implements ThreadFactory {
+
+		@Override
+		public Thread newThread(Runnable runnable) {
+			Thread result = new Thread(runnable);
+			result.setName("EventsJournalWorker-" + result.getId());
+			result.setDaemon(true);
+			return result;
+		}
+	}
+}
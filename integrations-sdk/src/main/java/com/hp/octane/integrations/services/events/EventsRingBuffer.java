@@ -0,0 +1,269 @@
+/*
+ *     Copyright 2017 EntIT Software LLC, a Micro Focus company, L.P.
+ *     Licensed under the Apache License, Version 2.0 (the "License");
+ *     you may not use this file except in compliance with the License.
+ *     You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *     Unless required by applicable law or agreed to in writing, software
+ *     distributed under the License is distributed on an "AS IS" BASIS,
+ *     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *     See the License for the specific language governing permissions and
+ *     limitations under the License.
+ */
+
+package com.hp.octane.integrations.services.events;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+/**
+ * Bounded lock-free multi-producer ring buffer
+ * - any number of threads may offer items concurrently (CAS on the tail sequence)
+ * - consumers peek a batch of pending items from the head without removing them
+ * - each item is acknowledged by its sequence in O(1), in any order; the head advances over acknowledged items
+ * - when the buffer is full the configured overflow policy is applied
+ *
+ * @param <T> type of the buffered items
+ */
+
+final class EventsRingBuffer<T> {
+	private static final int PENDING = 0;
+	private static final int DONE = 1;
+	private static final long BLOCK_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
+
+	enum OverflowPolicy {
+		DROP_OLDEST,
+		DROP_NEWEST,
+		BLOCK
+	}
+
+	private final int capacity;
+	private final int mask;
+	private final AtomicReferenceArray<Node<T>> slots;
+	private final AtomicLong head = new AtomicLong();
+	private final AtomicLong tail = new AtomicLong();
+	private final AtomicLong pending = new AtomicLong();
+	private final OverflowPolicy overflowPolicy;
+	private final long blockTimeoutNanos;
+	private final Consumer<T> dropListener;
+
+	//  metrics
+	private final AtomicLong droppedOldestCount = new AtomicLong();
+	private final AtomicLong droppedNewestCount = new AtomicLong();
+	private final AtomicLong droppedOnBlockTimeoutCount = new AtomicLong();
+
+	EventsRingBuffer(int capacity, OverflowPolicy overflowPolicy, long blockTimeoutMillis) {
+		this(capacity, overflowPolicy, blockTimeoutMillis, null);
+	}
+
+	/**
+	 * @param dropListener optional listener, notified with each item dropped by the overflow policy
+	 */
+	EventsRingBuffer(int capacity, OverflowPolicy overflowPolicy, long blockTimeoutMillis, Consumer<T> dropListener) {
+		if (capacity <= 0) {
+			throw new IllegalArgumentException("capacity MUST be positive");
+		}
+		if (overflowPolicy == null) {
+			throw new IllegalArgumentException("overflow policy MUST NOT be null");
+		}
+
+		int slotsLength = Integer.highestOneBit(capacity);
+		if (slotsLength < capacity) {
+			slotsLength <<= 1;
+		}
+		this.capacity = capacity;
+		this.mask = slotsLength - 1;
+		this.slots = new AtomicReferenceArray<>(slotsLength);
+		this.overflowPolicy = overflowPolicy;
+		this.blockTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, blockTimeoutMillis));
+		this.dropListener = dropListener;
+	}
+
+	/**
+	 * Adds item to the tail of the buffer, applying the overflow policy if the buffer is full
+	 *
+	 * @param item item to add
+	 * @return true if the item was added, false if it was dropped by the overflow policy
+	 */
+	boolean offer(T item) {
+		if (item == null) {
+			throw new IllegalArgumentException("item MUST NOT be null");
+		}
+
+		long blockDeadline = 0;
+		while (true) {
+			long t = tail.get();
+			if (t - head.get() < capacity) {
+				if (tail.compareAndSet(t, t + 1)) {
+					pending.incrementAndGet();
+					slots.set(index(t), new Node<>(t, item));
+					return true;
+				}
+				continue;
+			}
+
+			//  buffer is full
+			if (overflowPolicy == OverflowPolicy.DROP_NEWEST) {
+				droppedNewestCount.incrementAndGet();
+				notifyDropped(item);
+				return false;
+			} else if (overflowPolicy == OverflowPolicy.DROP_OLDEST) {
+				dropHead();
+			} else {
+				if (blockDeadline == 0) {
+					blockDeadline = System.nanoTime() + blockTimeoutNanos;
+				} else if (System.nanoTime() - blockDeadline >= 0) {
+					droppedOnBlockTimeoutCount.incrementAndGet();
+					notifyDropped(item);
+					return false;
+				}
+				LockSupport.parkNanos(BLOCK_PARK_NANOS);
+			}
+		}
+	}
+
+	/**
+	 * Returns up to max pending (not acknowledged) items from the head, in the order they were offered
+	 * Items are NOT removed, they should be acknowledged once handled
+	 *
+	 * @param max max number of items to return
+	 * @return pending items with their sequences
+	 */
+	List<Node<T>> peek(int max) {
+		List<Node<T>> result = new ArrayList<>(Math.min(Math.max(max, 0), capacity));
+		long t = tail.get();
+		for (long seq = head.get(); seq < t && result.size() < max; seq++) {
+			Node<T> node = slots.get(index(seq));
+			if (node == null || node.seq != seq) {
+				//  either claimed and not yet published or already reused - stop to preserve the order
+				if (seq < head.get()) {
+					seq = head.get() - 1;
+					continue;
+				}
+				break;
+			}
+			if (node.state == PENDING) {
+				result.add(node);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Acknowledges item by its sequence, making its slot available
+	 * Acknowledging already acknowledged or dropped item has no effect
+	 *
+	 * @param seq sequence of the item as returned by peek
+	 */
+	void ack(long seq) {
+		Node<T> node = slots.get(index(seq));
+		if (node != null && node.seq == seq && Node.STATE.compareAndSet(node, PENDING, DONE)) {
+			pending.decrementAndGet();
+			advanceHead();
+		}
+	}
+
+	/**
+	 * Acknowledges all the currently published items
+	 */
+	void clear() {
+		long t = tail.get();
+		for (long seq = head.get(); seq < t; seq++) {
+			ack(seq);
+		}
+	}
+
+	long size() {
+		return pending.get();
+	}
+
+	int getCapacity() {
+		return capacity;
+	}
+
+	OverflowPolicy getOverflowPolicy() {
+		return overflowPolicy;
+	}
+
+	long getDroppedOldestCount() {
+		return droppedOldestCount.get();
+	}
+
+	long getDroppedNewestCount() {
+		return droppedNewestCount.get();
+	}
+
+	long getDroppedOnBlockTimeoutCount() {
+		return droppedOnBlockTimeoutCount.get();
+	}
+
+	private void dropHead() {
+		long h = head.get();
+		Node<T> node = slots.get(index(h));
+		if (node == null || node.seq != h) {
+			//  head slot is claimed but not yet published, let the publisher complete
+			Thread.yield();
+			return;
+		}
+		if (Node.STATE.compareAndSet(node, PENDING, DONE)) {
+			pending.decrementAndGet();
+			droppedOldestCount.incrementAndGet();
+			notifyDropped(node.item);
+		}
+		advanceHead();
+	}
+
+	private void notifyDropped(T item) {
+		if (dropListener != null) {
+			dropListener.accept(item);
+		}
+	}
+
+	//  only the party that cleared the slot of the current head moves the head forward, so a slot is never released twice
+	private void advanceHead() {
+		while (true) {
+			long h = head.get();
+			if (h >= tail.get()) {
+				return;
+			}
+			int i = index(h);
+			Node<T> node = slots.get(i);
+			if (node == null || node.seq != h || node.state != DONE || !slots.compareAndSet(i, node, null)) {
+				return;
+			}
+			head.compareAndSet(h, h + 1);
+		}
+	}
+
+	private int index(long seq) {
+		return (int) (seq & mask);
+	}
+
+	static final class Node<T> {
+		private static final AtomicIntegerFieldUpdater<Node> STATE = AtomicIntegerFieldUpdater.newUpdater(Node.class, "state");
+		private final long seq;
+		private final T item;
+		private volatile int state = PENDING;
+
+		private Node(long seq, T item) {
+			this.seq = seq;
+			this.item = item;
+		}
+
+		long getSeq() {
+			return seq;
+		}
+
+		T getItem() {
+			return item;
+		}
+	}
+}
@@ -28,6 +28,7 @@ import com.hp.octane.integrations.dto.general.CIServerInfo;
 import com.hp.octane.integrations.exceptions.PermanentException;
 import com.hp.octane.integrations.exceptions.RequestTimeoutException;
 import com.hp.octane.integrations.exceptions.TemporaryException;
+import com.hp.octane.integrations.services.QueueWorkersScheduler;
 import com.hp.octane.integrations.services.WorkerPreflight;
 import com.hp.octane.integrations.services.configuration.ConfigurationService;
 import com.hp.octane.integrations.services.configurationparameters.factory.ConfigurationParameterFactory;
@@ -40,12 +41,16 @@ import org.apache.logging.log4j.Logger;
 import org.apache.logging.log4j.Marker;
 import org.apache.logging.log4j.MarkerManager;
 
+import java.io.File;
 import java.io.IOException;
 import java.io.InterruptedIOException;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
 
 import static com.hp.octane.integrations.services.rest.RestService.*;
 
@@ -61,21 +66,32 @@ final class EventsServiceImpl implements EventsService {
 	Marker eventsMarker = MarkerManager.getMarker("EVENTS");
 	private static final DTOFactory dtoFactory = DTOFactory.getInstance();
 
-	private final ExecutorService eventsPushExecutor = Executors.newSingleThreadExecutor(new EventsServiceWorkerThreadFactory());
+	private final ExecutorService eventsSendExecutor;
 	private final OctaneSDK.SDKServicesConfigurer configurer;
 	private final RestService restService;
 	private final ConfigurationService configurationService;
-	private final List<CIEvent> events = Collections.synchronizedList(new LinkedList<>());
+	private final EventsRingBuffer<QueuedEvent> events;
+	private final EventsJournal journal;
 
 
 	private final int EVENTS_CHUNK_SIZE = System.getProperty("octane.sdk.events.chunk-size") != null ? Integer.parseInt(System.getProperty("octane.sdk.events.chunk-size")) : 10;
 	private final int MAX_EVENTS_TO_KEEP = System.getProperty("octane.sdk.events.max-to-keep") != null ? Integer.parseInt(System.getProperty("octane.sdk.events.max-to-keep")) : 3000;
+	private final EventsRingBuffer.OverflowPolicy OVERFLOW_POLICY = System.getProperty("octane.sdk.events.overflow-policy") != null ? EventsRingBuffer.OverflowPolicy.valueOf(System.getProperty("octane.sdk.events.overflow-policy").toUpperCase()) : EventsRingBuffer.OverflowPolicy.DROP_OLDEST;
+	private final long OVERFLOW_BLOCK_TIMEOUT = System.getProperty("octane.sdk.events.overflow-block-timeout") != null ? Long.parseLong(System.getProperty("octane.sdk.events.overflow-block-timeout")) : 1000;
+	private static final long OVERFLOW_LOG_INTERVAL = 60000;
 	private final long TEMPORARY_FAILURE_PAUSE = System.getProperty("octane.sdk.events.temp-fail-pause") != null ? Integer.parseInt(System.getProperty("octane.sdk.events.temp-fail-pause")) : 15000;
+	private final int MAX_REQUESTS_IN_FLIGHT = System.getProperty("octane.sdk.events.max-in-flight") != null ? Math.max(1, Integer.parseInt(System.getProperty("octane.sdk.events.max-in-flight"))) : 1;
+	private static final int IN_FLIGHT_WAIT_INTERVAL = 1000;
+	private final boolean JOURNAL_ENABLED = !"false".equalsIgnoreCase(System.getProperty("octane.sdk.events.journal.enabled"));
+	private final long JOURNAL_SEGMENT_SIZE = System.getProperty("octane.sdk.events.journal.segment-size") != null ? Long.parseLong(System.getProperty("octane.sdk.events.journal.segment-size")) : 4 * 1024 * 1024;
+	private final long JOURNAL_FLUSH_INTERVAL = System.getProperty("octane.sdk.events.journal.flush-interval") != null ? Long.parseLong(System.getProperty("octane.sdk.events.journal.flush-interval")) : 50;
 
 	//Metrics
-	private long requestTimeoutCount = 0;
-	private long lastRequestTimeoutTime = 0;
+	private final AtomicLong requestTimeoutCount = new AtomicLong();
+	private volatile long lastRequestTimeoutTime = 0;
+	private volatile long lastOverflowLogTime = 0;
 	private final WorkerPreflight workerPreflight;
+	private final EventsChunksPlanner<QueuedEvent> chunksPlanner;
 
 	EventsServiceImpl(OctaneSDK.SDKServicesConfigurer configurer, RestService restService, ConfigurationService configurationService) {
 		if (configurer == null || configurer.pluginServices == null || configurer.octaneConfiguration == null) {
@@ -91,11 +107,24 @@ final class EventsServiceImpl implements EventsService {
 		this.configurer = configurer;
 		this.restService = restService;
 		this.configurationService = configurationService;
+		this.events = new EventsRingBuffer<>(MAX_EVENTS_TO_KEEP, OVERFLOW_POLICY, OVERFLOW_BLOCK_TIMEOUT, this::ackJournal);
+		this.journal = initJournal();
 		this.workerPreflight = new WorkerPreflight(this, configurationService, logger);
 		workerPreflight.setWaitAfterConnection(false);
+		//  multibranch child STARTED event closes its chunk and nothing after it is dispatched until it is sent (see getEventsChunk)
+		this.chunksPlanner = new EventsChunksPlanner<>(MAX_REQUESTS_IN_FLIGHT,
+				queuedEvent -> getOrderingKeys(queuedEvent.event),
+				queuedEvent -> CIEventType.STARTED.equals(queuedEvent.event.getEventType()) && MultiBranchType.MULTI_BRANCH_CHILD.equals(queuedEvent.event.getMultiBranchType()));
 
 		logger.info(configurer.octaneConfiguration.getLocationForLog() + "starting background worker...");
-		eventsPushExecutor.execute(this::worker);
+		if (MAX_REQUESTS_IN_FLIGHT > 1) {
+			logger.info(configurer.octaneConfiguration.getLocationForLog() + "events are sent in pipelined mode, up to " + MAX_REQUESTS_IN_FLIGHT + " requests in flight");
+			eventsSendExecutor = Executors.newFixedThreadPool(MAX_REQUESTS_IN_FLIGHT, new EventsSenderThreadFactory());
+			workerPreflight.start("EventsServiceWorker", this::pipelinedWorker);
+		} else {
+			eventsSendExecutor = null;
+			workerPreflight.start("EventsServiceWorker", this::worker);
+		}
 		logger.info(configurer.octaneConfiguration.getLocationForLog() + "initialized SUCCESSFULLY");
 	}
 
@@ -110,25 +139,24 @@ final class EventsServiceImpl implements EventsService {
 		}
 
 
-		if (ConfigurationParameterFactory.octaneRootsCacheAllowed(configurer.octaneConfiguration)) {
-			Set<String> parents = new HashSet<>();
-			CIPluginSDKUtils.getRootJobCiIds(event.getProject(), event.getCauses(), parents);
-			if (!configurationService.isRelevantForOctane(parents)) {
-				if (CIEventType.STARTED.equals(event.getEventType())) {
-					String eventStr = event.getProject() + ":" + event.getBuildCiId() + ":" + event.getEventType() + ", parents : " + parents;
-					logger.info(configurer.octaneConfiguration.getLocationForLog() + "Event is ignored : " + eventStr);
-				}
-				return;
+		if (ConfigurationParameterFactory.octaneRootsCacheAllowed(configurer.octaneConfiguration) &&
+				!configurationService.isRelevantForOctane(event.getProject(), event.getCauses())) {
+			//  root jobs are resolved for the log only
+			if (CIEventType.STARTED.equals(event.getEventType()) && logger.isInfoEnabled()) {
+				Set<String> parents = new HashSet<>();
+				CIPluginSDKUtils.getRootJobCiIds(event.getProject(), event.getCauses(), parents);
+				String eventStr = event.getProject() + ":" + event.getBuildCiId() + ":" + event.getEventType() + ", parents : " + parents;
+				logger.info(configurer.octaneConfiguration.getLocationForLog() + "Event is ignored : " + eventStr);
 			}
+			return;
 		}
 
-		events.add(event);
-		int eventsSize = events.size();
-		if (eventsSize > MAX_EVENTS_TO_KEEP) {
-			logger.warn(configurer.octaneConfiguration.getLocationForLog() + "reached MAX amount of events to keep in queue (max - " + MAX_EVENTS_TO_KEEP + ", found - " + eventsSize + "), capping the head");
-			while (events.size() > MAX_EVENTS_TO_KEEP) {        //  in this case we need to read the real-time size of the list
-				events.remove(0);
-			}
+		long droppedBefore = getDroppedEventsCount();
+		events.offer(new QueuedEvent(event, appendJournal(event)));
+		if (getDroppedEventsCount() != droppedBefore && System.currentTimeMillis() - lastOverflowLogTime > OVERFLOW_LOG_INTERVAL) {
+			lastOverflowLogTime = System.currentTimeMillis();
+			logger.warn(configurer.octaneConfiguration.getLocationForLog() + "reached MAX amount of events to keep in queue (max - " + MAX_EVENTS_TO_KEEP + "), applying " + OVERFLOW_POLICY +
+					" overflow policy, dropped so far - " + getDroppedEventsCount());
 		}
 		workerPreflight.itemAddedToQueue();
 	}
@@ -140,79 +168,198 @@ final class EventsServiceImpl implements EventsService {
 
 	@Override
 	public void clearQueue() {
+		removeEvents(events.peek(events.getCapacity()));
 		events.clear();
 	}
 
 	@Override
 	public void shutdown() {
-		eventsPushExecutor.shutdown();
+		workerPreflight.shutdown();
+		if (eventsSendExecutor != null) {
+			eventsSendExecutor.shutdown();
+		}
+		if (journal != null) {
+			journal.close();
+		}
 	}
 
 	@Override
 	public boolean isShutdown() {
-		return eventsPushExecutor.isShutdown();
+		return workerPreflight.isShutdown();
 	}
 
-	private void removeEvents(List<CIEvent> eventsToRemove) {
+	private void removeEvents(List<EventsRingBuffer.Node<QueuedEvent>> eventsToRemove) {
 		if (eventsToRemove != null && !eventsToRemove.isEmpty()) {
-			events.removeAll(eventsToRemove);
+			eventsToRemove.forEach(node -> {
+				events.ack(node.getSeq());
+				ackJournal(node.getItem());
+			});
 		}
 	}
 
-	//  infallible everlasting worker function
-	private void worker() {
-		while (!eventsPushExecutor.isShutdown()) {
-			if(!workerPreflight.preflight()){
-				continue;
+	private EventsJournal initJournal() {
+		if (!JOURNAL_ENABLED || configurer.pluginServices.getAllowedOctaneStorage() == null) {
+			logger.info(configurer.octaneConfiguration.getLocationForLog() + "hosting plugin PREVENTS persistency of events, pending events will be lost on restart");
+			return null;
+		}
+
+		File journalDirectory = new File(configurer.pluginServices.getAllowedOctaneStorage(), "nga" + File.separator + configurer.octaneConfiguration.getInstanceId() + File.separator + "events-journal");
+		EventsJournal result = null;
+		try {
+			result = new EventsJournal(journalDirectory, JOURNAL_SEGMENT_SIZE, JOURNAL_FLUSH_INTERVAL);
+			LinkedHashMap<Long, byte[]> pendingEvents = result.replay();
+			int restored = 0;
+			int toSkip = Math.max(0, pendingEvents.size() - events.getCapacity());
+			for (Map.Entry<Long, byte[]> entry : pendingEvents.entrySet()) {
+				if (toSkip-- > 0) {
+					//  more events journaled than may be kept, the oldest ones are dropped
+					result.ack(entry.getKey());
+					continue;
+				}
+				try {
+					CIEvent event = dtoFactory.dtoFromJson(new String(entry.getValue(), StandardCharsets.UTF_8), CIEvent.class);
+					if (events.offer(new QueuedEvent(event, entry.getKey()))) {
+						restored++;
+					}
+				} catch (Exception e) {
+					logger.error(configurer.octaneConfiguration.getLocationForLog() + "failed to restore journaled event " + entry.getKey() + ", dropping it", e);
+					result.ack(entry.getKey());
+				}
 			}
+			logger.info(configurer.octaneConfiguration.getLocationForLog() + "events journal initialized in " + journalDirectory + ", restored " + restored + " pending events");
+			return result;
+		} catch (Exception e) {
+			logger.error(configurer.octaneConfiguration.getLocationForLog() + "failed to initialize events journal in " + journalDirectory + ", events will be kept in memory only", e);
+			if (result != null) {
+				result.close();
+			}
+			return null;
+		}
+	}
 
-			//  build events list to be sent
-			List<CIEvent> eventsChunk = null;
-			CIEventsList eventsSnapshot;
-			try {
-				eventsChunk = getEventsChunk();
+	private long appendJournal(CIEvent event) {
+		if (journal == null) {
+			return -1;
+		}
+		try {
+			return journal.append(dtoFactory.dtoToJson(event).getBytes(StandardCharsets.UTF_8));
+		} catch (Exception e) {
+			logger.error(configurer.octaneConfiguration.getLocationForLog() + "failed to journal event, it will be kept in memory only", e);
+			return -1;
+		}
+	}
 
-				CIServerInfo serverInfo = configurer.pluginServices.getServerInfo();
-				serverInfo.setInstanceId(configurer.octaneConfiguration.getInstanceId());
-				eventsSnapshot = dtoFactory.newDTO(CIEventsList.class)
-						.setServer(serverInfo)
-						.setEvents(eventsChunk);
-			} catch (Throwable t) {
-				logger.error(configurer.octaneConfiguration.getLocationForLog() +"failed to serialize chunk of " + (eventsChunk != null ? eventsChunk.size() : "[NULL]") + " events, dropping them off (if any) and continue");
-				removeEvents(eventsChunk);
-				continue;
-			}
+	private void ackJournal(QueuedEvent queuedEvent) {
+		if (journal != null && queuedEvent.journalSeq >= 0) {
+			journal.ack(queuedEvent.journalSeq);
+		}
+	}
 
-			//  send the data to Octane
+	private long getDroppedEventsCount() {
+		return events.getDroppedOldestCount() + events.getDroppedNewestCount() + events.getDroppedOnBlockTimeoutCount();
+	}
+
+	//  infallible worker step, scheduled by the worker preflight
+	private long worker() {
+		List<EventsRingBuffer.Node<QueuedEvent>> eventsChunk;
+		try {
+			eventsChunk = getEventsChunk();
+		} catch (Throwable t) {
+			logger.error(configurer.octaneConfiguration.getLocationForLog() + "failed to prepare events chunk, will retry", t);
+			return QueueWorkersScheduler.NO_PAUSE;
+		}
+		return sendEventsChunk(eventsChunk);
+	}
+
+	//  infallible worker step, dispatching independent chunks to be sent in parallel
+	private long pipelinedWorker() {
+		List<EventsChunksPlanner.Chunk<QueuedEvent>> chunks;
+		try {
+			int maxInBulk = ConfigurationParameterFactory.isSendEventsInBulk(configurer.octaneConfiguration) ? EVENTS_CHUNK_SIZE : 1;
+			chunks = chunksPlanner.plan(maxInBulk, events::peek);
+		} catch (Throwable t) {
+			logger.error(configurer.octaneConfiguration.getLocationForLog() + "failed to prepare events chunks, will retry", t);
+			chunks = Collections.emptyList();
+		}
+
+		if (chunks.isEmpty()) {
+			//  nothing that may be sent right now (either all in flight or waiting for the ordered predecessors), woken up on chunk release
+			return QueueWorkersScheduler.breakablePause(IN_FLIGHT_WAIT_INTERVAL);
+		}
+
+		for (EventsChunksPlanner.Chunk<QueuedEvent> chunk : chunks) {
+			chunksPlanner.dispatched(chunk);
 			try {
-				String correlationId = CIPluginSDKUtils.getNextCorrelationId();
-				logEventsToBeSent(eventsSnapshot, correlationId);
-				sendEventsData(eventsSnapshot, correlationId);
-				removeEvents(eventsChunk);
-				if (events.size() > 0) {
-					logger.info(configurer.octaneConfiguration.getLocationForLog() + "left to send " + events.size() + " events");
-				}
-			} catch (RequestTimeoutException rte){
-				requestTimeoutCount++;
-				lastRequestTimeoutTime = System.currentTimeMillis();
-				logger.info(configurer.octaneConfiguration.getLocationForLog() + rte.getMessage());
-				CIPluginSDKUtils.doWait(TEMPORARY_FAILURE_PAUSE);
-			} catch (TemporaryException tqie) {
-				logger.error(configurer.octaneConfiguration.getLocationForLog() + "failed to send events with temporary error, breathing " + TEMPORARY_FAILURE_PAUSE + "ms and continue", tqie);
-				CIPluginSDKUtils.doWait(TEMPORARY_FAILURE_PAUSE);
-			} catch (PermanentException pqie) {
-				logger.error(configurer.octaneConfiguration.getLocationForLog() + "failed to send events with permanent error, dropping this chunk and continue", pqie);
-				removeEvents(eventsChunk);
+				eventsSendExecutor.execute(() -> {
+					try {
+						long pause = sendEventsChunk(chunk.getEntries());
+						if (pause != QueueWorkersScheduler.NO_PAUSE) {
+							//  the chunk stays in flight while breathing, so that it is not re-sent right away
+							CIPluginSDKUtils.doWait(Math.abs(pause));
+						}
+					} finally {
+						releaseChunk(chunk);
+					}
+				});
 			} catch (Throwable t) {
-				logger.error(configurer.octaneConfiguration.getLocationForLog() + "failed to send events with unexpected error, dropping this chunk and continue", t);
-				removeEvents(eventsChunk);
+				logger.error(configurer.octaneConfiguration.getLocationForLog() + "failed to dispatch chunk of " + chunk.getEntries().size() + " events, will retry", t);
+				releaseChunk(chunk);
+			}
+		}
+		return QueueWorkersScheduler.NO_PAUSE;
+	}
+
+	private void releaseChunk(EventsChunksPlanner.Chunk<QueuedEvent> chunk) {
+		chunksPlanner.released(chunk);
+		workerPreflight.wakeUp();
+	}
+
+	//  returns the pause to be taken before sending the next chunk
+	private long sendEventsChunk(List<EventsRingBuffer.Node<QueuedEvent>> eventsChunk) {
+		//  build events list to be sent
+		CIEventsList eventsSnapshot;
+		try {
+			CIServerInfo serverInfo = configurer.pluginServices.getServerInfo();
+			serverInfo.setInstanceId(configurer.octaneConfiguration.getInstanceId());
+			eventsSnapshot = dtoFactory.newDTO(CIEventsList.class)
+					.setServer(serverInfo)
+					.setEvents(eventsChunk.stream().map(node -> node.getItem().event).collect(Collectors.toList()));
+		} catch (Throwable t) {
+			logger.error(configurer.octaneConfiguration.getLocationForLog() +"failed to serialize chunk of " + (eventsChunk != null ? eventsChunk.size() : "[NULL]") + " events, dropping them off (if any) and continue");
+			removeEvents(eventsChunk);
+			return QueueWorkersScheduler.NO_PAUSE;
+		}
+
+		//  send the data to Octane
+		try {
+			String correlationId = CIPluginSDKUtils.getNextCorrelationId();
+			logEventsToBeSent(eventsSnapshot, correlationId);
+			sendEventsData(eventsSnapshot, correlationId);
+			removeEvents(eventsChunk);
+			if (events.size() > 0) {
+				logger.info(configurer.octaneConfiguration.getLocationForLog() + "left to send " + events.size() + " events");
 			}
+		} catch (RequestTimeoutException rte){
+			requestTimeoutCount.incrementAndGet();
+			lastRequestTimeoutTime = System.currentTimeMillis();
+			logger.info(configurer.octaneConfiguration.getLocationForLog() + rte.getMessage());
+			return workerPreflight.backoff(TEMPORARY_FAILURE_PAUSE);
+		} catch (TemporaryException tqie) {
+			logger.error(configurer.octaneConfiguration.getLocationForLog() + "failed to send events with temporary error, breathing " + TEMPORARY_FAILURE_PAUSE + "ms and continue", tqie);
+			return workerPreflight.backoff(TEMPORARY_FAILURE_PAUSE);
+		} catch (PermanentException pqie) {
+			logger.error(configurer.octaneConfiguration.getLocationForLog() + "failed to send events with permanent error, dropping this chunk and continue", pqie);
+			removeEvents(eventsChunk);
+		} catch (Throwable t) {
+			logger.error(configurer.octaneConfiguration.getLocationForLog() + "failed to send events with unexpected error, dropping this chunk and continue", t);
+			removeEvents(eventsChunk);
 		}
+		return QueueWorkersScheduler.NO_PAUSE;
 	}
 
-	private List<CIEvent> getEventsChunk() {
+	private List<EventsRingBuffer.Node<QueuedEvent>> getEventsChunk() {
 		int maxInBulk = ConfigurationParameterFactory.isSendEventsInBulk(configurer.octaneConfiguration) ? EVENTS_CHUNK_SIZE : 1;
-		List<CIEvent> eventsChunk = new ArrayList<>(events.subList(0, Math.min(events.size(), maxInBulk)));
+		List<EventsRingBuffer.Node<QueuedEvent>> eventsChunk = events.peek(maxInBulk);
 
 		// - octane generate multibranch child pipeline on the fly
 		// - multibranch child may trigger another job
@@ -222,7 +369,7 @@ final class EventsServiceImpl implements EventsService {
 		// - if in iteration we encounter multibranch child start event - no other event is allowed to be after it and will be pushed in next bulk
 		if (eventsChunk.size() > 1) {
 			for (int i = 0; i < eventsChunk.size(); i++) {
-				CIEvent ciEvent = eventsChunk.get(i);
+				CIEvent ciEvent = eventsChunk.get(i).getItem().event;
 				if (CIEventType.STARTED.equals(ciEvent.getEventType()) && MultiBranchType.MULTI_BRANCH_CHILD.equals(ciEvent.getMultiBranchType()) && i + 1 < eventsChunk.size()) {
 					eventsChunk = new ArrayList<>(eventsChunk.subList(0, i + 1));
 					break;
@@ -232,6 +379,16 @@ final class EventsServiceImpl implements EventsService {
 		return eventsChunk;
 	}
 
+	//  events sharing any of the keys (root jobs of the causes chain and the project itself) are sent in order
+	private static Set<String> getOrderingKeys(CIEvent event) {
+		Set<String> keys = new HashSet<>();
+		CIPluginSDKUtils.getRootJobCiIds(event.getProject(), event.getCauses(), keys);
+		if (event.getProject() != null) {
+			keys.add(event.getProject());
+		}
+		return keys;
+	}
+
 	private void logEventsToBeSent(CIEventsList eventsList, String correlationId) {
 		try {
 			List<String> eventsStringified = new LinkedList<>();
@@ -267,11 +424,16 @@ final class EventsServiceImpl implements EventsService {
 						SHARED_SPACE_INTERNAL_API_PATH_PART + configurer.octaneConfiguration.getSharedSpace() +
 						ANALYTICS_CI_PATH_PART + "events?ci_server_identity=" + configurer.octaneConfiguration.getInstanceId())
 				.setHeaders(headers)
-				.setTimeoutSec(60)
-				.setBody(dtoFactory.dtoToJsonStream(eventsList));
+				.setTimeoutSec(60);
 		OctaneResponse octaneResponse;
 		try {
-			octaneResponse = restService.obtainOctaneRestClient().execute(octaneRequest);
+			//  events are serialized straight into the request stream, response body is only of interest when failed
+			octaneResponse = restService.obtainOctaneRestClient().execute(
+					octaneRequest,
+					outputStream -> dtoFactory.dtoToJsonStream(eventsList, outputStream),
+					(response, body) -> response.getStatus() != HttpStatus.SC_OK && body != null
+							? response.setBody(CIPluginSDKUtils.inputStreamToUTF8String(body))
+							: response);
 		} catch (InterruptedIOException ie) {
 			String msg = "!!!!!!!!!!!!!!!!!!! request timeout" + ie.getClass().getCanonicalName() + " - " + ie.getMessage();
 			throw new RequestTimeoutException(msg);
@@ -295,20 +457,44 @@ final class EventsServiceImpl implements EventsService {
 	public Map<String, Object> getMetrics() {
 		Map<String, Object> map = new LinkedHashMap<>();
 		map.put("queueSize", this.getQueueSize());
-		map.put("requestTimeoutCount", this.requestTimeoutCount);
+		map.put("overflowPolicy", events.getOverflowPolicy());
+		map.put("droppedOldestCount", events.getDroppedOldestCount());
+		map.put("droppedNewestCount", events.getDroppedNewestCount());
+		map.put("droppedOnBlockTimeoutCount", events.getDroppedOnBlockTimeoutCount());
+		map.put("requestTimeoutCount", this.requestTimeoutCount.get());
+		if (journal != null) {
+			map.put("journalSegmentsCount", journal.getSegmentsCount());
+			map.put("journalFlushCount", journal.getFlushCount());
+			map.put("journalWriteFailuresCount", journal.getWriteFailuresCount());
+		}
 		if (lastRequestTimeoutTime > 0) {
 			map.put("lastRequestTimeoutTime", new Date(lastRequestTimeoutTime));
 		}
+		if (MAX_REQUESTS_IN_FLIGHT > 1) {
+			map.put("maxRequestsInFlight", MAX_REQUESTS_IN_FLIGHT);
+			map.put("requestsInFlight", chunksPlanner.getChunksInFlightCount());
+			map.put("eventsInFlight", chunksPlanner.getEventsInFlightCount());
+		}
 		workerPreflight.addMetrics(map);
 		return map;
 	}
 
-	private static final class EventsServiceWorkerThreadFactory implements ThreadFactory {
+	private static final class QueuedEvent {
+		private final CIEvent event;
+		private final long journalSeq;
+
+		private QueuedEvent(CIEvent event, long journalSeq) {
+			this.event = event;
+			this.journalSeq = journalSeq;
+		}
+	}
+
+	private static final class EventsSenderThreadFactory implements ThreadFactory {
 
 		@Override
 		public Thread newThread(Runnable runnable) {
 			Thread result = new Thread(runnable);
-			result.setName("EventsServiceWorker-" + result.getId());
+			result.setName("EventsSenderWorker-" + result.getId());
 			result.setDaemon(true);
 			return result;
 		}
@@ -0,0 +1,194 @@
+/*
+ *     Copyright 2017 EntIT Software LLC, a Micro Focus company, L.P.
+ *     Licensed under the Apache License, Version 2.0 (the "License");
+ *     you may not use this file except in compliance with the License.
+ *     You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *     Unless required by applicable law or agreed to in writing, software
+ *     distributed under the License is distributed on an "AS IS" BASIS,
+ *     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *     See the License for the specific language governing permissions and
+ *     limitations under the License.
+ */
+
+package com.hp.octane.integrations.services.logs;
+
+import com.hp.octane.integrations.services.rest.OctaneRequestBodyWriter;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Build log read once from the plugin and gzip compressed once, to be sent as is to all the interested workspaces
+ * - compressed content is kept in memory up to the threshold, bigger one is spilled to the temporary file
+ * - content may be written any number of times and by several threads at once (parallel uploads and their re-attempts)
+ */
+
+final class BuildLogSpool implements OctaneRequestBodyWriter, Closeable {
+	private static final int COPY_BUFFER_SIZE = 64 * 1024;
+	private static final String SPOOL_FILE_PREFIX = "build-log-";
+	private static final String SPOOL_FILE_SUFFIX = ".gz.spool";
+
+	private final byte[] content;
+	private final File file;
+	private final long logSize;
+	private final long compressedSize;
+
+	private BuildLogSpool(byte[] content, File file, long logSize, long compressedSize) {
+		this.content = content;
+		this.file = file;
+		this.logSize = logSize;
+		this.compressedSize = compressedSize;
+	}
+
+	/**
+	 * Reads and compresses the log; the log stream is closed when done
+	 *
+	 * @param log             log content
+	 * @param spoolDirectory  directory of the spool file, temporary directory of the system if NULL
+	 * @param memoryThreshold max size of the compressed content kept in memory
+	 * @return spool of the log
+	 * @throws IOException failure to read the log or to write the spool file
+	 */
+	static BuildLogSpool spool(InputStream log, File spoolDirectory, int memoryThreshold) throws IOException {
+		if (log == null) {
+			throw new IllegalArgumentException("log MUST NOT be null");
+		}
+
+		SpillingOutputStream spill = new SpillingOutputStream(spoolDirectory, memoryThreshold);
+		long logSize = 0;
+		try (InputStream in = log; GZIPOutputStream gzip = new GZIPOutputStream(spill, COPY_BUFFER_SIZE)) {
+			byte[] buffer = new byte[COPY_BUFFER_SIZE];
+			int read;
+			while ((read = in.read(buffer)) != -1) {
+				gzip.write(buffer, 0, read);
+				logSize += read;
+			}
+		} catch (IOException ioe) {
+			spill.discard();
+			throw ioe;
+		}
+		return new BuildLogSpool(spill.file == null ? spill.memory.toByteArray() : null, spill.file, logSize, spill.size);
+	}
+
+	/**
+	 * Cleans up spool files left over by the previous run (eg crashed in the middle of the push)
+	 *
+	 * @param spoolDirectory directory of the spool files
+	 */
+	static void deleteLeftovers(File spoolDirectory) {
+		File[] leftovers = spoolDirectory.listFiles((dir, name) -> name.startsWith(SPOOL_FILE_PREFIX) && name.endsWith(SPOOL_FILE_SUFFIX));
+		if (leftovers != null) {
+			for (File leftover : leftovers) {
+				leftover.delete();
+			}
+		}
+	}
+
+	@Override
+	public void writeTo(OutputStream outputStream) throws IOException {
+		if (content != null) {
+			outputStream.write(content);
+		} else {
+			Files.copy(file.toPath(), outputStream);
+		}
+	}
+
+	/**
+	 * @return decompressed view of the spooled log, eg for the chunked upload that compresses each part on its own
+	 * @throws IOException failure to read the spool file
+	 */
+	InputStream openLog() throws IOException {
+		return new GZIPInputStream(content != null ? new ByteArrayInputStream(content) : new FileInputStream(file), COPY_BUFFER_SIZE);
+	}
+
+	@Override
+	public boolean isGzipped() {
+		return true;
+	}
+
+	long getLogSize() {
+		return logSize;
+	}
+
+	long getCompressedSize() {
+		return compressedSize;
+	}
+
+	boolean isSpilled() {
+		return file != null;
+	}
+
+	@Override
+	public void close() {
+		if (file != null && file.exists() && !file.delete()) {
+			file.deleteOnExit();
+		}
+	}
+
+	private static final class SpillingOutputStream extends OutputStream {
+		private final File spoolDirectory;
+		private final int memoryThreshold;
+		private ByteArrayOutputStream memory = new ByteArrayOutputStream();
+		private File file;
+		private OutputStream fileStream;
+		private long size;
+
+		private SpillingOutputStream(File spoolDirectory, int memoryThreshold) {
+			this.spoolDirectory = spoolDirectory;
+			this.memoryThreshold = memoryThreshold;
+		}
+
+		@Override
+		public void write(int b) throws IOException {
+			write(new byte[]{(byte) b}, 0, 1);
+		}
+
+		@Override
+		public void write(byte[] bytes, int offset, int length) throws IOException {
+			if (fileStream == null && size + length > memoryThreshold) {
+				file = File.createTempFile(SPOOL_FILE_PREFIX, SPOOL_FILE_SUFFIX, spoolDirectory);
+				fileStream = new BufferedOutputStream(new FileOutputStream(file), COPY_BUFFER_SIZE);
+				memory.writeTo(fileStream);
+				memory = null;
+			}
+			if (fileStream != null) {
+				fileStream.write(bytes, offset, length);
+			} else {
+				memory.write(bytes, offset, length);
+			}
+			size += length;
+		}
+
+		@Override
+		public void close() throws IOException {
+			if (fileStream != null) {
+				fileStream.close();
+			}
+		}
+
+		private void discard() {
+			try {
+				close();
+			} catch (IOException ioe) {
+				//  the file is deleted anyway
+			}
+			if (file != null) {
+				file.delete();
+			}
+		}
+	}
+}
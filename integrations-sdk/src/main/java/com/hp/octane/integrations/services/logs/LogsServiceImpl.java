@@ -23,11 +23,14 @@ import com.hp.octane.integrations.dto.connectivity.OctaneRequest;
 import com.hp.octane.integrations.dto.connectivity.OctaneResponse;
 import com.hp.octane.integrations.exceptions.PermanentException;
 import com.hp.octane.integrations.exceptions.TemporaryException;
+import com.hp.octane.integrations.services.QueueWorkersScheduler;
 import com.hp.octane.integrations.services.WorkerPreflight;
 import com.hp.octane.integrations.services.configuration.ConfigurationService;
 import com.hp.octane.integrations.services.configuration.ConfigurationServiceImpl;
+import com.hp.octane.integrations.services.configuration.PreflightCache;
 import com.hp.octane.integrations.services.configurationparameters.factory.ConfigurationParameterFactory;
 import com.hp.octane.integrations.services.queueing.QueueingService;
+import com.hp.octane.integrations.services.rest.OctaneChunkedUpload;
 import com.hp.octane.integrations.services.rest.RestService;
 import com.hp.octane.integrations.utils.CIPluginSDKUtils;
 import com.squareup.tape.ObjectQueue;
@@ -35,9 +38,13 @@ import org.apache.http.HttpStatus;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ThreadFactory;
@@ -53,15 +60,23 @@ final class LogsServiceImpl implements LogsService {
 	private static final Logger logger = LogManager.getLogger(LogsServiceImpl.class);
 	private static final DTOFactory dtoFactory = DTOFactory.getInstance();
 	private static final String BUILD_LOG_QUEUE_FILE = "build-logs-queue.dat";
+	private static final String BUILD_LOG_SPOOL_DIRECTORY = "build-logs-spool";
+	private static final int MAX_PUSH_ATTEMPTS = 3;
 
-	private final ExecutorService logsPushExecutor = Executors.newSingleThreadExecutor(new BuildLogsPushWorkerThreadFactory());
 	private final ObjectQueue<BuildLogQueueItem> buildLogsQueue;
 	private final OctaneSDK.SDKServicesConfigurer configurer;
 	private final RestService restService;
 	private final WorkerPreflight workerPreflight;
 	private final ConfigurationService configurationService;
+	private final ExecutorService buildLogsUploadExecutor;
+	private final File spoolDirectory;
+	private volatile BuildLogPush pendingPush;
 
 	private int TEMPORARY_ERROR_BREATHE_INTERVAL = 15000;
+	private final int MAX_PARALLEL_UPLOADS = System.getProperty("octane.sdk.logs.max-parallel-uploads") != null ? Math.max(1, Integer.parseInt(System.getProperty("octane.sdk.logs.max-parallel-uploads"))) : 4;
+	private final int SPOOL_MEMORY_THRESHOLD = System.getProperty("octane.sdk.logs.spool-memory-threshold") != null ? Integer.parseInt(System.getProperty("octane.sdk.logs.spool-memory-threshold")) : 1024 * 1024;
+	//  chunked upload (see OctaneChunkedUpload) of the logs bigger than the part, disabled by default as it requires the server side support
+	private final int CHUNKED_UPLOAD_PART_SIZE = System.getProperty("octane.sdk.logs.chunked-upload-part-size") != null ? Integer.parseInt(System.getProperty("octane.sdk.logs.chunked-upload-part-size")) : 0;
 
 	LogsServiceImpl(OctaneSDK.SDKServicesConfigurer configurer, QueueingService queueingService, RestService restService, ConfigurationService configurationService) {
 		if (configurer == null || configurer.pluginServices == null || configurer.octaneConfiguration == null) {
@@ -88,9 +103,11 @@ final class LogsServiceImpl implements LogsService {
 		this.restService = restService;
 		this.configurationService = configurationService;
 		this.workerPreflight = new WorkerPreflight(this, configurationService, logger);
+		this.buildLogsUploadExecutor = Executors.newFixedThreadPool(MAX_PARALLEL_UPLOADS, new BuildLogsUploadThreadFactory());
+		this.spoolDirectory = initSpoolDirectory();
 
 		logger.info(configurer.octaneConfiguration.getLocationForLog() + "starting background worker...");
-		logsPushExecutor.execute(this::worker);
+		workerPreflight.start("BuildLogsPushWorker", this::worker);
 		logger.info(configurer.octaneConfiguration.getLocationForLog() + "initialized SUCCESSFULLY (backed by " + buildLogsQueue.getClass().getSimpleName() + ")");
 	}
 
@@ -116,41 +133,68 @@ final class LogsServiceImpl implements LogsService {
 
 	@Override
 	public void shutdown() {
-		logsPushExecutor.shutdown();
+		workerPreflight.shutdown();
+		buildLogsUploadExecutor.shutdown();
+		discardPendingPush();
 	}
 
 	@Override
 	public boolean isShutdown() {
-		return logsPushExecutor.isShutdown();
+		return workerPreflight.isShutdown();
 	}
 
-	//  infallible everlasting background worker
-	private void worker() {
-		while (!logsPushExecutor.isShutdown()) {
-			if(!workerPreflight.preflight()){
-				continue;
+	//  infallible background worker step, scheduled by the worker preflight
+	private long worker() {
+		BuildLogQueueItem buildLogQueueItem = null;
+		try {
+			buildLogQueueItem = buildLogsQueue.peek();
+			pushBuildLog(configurer.octaneConfiguration.getInstanceId(), buildLogQueueItem);
+			logger.debug(configurer.octaneConfiguration.getLocationForLog() + "successfully processed " + buildLogQueueItem);
+			buildLogsQueue.remove();
+		} catch (TemporaryException tque) {
+			logger.error(configurer.octaneConfiguration.getLocationForLog() + "temporary error on " + buildLogQueueItem + ", breathing " + TEMPORARY_ERROR_BREATHE_INTERVAL + "ms and retrying");
+			return workerPreflight.backoff(TEMPORARY_ERROR_BREATHE_INTERVAL);
+		} catch (PermanentException pqie) {
+			logger.error(configurer.octaneConfiguration.getLocationForLog() + "permanent error on " + buildLogQueueItem + ", passing over", pqie);
+			buildLogsQueue.remove();
+			discardPendingPush();
+		} catch (Throwable t) {
+			logger.error(configurer.octaneConfiguration.getLocationForLog() + "unexpected error on build log item '" + buildLogQueueItem + "', passing over", t);
+			buildLogsQueue.remove();
+			discardPendingPush();
+		}
+		return QueueWorkersScheduler.NO_PAUSE;
+	}
+
+	/**
+	 * Pushes the log to all the workspaces interested in it
+	 * - log is read from the plugin and compressed once, then uploaded to the workspaces in parallel
+	 * - on temporary failure of some of the uploads the push is resumed (by the worker's retry) with the failed workspaces only, re-using the spooled log
+	 */
+	private void pushBuildLog(String serverId, BuildLogQueueItem queueItem) {
+		BuildLogPush push = pendingPush;
+		if (push == null || !push.isOf(queueItem)) {
+			discardPendingPush();
+			push = preparePush(serverId, queueItem);
+			if (push == null) {
+				return;
 			}
+			pendingPush = push;
+		}
 
-			BuildLogQueueItem buildLogQueueItem = null;
-			try {
-				buildLogQueueItem = buildLogsQueue.peek();
-				pushBuildLog(configurer.octaneConfiguration.getInstanceId(), buildLogQueueItem);
-				logger.debug(configurer.octaneConfiguration.getLocationForLog() + "successfully processed " + buildLogQueueItem);
-				buildLogsQueue.remove();
-			} catch (TemporaryException tque) {
-				logger.error(configurer.octaneConfiguration.getLocationForLog() + "temporary error on " + buildLogQueueItem + ", breathing " + TEMPORARY_ERROR_BREATHE_INTERVAL + "ms and retrying");
-				CIPluginSDKUtils.doWait(TEMPORARY_ERROR_BREATHE_INTERVAL);
-			} catch (PermanentException pqie) {
-				logger.error(configurer.octaneConfiguration.getLocationForLog() + "permanent error on " + buildLogQueueItem + ", passing over", pqie);
-				buildLogsQueue.remove();
-			} catch (Throwable t) {
-				logger.error(configurer.octaneConfiguration.getLocationForLog() + "unexpected error on build log item '" + buildLogQueueItem + "', passing over", t);
-				buildLogsQueue.remove();
+		push.attempts++;
+		uploadToWorkspaces(push);
+		if (!push.pendingWorkspaces.isEmpty()) {
+			if (push.attempts < MAX_PUSH_ATTEMPTS) {
+				throw new TemporaryException("failed to push log of " + queueItem + " to " + push.pendingWorkspaces.size() + " workspace/s, will resume with them only");
 			}
+			logger.error(configurer.octaneConfiguration.getLocationForLog() + "failed to push log of " + queueItem + " to WS " + push.pendingWorkspaces + " for " + push.attempts + " times, abandoning");
 		}
+		discardPendingPush();
 	}
 
-	private void pushBuildLog(String serverId, BuildLogQueueItem queueItem) {
+	//  preflight and spooling of the log, returns NULL if there is nothing to push
+	private BuildLogPush preparePush(String serverId, BuildLogQueueItem queueItem) {
 		OctaneConfiguration octaneConfiguration = configurer.octaneConfiguration;
 		String encodedServerId = CIPluginSDKUtils.urlEncodePathParam(serverId);
 		String encodedBuildId = CIPluginSDKUtils.urlEncodePathParam(queueItem.buildId);
@@ -160,70 +204,120 @@ final class LogsServiceImpl implements LogsService {
 		String encodedRootJobId = base64 ? CIPluginSDKUtils.urlEncodeBase64(queueItem.rootJobId) : CIPluginSDKUtils.urlEncodeQueryParam(queueItem.rootJobId);
 
 		//  preflight
-		String[] workspaceIDs = preflightRequest(octaneConfiguration, encodedServerId, encodedJobId, encodedRootJobId, base64);
+		String[] workspaceIDs = configurationService.getPreflightCache().get(PreflightCache.Kind.LOGS, serverId, queueItem.jobId, queueItem.rootJobId,
+				() -> preflightRequest(octaneConfiguration, encodedServerId, encodedJobId, encodedRootJobId, base64), wss -> wss.length == 0);
 		if (workspaceIDs.length == 0) {
 			logger.info(configurer.octaneConfiguration.getLocationForLog() + "log of " + queueItem + ", no interested workspace is found");
-			return;
+			return null;
 		} else {
 			logger.info(configurer.octaneConfiguration.getLocationForLog() + "log of " + queueItem + ", found " + workspaceIDs.length + " interested workspace/s");
 		}
 
-		//  submit log for each workspace returned by the 'preflight' API
-		//  [YG] TODO: the code below should and will be refactored to a simpler state once Octane's APIs will be adjusted
-		InputStream log;
-		OctaneRequest request;
-		OctaneResponse response;
-		for (String workspaceId : workspaceIDs) {
-			String url = octaneConfiguration.getUrl() + RestService.SHARED_SPACE_INTERNAL_API_PATH_PART + octaneConfiguration.getSharedSpace() +
-					"/workspaces/" + workspaceId + RestService.ANALYTICS_CI_PATH_PART +
-					encodedServerId + "/" + encodedJobId + "/" + encodedBuildId + "/logs";
-			if (base64) {
-				url = CIPluginSDKUtils.addParameterEncode64ToUrl(url);
+		//  read and compress the log once for all the workspaces
+		BuildLogSpool spool;
+		try {
+			InputStream log = configurer.pluginServices.getBuildLog(queueItem.jobId, queueItem.buildId);
+			if (log == null) {
+				logger.info(configurer.octaneConfiguration.getLocationForLog() + "no log for " + queueItem + " found, abandoning");
+				return null;
 			}
+			spool = BuildLogSpool.spool(log, spoolDirectory, SPOOL_MEMORY_THRESHOLD);
+		} catch (IOException ioe) {
+			throw new TemporaryException("failed to read and compress log of " + queueItem, ioe);
+		}
+		logger.info(configurer.octaneConfiguration.getLocationForLog() + "log of " + queueItem + " compressed from " + spool.getLogSize() + " to " + spool.getCompressedSize() + " bytes" +
+				(spool.isSpilled() ? " (spooled to file)" : ""));
 
-			String correlationId = CIPluginSDKUtils.getNextCorrelationId();
-			Map<String, String> headers = new HashMap<>();
-			headers.put(CORRELATION_ID_HEADER, correlationId);
-			request = dtoFactory.newDTO(OctaneRequest.class)
-					.setMethod(HttpMethod.POST)
-					.setHeaders(headers)
-					.setUrl(url);
-			try {
-				log = configurer.pluginServices.getBuildLog(queueItem.jobId, queueItem.buildId);
-				if (log == null) {
-					logger.info(configurer.octaneConfiguration.getLocationForLog() + "no log for " + queueItem + " found, abandoning");
-					break;
-				}
-				request.setBody(log);
-				response = restService.obtainOctaneRestClient().execute(request);
-				if (response.getStatus() == HttpStatus.SC_OK) {
-					logger.info(configurer.octaneConfiguration.getLocationForLog() + "successfully pushed log of " + queueItem + " to WS " + workspaceId + ", correlation Id = " + correlationId);
-				} else {
-					logger.error(configurer.octaneConfiguration.getLocationForLog() + "failed to push log of " + queueItem + " to WS " + workspaceId + ", status: " + response.getStatus() + ", correlation Id = " + correlationId);
-				}
-			} catch (IOException ioe) {
-				logger.error(configurer.octaneConfiguration.getLocationForLog() + "failed to push log of " + queueItem + " to WS " + workspaceId + ", breathing " + TEMPORARY_ERROR_BREATHE_INTERVAL + "ms and retrying one more time due to IOException", ioe);
-				CIPluginSDKUtils.doWait(TEMPORARY_ERROR_BREATHE_INTERVAL);
-				log = configurer.pluginServices.getBuildLog(queueItem.jobId, queueItem.buildId);
-				if (log == null) {
-					logger.info(configurer.octaneConfiguration.getLocationForLog() + "no log for " + queueItem + " found, abandoning");
-					break;
-				}
-				request.setBody(log);
-				try {
-					response = restService.obtainOctaneRestClient().execute(request);
-					if (response.getStatus() == HttpStatus.SC_OK) {
-						logger.info(configurer.octaneConfiguration.getLocationForLog() + "successfully pushed log of " + queueItem + " to WS " + workspaceId);
-					} else {
-						logger.error(configurer.octaneConfiguration.getLocationForLog() + "failed to push log of " + queueItem + " to WS " + workspaceId + ", status: " + response.getStatus());
-					}
-				} catch (IOException ioem) {
-					logger.error(configurer.octaneConfiguration.getLocationForLog() + "failed to push log of " + queueItem + " to WS " + workspaceId + " for the second time, abandoning", ioem);
-				}
+		String logsUrlSuffix = RestService.ANALYTICS_CI_PATH_PART + encodedServerId + "/" + encodedJobId + "/" + encodedBuildId + "/logs";
+		boolean chunked = CHUNKED_UPLOAD_PART_SIZE > 0 && spool.getLogSize() > CHUNKED_UPLOAD_PART_SIZE;
+		return new BuildLogPush(queueItem, workspaceIDs, logsUrlSuffix, base64, spool, chunked);
+	}
+
+	private void uploadToWorkspaces(BuildLogPush push) {
+		List<String> workspaceIDs;
+		synchronized (push.pendingWorkspaces) {
+			workspaceIDs = new ArrayList<>(push.pendingWorkspaces);
+		}
+		if (workspaceIDs.size() == 1) {
+			uploadToWorkspace(push, workspaceIDs.get(0));
+			return;
+		}
+
+		CompletableFuture<?>[] uploads = workspaceIDs.stream()
+				.map(workspaceId -> CompletableFuture.runAsync(() -> uploadToWorkspace(push, workspaceId), buildLogsUploadExecutor))
+				.toArray(CompletableFuture[]::new);
+		try {
+			CompletableFuture.allOf(uploads).join();
+		} catch (CompletionException ce) {
+			//  uploads handle their failures, the ones that didn't complete stay pending
+			logger.error(configurer.octaneConfiguration.getLocationForLog() + "unexpected failure while pushing log of " + push.queueItem, ce.getCause());
+		}
+	}
+
+	//  workspace is removed from the pending ones unless the upload failed temporarily
+	private void uploadToWorkspace(BuildLogPush push, String workspaceId) {
+		OctaneConfiguration octaneConfiguration = configurer.octaneConfiguration;
+		String url = octaneConfiguration.getUrl() + RestService.SHARED_SPACE_INTERNAL_API_PATH_PART + octaneConfiguration.getSharedSpace() +
+				"/workspaces/" + workspaceId + push.logsUrlSuffix;
+		if (push.base64) {
+			url = CIPluginSDKUtils.addParameterEncode64ToUrl(url);
+		}
+
+		String correlationId = CIPluginSDKUtils.getNextCorrelationId();
+		Map<String, String> headers = new HashMap<>();
+		headers.put(CORRELATION_ID_HEADER, correlationId);
+		OctaneRequest request = dtoFactory.newDTO(OctaneRequest.class)
+				.setMethod(HttpMethod.POST)
+				.setHeaders(headers)
+				.setUrl(url);
+		try {
+			int status;
+			if (push.chunked) {
+				//  parts of the log are uploaded one by one, checkpoint is kept with the queue item for the worker's retry
+				BuildLogQueueItem queueItem = push.queueItem;
+				OctaneChunkedUpload upload = new OctaneChunkedUpload(queueItem.getUploadId() + "-" + workspaceId, CHUNKED_UPLOAD_PART_SIZE,
+						queueItem.getUploadedParts(workspaceId), push.spool::openLog, parts -> queueItem.setUploadedParts(workspaceId, parts));
+				status = restService.obtainOctaneRestClient().executeChunked(request, upload).getStatus();
+			} else {
+				status = restService.obtainOctaneRestClient().execute(request, push.spool, (response, body) -> response.getStatus());
+			}
+			if (status == HttpStatus.SC_OK) {
+				logger.info(configurer.octaneConfiguration.getLocationForLog() + "successfully pushed log of " + push.queueItem + " to WS " + workspaceId + ", correlation Id = " + correlationId);
+			} else if (status == HttpStatus.SC_SERVICE_UNAVAILABLE || status == HttpStatus.SC_BAD_GATEWAY) {
+				logger.error(configurer.octaneConfiguration.getLocationForLog() + "failed to push log of " + push.queueItem + " to WS " + workspaceId + ", status: " + status + ", correlation Id = " + correlationId + ", will retry");
+				return;
+			} else {
+				logger.error(configurer.octaneConfiguration.getLocationForLog() + "failed to push log of " + push.queueItem + " to WS " + workspaceId + ", status: " + status + ", correlation Id = " + correlationId);
 			}
+		} catch (IOException ioe) {
+			logger.error(configurer.octaneConfiguration.getLocationForLog() + "failed to push log of " + push.queueItem + " to WS " + workspaceId + ", correlation Id = " + correlationId + ", will retry", ioe);
+			return;
+		}
+		push.pendingWorkspaces.remove(workspaceId);
+	}
+
+	private void discardPendingPush() {
+		BuildLogPush push = pendingPush;
+		pendingPush = null;
+		if (push != null) {
+			push.spool.close();
 		}
 	}
 
+	//  spool files are kept in the plugin's storage, if allowed
+	private File initSpoolDirectory() {
+		if (configurer.pluginServices.getAllowedOctaneStorage() == null) {
+			return null;
+		}
+		File result = new File(configurer.pluginServices.getAllowedOctaneStorage(), "nga" + File.separator + configurer.octaneConfiguration.getInstanceId() + File.separator + BUILD_LOG_SPOOL_DIRECTORY);
+		if (!result.isDirectory() && !result.mkdirs()) {
+			logger.warn(configurer.octaneConfiguration.getLocationForLog() + "failed to create " + result + ", build logs will be spooled in the temporary directory");
+			return null;
+		}
+		BuildLogSpool.deleteLeftovers(result);
+		return result;
+	}
+
 	private boolean isEncodeBase64() {
 		return ConfigurationParameterFactory.isEncodeCiJobBase64(configurer.octaneConfiguration);
 	}
@@ -294,14 +388,57 @@ final class LogsServiceImpl implements LogsService {
 	public Map<String, Object> getMetrics() {
 		Map<String, Object> map = new LinkedHashMap<>();
 		map.put("queueSize", this.getQueueSize());
+		BuildLogPush push = pendingPush;
+		map.put("pendingPushWorkspaces", push != null ? push.pendingWorkspaces.size() : 0);
 		workerPreflight.addMetrics(map);
 		return map;
 	}
 
+	//  push of the queue head's log, kept while its uploads are retried
+	private static final class BuildLogPush {
+		private final BuildLogQueueItem queueItem;
+		private final Set<String> pendingWorkspaces;
+		private final String logsUrlSuffix;
+		private final boolean base64;
+		private final BuildLogSpool spool;
+		private final boolean chunked;
+		private int attempts;
+
+		private BuildLogPush(BuildLogQueueItem queueItem, String[] workspaceIDs, String logsUrlSuffix, boolean base64, BuildLogSpool spool, boolean chunked) {
+			this.queueItem = queueItem;
+			this.pendingWorkspaces = Collections.synchronizedSet(new LinkedHashSet<>(Arrays.asList(workspaceIDs)));
+			this.logsUrlSuffix = logsUrlSuffix;
+			this.base64 = base64;
+			this.spool = spool;
+			this.chunked = chunked;
+		}
+
+		//  file queue's peek deserializes the head anew on each call
+		private boolean isOf(BuildLogQueueItem item) {
+			return Objects.equals(queueItem.uploadId, item.uploadId) &&
+					Objects.equals(queueItem.jobId, item.jobId) && Objects.equals(queueItem.buildId, item.buildId) && Objects.equals(queueItem.rootJobId, item.rootJobId);
+		}
+	}
+
+	private static final class BuildLogsUploadThreadFactory implements ThreadFactory {
+
+		@Override
+		public Thread newThread(Runnable runnable) {
+			Thread result = new Thread(runnable);
+			result.setName("BuildLogsUploadWorker-" + result.getId());
+			result.setDaemon(true);
+			return result;
+		}
+	}
+
 	private static final class BuildLogQueueItem implements QueueingService.QueueItem {
 		private String jobId;
 		private String buildId;
 		private String rootJobId;
+		private String uploadId;
+
+		//  chunked upload checkpoints per workspace, NULL if unknown (item restored from the file queue)
+		private transient Map<String, Integer> uploadedParts;
 
 		//  [YG] this constructor MUST be present, don't remove
 		private BuildLogQueueItem() {
@@ -311,22 +448,33 @@ final class LogsServiceImpl implements LogsService {
 			this.jobId = jobId;
 			this.buildId = buildId;
 			this.rootJobId = rootJobId;
+			this.uploadId = UUID.randomUUID().toString();
+			this.uploadedParts = new ConcurrentHashMap<>();
 		}
 
-		@Override
-		public String toString() {
-			return "'" + jobId + " #" + buildId + "', root job : " + rootJobId;
+		//  items queued by the previous versions have no upload ID, their uploads start anew
+		private synchronized String getUploadId() {
+			if (uploadId == null) {
+				uploadId = UUID.randomUUID().toString();
+				uploadedParts = new ConcurrentHashMap<>();
+			}
+			return uploadId;
 		}
-	}
 
-	private static final class BuildLogsPushWorkerThreadFactory implements ThreadFactory {
+		private synchronized int getUploadedParts(String workspaceId) {
+			return uploadedParts == null ? -1 : uploadedParts.getOrDefault(workspaceId, 0);
+		}
+
+		private synchronized void setUploadedParts(String workspaceId, int parts) {
+			if (uploadedParts == null) {
+				uploadedParts = new ConcurrentHashMap<>();
+			}
+			uploadedParts.put(workspaceId, parts);
+		}
 
 		@Override
-		public Thread newThread(Runnable runnable) {
-			Thread result = new Thread(runnable);
-			result.setName("BuildLogsPushWorker-" + result.getId());
-			result.setDaemon(true);
-			return result;
+		public String toString() {
+			return "'" + jobId + " #" + buildId + "', root job : " + rootJobId;
 		}
 	}
 }
@@ -0,0 +1,112 @@
+/*
+ *     Copyright 2017 EntIT Software LLC, a Micro Focus company, L.P.
+ *     Licensed under the Apache License, Version 2.0 (the "License");
+ *     you may not use this file except in compliance with the License.
+ *     You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *     Unless required by applicable law or agreed to in writing, software
+ *     distributed under the License is distributed on an "AS IS" BASIS,
+ *     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *     See the License for the specific language governing permissions and
+ *     limitations under the License.
+ */
+
+package com.hp.octane.integrations.services.queueing;
+
+import java.util.List;
+
+/**
+ * Queue drained by leases: items are handed out in batches and stay in the queue until acknowledged
+ * - leased item is invisible to the other leases until acked, nacked or its visibility timeout expires (then it is re-delivered)
+ * - nacked item is re-delivered after the requested delay, without moving it in the queue; the items behind it keep being delivered
+ * - items are delivered in queue order among the visible ones; delivery is at least once
+ *
+ * @param <T> type of an item of the queue
+ */
+public interface LeasedQueue<T> {
+
+	/**
+	 * @return number of the items not acknowledged yet, leased and delayed included
+	 */
+	int size();
+
+	void add(T item);
+
+	/**
+	 * Leases the visible items from the head of the queue
+	 *
+	 * @param max               max number of the items to lease
+	 * @param visibilityTimeout time in millis the items stay invisible unless acked or nacked before
+	 * @return leases in queue order, empty if there is no visible item
+	 */
+	List<Lease<T>> lease(int max, long visibilityTimeout);
+
+	/**
+	 * Removes the leased item from the queue
+	 *
+	 * @param lease lease of the item
+	 */
+	void ack(Lease<T> lease);
+
+	/**
+	 * Returns the leased item to the queue, to be re-delivered after the delay
+	 * The item as held by the lease (with the changes done to it while processing) is the one re-delivered, changes are not persisted
+	 *
+	 * @param lease            lease of the item
+	 * @param redeliveryDelay time in millis before the item is visible again
+	 */
+	default void nack(Lease<T> lease, long redeliveryDelay) {
+		nack(lease, redeliveryDelay, false);
+	}
+
+	/**
+	 * Returns the leased item to the queue, to be re-delivered after the delay
+	 * The item as held by the lease (with the changes done to it while processing) is the one re-delivered
+	 * - if rewritten, the item replaces the stored one, so the changes survive the restart; the rewritten item is behind the other items after the restart
+	 *
+	 * @param lease           lease of the item
+	 * @param redeliveryDelay time in millis before the item is visible again
+	 * @param rewrite         true to persist the changes done to the item
+	 */
+	void nack(Lease<T> lease, long redeliveryDelay, boolean rewrite);
+
+	/**
+	 * @return time in millis until the next item becomes visible: 0 if there is a visible one already, -1 if the queue is empty
+	 */
+	long nextVisibleIn();
+
+	/**
+	 * Removes all the items, leased ones included
+	 */
+	void clear();
+
+	final class Lease<T> {
+		final long key;
+		private final T item;
+		private final int deliveryCount;
+
+		Lease(long key, T item, int deliveryCount) {
+			this.key = key;
+			this.item = item;
+			this.deliveryCount = deliveryCount;
+		}
+
+		public T getItem() {
+			return item;
+		}
+
+		/**
+		 * @return 1 on the first delivery of the item since the queue was opened, incremented on each re-delivery
+		 */
+		public int getDeliveryCount() {
+			return deliveryCount;
+		}
+
+		@Override
+		public String toString() {
+			return "Lease {" + item + ", delivery: " + deliveryCount + "}";
+		}
+	}
+}
@@ -0,0 +1,190 @@
+/*
+ *     Copyright 2017 EntIT Software LLC, a Micro Focus company, L.P.
+ *     Licensed under the Apache License, Version 2.0 (the "License");
+ *     you may not use this file except in compliance with the License.
+ *     You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *     Unless required by applicable law or agreed to in writing, software
+ *     distributed under the License is distributed on an "AS IS" BASIS,
+ *     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *     See the License for the specific language governing permissions and
+ *     limitations under the License.
+ */
+
+package com.hp.octane.integrations.services.queueing;
+
+import java.util.*;
+
+/**
+ * Leasing over the store of the items; delivery state is kept in memory only, so after restart all the items not acked are visible again
+ * - rewritten item is appended to the store before its previous record is deleted, so a crash in between re-delivers it twice rather than loses it
+ *
+ * @param <T> type of an item of the queue
+ */
+
+final class LeasedQueueImpl<T> implements LeasedQueue<T> {
+	private final Store<T> store;
+	private final Object LEASES_LOCK = new Object();
+
+	//  delivery state of all the items of the store, in queue order, by the key of the lease (stable while the item is rewritten); guarded by LEASES_LOCK
+	private final LinkedHashMap<Long, Delivery<T>> deliveries = new LinkedHashMap<>();
+	private long nextKey;
+
+	LeasedQueueImpl(Store<T> store) {
+		if (store == null) {
+			throw new IllegalArgumentException("store MUST NOT be null");
+		}
+		this.store = store;
+		for (Long storeKey : store.keys()) {
+			deliveries.put(nextKey++, new Delivery<>(storeKey));
+		}
+	}
+
+	@Override
+	public int size() {
+		synchronized (LEASES_LOCK) {
+			return deliveries.size();
+		}
+	}
+
+	@Override
+	public void add(T item) {
+		synchronized (LEASES_LOCK) {
+			deliveries.put(nextKey++, new Delivery<>(store.append(item)));
+		}
+	}
+
+	@Override
+	public List<Lease<T>> lease(int max, long visibilityTimeout) {
+		List<Lease<T>> result = new ArrayList<>();
+		synchronized (LEASES_LOCK) {
+			long now = System.currentTimeMillis();
+			Iterator<Map.Entry<Long, Delivery<T>>> iterator = deliveries.entrySet().iterator();
+			while (result.size() < max && iterator.hasNext()) {
+				Map.Entry<Long, Delivery<T>> entry = iterator.next();
+				Delivery<T> delivery = entry.getValue();
+				if (delivery.visibleAt > now) {
+					continue;
+				}
+				if (delivery.item == null) {
+					delivery.item = store.read(delivery.storeKey);
+				}
+				delivery.visibleAt = now + visibilityTimeout;
+				delivery.count++;
+				result.add(new Lease<>(entry.getKey(), delivery.item, delivery.count));
+			}
+		}
+		return result;
+	}
+
+	@Override
+	public void ack(Lease<T> lease) {
+		synchronized (LEASES_LOCK) {
+			Delivery<T> delivery = deliveries.remove(lease.key);
+			if (delivery != null) {
+				store.delete(delivery.storeKey);
+			}
+		}
+	}
+
+	@Override
+	public void nack(Lease<T> lease, long redeliveryDelay, boolean rewrite) {
+		synchronized (LEASES_LOCK) {
+			Delivery<T> delivery = deliveries.get(lease.key);
+			if (delivery != null) {
+				if (rewrite) {
+					long storeKey = store.append(lease.getItem());
+					store.delete(delivery.storeKey);
+					delivery.storeKey = storeKey;
+				}
+				delivery.visibleAt = System.currentTimeMillis() + redeliveryDelay;
+				delivery.item = lease.getItem();
+			}
+		}
+	}
+
+	@Override
+	public long nextVisibleIn() {
+		synchronized (LEASES_LOCK) {
+			if (deliveries.isEmpty()) {
+				return -1;
+			}
+			long now = System.currentTimeMillis();
+			long result = Long.MAX_VALUE;
+			for (Delivery<T> delivery : deliveries.values()) {
+				result = Math.min(result, Math.max(0, delivery.visibleAt - now));
+				if (result == 0) {
+					break;
+				}
+			}
+			return result;
+		}
+	}
+
+	@Override
+	public void clear() {
+		synchronized (LEASES_LOCK) {
+			deliveries.values().forEach(delivery -> store.delete(delivery.storeKey));
+			deliveries.clear();
+		}
+	}
+
+	/**
+	 * Storage of the items, in order, addressable by key
+	 *
+	 * @param <T> type of an item of the queue
+	 */
+	interface Store<T> {
+
+		/**
+		 * @return keys of the stored items, in queue order
+		 */
+		List<Long> keys();
+
+		long append(T item);
+
+		T read(long key);
+
+		boolean delete(long key);
+	}
+
+	static final class MemoryStore<T> implements Store<T> {
+		private final LinkedHashMap<Long, T> items = new LinkedHashMap<>();
+		private long nextKey;
+
+		@Override
+		public synchronized List<Long> keys() {
+			return new ArrayList<>(items.keySet());
+		}
+
+		@Override
+		public synchronized long append(T item) {
+			long key = nextKey++;
+			items.put(key, item);
+			return key;
+		}
+
+		@Override
+		public synchronized T read(long key) {
+			return items.get(key);
+		}
+
+		@Override
+		public synchronized boolean delete(long key) {
+			return items.remove(key) != null;
+		}
+	}
+
+	private static final class Delivery<T> {
+		private long storeKey;
+		private long visibleAt;
+		private int count;
+		private T item;
+
+		private Delivery(long storeKey) {
+			this.storeKey = storeKey;
+		}
+	}
+}
@@ -59,6 +59,25 @@ public interface QueueingService extends ClosableService {
 	 */
 	<T extends QueueItem> ObjectQueue<T> initFileQueue(String queueFileName, Class<T> targetType);
 
+	/**
+	 * Initializes memory based leased queue
+	 *
+	 * @param <T> type of an item of the queue
+	 * @return initialized queue
+	 */
+	<T> LeasedQueue<T> initLeasedMemoQueue();
+
+	/**
+	 * Initializes file based leased queue, stored the same way as the file queue of the same name (an existing file queue may be switched to the leased one)
+	 * If the initialization fails for some reason, falls back to memory based queue and write log about this
+	 *
+	 * @param queueFileName file name to store the queue items in; service will attempt to create the file in the allowed storage folder
+	 * @param targetType    type of an item of the queue in explicit way (for initialization needs)
+	 * @param <T>           type of an item of the queue
+	 * @return initialized queue
+	 */
+	<T extends QueueItem> LeasedQueue<T> initLeasedFileQueue(String queueFileName, Class<T> targetType);
+
 	@JsonAutoDetect(fieldVisibility = JsonAutoDetect.Visibility.ANY)
 	@JsonIgnoreProperties(ignoreUnknown = true)
 	interface QueueItem {
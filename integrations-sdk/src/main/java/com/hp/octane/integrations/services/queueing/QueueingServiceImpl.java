@@ -16,6 +16,7 @@
 package com.hp.octane.integrations.services.queueing;
 
 import com.hp.octane.integrations.OctaneSDK;
+import com.hp.octane.integrations.services.QueueWorkersScheduler;
 import com.hp.octane.integrations.utils.CIPluginSDKUtils;
 import com.squareup.tape.FileObjectQueue;
 import com.squareup.tape.InMemoryObjectQueue;
@@ -28,6 +29,7 @@ import java.io.IOException;
 import java.io.OutputStream;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 /**
  * Queue Service provides a common queue infrastructure, initialization and maintenance
@@ -35,14 +37,23 @@ import java.util.List;
 
 final class QueueingServiceImpl implements QueueingService {
 	private static final Logger logger = LogManager.getLogger(QueueingServiceImpl.class);
+	private static final String SEGMENTED_QUEUE_SUFFIX = ".segments";
+	private final boolean LEGACY_FILE_QUEUES = Boolean.parseBoolean(System.getProperty("octane.sdk.queues.legacy-file-queues"));
+	private final int SEGMENT_SIZE = System.getProperty("octane.sdk.queues.segment-size") != null ? Integer.parseInt(System.getProperty("octane.sdk.queues.segment-size")) : 1024 * 1024;
+	private final long FLUSH_INTERVAL = System.getProperty("octane.sdk.queues.flush-interval") != null ? Long.parseLong(System.getProperty("octane.sdk.queues.flush-interval")) : 200;
+
+	private final OctaneSDK.SDKServicesConfigurer configurer;
 	private final File storageDirectory;
 	private final List<FileObjectQueue> fileObjectQueues = new LinkedList<>();
+	private final List<SegmentedFileObjectQueue> segmentedQueues = new CopyOnWriteArrayList<>();
+	private QueueWorkersScheduler.Worker queuesFlushWorker;
 	private boolean isShutdown;
 
 	QueueingServiceImpl(OctaneSDK.SDKServicesConfigurer configurer) {
 		if (configurer == null) {
 			throw new IllegalArgumentException("invalid configurer");
 		}
+		this.configurer = configurer;
 
 		//  check persistence availability
 		if (configurer.pluginServices.getAllowedOctaneStorage() != null) {
@@ -72,9 +83,13 @@ final class QueueingServiceImpl implements QueueingService {
 		ObjectQueue<T> result;
 		try {
 			File queueFile = new File(storageDirectory, queueFileName);
-			FileObjectQueue<T> tmp = new FileObjectQueue<>(queueFile, new GenericOctaneQueueItemConverter<>(targetType));
-			fileObjectQueues.add(tmp);
-			result = tmp;
+			if (LEGACY_FILE_QUEUES) {
+				FileObjectQueue<T> tmp = new FileObjectQueue<>(queueFile, new GenericOctaneQueueItemConverter<>(targetType));
+				fileObjectQueues.add(tmp);
+				result = tmp;
+			} else {
+				result = initSegmentedQueue(queueFile, new GenericOctaneQueueItemConverter<>(targetType));
+			}
 		} catch (Exception e) {
 			logger.error("failed to create file based queue, falling back to memory based one", e);
 			result = initMemoQueue();
@@ -83,8 +98,28 @@ final class QueueingServiceImpl implements QueueingService {
 	}
 
 	@Override
-	public void shutdown() {
+	public <T> LeasedQueue<T> initLeasedMemoQueue() {
+		return new LeasedQueueImpl<>(new LeasedQueueImpl.MemoryStore<>());
+	}
+
+	@Override
+	public <T extends QueueItem> LeasedQueue<T> initLeasedFileQueue(String queueFileName, Class<T> targetType) {
+		LeasedQueue<T> result;
+		try {
+			result = new LeasedQueueImpl<>(initSegmentedQueue(new File(storageDirectory, queueFileName), new GenericOctaneQueueItemConverter<>(targetType)));
+		} catch (Exception e) {
+			logger.error("failed to create file based leased queue, falling back to memory based one", e);
+			result = initLeasedMemoQueue();
+		}
+		return result;
+	}
+
+	@Override
+	public synchronized void shutdown() {
 		isShutdown = true;
+		if (queuesFlushWorker != null) {
+			queuesFlushWorker.shutdown();
+		}
 		fileObjectQueues.forEach(fileObjectQueue -> {
 			try {
 				fileObjectQueue.close();
@@ -92,6 +127,13 @@ final class QueueingServiceImpl implements QueueingService {
 				logger.error("failed to close " + fileObjectQueue, e);
 			}
 		});
+		segmentedQueues.forEach(segmentedQueue -> {
+			try {
+				segmentedQueue.close();
+			} catch (Exception e) {
+				logger.error("failed to close " + segmentedQueue, e);
+			}
+		});
 	}
 
 	@Override
@@ -99,7 +141,37 @@ final class QueueingServiceImpl implements QueueingService {
 		return isShutdown;
 	}
 
-	private static final class GenericOctaneQueueItemConverter<T> implements FileObjectQueue.Converter<T> {
+	//  segmented queue lives in the directory next to the legacy tape file, which is migrated into it on the first start
+	private synchronized <T extends QueueItem> SegmentedFileObjectQueue<T> initSegmentedQueue(File legacyQueueFile, SegmentedFileObjectQueue.Converter<T> converter) throws IOException {
+		SegmentedFileObjectQueue<T> result = new SegmentedFileObjectQueue<>(new File(legacyQueueFile.getPath() + SEGMENTED_QUEUE_SUFFIX), converter, SEGMENT_SIZE);
+		try {
+			int migrated = result.migrateLegacyQueue(legacyQueueFile);
+			if (migrated > 0) {
+				logger.info(configurer.octaneConfiguration.getLocationForLog() + "migrated " + migrated + " items from legacy queue file " + legacyQueueFile.getName());
+			}
+		} catch (Exception e) {
+			logger.error(configurer.octaneConfiguration.getLocationForLog() + "failed to migrate legacy queue file " + legacyQueueFile.getName() + ", will retry on the next start", e);
+		}
+		segmentedQueues.add(result);
+		if (queuesFlushWorker == null) {
+			queuesFlushWorker = QueueWorkersScheduler.getInstance().register(configurer.octaneConfiguration.getLocationForLog() + "QueuesFlushWorker", this::flushQueues);
+		}
+		return result;
+	}
+
+	//  group commit of all the segmented queues of the client
+	private long flushQueues() {
+		for (SegmentedFileObjectQueue<?> segmentedQueue : segmentedQueues) {
+			try {
+				segmentedQueue.flush();
+			} catch (Exception e) {
+				logger.error(configurer.octaneConfiguration.getLocationForLog() + "failed to flush " + segmentedQueue, e);
+			}
+		}
+		return QueueWorkersScheduler.pause(FLUSH_INTERVAL);
+	}
+
+	private static final class GenericOctaneQueueItemConverter<T> implements FileObjectQueue.Converter<T>, SegmentedFileObjectQueue.Converter<T> {
 		private final Class<T> targetType;
 
 		private GenericOctaneQueueItemConverter(Class<T> targetType) {
@@ -111,6 +183,11 @@ final class QueueingServiceImpl implements QueueingService {
 			return CIPluginSDKUtils.getObjectMapper().readValue(bytes, targetType);
 		}
 
+		@Override
+		public T from(byte[] bytes, int offset, int length) throws IOException {
+			return CIPluginSDKUtils.getObjectMapper().readValue(bytes, offset, length, targetType);
+		}
+
 		@Override
 		public void toStream(T t, OutputStream outputStream) throws IOException {
 			CIPluginSDKUtils.getObjectMapper().writeValue(outputStream, t);
@@ -0,0 +1,614 @@
+/*
+ *     Copyright 2017 EntIT Software LLC, a Micro Focus company, L.P.
+ *     Licensed under the Apache License, Version 2.0 (the "License");
+ *     you may not use this file except in compliance with the License.
+ *     You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *     Unless required by applicable law or agreed to in writing, software
+ *     distributed under the License is distributed on an "AS IS" BASIS,
+ *     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *     See the License for the specific language governing permissions and
+ *     limitations under the License.
+ */
+
+package com.hp.octane.integrations.services.queueing;
+
+import com.squareup.tape.FileException;
+import com.squareup.tape.ObjectQueue;
+import com.squareup.tape.QueueFile;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.*;
+import java.util.zip.CRC32;
+
+/**
+ * Durable FIFO queue, stored in a directory of memory mapped segment files
+ * - records of a segment are written in order: [int payload length][int crc32][payload]; zero length marks the end of the written data
+ * - item removed out of order (see delete) is marked in place by negating the length of its record, its space is reclaimed once the head passes it
+ * - head position (segment id and offset) is kept in a separate mapped file and updated on each remove
+ * - add/remove only write the mapped memory, flush forces the dirty segments and then the head to the disk in one go (group commit);
+ *   process crash loses nothing, OS crash may lose the adds of the last flush interval and re-deliver the removes of it
+ * - segments consumed entirely are deleted by the flush once the head that passed them is on the disk (compaction)
+ * - items are kept serialized in the segments only, the memory holds the positions of the records
+ *
+ * @param <T> type of an item of the queue
+ */
+
+final class SegmentedFileObjectQueue<T> implements ObjectQueue<T>, LeasedQueueImpl.Store<T> {
+	private static final Logger logger = LogManager.getLogger(SegmentedFileObjectQueue.class);
+	private static final String SEGMENT_PREFIX = "segment-";
+	private static final String SEGMENT_SUFFIX = ".dat";
+	private static final String HEAD_FILE = "head.dat";
+	private static final int HEAD_SIZE = 8 + 4 + 4;
+	private static final int RECORD_OVERHEAD = 4 + 4;
+
+	private final File directory;
+	private final Converter<T> converter;
+	private final int segmentSize;
+	private final Object QUEUE_LOCK = new Object();
+	private final Object FLUSH_LOCK = new Object();
+
+	//  queue state, guarded by QUEUE_LOCK
+	private final LinkedList<Segment> segments = new LinkedList<>();
+	private final ArrayDeque<Entry> entries = new ArrayDeque<>();
+	private final Map<Long, Entry> entriesByKey = new HashMap<>();
+	private final Set<Segment> dirtySegments = new LinkedHashSet<>();
+	private final List<Segment> releasedSegments = new LinkedList<>();
+	private final MappedByteBuffer headBuffer;
+	private final ReusableOutputStream writeBuffer = new ReusableOutputStream();
+	private final CRC32 crc = new CRC32();
+	private byte[] readBuffer = new byte[4096];
+	private long nextKey;
+	private int deletedCount;
+	private boolean headDirty;
+	private boolean closed;
+	private Listener<T> listener;
+
+	//  metrics
+	private long flushCount;
+
+	/**
+	 * Opens the queue, recovering the items that were added and not removed yet
+	 *
+	 * @param directory   directory of the queue files, created if missing
+	 * @param converter   items serialization
+	 * @param segmentSize size of the segment file; larger items get a segment of their own
+	 * @throws IOException failure to read the existing segments
+	 */
+	SegmentedFileObjectQueue(File directory, Converter<T> converter, int segmentSize) throws IOException {
+		if (directory == null) {
+			throw new IllegalArgumentException("directory MUST NOT be null");
+		}
+		if (converter == null) {
+			throw new IllegalArgumentException("converter MUST NOT be null");
+		}
+		if (segmentSize < RECORD_OVERHEAD + 1) {
+			throw new IllegalArgumentException("segment size MUST be at least " + (RECORD_OVERHEAD + 1));
+		}
+		if (!directory.isDirectory() && !directory.mkdirs()) {
+			throw new IOException("failed to create queue directory " + directory);
+		}
+		this.directory = directory;
+		this.converter = converter;
+		this.segmentSize = segmentSize;
+		this.headBuffer = map(new File(directory, HEAD_FILE), HEAD_SIZE);
+		synchronized (QUEUE_LOCK) {
+			recover();
+		}
+	}
+
+	@Override
+	public int size() {
+		synchronized (QUEUE_LOCK) {
+			return entries.size() - deletedCount;
+		}
+	}
+
+	@Override
+	public void add(T item) {
+		addAll(Collections.singletonList(item));
+	}
+
+	@Override
+	public long append(T item) {
+		synchronized (QUEUE_LOCK) {
+			ensureOpen();
+			try {
+				writeBuffer.reset();
+				converter.toStream(item, writeBuffer);
+				long result = appendRecord(writeBuffer.buffer(), writeBuffer.size());
+				if (listener != null) {
+					listener.onAdd(this, item);
+				}
+				return result;
+			} catch (IOException ioe) {
+				throw new FileException("failed to add item to the queue", ioe, directory);
+			}
+		}
+	}
+
+	/**
+	 * Appends the items in one go
+	 *
+	 * @param items items to add
+	 */
+	void addAll(Collection<T> items) {
+		synchronized (QUEUE_LOCK) {
+			ensureOpen();
+			for (T item : items) {
+				try {
+					writeBuffer.reset();
+					converter.toStream(item, writeBuffer);
+					appendRecord(writeBuffer.buffer(), writeBuffer.size());
+				} catch (IOException ioe) {
+					throw new FileException("failed to add item to the queue", ioe, directory);
+				}
+				if (listener != null) {
+					listener.onAdd(this, item);
+				}
+			}
+		}
+	}
+
+	@Override
+	public T peek() {
+		synchronized (QUEUE_LOCK) {
+			ensureOpen();
+			Entry head = entries.peekFirst();
+			return head != null ? readEntry(head) : null;
+		}
+	}
+
+	/**
+	 * Reads the items from the head of the queue, without removing them
+	 *
+	 * @param max max number of the items to read
+	 * @return items in queue order, empty if the queue is empty
+	 */
+	List<T> peek(int max) {
+		synchronized (QUEUE_LOCK) {
+			ensureOpen();
+			List<T> result = new ArrayList<>(Math.min(max, entries.size()));
+			Iterator<Entry> iterator = entries.iterator();
+			while (result.size() < max && iterator.hasNext()) {
+				Entry entry = iterator.next();
+				if (!entry.deleted) {
+					result.add(readEntry(entry));
+				}
+			}
+			return result;
+		}
+	}
+
+	@Override
+	public void remove() {
+		remove(1);
+	}
+
+	/**
+	 * Removes the items from the head of the queue
+	 *
+	 * @param count number of the items to remove
+	 */
+	void remove(int count) {
+		synchronized (QUEUE_LOCK) {
+			ensureOpen();
+			if (count > entries.size() - deletedCount) {
+				throw new NoSuchElementException("queue has " + (entries.size() - deletedCount) + " items, can not remove " + count);
+			}
+			for (int i = 0; i < count; i++) {
+				entriesByKey.remove(entries.removeFirst().key);
+				dropDeletedHead();
+			}
+			releaseConsumedSegments();
+			writeHead();
+			if (listener != null) {
+				for (int i = 0; i < count; i++) {
+					listener.onRemove(this);
+				}
+			}
+		}
+	}
+
+	@Override
+	public void setListener(Listener<T> listener) {
+		synchronized (QUEUE_LOCK) {
+			if (listener != null) {
+				for (Entry entry : entries) {
+					if (!entry.deleted) {
+						listener.onAdd(this, readEntry(entry));
+					}
+				}
+			}
+			this.listener = listener;
+		}
+	}
+
+	@Override
+	public List<Long> keys() {
+		synchronized (QUEUE_LOCK) {
+			List<Long> result = new ArrayList<>(entries.size() - deletedCount);
+			for (Entry entry : entries) {
+				if (!entry.deleted) {
+					result.add(entry.key);
+				}
+			}
+			return result;
+		}
+	}
+
+	@Override
+	public T read(long key) {
+		synchronized (QUEUE_LOCK) {
+			ensureOpen();
+			Entry entry = entriesByKey.get(key);
+			return entry != null ? readEntry(entry) : null;
+		}
+	}
+
+	/**
+	 * Removes the item wherever it is in the queue; item behind the head is only marked as deleted in its record, no data is moved
+	 *
+	 * @param key key of the item, as returned by append or keys
+	 * @return false if there is no such item (eg already deleted)
+	 */
+	@Override
+	public boolean delete(long key) {
+		synchronized (QUEUE_LOCK) {
+			ensureOpen();
+			Entry entry = entriesByKey.remove(key);
+			if (entry == null) {
+				return false;
+			}
+			if (entry == entries.peekFirst()) {
+				entries.removeFirst();
+				dropDeletedHead();
+				releaseConsumedSegments();
+				writeHead();
+			} else {
+				entry.segment.view.putInt(entry.offset, -entry.length);
+				entry.deleted = true;
+				deletedCount++;
+				dirtySegments.add(entry.segment);
+			}
+			if (listener != null) {
+				listener.onRemove(this);
+			}
+			return true;
+		}
+	}
+
+	/**
+	 * Forces the changes since the previous flush to the disk and deletes the segments that are not needed anymore
+	 */
+	void flush() {
+		synchronized (FLUSH_LOCK) {
+			List<Segment> toForce;
+			List<Segment> toDelete;
+			boolean forceHead;
+			synchronized (QUEUE_LOCK) {
+				if (closed) {
+					return;
+				}
+				toForce = new ArrayList<>(dirtySegments);
+				dirtySegments.clear();
+				toDelete = new ArrayList<>(releasedSegments);
+				forceHead = headDirty;
+				headDirty = false;
+			}
+
+			//  data first, so that the head on the disk never points past the data on the disk
+			toForce.forEach(segment -> segment.buffer.force());
+			if (forceHead) {
+				headBuffer.force();
+			}
+			for (Segment segment : toDelete) {
+				if (segment.file.delete() || !segment.file.exists()) {
+					synchronized (QUEUE_LOCK) {
+						releasedSegments.remove(segment);
+					}
+				} else {
+					//  mapped files can't be deleted on some platforms until unmapped by GC, retried by the next flush
+					logger.debug("failed to delete released queue segment " + segment.file + ", will retry");
+				}
+			}
+			flushCount++;
+		}
+	}
+
+	void close() {
+		flush();
+		synchronized (QUEUE_LOCK) {
+			closed = true;
+		}
+	}
+
+	/**
+	 * Moves the items of the tape queue file (as written by FileObjectQueue with the same converter) to the end of this queue
+	 * Legacy file is deleted once the moved items are flushed
+	 *
+	 * @param legacyQueueFile tape queue file
+	 * @return number of the items moved
+	 * @throws IOException failure to read or to delete the legacy file
+	 */
+	int migrateLegacyQueue(File legacyQueueFile) throws IOException {
+		if (!legacyQueueFile.isFile()) {
+			return 0;
+		}
+		QueueFile legacyQueue = new QueueFile(legacyQueueFile);
+		List<T> items = new ArrayList<>();
+		try {
+			legacyQueue.forEach((in, length) -> {
+				byte[] bytes = new byte[length];
+				int read = 0;
+				while (read < length) {
+					int chunk = in.read(bytes, read, length - read);
+					if (chunk < 0) {
+						throw new IOException("unexpected end of legacy queue element");
+					}
+					read += chunk;
+				}
+				items.add(converter.from(bytes, 0, length));
+			});
+		} finally {
+			legacyQueue.close();
+		}
+		addAll(items);
+		flush();
+		if (!legacyQueueFile.delete()) {
+			throw new IOException("failed to delete migrated legacy queue file " + legacyQueueFile);
+		}
+		return items.size();
+	}
+
+	int getSegmentsCount() {
+		synchronized (QUEUE_LOCK) {
+			return segments.size();
+		}
+	}
+
+	long getFlushCount() {
+		synchronized (FLUSH_LOCK) {
+			return flushCount;
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "SegmentedFileObjectQueue {" + directory + "}";
+	}
+
+	private void recover() throws IOException {
+		File[] files = directory.listFiles((dir, name) -> name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX));
+		Arrays.sort(files != null ? files : new File[0], Comparator.comparingLong(SegmentedFileObjectQueue::segmentId));
+
+		long headSegmentId = headBuffer.getLong(0);
+		int headOffset = headBuffer.getInt(8);
+		boolean headValid = headBuffer.getInt(12) == headChecksum(headSegmentId, headOffset);
+		for (File file : files != null ? files : new File[0]) {
+			long id = segmentId(file);
+			if (headValid && id < headSegmentId) {
+				if (!file.delete()) {
+					logger.warn("failed to delete consumed queue segment " + file);
+				}
+				continue;
+			}
+			Segment segment = new Segment(id, file, map(file, 0));
+			int position = headValid && id == headSegmentId ? headOffset : 0;
+			while (position + RECORD_OVERHEAD <= segment.capacity) {
+				int length = segment.buffer.getInt(position);
+				boolean deleted = length < 0;
+				length = Math.abs(length);
+				if (length == 0 || position + RECORD_OVERHEAD + length > segment.capacity || segment.buffer.getInt(position + 4) != checksum(segment, position + RECORD_OVERHEAD, length)) {
+					break;
+				}
+				if (!deleted) {
+					addEntry(new Entry(nextKey++, segment, position, length));
+				}
+				position += RECORD_OVERHEAD + length;
+			}
+			segment.writePosition = position;
+			if (!segments.isEmpty()) {
+				//  only the last segment is appended to
+				segments.getLast().writePosition = segments.getLast().capacity;
+			}
+			segments.add(segment);
+		}
+		if (segments.isEmpty()) {
+			newSegment(headValid ? headSegmentId + 1 : 0, segmentSize);
+		}
+		releaseConsumedSegments();
+		writeHead();
+	}
+
+	private long appendRecord(byte[] payload, int length) throws IOException {
+		Segment tail = segments.getLast();
+		if (tail.writePosition + RECORD_OVERHEAD + length > tail.capacity) {
+			tail = newSegment(tail.id + 1, Math.max(segmentSize, RECORD_OVERHEAD + length));
+		}
+		int position = tail.writePosition;
+		ByteBuffer view = tail.view;
+		((Buffer) view).position(position + RECORD_OVERHEAD);
+		view.put(payload, 0, length);
+		crc.reset();
+		crc.update(payload, 0, length);
+		view.putInt(position + 4, (int) crc.getValue());
+		//  length is written last, so that the record becomes visible to the recovery only when complete
+		view.putInt(position, length);
+		tail.writePosition += RECORD_OVERHEAD + length;
+		Entry entry = new Entry(nextKey++, tail, position, length);
+		addEntry(entry);
+		dirtySegments.add(tail);
+		if (entries.size() == 1) {
+			releaseConsumedSegments();
+			writeHead();
+		}
+		return entry.key;
+	}
+
+	private void addEntry(Entry entry) {
+		entries.add(entry);
+		entriesByKey.put(entry.key, entry);
+	}
+
+	//  keeps the head entry a live one
+	private void dropDeletedHead() {
+		while (!entries.isEmpty() && entries.peekFirst().deleted) {
+			entries.removeFirst();
+			deletedCount--;
+		}
+	}
+
+	private T readEntry(Entry entry) {
+		if (readBuffer.length < entry.length) {
+			readBuffer = new byte[Math.max(entry.length, readBuffer.length * 2)];
+		}
+		ByteBuffer view = entry.segment.view;
+		((Buffer) view).position(entry.offset + RECORD_OVERHEAD);
+		view.get(readBuffer, 0, entry.length);
+		try {
+			return converter.from(readBuffer, 0, entry.length);
+		} catch (IOException ioe) {
+			throw new FileException("failed to read queue item", ioe, entry.segment.file);
+		}
+	}
+
+	private Segment newSegment(long id, int capacity) throws IOException {
+		File file = new File(directory, String.format("%s%020d%s", SEGMENT_PREFIX, id, SEGMENT_SUFFIX));
+		Segment segment = new Segment(id, file, map(file, capacity));
+		segments.add(segment);
+		return segment;
+	}
+
+	//  segments before the one holding the first item (or before the tail, if empty) are not needed anymore
+	private void releaseConsumedSegments() {
+		Entry head = entries.peekFirst();
+		while (segments.size() > 1 && (head == null || segments.getFirst() != head.segment)) {
+			Segment segment = segments.removeFirst();
+			dirtySegments.remove(segment);
+			releasedSegments.add(segment);
+		}
+	}
+
+	private void writeHead() {
+		Entry head = entries.peekFirst();
+		long segmentId = head != null ? head.segment.id : segments.getLast().id;
+		int offset = head != null ? head.offset : segments.getLast().writePosition;
+		headBuffer.putLong(0, segmentId);
+		headBuffer.putInt(8, offset);
+		headBuffer.putInt(12, headChecksum(segmentId, offset));
+		headDirty = true;
+	}
+
+	private int checksum(Segment segment, int position, int length) {
+		if (readBuffer.length < length) {
+			readBuffer = new byte[length];
+		}
+		ByteBuffer view = segment.view;
+		((Buffer) view).position(position);
+		view.get(readBuffer, 0, length);
+		crc.reset();
+		crc.update(readBuffer, 0, length);
+		return (int) crc.getValue();
+	}
+
+	private int headChecksum(long segmentId, int offset) {
+		crc.reset();
+		crc.update(ByteBuffer.allocate(12).putLong(segmentId).putInt(offset).array());
+		//  never zero, so that the fresh (zeroed) head file is not taken as valid
+		return (int) crc.getValue() | 1;
+	}
+
+	private void ensureOpen() {
+		if (closed) {
+			throw new IllegalStateException("queue " + directory + " is closed");
+		}
+	}
+
+	//  capacity of 0 maps the existing file as is
+	private static MappedByteBuffer map(File file, int capacity) throws IOException {
+		try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+			if (raf.length() < capacity) {
+				raf.setLength(capacity);
+			}
+			return raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, raf.length());
+		}
+	}
+
+	private static long segmentId(File file) {
+		String name = file.getName();
+		try {
+			return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+		} catch (NumberFormatException nfe) {
+			return Long.MAX_VALUE;
+		}
+	}
+
+	/**
+	 * Serialization of the queue items
+	 *
+	 * @param <T> type of an item of the queue
+	 */
+	interface Converter<T> {
+		T from(byte[] bytes, int offset, int length) throws IOException;
+
+		void toStream(T item, OutputStream outputStream) throws IOException;
+	}
+
+	private static final class Segment {
+		private final long id;
+		private final File file;
+		private final MappedByteBuffer buffer;
+		private final ByteBuffer view;
+		private final int capacity;
+		private int writePosition;
+
+		private Segment(long id, File file, MappedByteBuffer buffer) {
+			this.id = id;
+			this.file = file;
+			this.buffer = buffer;
+			//  cast keeps the Java 8 signature, MappedByteBuffer.duplicate exists only since Java 13
+			this.view = ((ByteBuffer) buffer).duplicate();
+			this.capacity = buffer.capacity();
+		}
+
+		@Override
+		public String toString() {
+			return "Segment {" + id + ", writePosition: " + writePosition + "}";
+		}
+	}
+
+	private static final class Entry {
+		private final long key;
+		private final Segment segment;
+		private final int offset;
+		private final int length;
+		private boolean deleted;
+
+		private Entry(long key, Segment segment, int offset, int length) {
+			this.key = key;
+			this.segment = segment;
+			this.offset = offset;
+			this.length = length;
+		}
+	}
+
+	private static final class ReusableOutputStream extends ByteArrayOutputStream {
+
+		private byte[] buffer() {
+			return buf;
+		}
+	}
+}
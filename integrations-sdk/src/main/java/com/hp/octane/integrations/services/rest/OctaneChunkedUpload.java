@@ -0,0 +1,101 @@
+/*
+ *     Copyright 2017 EntIT Software LLC, a Micro Focus company, L.P.
+ *     Licensed under the Apache License, Version 2.0 (the "License");
+ *     you may not use this file except in compliance with the License.
+ *     You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *     Unless required by applicable law or agreed to in writing, software
+ *     distributed under the License is distributed on an "AS IS" BASIS,
+ *     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *     See the License for the specific language governing permissions and
+ *     limitations under the License.
+ */
+
+package com.hp.octane.integrations.services.rest;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.function.IntConsumer;
+
+/**
+ * Payload uploaded in fixed size parts, so that a timed out or interrupted upload is resumed from the last acknowledged part instead of from the start
+ * - each part is a separate request to the target URL, carrying upload ID and part index headers; its body is the part's slice of the payload, compressed on its own
+ * - server acknowledges each part by successful status; the response to the last part is the response to the whole payload
+ * - GET to the target URL with the upload ID header (no part index) is answered with the count of the parts the server holds, so the upload is resumed after restart too
+ * Upload ID should be kept with the queue item, so that it survives the restart; acknowledged parts count is the checkpoint, reported to the listener on each part
+ * Checkpoint is unknown (negative) for the upload that may have been started by the previous run, then the server is asked for it
+ */
+
+public final class OctaneChunkedUpload {
+	public static final String UPLOAD_ID_HEADER = "X-Upload-Id";
+	public static final String UPLOAD_PART_HEADER = "X-Upload-Part";
+	public static final String UPLOAD_LAST_PART_HEADER = "X-Upload-Last-Part";
+	public static final String UPLOAD_ACKNOWLEDGED_PARTS_HEADER = "X-Upload-Acknowledged-Parts";
+
+	private final String uploadId;
+	private final int partSize;
+	private final PayloadSource source;
+	private final IntConsumer checkpointListener;
+	private volatile int acknowledgedParts;
+
+	/**
+	 * @param uploadId           ID of the upload, stable across the re-attempts and restarts
+	 * @param partSize           size of the (uncompressed) part in bytes
+	 * @param acknowledgedParts  checkpoint of the previous attempt, 0 for the new upload, negative if unknown
+	 * @param source             payload, re-opened on each attempt
+	 * @param checkpointListener optional listener notified with the acknowledged parts count on each part
+	 */
+	public OctaneChunkedUpload(String uploadId, int partSize, int acknowledgedParts, PayloadSource source, IntConsumer checkpointListener) {
+		if (uploadId == null || uploadId.isEmpty()) {
+			throw new IllegalArgumentException("upload ID MUST NOT be null nor empty");
+		}
+		if (partSize <= 0) {
+			throw new IllegalArgumentException("part size MUST be positive");
+		}
+		if (source == null) {
+			throw new IllegalArgumentException("source MUST NOT be null");
+		}
+		this.uploadId = uploadId;
+		this.partSize = partSize;
+		this.acknowledgedParts = Math.max(-1, acknowledgedParts);
+		this.source = source;
+		this.checkpointListener = checkpointListener;
+	}
+
+	public String getUploadId() {
+		return uploadId;
+	}
+
+	public int getPartSize() {
+		return partSize;
+	}
+
+	public int getAcknowledgedParts() {
+		return acknowledgedParts;
+	}
+
+	InputStream openSource() throws IOException {
+		return source.open();
+	}
+
+	void setAcknowledgedParts(int acknowledgedParts) {
+		this.acknowledgedParts = acknowledgedParts;
+		if (checkpointListener != null) {
+			checkpointListener.accept(acknowledgedParts);
+		}
+	}
+
+	@FunctionalInterface
+	public interface PayloadSource {
+
+		/**
+		 * Opens the payload from its start
+		 *
+		 * @return payload stream, closed by the client
+		 * @throws IOException failure to open the payload
+		 */
+		InputStream open() throws IOException;
+	}
+}
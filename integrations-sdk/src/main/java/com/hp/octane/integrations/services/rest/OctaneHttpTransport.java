@@ -0,0 +1,288 @@
+/*
+ *     Copyright 2017 EntIT Software LLC, a Micro Focus company, L.P.
+ *     Licensed under the Apache License, Version 2.0 (the "License");
+ *     you may not use this file except in compliance with the License.
+ *     You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *     Unless required by applicable law or agreed to in writing, software
+ *     distributed under the License is distributed on an "AS IS" BASIS,
+ *     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *     See the License for the specific language governing permissions and
+ *     limitations under the License.
+ */
+
+package com.hp.octane.integrations.services.rest;
+
+import org.apache.http.client.utils.HttpClientUtils;
+import org.apache.http.config.Registry;
+import org.apache.http.config.RegistryBuilder;
+import org.apache.http.conn.socket.ConnectionSocketFactory;
+import org.apache.http.conn.socket.PlainConnectionSocketFactory;
+import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.impl.nio.client.CloseableHttpAsyncClient;
+import org.apache.http.impl.nio.client.HttpAsyncClients;
+import org.apache.http.impl.nio.conn.PoolingNHttpClientConnectionManager;
+import org.apache.http.impl.nio.reactor.DefaultConnectingIOReactor;
+import org.apache.http.impl.nio.reactor.IOReactorConfig;
+import org.apache.http.nio.conn.NoopIOSessionStrategy;
+import org.apache.http.nio.conn.SchemeIOSessionStrategy;
+import org.apache.http.nio.conn.ssl.SSLIOSessionStrategy;
+import org.apache.http.nio.reactor.IOReactorException;
+import org.apache.http.pool.PoolStats;
+import org.apache.http.ssl.SSLContexts;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import javax.net.ssl.HostnameVerifier;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.TrustManager;
+import javax.net.ssl.TrustManagerFactory;
+import javax.net.ssl.X509TrustManager;
+import java.io.IOException;
+import java.security.KeyStore;
+import java.security.KeyStoreException;
+import java.security.NoSuchAlgorithmException;
+import java.security.cert.CertificateException;
+import java.security.cert.X509Certificate;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Process-wide HTTP transport, shared by all the Octane REST clients (one per Octane configuration)
+ * - single blocking and single (lazily started) non-blocking engines, each one with a connection pool partitioned by route (host and proxy)
+ * - total amount of sockets is capped globally, amount of sockets per route is capped separately
+ * - caps grow with the amount of the clients sharing the transport, so that the clients' long polling (tasks) can't starve the others of the same Octane server
+ * - transport is reference counted: acquired by each REST client and closed once released by the last one
+ * - transport holds no cookies, each client keeps its own security token and provides it per request
+ */
+
+final class OctaneHttpTransport {
+	private static final Logger logger = LogManager.getLogger(OctaneHttpTransport.class);
+	private static final Object INSTANCE_LOCK = new Object();
+	private static OctaneHttpTransport instance;
+	private static int referencesCount = 0;
+
+	private final int MAX_TOTAL_CONNECTIONS = System.getProperty("octane.sdk.rest.max-total-connections") != null ? Integer.parseInt(System.getProperty("octane.sdk.rest.max-total-connections")) : 100;
+	private final int MAX_CONNECTIONS_PER_ROUTE = System.getProperty("octane.sdk.rest.max-connections-per-route") != null ? Integer.parseInt(System.getProperty("octane.sdk.rest.max-connections-per-route")) : 20;
+	private final int CONNECTIONS_PER_CLIENT = System.getProperty("octane.sdk.rest.connections-per-client") != null ? Integer.parseInt(System.getProperty("octane.sdk.rest.connections-per-client")) : 4;
+	private final int ASYNC_IO_THREADS = System.getProperty("octane.sdk.rest.async-io-threads") != null ? Integer.parseInt(System.getProperty("octane.sdk.rest.async-io-threads")) : 2;
+
+	private final SSLContext sslContext;
+	private final HostnameVerifier hostnameVerifier;
+	private final PoolingHttpClientConnectionManager connectionManager;
+	private final CloseableHttpClient httpClient;
+	private final OctaneLoginSessionRegistry loginSessionRegistry = new OctaneLoginSessionRegistry();
+	private final Object ASYNC_CLIENT_LOCK = new Object();
+	private volatile PoolingNHttpClientConnectionManager asyncConnectionManager;
+	private volatile CloseableHttpAsyncClient asyncHttpClient;
+	private volatile boolean closed = false;
+	private volatile int maxTotal;
+	private volatile int maxPerRoute;
+
+	private OctaneHttpTransport() {
+		SSLContext sslContext;
+		try {
+			sslContext = SSLContext.getInstance("SSL");
+			sslContext.init(null, getTrustManagers(), new java.security.SecureRandom());
+		} catch (Exception e) {
+			logger.warn("Failed to create sslContext with customTrustManagers. Using systemDefault sslContext. Error : " + e.getMessage());
+			sslContext = SSLContexts.createSystemDefault();
+		}
+		this.sslContext = sslContext;
+		this.hostnameVerifier = new OctaneRestClientImpl.CustomHostnameVerifier();
+
+		SSLConnectionSocketFactory sslSocketFactory = new SSLConnectionSocketFactory(sslContext, hostnameVerifier);
+		Registry<ConnectionSocketFactory> socketFactoryRegistry = RegistryBuilder.<ConnectionSocketFactory>create()
+				.register("http", PlainConnectionSocketFactory.getSocketFactory())
+				.register("https", sslSocketFactory)
+				.build();
+		connectionManager = new PoolingHttpClientConnectionManager(socketFactoryRegistry);
+		maxTotal = MAX_TOTAL_CONNECTIONS;
+		maxPerRoute = MAX_CONNECTIONS_PER_ROUTE;
+		connectionManager.setMaxTotal(maxTotal);
+		connectionManager.setDefaultMaxPerRoute(maxPerRoute);
+
+		httpClient = HttpClients.custom()
+				.setConnectionManager(connectionManager)
+				.build();
+		logger.info("shared HTTP transport initialized, max connections: " + MAX_TOTAL_CONNECTIONS + " in total, " + MAX_CONNECTIONS_PER_ROUTE + " per route");
+	}
+
+	static OctaneHttpTransport acquire() {
+		synchronized (INSTANCE_LOCK) {
+			if (instance == null) {
+				instance = new OctaneHttpTransport();
+			}
+			referencesCount++;
+			instance.applyLimits();
+			return instance;
+		}
+	}
+
+	void release() {
+		synchronized (INSTANCE_LOCK) {
+			if (instance != this) {
+				return;
+			}
+			if (--referencesCount == 0) {
+				instance = null;
+				close();
+			} else {
+				applyLimits();
+			}
+		}
+	}
+
+	CloseableHttpClient getHttpClient() {
+		return httpClient;
+	}
+
+	OctaneLoginSessionRegistry getLoginSessionRegistry() {
+		return loginSessionRegistry;
+	}
+
+	CloseableHttpAsyncClient getAsyncHttpClient() throws IOReactorException {
+		if (asyncHttpClient == null) {
+			synchronized (ASYNC_CLIENT_LOCK) {
+				if (asyncHttpClient == null) {
+					if (closed) {
+						throw new IllegalStateException("HTTP transport is closed");
+					}
+					IOReactorConfig ioReactorConfig = IOReactorConfig.custom()
+							.setIoThreadCount(ASYNC_IO_THREADS)
+							.build();
+					DefaultConnectingIOReactor ioReactor = new DefaultConnectingIOReactor(ioReactorConfig, new AsyncIOWorkerThreadFactory());
+					Registry<SchemeIOSessionStrategy> sessionStrategyRegistry = RegistryBuilder.<SchemeIOSessionStrategy>create()
+							.register("http", NoopIOSessionStrategy.INSTANCE)
+							.register("https", new SSLIOSessionStrategy(sslContext, hostnameVerifier))
+							.build();
+					PoolingNHttpClientConnectionManager asyncConnectionManager = new PoolingNHttpClientConnectionManager(ioReactor, sessionStrategyRegistry);
+					asyncConnectionManager.setMaxTotal(maxTotal);
+					asyncConnectionManager.setDefaultMaxPerRoute(maxPerRoute);
+
+					CloseableHttpAsyncClient client = HttpAsyncClients.custom()
+							.setConnectionManager(asyncConnectionManager)
+							.setThreadFactory(new AsyncIOWorkerThreadFactory())
+							.build();
+					client.start();
+					logger.info("non-blocking HTTP engine started with " + ASYNC_IO_THREADS + " I/O thread/s");
+					this.asyncConnectionManager = asyncConnectionManager;
+					asyncHttpClient = client;
+				}
+			}
+		}
+		return asyncHttpClient;
+	}
+
+	//  should be called under the INSTANCE_LOCK
+	private void applyLimits() {
+		int reserved = referencesCount * CONNECTIONS_PER_CLIENT;
+		int newMaxTotal = Math.max(MAX_TOTAL_CONNECTIONS, reserved);
+		int newMaxPerRoute = Math.max(MAX_CONNECTIONS_PER_ROUTE, reserved);
+		if (newMaxTotal == maxTotal && newMaxPerRoute == maxPerRoute) {
+			return;
+		}
+		maxTotal = newMaxTotal;
+		maxPerRoute = newMaxPerRoute;
+		connectionManager.setMaxTotal(newMaxTotal);
+		connectionManager.setDefaultMaxPerRoute(newMaxPerRoute);
+		synchronized (ASYNC_CLIENT_LOCK) {
+			if (asyncConnectionManager != null) {
+				asyncConnectionManager.setMaxTotal(newMaxTotal);
+				asyncConnectionManager.setDefaultMaxPerRoute(newMaxPerRoute);
+			}
+		}
+		logger.info("shared HTTP transport serves " + referencesCount + " client/s, max connections: " + newMaxTotal + " in total, " + newMaxPerRoute + " per route");
+	}
+
+	Map<String, Object> getMetrics() {
+		Map<String, Object> map = new LinkedHashMap<>();
+		synchronized (INSTANCE_LOCK) {
+			map.put("transport.clientsCount", referencesCount);
+		}
+		addPoolMetrics(map, "transport.pool.", connectionManager.getTotalStats(), connectionManager.getRoutes().size());
+		PoolingNHttpClientConnectionManager asyncConnectionManager = this.asyncConnectionManager;
+		if (asyncConnectionManager != null) {
+			addPoolMetrics(map, "transport.asyncPool.", asyncConnectionManager.getTotalStats(), asyncConnectionManager.getRoutes().size());
+		}
+		map.putAll(loginSessionRegistry.getMetrics());
+		return map;
+	}
+
+	private static void addPoolMetrics(Map<String, Object> map, String prefix, PoolStats stats, int routesCount) {
+		map.put(prefix + "routes", routesCount);
+		map.put(prefix + "leased", stats.getLeased());
+		map.put(prefix + "available", stats.getAvailable());
+		map.put(prefix + "pending", stats.getPending());
+		map.put(prefix + "max", stats.getMax());
+	}
+
+	private void close() {
+		logger.info("closing shared HTTP transport...");
+		closed = true;
+		HttpClientUtils.closeQuietly(httpClient);
+		synchronized (ASYNC_CLIENT_LOCK) {
+			if (asyncHttpClient != null) {
+				try {
+					asyncHttpClient.close();
+				} catch (IOException ioe) {
+					logger.warn("failed to close non-blocking HTTP engine", ioe);
+				}
+			}
+		}
+		loginSessionRegistry.clear();
+		logger.info("shared HTTP transport closed");
+	}
+
+	private static TrustManager[] getTrustManagers() throws NoSuchAlgorithmException, KeyStoreException {
+		TrustManagerFactory tmf = TrustManagerFactory.getInstance(TrustManagerFactory.getDefaultAlgorithm());
+		tmf.init((KeyStore) null);
+		TrustManager[] tmArr = tmf.getTrustManagers();
+		if (tmArr.length == 1 && tmArr[0] instanceof X509TrustManager) {
+			X509TrustManager defaultTm = (X509TrustManager) tmArr[0];
+			TrustManager myTM = new X509TrustManager() {
+				public X509Certificate[] getAcceptedIssuers() {
+					return defaultTm.getAcceptedIssuers();
+				}
+
+				public void checkClientTrusted(X509Certificate[] certs, String authType) throws CertificateException {
+					defaultTm.checkClientTrusted(certs, authType);
+				}
+
+				public void checkServerTrusted(X509Certificate[] certs, String authType) throws CertificateException {
+					try {
+						defaultTm.checkServerTrusted(certs, authType);
+					} catch (CertificateException e) {
+						for (X509Certificate cer : certs) {
+							if (cer.getIssuerDN().getName() != null && cer.getIssuerDN().getName().toLowerCase().contains("microfocus")) {
+								return;
+							}
+						}
+						throw e;
+					}
+				}
+			};
+
+			return new TrustManager[]{myTM};
+		} else {
+			logger.info("Using only default trust managers. Received " + tmArr.length + " trust managers."
+					+ ((tmArr.length > 0) ? "First one is :" + tmArr[0].getClass().getCanonicalName() : ""));
+			return tmArr;
+		}
+	}
+
+	private static final class AsyncIOWorkerThreadFactory implements ThreadFactory {
+		public Thread newThread(Runnable runnable) {
+			Thread result = new Thread(runnable);
+			result.setName("OctaneAsyncIOWorker-" + result.getId());
+			result.setDaemon(true);
+			return result;
+		}
+	}
+}
@@ -0,0 +1,228 @@
+/*
+ *     Copyright 2017 EntIT Software LLC, a Micro Focus company, L.P.
+ *     Licensed under the Apache License, Version 2.0 (the "License");
+ *     you may not use this file except in compliance with the License.
+ *     You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *     Unless required by applicable law or agreed to in writing, software
+ *     distributed under the License is distributed on an "AS IS" BASIS,
+ *     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *     See the License for the specific language governing permissions and
+ *     limitations under the License.
+ */
+
+package com.hp.octane.integrations.services.rest;
+
+import com.hp.octane.integrations.OctaneConfiguration;
+import com.hp.octane.integrations.dto.DTOFactory;
+import com.hp.octane.integrations.dto.connectivity.OctaneResponse;
+import org.apache.http.HttpStatus;
+import org.apache.http.cookie.Cookie;
+import org.apache.http.impl.cookie.BasicClientCookie;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Registry of the recently obtained login sessions, keyed by Octane server URL and the credentials
+ * - clients logging in with the same credentials to the same server (eg different shared spaces) reuse the recent session instead of signing in again
+ * - logins are single flight per session key: while one sign in is running, all the other logins of the same key (blocking and non-blocking ones) park on it and resume with its outcome
+ * - each client gets its own copy of the security token, a rejected token is never handed out again
+ */
+
+final class OctaneLoginSessionRegistry {
+	private static final DTOFactory dtoFactory = DTOFactory.getInstance();
+	private final long SESSION_REUSE_PERIOD = System.getProperty("octane.sdk.rest.login-session-reuse-period") != null ? Long.parseLong(System.getProperty("octane.sdk.rest.login-session-reuse-period")) : 600000;
+
+	private final Map<String, Session> sessions = new ConcurrentHashMap<>();
+	private final Map<String, CompletableFuture<OctaneResponse>> loginsInFlight = new HashMap<>();
+	private final Object LOGINS_LOCK = new Object();
+
+	//  metrics
+	private final AtomicLong loginsSavedCount = new AtomicLong();
+	private final AtomicLong loginsCount = new AtomicLong();
+	private final AtomicLong loginFailuresCount = new AtomicLong();
+	private final AtomicLong loginsTotalNanos = new AtomicLong();
+	private final AtomicLong lastLoginNanos = new AtomicLong();
+	private final AtomicLong maxLoginNanos = new AtomicLong();
+	private final AtomicInteger parkedWaiters = new AtomicInteger();
+	private final AtomicLong parkedWaitersTotal = new AtomicLong();
+
+	static String sessionKey(OctaneConfiguration configuration) {
+		String secret = configuration.getSecret() != null ? configuration.getSecret() : "";
+		try {
+			byte[] secretHash = MessageDigest.getInstance("SHA-256").digest(secret.getBytes(StandardCharsets.UTF_8));
+			StringBuilder key = new StringBuilder().append(configuration.getUrl()).append('|').append(configuration.getClient()).append('|');
+			for (byte b : secretHash) {
+				key.append(String.format("%02x", b));
+			}
+			return key.toString();
+		} catch (NoSuchAlgorithmException nsae) {
+			throw new IllegalStateException("SHA-256 is not available", nsae);
+		}
+	}
+
+	/**
+	 * Single flight login
+	 * - if there is a recent session of the key (and it is not the rejected one), it is reused and no sign in takes place
+	 * - if a sign in of the key is already running, the caller joins it
+	 * - otherwise the sign in is started by the caller; it should register the obtained token (see update) before its outcome completes
+	 * Successful outcome means that the token may be taken by all the participants (see current)
+	 *
+	 * @param sessionKey    session key
+	 * @param rejectedToken value of the token rejected by the server (if any), it won't be reused
+	 * @param signIn        actual sign in, invoked on the calling thread if the caller is the one to lead the login
+	 * @return login response, each participant gets its own copy
+	 */
+	CompletableFuture<OctaneResponse> login(String sessionKey, String rejectedToken, Supplier<CompletableFuture<OctaneResponse>> signIn) {
+		CompletableFuture<OctaneResponse> flight;
+		boolean leader = false;
+		synchronized (LOGINS_LOCK) {
+			if (hasSession(sessionKey, rejectedToken)) {
+				loginsSavedCount.incrementAndGet();
+				return CompletableFuture.completedFuture(dtoFactory.newDTO(OctaneResponse.class).setStatus(HttpStatus.SC_OK));
+			}
+			flight = loginsInFlight.get(sessionKey);
+			if (flight == null) {
+				flight = new CompletableFuture<>();
+				loginsInFlight.put(sessionKey, flight);
+				leader = true;
+			}
+		}
+
+		if (!leader) {
+			loginsSavedCount.incrementAndGet();
+			parkedWaitersTotal.incrementAndGet();
+			parkedWaiters.incrementAndGet();
+			return flight.whenComplete((response, throwable) -> parkedWaiters.decrementAndGet())
+					.thenApply(OctaneLoginSessionRegistry::copy);
+		}
+
+		long started = System.nanoTime();
+		CompletableFuture<OctaneResponse> signInOutcome;
+		try {
+			signInOutcome = signIn.get();
+		} catch (Throwable t) {
+			signInOutcome = new CompletableFuture<>();
+			signInOutcome.completeExceptionally(t);
+		}
+		CompletableFuture<OctaneResponse> leaderFlight = flight;
+		signInOutcome.whenComplete((response, throwable) -> {
+			recordLogin(System.nanoTime() - started, throwable == null && response != null && response.getStatus() == HttpStatus.SC_OK);
+			synchronized (LOGINS_LOCK) {
+				loginsInFlight.remove(sessionKey, leaderFlight);
+			}
+			if (throwable != null) {
+				leaderFlight.completeExceptionally(throwable);
+			} else {
+				leaderFlight.complete(response);
+			}
+		});
+		return leaderFlight;
+	}
+
+	/**
+	 * @param sessionKey session key
+	 * @return copy of the current security token of the key (regardless of its age) or NULL if there is no such
+	 */
+	Cookie current(String sessionKey) {
+		Session session = sessions.get(sessionKey);
+		return session != null ? copy(session.token) : null;
+	}
+
+	void update(String sessionKey, Cookie token) {
+		if (token != null) {
+			sessions.put(sessionKey, new Session(copy(token)));
+		}
+	}
+
+	void clear() {
+		sessions.clear();
+	}
+
+	int getSessionsCount() {
+		return sessions.size();
+	}
+
+	long getLoginsSavedCount() {
+		return loginsSavedCount.get();
+	}
+
+	Map<String, Object> getMetrics() {
+		Map<String, Object> map = new LinkedHashMap<>();
+		long logins = loginsCount.get();
+		map.put("login.count", logins);
+		map.put("login.failuresCount", loginFailuresCount.get());
+		map.put("login.lastLatencyMs", TimeUnit.NANOSECONDS.toMillis(lastLoginNanos.get()));
+		map.put("login.avgLatencyMs", logins > 0 ? TimeUnit.NANOSECONDS.toMillis(loginsTotalNanos.get() / logins) : 0);
+		map.put("login.maxLatencyMs", TimeUnit.NANOSECONDS.toMillis(maxLoginNanos.get()));
+		map.put("login.parkedWaiters", parkedWaiters.get());
+		map.put("login.parkedWaitersTotal", parkedWaitersTotal.get());
+		map.put("login.savedCount", loginsSavedCount.get());
+		map.put("login.sessionsCount", sessions.size());
+		return map;
+	}
+
+	//  should be called under the LOGINS_LOCK
+	private boolean hasSession(String sessionKey, String rejectedToken) {
+		Session session = sessions.get(sessionKey);
+		if (session == null || System.currentTimeMillis() - session.obtainedAt > SESSION_REUSE_PERIOD) {
+			return false;
+		}
+		if (rejectedToken != null && rejectedToken.equals(session.token.getValue())) {
+			sessions.remove(sessionKey, session);
+			return false;
+		}
+		return true;
+	}
+
+	private void recordLogin(long durationNanos, boolean succeeded) {
+		loginsCount.incrementAndGet();
+		if (!succeeded) {
+			loginFailuresCount.incrementAndGet();
+		}
+		loginsTotalNanos.addAndGet(durationNanos);
+		lastLoginNanos.set(durationNanos);
+		maxLoginNanos.accumulateAndGet(durationNanos, Math::max);
+	}
+
+	private static OctaneResponse copy(OctaneResponse response) {
+		return dtoFactory.newDTO(OctaneResponse.class)
+				.setStatus(response.getStatus())
+				.setBody(response.getBody())
+				.setHeaders(response.getHeaders() != null ? new HashMap<>(response.getHeaders()) : null)
+				.setCorrelationId(response.getCorrelationId());
+	}
+
+	private static Cookie copy(Cookie token) {
+		if (token instanceof BasicClientCookie) {
+			try {
+				return (Cookie) ((BasicClientCookie) token).clone();
+			} catch (CloneNotSupportedException cnse) {
+				return token;
+			}
+		}
+		return token;
+	}
+
+	private static final class Session {
+		private final Cookie token;
+		private final long obtainedAt = System.currentTimeMillis();
+
+		private Session(Cookie token) {
+			this.token = token;
+		}
+	}
+}
@@ -0,0 +1,44 @@
+/*
+ *     Copyright 2017 EntIT Software LLC, a Micro Focus company, L.P.
+ *     Licensed under the Apache License, Version 2.0 (the "License");
+ *     you may not use this file except in compliance with the License.
+ *     You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *     Unless required by applicable law or agreed to in writing, software
+ *     distributed under the License is distributed on an "AS IS" BASIS,
+ *     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *     See the License for the specific language governing permissions and
+ *     limitations under the License.
+ */
+
+package com.hp.octane.integrations.services.rest;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Request body producer, writing the content straight into the (compressed) connection stream
+ * Writer may be invoked more than once (eg when the request is re-attempted after re-login), so it should be able to reproduce the same content
+ * Writer of already compressed content (eg spooled once to be sent to several targets) overrides isGzipped, then the content is sent as is
+ */
+
+@FunctionalInterface
+public interface OctaneRequestBodyWriter {
+
+	/**
+	 * Writes request body into the output stream; the stream MUST NOT be closed by the writer
+	 *
+	 * @param outputStream target stream
+	 * @throws IOException exception during writing
+	 */
+	void writeTo(OutputStream outputStream) throws IOException;
+
+	/**
+	 * @return true if the written content is already gzip compressed, so it must not be compressed again
+	 */
+	default boolean isGzipped() {
+		return false;
+	}
+}
@@ -0,0 +1,363 @@
+/*
+ *     Copyright 2017 EntIT Software LLC, a Micro Focus company, L.P.
+ *     Licensed under the Apache License, Version 2.0 (the "License");
+ *     you may not use this file except in compliance with the License.
+ *     You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *     Unless required by applicable law or agreed to in writing, software
+ *     distributed under the License is distributed on an "AS IS" BASIS,
+ *     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *     See the License for the specific language governing permissions and
+ *     limitations under the License.
+ */
+
+package com.hp.octane.integrations.services.rest;
+
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+/**
+ * Hashed timer wheel of the ongoing requests' deadlines
+ * - registration and cancellation are lock free O(1) operations: they only enqueue the deadline, the wheel itself is owned by the single worker thread
+ * - worker advances the wheel once per tick and expires the deadlines of the current bucket, so the request is aborted at most one tick after its deadline
+ * - deadlines further than one wheel revolution are kept in the bucket with the amount of the remaining rounds
+ * - worker does not tick while there are no pending deadlines, it is parked till the next registration
+ * - statistics are kept per request kind (eg events, test-results, login)
+ */
+
+final class OctaneRequestDeadlineScheduler {
+	private static final Logger logger = LogManager.getLogger(OctaneRequestDeadlineScheduler.class);
+	private static final int PENDING = 0;
+	private static final int CANCELLED = 1;
+	private static final int EXPIRED = 2;
+	private static final int MAX_TRANSFERS_PER_TICK = 100000;
+
+	private final long tickNanos;
+	private final Bucket[] wheel;
+	private final int mask;
+	private final Consumer<HttpUriRequest> onExpiry;
+	private final Queue<Deadline> registrations = new ConcurrentLinkedQueue<>();
+	private final Queue<Deadline> cancellations = new ConcurrentLinkedQueue<>();
+	private final Map<String, KindStats> statsByKind = new ConcurrentHashMap<>();
+	private final AtomicInteger pendingCount = new AtomicInteger();
+	private final AtomicLong expiredCount = new AtomicLong();
+	private final long startTime = System.nanoTime();
+	private final Thread worker;
+	private volatile boolean stopped = false;
+	private volatile boolean idle = false;
+	private volatile long lastTickTime = 0;
+	private volatile long ticksCount = 0;
+
+	//  worker state
+	private long tick = 0;
+
+	/**
+	 * @param tickMillis wheel resolution
+	 * @param wheelSize  amount of buckets, rounded up to the power of 2
+	 * @param onExpiry   action to take on the request which deadline is over, invoked on the worker thread so it should be quick
+	 */
+	OctaneRequestDeadlineScheduler(long tickMillis, int wheelSize, Consumer<HttpUriRequest> onExpiry) {
+		if (tickMillis <= 0) {
+			throw new IllegalArgumentException("tick MUST be positive");
+		}
+		if (wheelSize <= 0 || wheelSize > (1 << 20)) {
+			throw new IllegalArgumentException("wheel size MUST be in range of 1 - " + (1 << 20));
+		}
+		if (onExpiry == null) {
+			throw new IllegalArgumentException("expiry action MUST NOT be null");
+		}
+		int normalizedSize = Integer.highestOneBit(wheelSize) == wheelSize ? wheelSize : Integer.highestOneBit(wheelSize) << 1;
+		this.tickNanos = TimeUnit.MILLISECONDS.toNanos(tickMillis);
+		this.wheel = new Bucket[normalizedSize];
+		for (int i = 0; i < normalizedSize; i++) {
+			wheel[i] = new Bucket();
+		}
+		this.mask = normalizedSize - 1;
+		this.onExpiry = onExpiry;
+
+		worker = new Thread(this::workerLoop);
+		worker.setName("RequestDeadlineWorker-" + worker.getId());
+		worker.setDaemon(true);
+		worker.start();
+	}
+
+	/**
+	 * Registers the deadline of the request that is about to be sent
+	 *
+	 * @param kind          request kind, used for the statistics only
+	 * @param request       request to abort once the deadline is over
+	 * @param timeoutMillis time from now till the deadline
+	 * @return deadline handle, to be cancelled upon the request completion
+	 */
+	Deadline register(String kind, HttpUriRequest request, long timeoutMillis) {
+		KindStats stats = statsByKind.computeIfAbsent(kind, k -> new KindStats());
+		Deadline deadline = new Deadline(request, stats, System.nanoTime(), TimeUnit.MILLISECONDS.toNanos(timeoutMillis));
+		stats.registered.incrementAndGet();
+		pendingCount.incrementAndGet();
+		registrations.add(deadline);
+		if (idle) {
+			LockSupport.unpark(worker);
+		}
+		return deadline;
+	}
+
+	/**
+	 * Stops the worker
+	 *
+	 * @return requests which deadlines are still pending, they are neither expired nor completed
+	 */
+	List<HttpUriRequest> shutdown() {
+		stopped = true;
+		worker.interrupt();
+		try {
+			worker.join(TimeUnit.SECONDS.toMillis(5));
+		} catch (InterruptedException ie) {
+			Thread.currentThread().interrupt();
+		}
+
+		List<HttpUriRequest> result = new ArrayList<>();
+		for (Bucket bucket : wheel) {
+			for (Deadline deadline = bucket.head; deadline != null; deadline = deadline.next) {
+				if (deadline.state.get() == PENDING) {
+					result.add(deadline.request);
+				}
+			}
+		}
+		for (Deadline deadline : registrations) {
+			if (deadline.state.get() == PENDING) {
+				result.add(deadline.request);
+			}
+		}
+		return result;
+	}
+
+	int getPendingCount() {
+		return pendingCount.get();
+	}
+
+	long getTicksCount() {
+		return ticksCount;
+	}
+
+	Map<String, Object> getMetrics() {
+		Map<String, Object> map = new LinkedHashMap<>();
+		map.put("deadlines.pending", pendingCount.get());
+		map.put("deadlines.expiredCount", expiredCount.get());
+		map.put("deadlines.lastTickTime", new Date(lastTickTime));
+		map.put("deadlines.ticksCount", ticksCount);
+		new TreeMap<>(statsByKind).forEach((kind, stats) -> {
+			String prefix = "deadlines." + kind + ".";
+			map.put(prefix + "registered", stats.registered.get());
+			map.put(prefix + "completed", stats.completed.get());
+			map.put(prefix + "expired", stats.expired.get());
+			map.put(prefix + "maxDurationMs", TimeUnit.NANOSECONDS.toMillis(stats.maxDurationNanos.get()));
+		});
+		return map;
+	}
+
+	private void workerLoop() {
+		while (!stopped) {
+			if (pendingCount.get() == 0) {
+				awaitRegistration();
+				continue;
+			}
+
+			long tickTime = startTime + (tick + 1) * tickNanos;
+			long sleepNanos = tickTime - System.nanoTime();
+			if (sleepNanos > 0) {
+				try {
+					TimeUnit.NANOSECONDS.sleep(sleepNanos);
+				} catch (InterruptedException ie) {
+					if (stopped) {
+						break;
+					}
+					continue;
+				}
+			}
+
+			try {
+				processCancellations();
+				transferRegistrations();
+				expireBucket(wheel[(int) (tick & mask)], tickTime);
+			} catch (Throwable t) {
+				logger.error("failed to process request deadlines", t);
+			}
+			lastTickTime = System.currentTimeMillis();
+			ticksCount++;
+			tick++;
+		}
+	}
+
+	//  with no pending deadlines the wheel holds only the cancelled ones, it is cleaned and the worker parks till the next registration
+	private void awaitRegistration() {
+		try {
+			processCancellations();
+			transferRegistrations();
+		} catch (Throwable t) {
+			logger.error("failed to process request deadlines", t);
+		}
+		idle = true;
+		if (pendingCount.get() == 0 && !stopped) {
+			LockSupport.park(this);
+		}
+		idle = false;
+
+		//  the ticks missed while parked are skipped, nothing was there to expire
+		tick = Math.max(tick, (System.nanoTime() - startTime) / tickNanos);
+	}
+
+	private void processCancellations() {
+		Deadline deadline;
+		while ((deadline = cancellations.poll()) != null) {
+			if (deadline.bucket != null) {
+				deadline.bucket.remove(deadline);
+			}
+		}
+	}
+
+	private void transferRegistrations() {
+		for (int i = 0; i < MAX_TRANSFERS_PER_TICK; i++) {
+			Deadline deadline = registrations.poll();
+			if (deadline == null) {
+				break;
+			}
+			if (deadline.state.get() != PENDING) {
+				continue;
+			}
+			long deadlineTicks = (deadline.deadlineNanos - startTime) / tickNanos;
+			deadline.remainingRounds = Math.max(0, (deadlineTicks - tick) / wheel.length);
+			long targetTick = Math.max(deadlineTicks, tick);
+			wheel[(int) (targetTick & mask)].add(deadline);
+		}
+	}
+
+	private void expireBucket(Bucket bucket, long tickTime) {
+		Deadline deadline = bucket.head;
+		while (deadline != null) {
+			Deadline next = deadline.next;
+			if (deadline.state.get() != PENDING) {
+				bucket.remove(deadline);
+			} else if (deadline.remainingRounds <= 0 && deadline.deadlineNanos <= tickTime) {
+				bucket.remove(deadline);
+				deadline.expire();
+			} else {
+				deadline.remainingRounds--;
+			}
+			deadline = next;
+		}
+	}
+
+	/**
+	 * Deadline of a single request
+	 */
+	final class Deadline {
+		private final HttpUriRequest request;
+		private final KindStats stats;
+		private final long registeredNanos;
+		private final long deadlineNanos;
+		private final AtomicInteger state = new AtomicInteger(PENDING);
+
+		//  worker state
+		private long remainingRounds;
+		private Bucket bucket;
+		private Deadline prev;
+		private Deadline next;
+
+		private Deadline(HttpUriRequest request, KindStats stats, long registeredNanos, long timeoutNanos) {
+			this.request = request;
+			this.stats = stats;
+			this.registeredNanos = registeredNanos;
+			this.deadlineNanos = registeredNanos + timeoutNanos;
+		}
+
+		/**
+		 * Cancels the deadline upon the request completion; cancelling already expired deadline has no effect
+		 */
+		void cancel() {
+			if (state.compareAndSet(PENDING, CANCELLED)) {
+				pendingCount.decrementAndGet();
+				stats.completed.incrementAndGet();
+				long duration = System.nanoTime() - registeredNanos;
+				stats.maxDurationNanos.accumulateAndGet(duration, Math::max);
+				cancellations.add(this);
+			}
+		}
+
+		boolean isExpired() {
+			return state.get() == EXPIRED;
+		}
+
+		private void expire() {
+			if (state.compareAndSet(PENDING, EXPIRED)) {
+				pendingCount.decrementAndGet();
+				expiredCount.incrementAndGet();
+				stats.expired.incrementAndGet();
+				try {
+					onExpiry.accept(request);
+				} catch (Throwable t) {
+					logger.error("failed to abort the request " + request + " on deadline", t);
+				}
+			}
+		}
+	}
+
+	private static final class Bucket {
+		private Deadline head;
+		private Deadline tail;
+
+		private void add(Deadline deadline) {
+			deadline.bucket = this;
+			if (head == null) {
+				head = tail = deadline;
+			} else {
+				tail.next = deadline;
+				deadline.prev = tail;
+				tail = deadline;
+			}
+		}
+
+		private void remove(Deadline deadline) {
+			if (deadline.bucket != this) {
+				return;
+			}
+			if (deadline.prev != null) {
+				deadline.prev.next = deadline.next;
+			} else {
+				head = deadline.next;
+			}
+			if (deadline.next != null) {
+				deadline.next.prev = deadline.prev;
+			} else {
+				tail = deadline.prev;
+			}
+			deadline.prev = null;
+			deadline.next = null;
+			deadline.bucket = null;
+		}
+	}
+
+	private static final class KindStats {
+		private final AtomicLong registered = new AtomicLong();
+		private final AtomicLong completed = new AtomicLong();
+		private final AtomicLong expired = new AtomicLong();
+		private final AtomicLong maxDurationNanos = new AtomicLong();
+	}
+}
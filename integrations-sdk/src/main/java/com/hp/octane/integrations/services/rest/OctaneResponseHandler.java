@@ -0,0 +1,41 @@
+/*
+ *     Copyright 2017 EntIT Software LLC, a Micro Focus company, L.P.
+ *     Licensed under the Apache License, Version 2.0 (the "License");
+ *     you may not use this file except in compliance with the License.
+ *     You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *     Unless required by applicable law or agreed to in writing, software
+ *     distributed under the License is distributed on an "AS IS" BASIS,
+ *     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *     See the License for the specific language governing permissions and
+ *     limitations under the License.
+ */
+
+package com.hp.octane.integrations.services.rest;
+
+import com.hp.octane.integrations.dto.connectivity.OctaneResponse;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Response consumer, reading the response body incrementally instead of having it buffered into String
+ *
+ * @param <T> type of the handling result
+ */
+
+@FunctionalInterface
+public interface OctaneResponseHandler<T> {
+
+	/**
+	 * Handles the response; body stream is valid only for the duration of this call and is closed by the client afterwards
+	 *
+	 * @param response response status, headers and correlation ID (body is NOT set)
+	 * @param body     response body stream, may be NULL if response has no content
+	 * @return handling result
+	 * @throws IOException exception during reading
+	 */
+	T handle(OctaneResponse response, InputStream body) throws IOException;
+}
@@ -19,8 +19,16 @@ import com.hp.octane.integrations.OctaneConfiguration;
 import com.hp.octane.integrations.dto.connectivity.OctaneRequest;
 import com.hp.octane.integrations.dto.connectivity.OctaneResponse;
 import com.hp.octane.integrations.services.HasMetrics;
+import com.hp.octane.integrations.utils.CIPluginSDKUtils;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPInputStream;
 
 public interface OctaneRestClient extends HasMetrics {
 
@@ -46,6 +54,96 @@ public interface OctaneRestClient extends HasMetrics {
 	 */
 	OctaneResponse execute(OctaneRequest request, OctaneConfiguration configuration) throws IOException;
 
+	/**
+	 * Executes Octane server oriented request based on the pre-configuration, streaming both request and response bodies
+	 * - if body writer provided, it's used as the request body instead of the request's body stream
+	 * - response handler consumes the response body as a stream, without having it buffered in memory
+	 *
+	 * Default implementation buffers both bodies and delegates to execute(OctaneRequest), for the clients not supporting the streaming
+	 *
+	 * @param request         request
+	 * @param bodyWriter      optional request body writer
+	 * @param responseHandler response handler
+	 * @param <T>             type of the handling result
+	 * @return result of response handler
+	 * @throws IOException exception during connectivity or (de)serialization
+	 */
+	default <T> T execute(OctaneRequest request, OctaneRequestBodyWriter bodyWriter, OctaneResponseHandler<T> responseHandler) throws IOException {
+		if (responseHandler == null) {
+			throw new IllegalArgumentException("response handler MUST NOT be null");
+		}
+		if (bodyWriter != null) {
+			ByteArrayOutputStream requestBody = new ByteArrayOutputStream();
+			bodyWriter.writeTo(requestBody);
+			InputStream requestBodyStream = new ByteArrayInputStream(requestBody.toByteArray());
+			request.setBody(bodyWriter.isGzipped() ? new GZIPInputStream(requestBodyStream) : requestBodyStream);
+		}
+		OctaneResponse response = execute(request);
+		String responseBody = response.getBody();
+		response.setBody(null);
+		try (InputStream responseBodyStream = responseBody != null ? new ByteArrayInputStream(responseBody.getBytes(StandardCharsets.UTF_8)) : null) {
+			return responseHandler.handle(response, responseBodyStream);
+		}
+	}
+
+	/**
+	 * Executes Octane server oriented request based on the pre-configuration on the non-blocking HTTP engine
+	 * - no thread is held while waiting for the response; request body (if any) is compressed upfront and the response body is buffered
+	 * - returned future is completed on the engine's I/O threads, so any blocking continuation should use the async stages
+	 *
+	 * Default implementation executes the request synchronously on the calling thread, for the clients not having the non-blocking engine
+	 *
+	 * @param request request
+	 * @return future of OctaneResponse, completed exceptionally on connectivity or (de)serialization failure
+	 */
+	default CompletableFuture<OctaneResponse> executeAsync(OctaneRequest request) {
+		CompletableFuture<OctaneResponse> result = new CompletableFuture<>();
+		try {
+			result.complete(execute(request));
+		} catch (Throwable t) {
+			result.completeExceptionally(t);
+		}
+		return result;
+	}
+
+	/**
+	 * Executes Octane server oriented request based on the pre-configuration, uploading the payload in parts (see OctaneChunkedUpload)
+	 * - request's method, URL, headers and timeout are used for each of the parts, request's body is ignored
+	 * - upload is resumed from its checkpoint; if it is unknown, the server is asked for the parts it already holds (eg uploaded before restart)
+	 *
+	 * Default implementation sends the whole payload as a single request (see execute with body writer), for the clients not supporting the parts protocol
+	 * - the checkpoint is not resumed from, once the server accepts the payload all its parts are reported as acknowledged
+	 *
+	 * @param request request
+	 * @param upload  payload and its checkpoint
+	 * @return response to the last part, or to the first part not acknowledged by the server (status other than 2xx)
+	 * @throws IOException exception during connectivity or reading the payload; the parts acknowledged so far stay in the upload's checkpoint
+	 */
+	default OctaneResponse executeChunked(OctaneRequest request, OctaneChunkedUpload upload) throws IOException {
+		if (upload == null) {
+			throw new IllegalArgumentException("upload MUST NOT be null");
+		}
+
+		AtomicLong payloadLength = new AtomicLong();
+		OctaneResponse response = execute(request, outputStream -> {
+			long length = 0;
+			byte[] buffer = new byte[8192];
+			try (InputStream payload = upload.openSource()) {
+				int read;
+				while ((read = payload.read(buffer)) != -1) {
+					outputStream.write(buffer, 0, read);
+					length += read;
+				}
+			}
+			payloadLength.set(length);
+		}, (result, body) -> result.setBody(body != null ? CIPluginSDKUtils.inputStreamToUTF8String(body) : null));
+		if (response.getStatus() >= 200 && response.getStatus() < 300) {
+			long parts = (payloadLength.get() + upload.getPartSize() - 1) / upload.getPartSize();
+			upload.setAcknowledgedParts((int) Math.max(1, parts));
+		}
+		return response;
+	}
+
 	/**
 	 * Shuts down the REST client
 	 */
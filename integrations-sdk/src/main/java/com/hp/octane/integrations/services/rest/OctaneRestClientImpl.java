@@ -26,6 +26,7 @@ import com.hp.octane.integrations.dto.connectivity.OctaneRequest;
 import com.hp.octane.integrations.dto.connectivity.OctaneResponse;
 import com.hp.octane.integrations.utils.CIPluginSDKUtils;
 import org.apache.http.Header;
+import org.apache.http.HttpEntity;
 import org.apache.http.HttpHost;
 import org.apache.http.HttpResponse;
 import org.apache.http.HttpStatus;
@@ -36,43 +37,45 @@ import org.apache.http.client.CredentialsProvider;
 import org.apache.http.client.config.CookieSpecs;
 import org.apache.http.client.config.RequestConfig;
 import org.apache.http.client.entity.GzipCompressingEntity;
+import org.apache.http.client.methods.HttpExecutionAware;
 import org.apache.http.client.methods.HttpUriRequest;
 import org.apache.http.client.methods.RequestBuilder;
 import org.apache.http.client.protocol.HttpClientContext;
 import org.apache.http.client.utils.HttpClientUtils;
-import org.apache.http.config.Registry;
-import org.apache.http.config.RegistryBuilder;
-import org.apache.http.conn.socket.ConnectionSocketFactory;
-import org.apache.http.conn.socket.PlainConnectionSocketFactory;
 import org.apache.http.conn.ssl.DefaultHostnameVerifier;
-import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
 import org.apache.http.cookie.Cookie;
+import org.apache.http.concurrent.FutureCallback;
+import org.apache.http.entity.ByteArrayEntity;
 import org.apache.http.entity.ContentType;
+import org.apache.http.entity.EntityTemplate;
 import org.apache.http.entity.InputStreamEntity;
 import org.apache.http.entity.StringEntity;
 import org.apache.http.impl.client.*;
-import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
 import org.apache.http.impl.cookie.BasicClientCookie;
+import org.apache.http.impl.execchain.RequestAbortedException;
 import org.apache.http.message.BasicHeader;
-import org.apache.http.ssl.SSLContexts;
 import org.apache.http.util.EntityUtils;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 import javax.net.ssl.*;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.security.KeyStore;
-import java.security.KeyStoreException;
-import java.security.NoSuchAlgorithmException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.PushbackInputStream;
+import java.nio.charset.StandardCharsets;
 import java.security.cert.Certificate;
-import java.security.cert.CertificateException;
 import java.security.cert.CertificateParsingException;
 import java.security.cert.X509Certificate;
 import java.util.*;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -87,21 +90,26 @@ final class OctaneRestClientImpl implements OctaneRestClient {
 	private static final Set<Integer> AUTHENTICATION_ERROR_CODES = Stream.of(HttpStatus.SC_UNAUTHORIZED).collect(Collectors.toSet());
 	private static final String LWSSO_COOKIE_NAME = "LWSSO_COOKIE_KEY";
 	private static final String AUTHENTICATION_URI = "authentication/sign_in";
-	private static final int MAX_TOTAL_CONNECTIONS = 20;
 
 	private final OctaneSDK.SDKServicesConfigurer configurer;
+	private final OctaneHttpTransport transport;
 	private final CloseableHttpClient httpClient;
+	private final AtomicLong asyncRequestsCount = new AtomicLong();
+	private final AtomicLong chunkedUploadPartsCount = new AtomicLong();
+	private final AtomicLong chunkedUploadsResumedCount = new AtomicLong();
 
-	private final ExecutorService requestMonitorExecutors = Executors.newSingleThreadExecutor(new RequestMonitorExecutorsFactory());
-	private long requestMonitorExecutorsAbortedCount = 0;
-	private long lastRequestMonitorWorkerTime = 0;
-	private final Map<HttpUriRequest, Long> ongoingRequests2Started = new HashMap();
 	private final long REQUEST_ABORT_TIMEOUT_MS = TimeUnit.SECONDS.toMillis(120);//120 sec in ms
-	private final Object REQUESTS_LIST_LOCK = new Object();
+	private final long REQUEST_DEADLINE_TICK = System.getProperty("octane.sdk.rest.deadline-tick") != null ? Long.parseLong(System.getProperty("octane.sdk.rest.deadline-tick")) : 100;
+	private final OctaneRequestDeadlineScheduler requestDeadlines = new OctaneRequestDeadlineScheduler(REQUEST_DEADLINE_TICK, 512, this::abortExpiredRequest);
 	private final Object RESET_LWSSO_TOKEN_LOCK = new Object();
-	private boolean shutdownActivated = false;
 
-	private Cookie LWSSO_TOKEN = null;
+	private final long TOKEN_MAX_AGE = System.getProperty("octane.sdk.rest.token-max-age") != null ? Long.parseLong(System.getProperty("octane.sdk.rest.token-max-age")) : TimeUnit.MINUTES.toMillis(50);
+	private final long TOKEN_REFRESH_MARGIN = System.getProperty("octane.sdk.rest.token-refresh-margin") != null ? Long.parseLong(System.getProperty("octane.sdk.rest.token-refresh-margin")) : TimeUnit.MINUTES.toMillis(1);
+	private final AtomicBoolean proactiveRefreshInFlight = new AtomicBoolean(false);
+	private final AtomicLong proactiveRefreshCount = new AtomicLong();
+
+	private volatile Cookie LWSSO_TOKEN = null;
+	private volatile long lwssoTokenRefreshedAt = 0;
 	private long loginRequiredForRefreshLwssoTokenUntil = 0;
 
 	OctaneRestClientImpl(OctaneSDK.SDKServicesConfigurer configurer) {
@@ -109,53 +117,100 @@ final class OctaneRestClientImpl implements OctaneRestClient {
 			throw new IllegalArgumentException("invalid configurer");
 		}
 
-		requestMonitorExecutors.execute(this::requestMonitorWorker);
-
 		this.configurer = configurer;
 
-		SSLContext sslContext;
-		try {
-			sslContext = SSLContext.getInstance("SSL");
-			sslContext.init(null, getTrustManagers(), new java.security.SecureRandom());
-		} catch (Exception e) {
-			logger.warn(configurer.octaneConfiguration.getLocationForLog() + "Failed to create sslContext with customTrustManagers. Using systemDefault sslContext. Error : " + e.getMessage());
-			sslContext = SSLContexts.createSystemDefault();
-		}
+		transport = OctaneHttpTransport.acquire();
+		httpClient = transport.getHttpClient();
+	}
 
-		HostnameVerifier hostnameVerifier = new CustomHostnameVerifier();
-		SSLConnectionSocketFactory sslSocketFactory = new SSLConnectionSocketFactory(sslContext, hostnameVerifier);
-		Registry<ConnectionSocketFactory> socketFactoryRegistry = RegistryBuilder.<ConnectionSocketFactory>create()
-				.register("http", PlainConnectionSocketFactory.getSocketFactory())
-				.register("https", sslSocketFactory)
-				.build();
-		PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager(socketFactoryRegistry);
-		connectionManager.setMaxTotal(MAX_TOTAL_CONNECTIONS);
-		connectionManager.setDefaultMaxPerRoute(MAX_TOTAL_CONNECTIONS);
+	@Override
+	public OctaneResponse execute(OctaneRequest request) throws IOException {
+		return executeRequest(request, configurer.octaneConfiguration, null, this::readNGAResponseBody);
+	}
 
-		HttpClientBuilder clientBuilder = HttpClients.custom()
-				.setConnectionManager(connectionManager);
+	@Override
+	public OctaneResponse execute(OctaneRequest request, OctaneConfiguration configuration) throws IOException {
+		return executeRequest(request, configuration, null, this::readNGAResponseBody);
+	}
 
-		httpClient = clientBuilder.build();
+	@Override
+	public <T> T execute(OctaneRequest request, OctaneRequestBodyWriter bodyWriter, OctaneResponseHandler<T> responseHandler) throws IOException {
+		if (responseHandler == null) {
+			throw new IllegalArgumentException("response handler MUST NOT be null");
+		}
+		return executeRequest(request, configurer.octaneConfiguration, bodyWriter, responseHandler);
 	}
 
 	@Override
-	public OctaneResponse execute(OctaneRequest request) throws IOException {
-		return executeRequest(request, configurer.octaneConfiguration);
+	public CompletableFuture<OctaneResponse> executeAsync(OctaneRequest request) {
+		CompletableFuture<OctaneResponse> result;
+		try {
+			OctaneConfiguration configuration = configurer.octaneConfiguration;
+			byte[] body = createAsyncRequestBody(request);
+			refreshSecurityTokenIfExpiring(configuration);
+			CompletableFuture<OctaneResponse> loginStage = LWSSO_TOKEN == null ? loginAsync(configuration, null) : CompletableFuture.completedFuture(null);
+			result = loginStage.thenCompose(loginResponse -> {
+				if (loginResponse != null && loginResponse.getStatus() != HttpStatus.SC_OK) {
+					logger.error(configurer.octaneConfiguration.getLocationForLog() + "failed on initial login, status " + loginResponse.getStatus());
+					return CompletableFuture.completedFuture(loginResponse);
+				}
+				return executeAsyncAttempt(request, configuration, body, true);
+			});
+		} catch (Exception e) {
+			logger.debug(configurer.octaneConfiguration.getLocationForLog() + "failed executing " + request, e);
+			result = new CompletableFuture<>();
+			result.completeExceptionally(e);
+		}
+		return result;
 	}
 
 	@Override
-	public OctaneResponse execute(OctaneRequest request, OctaneConfiguration configuration) throws IOException {
-		return executeRequest(request, configuration);
+	public OctaneResponse executeChunked(OctaneRequest request, OctaneChunkedUpload upload) throws IOException {
+		if (upload == null) {
+			throw new IllegalArgumentException("upload MUST NOT be null");
+		}
+
+		int part = upload.getAcknowledgedParts();
+		if (part < 0) {
+			part = queryAcknowledgedParts(request, upload);
+			upload.setAcknowledgedParts(part);
+		}
+		if (part > 0) {
+			chunkedUploadsResumedCount.incrementAndGet();
+			logger.info(configurer.octaneConfiguration.getLocationForLog() + "resuming upload " + upload.getUploadId() + " from part " + part);
+		}
+
+		byte[] buffer = new byte[upload.getPartSize()];
+		try (PushbackInputStream payload = new PushbackInputStream(upload.openSource(), 1)) {
+			long toSkip = (long) part * upload.getPartSize();
+			if (skipFully(payload, toSkip) < toSkip) {
+				throw new IOException("payload of upload " + upload.getUploadId() + " is shorter than its " + part + " acknowledged part/s");
+			}
+			while (true) {
+				int length = readFully(payload, buffer);
+				int next = payload.read();
+				boolean last = next == -1;
+				if (!last) {
+					payload.unread(next);
+				}
+
+				OctaneResponse response = executeRequest(createPartRequest(request, upload, part, last), configurer.octaneConfiguration,
+						outputStream -> outputStream.write(buffer, 0, length), this::readNGAResponseBody);
+				chunkedUploadPartsCount.incrementAndGet();
+				if (last || response.getStatus() < 200 || response.getStatus() >= 300) {
+					return response;
+				}
+				upload.setAcknowledgedParts(++part);
+			}
+		}
 	}
 
 	@Override
 	public void shutdown() {
-		shutdownActivated = true;
 		logger.info(configurer.octaneConfiguration.getLocationForLog() + "starting REST client shutdown sequence...");
 		abortAllRequests();
-		logger.info(configurer.octaneConfiguration.getLocationForLog() + "closing the client...");
-		HttpClientUtils.closeQuietly(httpClient);
-		requestMonitorExecutors.shutdown();
+		logger.info(configurer.octaneConfiguration.getLocationForLog() + "releasing the shared HTTP transport...");
+		transport.release();
 		logger.info(configurer.octaneConfiguration.getLocationForLog() + "REST client shutdown done");
 	}
 
@@ -167,52 +222,60 @@ final class OctaneRestClientImpl implements OctaneRestClient {
 	}
 
 	private void abortAllRequests() {
-		logger.info(configurer.octaneConfiguration.getLocationForLog() + "aborting " + ongoingRequests2Started.size() + " request/s...");
-		synchronized (REQUESTS_LIST_LOCK) {
-			for (HttpUriRequest request : ongoingRequests2Started.keySet()) {
-				logger.info(configurer.octaneConfiguration.getLocationForLog() + "\taborting " + request);
-				request.abort();
-			}
-			LWSSO_TOKEN = null;
+		List<HttpUriRequest> ongoingRequests = requestDeadlines.shutdown();
+		logger.info(configurer.octaneConfiguration.getLocationForLog() + "aborting " + ongoingRequests.size() + " request/s...");
+		for (HttpUriRequest request : ongoingRequests) {
+			logger.info(configurer.octaneConfiguration.getLocationForLog() + "\taborting " + request);
+			request.abort();
 		}
+		LWSSO_TOKEN = null;
 	}
 
-	private OctaneResponse executeRequest(OctaneRequest request, OctaneConfiguration configuration) throws IOException {
-		OctaneResponse result;
+	private void abortExpiredRequest(HttpUriRequest request) {
+		if (!request.isAborted()) {
+			logger.info(configurer.octaneConfiguration.getLocationForLog() + "aborting " + request + " as its deadline is over");
+			request.abort();
+		}
+	}
+
+	private <T> T executeRequest(OctaneRequest request, OctaneConfiguration configuration, OctaneRequestBodyWriter bodyWriter, OctaneResponseHandler<T> responseHandler) throws IOException {
+		T result;
 		HttpClientContext context;
 		HttpUriRequest uriRequest = null;
 		HttpResponse httpResponse = null;
 		OctaneResponse loginResponse;
 		if (LWSSO_TOKEN == null) {
 			logger.info(configurer.octaneConfiguration.getLocationForLog() + "initial login");
-			loginResponse = login(configuration);
+			loginResponse = login(configuration, null);
 			if (loginResponse.getStatus() != 200) {
 				logger.error(configurer.octaneConfiguration.getLocationForLog() + "failed on initial login, status " + loginResponse.getStatus());
-				return loginResponse;
+				return handleLoginFailure(loginResponse, responseHandler);
 			}
+		} else {
+			refreshSecurityTokenIfExpiring(configuration);
 		}
 
 		try {
 			//  we are running this loop either once or twice: once - regular flow, twice - when retrying after re-login attempt
 			for (int i = 0; i < 2; i++) {
-				uriRequest = createHttpRequest(request);
+				uriRequest = createHttpRequest(request, bodyWriter, null);
+				String usedToken = getTokenValue();
 				context = createHttpContext(request.getUrl(), request.getTimeoutSec(), false);
-				synchronized (REQUESTS_LIST_LOCK) {
-					ongoingRequests2Started.put(uriRequest, System.currentTimeMillis());
-				}
-				httpResponse = httpClient.execute(uriRequest, context);
-				synchronized (REQUESTS_LIST_LOCK) {
-					ongoingRequests2Started.remove(uriRequest);
+				OctaneRequestDeadlineScheduler.Deadline deadline = requestDeadlines.register(requestKind(uriRequest), uriRequest, REQUEST_ABORT_TIMEOUT_MS);
+				try {
+					httpResponse = httpClient.execute(uriRequest, context);
+				} finally {
+					deadline.cancel();
 				}
 
 				if (AUTHENTICATION_ERROR_CODES.contains(httpResponse.getStatusLine().getStatusCode())) {
 					logger.info(configurer.octaneConfiguration.getLocationForLog() + "doing RE-LOGIN due to status " + httpResponse.getStatusLine().getStatusCode() + " received while calling " + request.getUrl());
 					EntityUtils.consumeQuietly(httpResponse.getEntity());
 					HttpClientUtils.closeQuietly(httpResponse);
-					loginResponse = login(configuration);
+					loginResponse = login(configuration, usedToken);
 					if (loginResponse.getStatus() != 200) {
 						logger.error(configurer.octaneConfiguration.getLocationForLog() + "failed to RE-LOGIN with status " + loginResponse.getStatus() + ", won't attempt the original request anymore");
-						return loginResponse;
+						return handleLoginFailure(loginResponse, responseHandler);
 					} else {
 						logger.info(configurer.octaneConfiguration.getLocationForLog() + "re-attempting the original request (" + request.getUrl() + ") having successful RE-LOGIN");
 					}
@@ -222,16 +285,13 @@ final class OctaneRestClientImpl implements OctaneRestClient {
 				}
 			}
 
-			result = createNGAResponse(request, httpResponse);
+			result = responseHandler.handle(
+					createNGAResponseMeta(request, httpResponse),
+					httpResponse.getEntity() != null ? httpResponse.getEntity().getContent() : null);
 		} catch (IOException ioe) {
 			logger.debug(configurer.octaneConfiguration.getLocationForLog() + "failed executing " + request, ioe);
 			throw ioe;
 		} finally {
-			if (uriRequest != null && ongoingRequests2Started.containsKey(uriRequest)) {
-				synchronized (REQUESTS_LIST_LOCK) {
-					ongoingRequests2Started.remove(uriRequest);
-				}
-			}
 			if (httpResponse != null) {
 				EntityUtils.consumeQuietly(httpResponse.getEntity());
 				HttpClientUtils.closeQuietly(httpResponse);
@@ -241,13 +301,199 @@ final class OctaneRestClientImpl implements OctaneRestClient {
 		return result;
 	}
 
+	//  async flavor of the executeRequest's flow: the request is re-attempted once after successful RE-LOGIN
+	private CompletableFuture<OctaneResponse> executeAsyncAttempt(OctaneRequest request, OctaneConfiguration configuration, byte[] body, boolean reLoginAllowed) {
+		HttpUriRequest uriRequest = createHttpRequest(request, null, body);
+		String usedToken = getTokenValue();
+		HttpClientContext context = createHttpContext(request.getUrl(), request.getTimeoutSec(), false);
+		return sendAsync(uriRequest, context).thenCompose(httpResponse -> {
+			int status = httpResponse.getStatusLine().getStatusCode();
+			if (AUTHENTICATION_ERROR_CODES.contains(status) && reLoginAllowed) {
+				logger.info(configurer.octaneConfiguration.getLocationForLog() + "doing RE-LOGIN due to status " + status + " received while calling " + request.getUrl());
+				return loginAsync(configuration, usedToken).thenCompose(loginResponse -> {
+					if (loginResponse.getStatus() != HttpStatus.SC_OK) {
+						logger.error(configurer.octaneConfiguration.getLocationForLog() + "failed to RE-LOGIN with status " + loginResponse.getStatus() + ", won't attempt the original request anymore");
+						return CompletableFuture.completedFuture(loginResponse);
+					} else {
+						logger.info(configurer.octaneConfiguration.getLocationForLog() + "re-attempting the original request (" + request.getUrl() + ") having successful RE-LOGIN");
+						return executeAsyncAttempt(request, configuration, body, false);
+					}
+				});
+			}
+
+			if (!AUTHENTICATION_ERROR_CODES.contains(status)) {
+				refreshSecurityToken(context, false);
+			}
+			CompletableFuture<OctaneResponse> result = new CompletableFuture<>();
+			try {
+				result.complete(createNGAResponse(request, httpResponse));
+			} catch (IOException ioe) {
+				result.completeExceptionally(ioe);
+			}
+			return result;
+		});
+	}
+
+	private CompletableFuture<OctaneResponse> loginAsync(OctaneConfiguration config, String rejectedToken) {
+		String sessionKey = OctaneLoginSessionRegistry.sessionKey(config);
+		return transport.getLoginSessionRegistry()
+				.login(sessionKey, rejectedToken, () -> signInAsync(config, sessionKey))
+				.thenApply(response -> {
+					if (response.getStatus() == HttpStatus.SC_OK) {
+						adoptLoginSession(sessionKey);
+					}
+					return response;
+				});
+	}
+
+	private CompletableFuture<OctaneResponse> signInAsync(OctaneConfiguration config, String sessionKey) {
+		CompletableFuture<OctaneResponse> result = new CompletableFuture<>();
+		try {
+			HttpUriRequest loginRequest = buildLoginRequest(config);
+			HttpClientContext context = createHttpContext(loginRequest.getURI().toString(), 0, true);
+			sendAsync(loginRequest, context).whenComplete((response, throwable) -> {
+				if (throwable != null) {
+					logger.debug(configurer.octaneConfiguration.getLocationForLog() + "failed to login", throwable);
+					result.completeExceptionally(throwable);
+					return;
+				}
+				try {
+					if (response.getStatusLine().getStatusCode() == HttpStatus.SC_OK) {
+						transport.getLoginSessionRegistry().update(sessionKey, findSecurityToken(context));
+					} else {
+						logger.warn(configurer.octaneConfiguration.getLocationForLog() + "failed to login; response status: " + response.getStatusLine().getStatusCode());
+					}
+					result.complete(createNGAResponse(null, response));
+				} catch (Exception e) {
+					result.completeExceptionally(e);
+				}
+			});
+		} catch (IOException ioe) {
+			result.completeExceptionally(ioe);
+		}
+		return result;
+	}
+
+	/**
+	 * Sends the request on the non-blocking engine; the request's deadline is registered as of the blocking ones,
+	 * and aborting it cancels the exchange
+	 * Completion stages are invoked on the I/O dispatcher threads, so dependent stages doing blocking work should be async ones
+	 */
+	private CompletableFuture<HttpResponse> sendAsync(HttpUriRequest uriRequest, HttpClientContext context) {
+		CompletableFuture<HttpResponse> result = new CompletableFuture<>();
+		OctaneRequestDeadlineScheduler.Deadline deadline = requestDeadlines.register(requestKind(uriRequest), uriRequest, REQUEST_ABORT_TIMEOUT_MS);
+		try {
+			asyncRequestsCount.incrementAndGet();
+			Future<HttpResponse> future = transport.getAsyncHttpClient().execute(uriRequest, context, new FutureCallback<HttpResponse>() {
+				@Override
+				public void completed(HttpResponse response) {
+					deadline.cancel();
+					result.complete(response);
+				}
+
+				@Override
+				public void failed(Exception e) {
+					deadline.cancel();
+					result.completeExceptionally(e);
+				}
+
+				@Override
+				public void cancelled() {
+					deadline.cancel();
+					result.completeExceptionally(new RequestAbortedException("Request aborted"));
+				}
+			});
+			if (uriRequest instanceof HttpExecutionAware) {
+				((HttpExecutionAware) uriRequest).setCancellable(() -> future.cancel(true));
+			}
+		} catch (Exception e) {
+			deadline.cancel();
+			result.completeExceptionally(e);
+		}
+		return result;
+	}
+
+	//  parts count the server holds for the upload, 0 if it doesn't know the upload
+	private int queryAcknowledgedParts(OctaneRequest request, OctaneChunkedUpload upload) throws IOException {
+		Map<String, String> headers = request.getHeaders() != null ? new HashMap<>(request.getHeaders()) : new HashMap<>();
+		headers.put(OctaneChunkedUpload.UPLOAD_ID_HEADER, upload.getUploadId());
+		OctaneRequest statusRequest = dtoFactory.newDTO(OctaneRequest.class)
+				.setMethod(HttpMethod.GET)
+				.setUrl(request.getUrl())
+				.setHeaders(headers)
+				.setTimeoutSec(request.getTimeoutSec());
+		OctaneResponse response = executeRequest(statusRequest, configurer.octaneConfiguration, null, this::readNGAResponseBody);
+		if (response.getStatus() != HttpStatus.SC_OK || response.getHeaders() == null) {
+			return 0;
+		}
+		for (Map.Entry<String, String> header : response.getHeaders().entrySet()) {
+			if (OctaneChunkedUpload.UPLOAD_ACKNOWLEDGED_PARTS_HEADER.equalsIgnoreCase(header.getKey())) {
+				try {
+					return Math.max(0, Integer.parseInt(header.getValue().trim()));
+				} catch (NumberFormatException nfe) {
+					logger.warn(configurer.octaneConfiguration.getLocationForLog() + "invalid acknowledged parts '" + header.getValue() + "' of upload " + upload.getUploadId() + ", uploading from the start");
+				}
+			}
+		}
+		return 0;
+	}
+
+	private static OctaneRequest createPartRequest(OctaneRequest request, OctaneChunkedUpload upload, int part, boolean last) {
+		Map<String, String> headers = request.getHeaders() != null ? new HashMap<>(request.getHeaders()) : new HashMap<>();
+		headers.put(OctaneChunkedUpload.UPLOAD_ID_HEADER, upload.getUploadId());
+		headers.put(OctaneChunkedUpload.UPLOAD_PART_HEADER, String.valueOf(part));
+		headers.put(OctaneChunkedUpload.UPLOAD_LAST_PART_HEADER, String.valueOf(last));
+		return dtoFactory.newDTO(OctaneRequest.class)
+				.setMethod(request.getMethod())
+				.setUrl(request.getUrl())
+				.setHeaders(headers)
+				.setTimeoutSec(request.getTimeoutSec());
+	}
+
+	private static long skipFully(InputStream inputStream, long count) throws IOException {
+		long skipped = 0;
+		while (skipped < count) {
+			long result = inputStream.skip(count - skipped);
+			if (result <= 0) {
+				//  skip may stall before the end of stream, read tells the end for sure
+				if (inputStream.read() == -1) {
+					break;
+				}
+				result = 1;
+			}
+			skipped += result;
+		}
+		return skipped;
+	}
+
+	private static int readFully(InputStream inputStream, byte[] buffer) throws IOException {
+		int length = 0;
+		int read;
+		while (length < buffer.length && (read = inputStream.read(buffer, length, buffer.length - length)) != -1) {
+			length += read;
+		}
+		return length;
+	}
+
+	//  non-blocking engine can't pull the gzip compressing entity, so the body is compressed upfront (once, re-used if re-attempted)
+	private byte[] createAsyncRequestBody(OctaneRequest request) throws IOException {
+		if (!request.getMethod().equals(HttpMethod.POST) && !request.getMethod().equals(HttpMethod.PUT)) {
+			return null;
+		}
+		ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+		createRequestEntity(request, null).writeTo(buffer);
+		return buffer.toByteArray();
+	}
+
 	/**
 	 * This method should be the ONLY mean that creates Http Request objects
 	 *
 	 * @param octaneRequest Request data as it is maintained in Octane related flavor
+	 * @param bodyWriter    optional body writer, takes precedence over the request's body stream
+	 * @param gzippedBody   optional pre-compressed body, takes precedence over the writer and the request's body stream
 	 * @return pre-configured HttpUriRequest
 	 */
-	private HttpUriRequest createHttpRequest(OctaneRequest octaneRequest) {
+	private HttpUriRequest createHttpRequest(OctaneRequest octaneRequest, OctaneRequestBodyWriter bodyWriter, byte[] gzippedBody) {
 		HttpUriRequest request;
 		RequestBuilder requestBuilder;
 
@@ -259,11 +505,11 @@ final class OctaneRestClientImpl implements OctaneRestClient {
 		} else if (octaneRequest.getMethod().equals(HttpMethod.POST)) {
 			requestBuilder = RequestBuilder.post(octaneRequest.getUrl());
 			requestBuilder.addHeader(new BasicHeader(RestService.CONTENT_ENCODING_HEADER, RestService.GZIP_ENCODING));
-			requestBuilder.setEntity(new GzipCompressingEntity(new InputStreamEntity(octaneRequest.getBody(), ContentType.APPLICATION_JSON)));
+			requestBuilder.setEntity(gzippedBody != null ? new ByteArrayEntity(gzippedBody, ContentType.APPLICATION_JSON) : createRequestEntity(octaneRequest, bodyWriter));
 		} else if (octaneRequest.getMethod().equals(HttpMethod.PUT)) {
 			requestBuilder = RequestBuilder.put(octaneRequest.getUrl());
 			requestBuilder.addHeader(new BasicHeader(RestService.CONTENT_ENCODING_HEADER, RestService.GZIP_ENCODING));
-			requestBuilder.setEntity(new GzipCompressingEntity(new InputStreamEntity(octaneRequest.getBody(), ContentType.APPLICATION_JSON)));
+			requestBuilder.setEntity(gzippedBody != null ? new ByteArrayEntity(gzippedBody, ContentType.APPLICATION_JSON) : createRequestEntity(octaneRequest, bodyWriter));
 		} else {
 			throw new RuntimeException("HTTP method " + octaneRequest.getMethod() + " not supported");
 		}
@@ -334,6 +580,7 @@ final class OctaneRestClientImpl implements OctaneRestClient {
 						logger.info(configurer.octaneConfiguration.getLocationForLog() + "refreshSecurityToken is cancelled");
 					} else {
 						LWSSO_TOKEN = cookie;
+						lwssoTokenRefreshedAt = System.currentTimeMillis();
 						logger.debug(configurer.octaneConfiguration.getLocationForLog() + "successfully refreshed security token.isLogin=" + isLogin);
 					}
 				}
@@ -343,12 +590,70 @@ final class OctaneRestClientImpl implements OctaneRestClient {
 		}
 	}
 
+	private static Cookie findSecurityToken(HttpClientContext context) {
+		for (Cookie cookie : context.getCookieStore().getCookies()) {
+			if (LWSSO_COOKIE_NAME.equals(cookie.getName())) {
+				((BasicClientCookie) cookie).setPath("/");
+				return cookie;
+			}
+		}
+		return null;
+	}
+
+	//  token is refreshed in the background (single flight, the requests keep on using the current token meanwhile) when it is about to expire
+	private void refreshSecurityTokenIfExpiring(OctaneConfiguration configuration) {
+		Cookie token = LWSSO_TOKEN;
+		if (token == null || configuration != configurer.octaneConfiguration || !isExpiring(token)) {
+			return;
+		}
+		if (proactiveRefreshInFlight.compareAndSet(false, true)) {
+			proactiveRefreshCount.incrementAndGet();
+			logger.info(configurer.octaneConfiguration.getLocationForLog() + "security token is about to expire, refreshing it proactively");
+			loginAsync(configuration, token.getValue()).whenComplete((response, throwable) -> {
+				proactiveRefreshInFlight.set(false);
+				if (throwable != null) {
+					logger.warn(configurer.octaneConfiguration.getLocationForLog() + "failed to refresh security token proactively : " + throwable.getMessage());
+				} else if (response.getStatus() != HttpStatus.SC_OK) {
+					logger.warn(configurer.octaneConfiguration.getLocationForLog() + "failed to refresh security token proactively; response status: " + response.getStatus());
+				}
+			});
+		}
+	}
+
+	private boolean isExpiring(Cookie token) {
+		long expiresAt = lwssoTokenRefreshedAt + TOKEN_MAX_AGE;
+		if (token.getExpiryDate() != null) {
+			expiresAt = Math.min(expiresAt, token.getExpiryDate().getTime());
+		}
+		return System.currentTimeMillis() >= expiresAt - TOKEN_REFRESH_MARGIN;
+	}
+
+	private HttpEntity createRequestEntity(OctaneRequest octaneRequest, OctaneRequestBodyWriter bodyWriter) {
+		if (bodyWriter != null) {
+			EntityTemplate entity = new EntityTemplate(bodyWriter::writeTo);
+			entity.setContentType(ContentType.APPLICATION_JSON.toString());
+			return bodyWriter.isGzipped() ? entity : new GzipCompressingEntity(entity);
+		} else {
+			return new GzipCompressingEntity(new InputStreamEntity(octaneRequest.getBody(), ContentType.APPLICATION_JSON));
+		}
+	}
+
+	private OctaneResponse readNGAResponseBody(OctaneResponse responseMeta, InputStream body) throws IOException {
+		if (body != null) {
+			responseMeta.setBody(CIPluginSDKUtils.inputStreamToUTF8String(body));
+		}
+		return responseMeta;
+	}
+
 	private OctaneResponse createNGAResponse(OctaneRequest request, HttpResponse response) throws IOException {
+		return readNGAResponseBody(
+				createNGAResponseMeta(request, response),
+				response.getEntity() != null ? response.getEntity().getContent() : null);
+	}
+
+	private OctaneResponse createNGAResponseMeta(OctaneRequest request, HttpResponse response) {
 		OctaneResponse octaneResponse = dtoFactory.newDTO(OctaneResponse.class)
 				.setStatus(response.getStatusLine().getStatusCode());
-		if (response.getEntity() != null) {
-			octaneResponse.setBody(CIPluginSDKUtils.inputStreamToUTF8String(response.getEntity().getContent()));
-		}
 		if (response.getAllHeaders() != null && response.getAllHeaders().length > 0) {
 			Map<String, String> mapHeaders = new HashMap<>();
 			for (Header header : response.getAllHeaders()) {
@@ -362,7 +667,69 @@ final class OctaneRestClientImpl implements OctaneRestClient {
 		return octaneResponse;
 	}
 
-	private OctaneResponse login(OctaneConfiguration config) throws IOException {
+	private static <T> T handleLoginFailure(OctaneResponse loginResponse, OctaneResponseHandler<T> responseHandler) throws IOException {
+		String body = loginResponse.getBody();
+		loginResponse.setBody(null);
+		return responseHandler.handle(loginResponse, body != null ? new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8)) : null);
+	}
+
+	private String getTokenValue() {
+		Cookie token = LWSSO_TOKEN;
+		return token != null ? token.getValue() : null;
+	}
+
+	//  takes the session obtained by the recent (possibly other client's) login of the same credentials
+	private void adoptLoginSession(String sessionKey) {
+		Cookie token = transport.getLoginSessionRegistry().current(sessionKey);
+		if (token == null) {
+			return;
+		}
+		synchronized (RESET_LWSSO_TOKEN_LOCK) {
+			LWSSO_TOKEN = token;
+			lwssoTokenRefreshedAt = System.currentTimeMillis();
+		}
+	}
+
+	/**
+	 * Logs in, unless recent login session of the same credentials is available
+	 * Logins of the same credentials are single flight across all the clients: concurrent callers park till the running sign in is done and resume with its outcome
+	 *
+	 * @param config        configuration to login with
+	 * @param rejectedToken token value rejected by the server, which should not be reused (NULL if none)
+	 * @return login response
+	 * @throws IOException exception during connectivity
+	 */
+	private OctaneResponse login(OctaneConfiguration config, String rejectedToken) throws IOException {
+		String sessionKey = OctaneLoginSessionRegistry.sessionKey(config);
+		CompletableFuture<OctaneResponse> login = transport.getLoginSessionRegistry().login(sessionKey, rejectedToken, () -> {
+			CompletableFuture<OctaneResponse> signInResult = new CompletableFuture<>();
+			try {
+				signInResult.complete(signIn(config, sessionKey));
+			} catch (IOException ioe) {
+				signInResult.completeExceptionally(ioe);
+			}
+			return signInResult;
+		});
+
+		OctaneResponse result;
+		try {
+			result = login.get();
+		} catch (InterruptedException ie) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("interrupted while waiting for login");
+		} catch (ExecutionException ee) {
+			if (ee.getCause() instanceof IOException) {
+				throw (IOException) ee.getCause();
+			}
+			throw new IOException("failed to login", ee.getCause());
+		}
+		if (result.getStatus() == HttpStatus.SC_OK) {
+			adoptLoginSession(sessionKey);
+		}
+		return result;
+	}
+
+	private OctaneResponse signIn(OctaneConfiguration config, String sessionKey) throws IOException {
 		OctaneResponse result;
 		HttpResponse response = null;
 
@@ -372,7 +739,7 @@ final class OctaneRestClientImpl implements OctaneRestClient {
 			response = httpClient.execute(loginRequest, context);
 
 			if (response.getStatusLine().getStatusCode() == HttpStatus.SC_OK) {
-				refreshSecurityToken(context, true);
+				transport.getLoginSessionRegistry().update(sessionKey, findSecurityToken(context));
 			} else {
 				logger.warn(configurer.octaneConfiguration.getLocationForLog() + "failed to login; response status: " + response.getStatusLine().getStatusCode());
 			}
@@ -405,71 +772,40 @@ final class OctaneRestClientImpl implements OctaneRestClient {
 		}
 	}
 
-	private TrustManager[] getTrustManagers() throws NoSuchAlgorithmException, KeyStoreException {
-		TrustManagerFactory tmf = TrustManagerFactory.getInstance(TrustManagerFactory.getDefaultAlgorithm());
-		tmf.init((KeyStore) null);
-		TrustManager[] tmArr = tmf.getTrustManagers();
-		if (tmArr.length == 1 && tmArr[0] instanceof X509TrustManager) {
-			X509TrustManager defaultTm = (X509TrustManager) tmArr[0];
-			TrustManager myTM = new X509TrustManager() {
-				public X509Certificate[] getAcceptedIssuers() {
-					return defaultTm.getAcceptedIssuers();
-				}
-
-				public void checkClientTrusted(X509Certificate[] certs, String authType) throws CertificateException {
-					defaultTm.checkClientTrusted(certs, authType);
-				}
-
-				public void checkServerTrusted(X509Certificate[] certs, String authType) throws CertificateException {
-					try {
-						defaultTm.checkServerTrusted(certs, authType);
-					} catch (CertificateException e) {
-						for (X509Certificate cer : certs) {
-							if (cer.getIssuerDN().getName() != null && cer.getIssuerDN().getName().toLowerCase().contains("microfocus")) {
-								return;
-							}
-						}
-						throw e;
-					}
-				}
-			};
-
-			return new TrustManager[]{myTM};
-		} else {
-			logger.info(configurer.octaneConfiguration.getLocationForLog() + "Using only default trust managers. Received " + tmArr.length + " trust managers."
-					+ ((tmArr.length > 0) ? "First one is :" + tmArr[0].getClass().getCanonicalName() : ""));
-			return tmArr;
+	//  request kind for the deadline statistics: login, the Octane CI analytics resource (events, test-results, logs etc) or the API flavor
+	static String requestKind(HttpUriRequest request) {
+		String path = request.getURI().getPath();
+		if (path == null) {
+			return "other";
 		}
-	}
-
-	private void requestMonitorWorker() {
-		while (!shutdownActivated) {
-			lastRequestMonitorWorkerTime = System.currentTimeMillis();
-			try {
-				synchronized (REQUESTS_LIST_LOCK) {
-					ongoingRequests2Started.entrySet().forEach(entry -> {
-						long expectedEnd = entry.getValue() + REQUEST_ABORT_TIMEOUT_MS;
-						long diff = System.currentTimeMillis() - expectedEnd;
-						if (diff > 0 && !entry.getKey().isAborted()) {
-							logger.info(configurer.octaneConfiguration.getLocationForLog() + " Aborting " + entry.getKey() + " as expected timeout is over ");
-							entry.getKey().abort();
-							requestMonitorExecutorsAbortedCount++;
-						}
-					});
-				}
-			} catch (Exception e) {
-				logger.error(configurer.octaneConfiguration.getLocationForLog() + "requestMonitorWorker error : " + e.getMessage(), e);
-			}
-			CIPluginSDKUtils.doWait(10000);
+		if (path.endsWith(AUTHENTICATION_URI)) {
+			return "login";
+		}
+		int analyticsIndex = path.indexOf(RestService.ANALYTICS_CI_PATH_PART);
+		if (analyticsIndex >= 0) {
+			String resource = path.substring(analyticsIndex + RestService.ANALYTICS_CI_PATH_PART.length());
+			int resourceEnd = resource.indexOf('/');
+			return resourceEnd > 0 ? resource.substring(0, resourceEnd) : resource.isEmpty() ? "analytics" : resource;
+		}
+		if (path.contains(RestService.SHARED_SPACE_INTERNAL_API_PATH_PART)) {
+			return "internal-api";
 		}
+		if (path.contains(RestService.SHARED_SPACE_API_PATH_PART)) {
+			return "api";
+		}
+		return "other";
 	}
 
 	@Override
 	public Map<String, Object> getMetrics() {
 		Map<String, Object> map = new LinkedHashMap<>();
-		map.put("requestMonitorExecutorsAbortedCount", requestMonitorExecutorsAbortedCount);
-		map.put("ongoingRequests.size", ongoingRequests2Started.size());
-		map.put("lastRequestMonitorWorkerTime", new Date(lastRequestMonitorWorkerTime));
+		map.put("ongoingRequests.size", requestDeadlines.getPendingCount());
+		map.putAll(requestDeadlines.getMetrics());
+		map.put("asyncRequestsCount", asyncRequestsCount.get());
+		map.put("chunkedUploadPartsCount", chunkedUploadPartsCount.get());
+		map.put("chunkedUploadsResumedCount", chunkedUploadsResumedCount.get());
+		map.put("login.proactiveRefreshCount", proactiveRefreshCount.get());
+		map.putAll(transport.getMetrics());
 		return map;
 	}
 
@@ -519,13 +855,4 @@ final class OctaneRestClientImpl implements OctaneRestClient {
 					", client_secret: " + client_secret + "}";
 		}
 	}
-
-	private static final class RequestMonitorExecutorsFactory implements ThreadFactory {
-		public Thread newThread(Runnable runnable) {
-			Thread result = new Thread(runnable);
-			result.setName("RequestMonitorWorker-" + result.getId());
-			result.setDaemon(true);
-			return result;
-		}
-	}
 }
@@ -12,6 +12,7 @@ import com.hp.octane.integrations.dto.events.CIEventType;
 import com.hp.octane.integrations.dto.scm.SCMData;
 import com.hp.octane.integrations.exceptions.PermanentException;
 import com.hp.octane.integrations.exceptions.TemporaryException;
+import com.hp.octane.integrations.services.QueueWorkersScheduler;
 import com.hp.octane.integrations.services.WorkerPreflight;
 import com.hp.octane.integrations.services.configuration.ConfigurationService;
 import com.hp.octane.integrations.services.configuration.ConfigurationServiceImpl;
@@ -30,7 +31,7 @@ import org.apache.logging.log4j.Logger;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.*;
-import java.util.concurrent.*;
+import java.util.concurrent.TimeUnit;
 
 public class SCMDataServiceImpl implements SCMDataService {
 
@@ -42,14 +43,12 @@ public class SCMDataServiceImpl implements SCMDataService {
     protected final OctaneSDK.SDKServicesConfigurer configurer;
     private final WorkerPreflight workerPreflight;
 
-    private final ExecutorService scmProcessingExecutor = Executors.newSingleThreadExecutor(new SCMDataServiceImpl.SCMPushWorkerThreadFactory());
     private final ObjectQueue<SCMDataQueueItem> scmDataQueue;
 
     private static final DTOFactory dtoFactory = DTOFactory.getInstance();
 
     private int TEMPORARY_ERROR_BREATHE_INTERVAL = 10000;
     public static final String SCM_REST_API_SUPPORTED_VERSION = "15.1.23";
-    private final ScheduledExecutorService publishService = Executors.newScheduledThreadPool(5);
 
     public SCMDataServiceImpl(QueueingService queueingService, OctaneSDK.SDKServicesConfigurer configurer,
                               RestService restService, ConfigurationService configurationService, EventsService eventsService) {
@@ -81,7 +80,7 @@ public class SCMDataServiceImpl implements SCMDataService {
         }
 
         logger.info(configurer.octaneConfiguration.getLocationForLog() + "starting background worker...");
-        scmProcessingExecutor.execute(this::worker);
+        workerPreflight.start("SCMDataPushWorker", this::worker);
         logger.info(configurer.octaneConfiguration.getLocationForLog() + "initialized SUCCESSFULLY (backed by " + scmDataQueue.getClass().getSimpleName() + ")");
     }
 
@@ -105,7 +104,7 @@ public class SCMDataServiceImpl implements SCMDataService {
         }
 
         //delay scm handling as sometimes it comes before start event is handled on Octane side
-        publishService.schedule(() -> enqueueSCMDataInternal(jobId, buildId, scmData), 5, TimeUnit.SECONDS);
+        QueueWorkersScheduler.getInstance().schedule(() -> enqueueSCMDataInternal(jobId, buildId, scmData), TimeUnit.SECONDS.toMillis(5));
     }
 
     private void enqueueSCMDataInternal(String jobId, String buildId, SCMData scmData) {
@@ -122,12 +121,12 @@ public class SCMDataServiceImpl implements SCMDataService {
 
     @Override
     public void shutdown() {
-        scmProcessingExecutor.shutdown();
+        workerPreflight.shutdown();
     }
 
     @Override
     public boolean isShutdown() {
-        return scmProcessingExecutor.isShutdown();
+        return workerPreflight.isShutdown();
     }
 
     @Override
@@ -150,40 +149,24 @@ public class SCMDataServiceImpl implements SCMDataService {
         }
     }
 
-
-    private static final class SCMPushWorkerThreadFactory implements ThreadFactory {
-
-        @Override
-        public Thread newThread(Runnable runnable) {
-            Thread result = new Thread(runnable);
-            result.setName("SCMDataPushWorker-" + result.getId());
-            result.setDaemon(true);
-            return result;
-        }
-    }
-
-    //  infallible everlasting background worker
-    private void worker() {
-        while (!scmProcessingExecutor.isShutdown()) {
-            if (!workerPreflight.preflight()) {
-                continue;
-            }
-
-            SCMDataQueueItem queueItem = null;
-            try {
-                queueItem = scmDataQueue.peek();
-                processPushSCMDataQueueItem(queueItem);
-                scmDataQueue.remove();
-            } catch (TemporaryException tque) {
-                logger.error(configurer.octaneConfiguration.getLocationForLog() + "temporary error on " + queueItem + ", breathing " + TEMPORARY_ERROR_BREATHE_INTERVAL + "ms and retrying", tque);
-            } catch (PermanentException pqie) {
-                logger.error(configurer.octaneConfiguration.getLocationForLog() + "permanent error on " + queueItem + ", passing over", pqie);
-                scmDataQueue.remove();
-            } catch (Throwable t) {
-                logger.error(configurer.octaneConfiguration.getLocationForLog() + "unexpected error on build log item '" + queueItem + "', passing over", t);
-                scmDataQueue.remove();
-            }
+    //  infallible background worker step, scheduled by the worker preflight
+    private long worker() {
+        SCMDataQueueItem queueItem = null;
+        try {
+            queueItem = scmDataQueue.peek();
+            processPushSCMDataQueueItem(queueItem);
+            scmDataQueue.remove();
+        } catch (TemporaryException tque) {
+            logger.error(configurer.octaneConfiguration.getLocationForLog() + "temporary error on " + queueItem + ", breathing " + TEMPORARY_ERROR_BREATHE_INTERVAL + "ms and retrying", tque);
+            return workerPreflight.backoff(TEMPORARY_ERROR_BREATHE_INTERVAL);
+        } catch (PermanentException pqie) {
+            logger.error(configurer.octaneConfiguration.getLocationForLog() + "permanent error on " + queueItem + ", passing over", pqie);
+            scmDataQueue.remove();
+        } catch (Throwable t) {
+            logger.error(configurer.octaneConfiguration.getLocationForLog() + "unexpected error on build log item '" + queueItem + "', passing over", t);
+            scmDataQueue.remove();
         }
+        return QueueWorkersScheduler.NO_PAUSE;
     }
 
 
@@ -0,0 +1,273 @@
+/*
+ *     Copyright 2017 EntIT Software LLC, a Micro Focus company, L.P.
+ *     Licensed under the Apache License, Version 2.0 (the "License");
+ *     you may not use this file except in compliance with the License.
+ *     You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *     Unless required by applicable law or agreed to in writing, software
+ *     distributed under the License is distributed on an "AS IS" BASIS,
+ *     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *     See the License for the specific language governing permissions and
+ *     limitations under the License.
+ */
+
+package com.hp.octane.integrations.services.sonar;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.hp.octane.integrations.exceptions.PermanentException;
+import com.hp.octane.integrations.exceptions.TemporaryException;
+import com.hp.octane.integrations.utils.CIPluginSDKUtils;
+import org.apache.http.HttpRequest;
+import org.apache.http.HttpStatus;
+import org.apache.http.auth.AuthenticationException;
+import org.apache.http.auth.UsernamePasswordCredentials;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.utils.URIBuilder;
+import org.apache.http.conn.HttpHostConnectException;
+import org.apache.http.impl.auth.BasicScheme;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.util.EntityUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.IntFunction;
+
+/**
+ * Process-wide client of the Sonar servers, all the requests share one pooled HTTP client
+ * - the pages of a paged report are fetched in parallel once the first page reveals the total, and are consumed in order
+ * - independent lookups (eg rules) are issued concurrently, bounded by the same parallelism
+ */
+public final class SonarClient {
+    private static final int TOO_MANY_REQUESTS = 429;
+    private static final int MAX_CONNECTIONS = System.getProperty("octane.sdk.sonar.max-connections") != null ? Integer.parseInt(System.getProperty("octane.sdk.sonar.max-connections")) : 20;
+    private static final int PARALLELISM = System.getProperty("octane.sdk.sonar.parallelism") != null ? Integer.parseInt(System.getProperty("octane.sdk.sonar.parallelism")) : 4;
+
+    private static final SonarClient instance = new SonarClient(MAX_CONNECTIONS, PARALLELISM);
+
+    private final CloseableHttpClient httpClient;
+    private final ExecutorService workersPool = Executors.newCachedThreadPool(new SonarClientThreadFactory());
+    private final int parallelism;
+
+    SonarClient(int maxConnections, int parallelism) {
+        PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager();
+        connectionManager.setMaxTotal(maxConnections);
+        connectionManager.setDefaultMaxPerRoute(maxConnections);
+        this.httpClient = HttpClients.custom()
+                .setConnectionManager(connectionManager)
+                .build();
+        this.parallelism = Math.max(1, parallelism);
+    }
+
+    public static SonarClient getInstance() {
+        return instance;
+    }
+
+    CloseableHttpClient getHttpClient() {
+        return httpClient;
+    }
+
+    /**
+     * Sends GET request to Sonar, the response is read and the connection is released before returning
+     *
+     * @param projectKey     project the data is requested for, for the error messages
+     * @param token          Sonar token, may be null
+     * @param query          request URI
+     * @param responseReader reader of the response body
+     * @param <T>            result type
+     * @return result of the reader
+     * @throws TemporaryException if Sonar is not reachable, is busy or rejects the request (400, eg analysis still in progress)
+     * @throws PermanentException on any other failure
+     */
+    public <T> T get(String projectKey, String token, URIBuilder query, ResponseReader<T> responseReader) {
+        StringBuilder errorMessage = new StringBuilder()
+                .append("failed to get data from sonar for project key: ")
+                .append(projectKey);
+        try {
+            HttpGet request = new HttpGet(query.build());
+            setTokenInHttpRequest(request, token);
+            try (CloseableHttpResponse httpResponse = httpClient.execute(request)) {
+                int statusCode = httpResponse.getStatusLine().getStatusCode();
+                if (statusCode == HttpStatus.SC_OK) {
+                    return responseReader.read(httpResponse.getEntity().getContent());
+                }
+                errorMessage.append(" with status code: ").append(statusCode)
+                        .append(" and response body: ").append(EntityUtils.toString(httpResponse.getEntity(), "UTF-8"));
+                if (statusCode == HttpStatus.SC_BAD_REQUEST || statusCode == HttpStatus.SC_SERVICE_UNAVAILABLE || statusCode == TOO_MANY_REQUESTS) {
+                    throw new TemporaryException(errorMessage.toString());
+                } else {
+                    throw new PermanentException(errorMessage.toString());
+                }
+            }
+        } catch (TemporaryException | PermanentException e) {
+            throw e;
+        } catch (HttpHostConnectException e) {
+            throw new TemporaryException(errorMessage.toString(), e);
+        } catch (Exception e) {
+            throw new PermanentException(errorMessage.toString(), e);
+        }
+    }
+
+    /**
+     * Fetches all the pages of the paged report; while the current page is consumed the next pages are fetched, up to the parallelism
+     *
+     * @param projectKey   project the data is requested for, for the error messages
+     * @param token        Sonar token, may be null
+     * @param pageQuery    request URI of the page, by page index (1 based)
+     * @param pageSize     page size requested by the query
+     * @param pageReader   reader of the page, provides the total of the report as well
+     * @param pageConsumer handler of the page content, called in the order of the pages and on the calling thread
+     * @param <T>          page content type
+     */
+    public <T> void fetchPages(String projectKey, String token, IntFunction<URIBuilder> pageQuery, int pageSize,
+                               ResponseReader<Page<T>> pageReader, Consumer<T> pageConsumer) {
+        Page<T> firstPage = get(projectKey, token, pageQuery.apply(1), pageReader);
+        int pagesCount = Math.max(1, (firstPage.total + pageSize - 1) / pageSize);
+        Deque<Future<Page<T>>> inFlight = new ArrayDeque<>();
+        int nextPage = 2;
+        try {
+            T content = firstPage.content;
+            while (true) {
+                while (nextPage <= pagesCount && inFlight.size() < parallelism) {
+                    URIBuilder query = pageQuery.apply(nextPage++);
+                    inFlight.add(workersPool.submit(() -> get(projectKey, token, query, pageReader)));
+                }
+                pageConsumer.accept(content);
+                Future<Page<T>> next = inFlight.poll();
+                if (next == null) {
+                    return;
+                }
+                content = await(next).content;
+            }
+        } finally {
+            for (Future<Page<T>> future : inFlight) {
+                future.cancel(true);
+            }
+        }
+    }
+
+    /**
+     * Issues the lookups of the keys concurrently, up to the parallelism
+     *
+     * @param keys   keys to look up
+     * @param lookup lookup of a single key, null result is not kept
+     * @param <K>    key type
+     * @param <V>    value type
+     * @return values by key
+     */
+    public <K, V> Map<K, V> getAll(Collection<K> keys, Function<K, V> lookup) {
+        List<K> pending = new ArrayList<>(keys);
+        Map<K, V> result = new ConcurrentHashMap<>();
+        AtomicInteger nextIndex = new AtomicInteger();
+        List<Future<?>> workers = new ArrayList<>();
+        for (int w = 0; w < Math.min(parallelism, pending.size()); w++) {
+            workers.add(workersPool.submit(() -> {
+                int index;
+                while ((index = nextIndex.getAndIncrement()) < pending.size()) {
+                    K key = pending.get(index);
+                    V value = lookup.apply(key);
+                    if (value != null) {
+                        result.put(key, value);
+                    }
+                }
+            }));
+        }
+        try {
+            for (Future<?> worker : workers) {
+                await(worker);
+            }
+        } finally {
+            //  on failure the other workers stop taking keys
+            nextIndex.set(pending.size());
+        }
+        return result;
+    }
+
+    /**
+     * Reads the report page as a tree, the total is taken from its paging element
+     *
+     * @param content page content
+     * @return page
+     * @throws IOException if the content is not a valid JSON
+     */
+    public static Page<JsonNode> readJsonPage(InputStream content) throws IOException {
+        JsonNode jsonPage = CIPluginSDKUtils.getObjectMapper().readTree(content);
+        return new Page<>(jsonPage, jsonPage.path("paging").path("total").intValue());
+    }
+
+    private static <T> T await(Future<T> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new TemporaryException("interrupted while fetching data from sonar", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new PermanentException(e.getCause());
+        }
+    }
+
+    static void setTokenInHttpRequest(HttpRequest request, String token) throws AuthenticationException {
+        if (token == null) {
+            return;
+        }
+        UsernamePasswordCredentials creds = new UsernamePasswordCredentials(token, "");
+        request.addHeader(new BasicScheme().authenticate(creds, request, null));
+    }
+
+    @FunctionalInterface
+    public interface ResponseReader<T> {
+        T read(InputStream content) throws IOException;
+    }
+
+    public static final class Page<T> {
+        private final T content;
+        private final int total;
+
+        public Page(T content, int total) {
+            this.content = content;
+            this.total = total;
+        }
+
+        public T getContent() {
+            return content;
+        }
+
+        public int getTotal() {
+            return total;
+        }
+    }
+
+    private static final class SonarClientThreadFactory implements ThreadFactory {
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread result = new Thread(runnable);
+            result.setName("SonarClientWorker-" + result.getId());
+            result.setDaemon(true);
+            return result;
+        }
+    }
+}
@@ -0,0 +1,237 @@
+/*
+ *     Copyright 2017 EntIT Software LLC, a Micro Focus company, L.P.
+ *     Licensed under the Apache License, Version 2.0 (the "License");
+ *     you may not use this file except in compliance with the License.
+ *     You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *     Unless required by applicable law or agreed to in writing, software
+ *     distributed under the License is distributed on an "AS IS" BASIS,
+ *     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *     See the License for the specific language governing permissions and
+ *     limitations under the License.
+ */
+package com.hp.octane.integrations.services.sonar;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Aggregates the pages of Sonar's component_tree report into the BuildCoverage JSON, written straight to the output
+ * - pages are parsed with the streaming API into the compact page coverage, no tree of the page is built
+ * - file coverages are written as the pages are accepted (in order), the totals are accumulated on the way and written at the end
+ * Only the pages in flight are held in memory, regardless of the number of the files in the project
+ */
+final class SonarCoverageAggregator implements Closeable {
+	private static final JsonFactory jsonFactory = new JsonFactory();
+	private static final String LINES_TO_COVER = "lines_to_cover";
+	private static final String UNCOVERED_LINES = "uncovered_lines";
+
+	private final JsonGenerator generator;
+	private String projectName;
+	private Integer projectLinesToCover;
+	private Integer projectUncoveredLines;
+	private long filesLinesToCover;
+	private long filesCoveredLines;
+	private int filesCount;
+
+	SonarCoverageAggregator(OutputStream output) throws IOException {
+		generator = jsonFactory.createGenerator(output, JsonEncoding.UTF8);
+		generator.writeStartObject();
+		generator.writeArrayFieldStart("fileCoverageList");
+	}
+
+	/**
+	 * Parses the page of the component_tree report
+	 *
+	 * @param content page content
+	 * @return page, with the total of the components
+	 * @throws IOException if the content is not a valid JSON
+	 */
+	static SonarClient.Page<PageCoverage> readPage(InputStream content) throws IOException {
+		PageCoverage pageCoverage = new PageCoverage();
+		int total = 0;
+		try (JsonParser parser = jsonFactory.createParser(content)) {
+			expect(parser.nextToken(), JsonToken.START_OBJECT);
+			while (parser.nextToken() == JsonToken.FIELD_NAME) {
+				String fieldName = parser.getCurrentName();
+				JsonToken valueToken = parser.nextToken();
+				if ("paging".equals(fieldName) && valueToken == JsonToken.START_OBJECT) {
+					total = readTotal(parser);
+				} else if ("baseComponent".equals(fieldName) && valueToken == JsonToken.START_OBJECT) {
+					Component baseComponent = readComponent(parser);
+					pageCoverage.projectName = baseComponent.name;
+					pageCoverage.projectLinesToCover = baseComponent.linesToCover;
+					pageCoverage.projectUncoveredLines = baseComponent.uncoveredLines;
+				} else if ("components".equals(fieldName) && valueToken == JsonToken.START_ARRAY) {
+					while (parser.nextToken() == JsonToken.START_OBJECT) {
+						Component component = readComponent(parser);
+						if (component.path != null) {
+							pageCoverage.files.add(component);
+						}
+					}
+				} else {
+					parser.skipChildren();
+				}
+			}
+		}
+		return new SonarClient.Page<>(pageCoverage, total);
+	}
+
+	/**
+	 * Writes the file coverages of the page, the pages are expected in the order of the report
+	 *
+	 * @param pageCoverage page parsed by readPage
+	 * @throws IOException if writing fails
+	 */
+	void accept(PageCoverage pageCoverage) throws IOException {
+		if (projectName == null) {
+			projectName = pageCoverage.projectName;
+			projectLinesToCover = pageCoverage.projectLinesToCover;
+			projectUncoveredLines = pageCoverage.projectUncoveredLines;
+		}
+		for (Component file : pageCoverage.files) {
+			int linesToCover = valueOrZero(file.linesToCover);
+			int coveredLines = linesToCover - valueOrZero(file.uncoveredLines);
+			generator.writeStartObject();
+			generator.writeStringField("path", file.path);
+			generator.writeNumberField("sumOfCoveredLines", coveredLines);
+			generator.writeNumberField("totalCoverableLines", linesToCover);
+			generator.writeEndObject();
+			filesLinesToCover += linesToCover;
+			filesCoveredLines += coveredLines;
+			filesCount++;
+		}
+	}
+
+	int getFilesCount() {
+		return filesCount;
+	}
+
+	/**
+	 * Totals of the project as measured by Sonar; when the report has no project measures, totals of the files are used
+	 */
+	int getTotalCoverableLines() {
+		return projectLinesToCover != null || projectUncoveredLines != null ? valueOrZero(projectLinesToCover) : (int) filesLinesToCover;
+	}
+
+	int getSumOfCoveredLines() {
+		return projectLinesToCover != null || projectUncoveredLines != null ? valueOrZero(projectLinesToCover) - valueOrZero(projectUncoveredLines) : (int) filesCoveredLines;
+	}
+
+	/**
+	 * Completes the report with the totals and the project name, the output is closed
+	 */
+	@Override
+	public void close() throws IOException {
+		try {
+			if (!generator.isClosed()) {
+				generator.writeEndArray();
+				generator.writeNumberField("sumOfCoveredLines", getSumOfCoveredLines());
+				generator.writeNumberField("totalCoverableLines", getTotalCoverableLines());
+				generator.writeStringField("projectName", projectName);
+				generator.writeEndObject();
+			}
+		} finally {
+			generator.close();
+		}
+	}
+
+	private static int readTotal(JsonParser parser) throws IOException {
+		int total = 0;
+		while (parser.nextToken() == JsonToken.FIELD_NAME) {
+			String fieldName = parser.getCurrentName();
+			parser.nextToken();
+			if ("total".equals(fieldName)) {
+				total = parser.getValueAsInt();
+			} else {
+				parser.skipChildren();
+			}
+		}
+		return total;
+	}
+
+	//  parser is at the start of the component object, left at its end
+	private static Component readComponent(JsonParser parser) throws IOException {
+		Component component = new Component();
+		while (parser.nextToken() == JsonToken.FIELD_NAME) {
+			String fieldName = parser.getCurrentName();
+			JsonToken valueToken = parser.nextToken();
+			if ("path".equals(fieldName) && valueToken == JsonToken.VALUE_STRING) {
+				component.path = parser.getText();
+			} else if ("name".equals(fieldName) && valueToken == JsonToken.VALUE_STRING) {
+				component.name = parser.getText();
+			} else if ("measures".equals(fieldName) && valueToken == JsonToken.START_ARRAY) {
+				while (parser.nextToken() == JsonToken.START_OBJECT) {
+					readMeasure(parser, component);
+				}
+			} else {
+				parser.skipChildren();
+			}
+		}
+		return component;
+	}
+
+	//  both metrics are picked in the same pass over the measures
+	private static void readMeasure(JsonParser parser, Component component) throws IOException {
+		String metric = null;
+		String value = null;
+		while (parser.nextToken() == JsonToken.FIELD_NAME) {
+			String fieldName = parser.getCurrentName();
+			JsonToken valueToken = parser.nextToken();
+			if ("metric".equals(fieldName)) {
+				metric = parser.getValueAsString();
+			} else if ("value".equals(fieldName) && valueToken.isScalarValue()) {
+				value = parser.getValueAsString();
+			} else {
+				parser.skipChildren();
+			}
+		}
+		if (value == null) {
+			return;
+		}
+		if (LINES_TO_COVER.equals(metric)) {
+			component.linesToCover = Integer.parseInt(value);
+		} else if (UNCOVERED_LINES.equals(metric)) {
+			component.uncoveredLines = Integer.parseInt(value);
+		}
+	}
+
+	private static void expect(JsonToken actual, JsonToken expected) throws IOException {
+		if (actual != expected) {
+			throw new IOException("unexpected sonar component tree content, expected " + expected + " but found " + actual);
+		}
+	}
+
+	private static int valueOrZero(Integer value) {
+		return value == null ? 0 : value;
+	}
+
+	/**
+	 * Coverage of the page: the project (base component) and the files of the page
+	 */
+	static final class PageCoverage {
+		private final List<Component> files = new ArrayList<>();
+		private String projectName;
+		private Integer projectLinesToCover;
+		private Integer projectUncoveredLines;
+	}
+
+	private static final class Component {
+		private String path;
+		private String name;
+		private Integer linesToCover;
+		private Integer uncoveredLines;
+	}
+}
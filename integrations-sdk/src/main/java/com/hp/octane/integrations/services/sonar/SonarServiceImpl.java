@@ -18,13 +18,12 @@ package com.hp.octane.integrations.services.sonar;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.node.ArrayNode;
 import com.hp.octane.integrations.OctaneSDK;
-import com.hp.octane.integrations.dto.DTOFactory;
 import com.hp.octane.integrations.dto.connectivity.OctaneResponse;
-import com.hp.octane.integrations.dto.coverage.BuildCoverage;
 import com.hp.octane.integrations.dto.coverage.CoverageReportType;
 import com.hp.octane.integrations.exceptions.PermanentException;
 import com.hp.octane.integrations.exceptions.SonarIntegrationException;
 import com.hp.octane.integrations.exceptions.TemporaryException;
+import com.hp.octane.integrations.services.QueueWorkersScheduler;
 import com.hp.octane.integrations.services.WorkerPreflight;
 import com.hp.octane.integrations.services.configuration.ConfigurationService;
 import com.hp.octane.integrations.services.configuration.ConfigurationServiceImpl;
@@ -32,29 +31,26 @@ import com.hp.octane.integrations.services.coverage.CoverageService;
 import com.hp.octane.integrations.services.queueing.QueueingService;
 import com.hp.octane.integrations.utils.CIPluginSDKUtils;
 import com.squareup.tape.ObjectQueue;
-import org.apache.http.HttpRequest;
 import org.apache.http.HttpResponse;
 import org.apache.http.HttpStatus;
-import org.apache.http.auth.AuthenticationException;
-import org.apache.http.auth.UsernamePasswordCredentials;
-import org.apache.http.client.HttpClient;
+import org.apache.http.client.methods.CloseableHttpResponse;
 import org.apache.http.client.methods.HttpGet;
 import org.apache.http.client.methods.HttpPost;
 import org.apache.http.client.utils.URIBuilder;
-import org.apache.http.impl.auth.BasicScheme;
-import org.apache.http.impl.client.HttpClientBuilder;
 import org.apache.http.util.EntityUtils;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.file.Files;
 import java.net.URISyntaxException;
 import java.util.LinkedHashMap;
 import java.util.Map;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ThreadFactory;
 
 /**
  * Default implementations of Sonar service
@@ -63,15 +59,14 @@ import java.util.concurrent.ThreadFactory;
 //TODO to move worker to coverage service and make queue item generic
 public class SonarServiceImpl implements SonarService {
 	private static final Logger logger = LogManager.getLogger(SonarServiceImpl.class);
-	private static final DTOFactory dtoFactory = DTOFactory.getInstance();
 	private static final String SONAR_COVERAGE_QUEUE_FILE = "sonar-coverage-queue.dat";
 	private static final String WEBHOOK_CREATE_URI = "/api/webhooks/create";
 	private static final String WEBHOOK_LIST_URI = "/api/webhooks/list";
 	private static final String SONAR_STATUS_URI = "/api/system/status";
 	private static final String CONNECTION_FAILURE = "CONNECTION_FAILURE";
 	private static final String COMPONENT_TREE_URI = "/api/measures/component_tree";
+	private static final int COMPONENT_TREE_PAGE_SIZE = 500;
 
-	private final ExecutorService sonarIntegrationExecutor = Executors.newSingleThreadExecutor(new SonarIntegrationWorkerThreadFactory());
 	private final ObjectQueue<SonarBuildCoverageQueueItem> sonarIntegrationQueue;
 	private final OctaneSDK.SDKServicesConfigurer configurer;
 	private final CoverageService coverageService;
@@ -103,34 +98,29 @@ public class SonarServiceImpl implements SonarService {
 		}
 
 		logger.info(configurer.octaneConfiguration.getLocationForLog() + "starting background worker...");
-		sonarIntegrationExecutor.execute(this::worker);
+		workerPreflight.start("SonarIntegrationWorker", this::worker);
 		logger.info(configurer.octaneConfiguration.getLocationForLog() + "initialized SUCCESSFULLY (backed by " + sonarIntegrationQueue.getClass().getSimpleName() + ")");
 	}
 
-	// infallible everlasting background worker
-	private void worker() {
-		while (!sonarIntegrationExecutor.isShutdown()) {
-			if(!workerPreflight.preflight()){
-				continue;
-			}
-
-			SonarBuildCoverageQueueItem sonarBuildCoverageQueueItem = null;
-			try {
-				sonarBuildCoverageQueueItem = sonarIntegrationQueue.peek();
-				retrieveAndPushSonarDataToOctane(sonarBuildCoverageQueueItem);
-				logger.debug(configurer.octaneConfiguration.getLocationForLog() + "successfully processed " + sonarBuildCoverageQueueItem);
-				sonarIntegrationQueue.remove();
-			} catch (TemporaryException te) {
-				logger.error(configurer.octaneConfiguration.getLocationForLog() + "temporary error on " + sonarBuildCoverageQueueItem + ", breathing " + TEMPORARY_ERROR_BREATHE_INTERVAL + "ms and retrying", te);
-				CIPluginSDKUtils.doWait(TEMPORARY_ERROR_BREATHE_INTERVAL);
-			} catch (PermanentException pe) {
-				logger.error(configurer.octaneConfiguration.getLocationForLog() + "permanent error on " + sonarBuildCoverageQueueItem + ", passing over", pe);
-				sonarIntegrationQueue.remove();
-			} catch (Throwable t) {
-				logger.error(configurer.octaneConfiguration.getLocationForLog() + "unexpected error on build coverage item '" + sonarBuildCoverageQueueItem + "', passing over", t);
-				sonarIntegrationQueue.remove();
-			}
+	// infallible background worker step, scheduled by the worker preflight
+	private long worker() {
+		SonarBuildCoverageQueueItem sonarBuildCoverageQueueItem = null;
+		try {
+			sonarBuildCoverageQueueItem = sonarIntegrationQueue.peek();
+			retrieveAndPushSonarDataToOctane(sonarBuildCoverageQueueItem);
+			logger.debug(configurer.octaneConfiguration.getLocationForLog() + "successfully processed " + sonarBuildCoverageQueueItem);
+			sonarIntegrationQueue.remove();
+		} catch (TemporaryException te) {
+			logger.error(configurer.octaneConfiguration.getLocationForLog() + "temporary error on " + sonarBuildCoverageQueueItem + ", breathing " + TEMPORARY_ERROR_BREATHE_INTERVAL + "ms and retrying", te);
+			return workerPreflight.backoff(TEMPORARY_ERROR_BREATHE_INTERVAL);
+		} catch (PermanentException pe) {
+			logger.error(configurer.octaneConfiguration.getLocationForLog() + "permanent error on " + sonarBuildCoverageQueueItem + ", passing over", pe);
+			sonarIntegrationQueue.remove();
+		} catch (Throwable t) {
+			logger.error(configurer.octaneConfiguration.getLocationForLog() + "unexpected error on build coverage item '" + sonarBuildCoverageQueueItem + "', passing over", t);
+			sonarIntegrationQueue.remove();
 		}
+		return QueueWorkersScheduler.NO_PAUSE;
 	}
 
 	@Override
@@ -139,8 +129,6 @@ public class SonarServiceImpl implements SonarService {
 		try {
 			String webhookKey = getWebhookKey(ciCallbackUrl, sonarURL, sonarToken);
 			if (webhookKey == null) {
-				HttpClient httpClient = HttpClientBuilder.create().build();
-
 				String name = configurer.pluginServices.getServerInfo().getType() + "-" + configurer.pluginServices.getServerInfo().getUrl()
 						.replaceAll("[<>:\"/\\|?*]", "_").trim();
 				URIBuilder uriBuilder = new URIBuilder(sonarURL + WEBHOOK_CREATE_URI)
@@ -148,16 +136,17 @@ public class SonarServiceImpl implements SonarService {
 						.setParameter("url", ciCallbackUrl);
 
 				HttpPost request = new HttpPost(uriBuilder.toString());
-				setTokenInHttpRequest(request, sonarToken);
-				HttpResponse response = httpClient.execute(request);
-
-				if (response.getStatusLine().getStatusCode() != HttpStatus.SC_OK) {
-					// error can sometimes return empty results
-					String errorMessage = "exception during webhook registration for  ciNotificationUrl: "
-							.concat(ciCallbackUrl)
-							.concat(" with status code: ")
-							.concat(String.valueOf(response.getStatusLine().getStatusCode()));
-					throw new SonarIntegrationException(errorMessage);
+				SonarClient.setTokenInHttpRequest(request, sonarToken);
+				try (CloseableHttpResponse response = SonarClient.getInstance().getHttpClient().execute(request)) {
+					if (response.getStatusLine().getStatusCode() != HttpStatus.SC_OK) {
+						// error can sometimes return empty results
+						String errorMessage = "exception during webhook registration for  ciNotificationUrl: "
+								.concat(ciCallbackUrl)
+								.concat(" with status code: ")
+								.concat(String.valueOf(response.getStatusLine().getStatusCode()));
+						throw new SonarIntegrationException(errorMessage);
+					}
+					EntityUtils.consume(response.getEntity());
 				}
 			}
 
@@ -173,12 +162,12 @@ public class SonarServiceImpl implements SonarService {
 
 	@Override
 	public void shutdown() {
-		sonarIntegrationExecutor.shutdown();
+		workerPreflight.shutdown();
 	}
 
 	@Override
 	public boolean isShutdown() {
-		return sonarIntegrationExecutor.isShutdown();
+		return workerPreflight.isShutdown();
 	}
 
 	@Override
@@ -208,14 +197,13 @@ public class SonarServiceImpl implements SonarService {
 	public String getSonarStatus(String sonarURL) {
 		try {
 			URIBuilder uriBuilder = new URIBuilder(sonarURL + SONAR_STATUS_URI);
-			HttpClient httpClient = HttpClientBuilder.create().build();
 			HttpGet request = new HttpGet(uriBuilder.build());
-			HttpResponse response = httpClient.execute(request);
-
-			if (response.getStatusLine().getStatusCode() == HttpStatus.SC_OK) {
-				return CIPluginSDKUtils.getObjectMapper().readTree(response.getEntity().getContent()).get("status").textValue();
-			} else {
-				return CONNECTION_FAILURE;
+			try (CloseableHttpResponse response = SonarClient.getInstance().getHttpClient().execute(request)) {
+				if (response.getStatusLine().getStatusCode() == HttpStatus.SC_OK) {
+					return CIPluginSDKUtils.getObjectMapper().readTree(response.getEntity().getContent()).get("status").textValue();
+				} else {
+					return CONNECTION_FAILURE;
+				}
 			}
 		} catch (URISyntaxException | IOException e) {
 			return CONNECTION_FAILURE;
@@ -237,19 +225,30 @@ public class SonarServiceImpl implements SonarService {
 				.append(" with buildId: ").append(queueItem.buildId);
 
 		try {
-			//  retrieve coverage report from Sonar
-			Integer pageIndex = 0;
-			BuildCoverage buildCoverageReport = dtoFactory.newDTO(BuildCoverage.class);
-			JsonNode jsonReport;
-			do {
-				pageIndex++;
-				InputStream reportStream = getPageFromSonar(queueItem, pageIndex);
-				jsonReport = CIPluginSDKUtils.getObjectMapper().readTree(reportStream);
-				buildCoverageReport.mergeSonarCoverageReport(jsonReport);
-			} while (SonarUtils.sonarReportHasAnotherPage(pageIndex, jsonReport));
-
-			//  push coverage to Octane
-			OctaneResponse response = coverageService.pushCoverage(queueItem.jobId, queueItem.buildId, CoverageReportType.SONAR_REPORT, dtoFactory.dtoToJsonStream(buildCoverageReport));
+			//  retrieve coverage report from Sonar, the pages are aggregated in order into the spooled report
+			File spooledReport = File.createTempFile("sonar-coverage", ".json");
+			OctaneResponse response;
+			try {
+				try (SonarCoverageAggregator aggregator = new SonarCoverageAggregator(new BufferedOutputStream(new FileOutputStream(spooledReport)))) {
+					SonarClient.getInstance().fetchPages(queueItem.projectKey, queueItem.sonarToken,
+							page -> createCoverageQuery(queueItem, page), COMPONENT_TREE_PAGE_SIZE,
+							SonarCoverageAggregator::readPage, page -> {
+								try {
+									aggregator.accept(page);
+								} catch (IOException ioe) {
+									throw new PermanentException("failed to spool sonar coverage report", ioe);
+								}
+							});
+					logger.debug(configurer.octaneConfiguration.getLocationForLog() + "aggregated sonar coverage of " + aggregator.getFilesCount() + " files for " + queueItem);
+				}
+
+				//  push coverage to Octane
+				try (InputStream coverageReport = new FileInputStream(spooledReport)) {
+					response = coverageService.pushCoverage(queueItem.jobId, queueItem.buildId, CoverageReportType.SONAR_REPORT, coverageReport);
+				}
+			} finally {
+				Files.deleteIfExists(spooledReport.toPath());
+			}
 			if (response.getStatus() == HttpStatus.SC_SERVICE_UNAVAILABLE) {
 				errorMessage.append(" with status code: ").append(response.getStatus());
 				throw new TemporaryException(errorMessage.toString());
@@ -269,37 +268,12 @@ public class SonarServiceImpl implements SonarService {
 	private String getWebhookKey(String ciNotificationUrl, String sonarURL, String token) throws SonarIntegrationException {
 		try {
 			URIBuilder uriBuilder = new URIBuilder(sonarURL + WEBHOOK_LIST_URI);
-			HttpClient httpClient = HttpClientBuilder.create().build();
 			HttpGet request = new HttpGet(uriBuilder.build());
-			setTokenInHttpRequest(request, token);
-
-			HttpResponse response = httpClient.execute(request);
-			InputStream content = response.getEntity().getContent();
-			// if webhooks exist
-			if (content.available() != 0) {
-				JsonNode jsonResponse = CIPluginSDKUtils.getObjectMapper().readTree(content);
-				if (response.getStatusLine().getStatusCode() == HttpStatus.SC_OK) {
-					ArrayNode webhooksListJson = (ArrayNode) jsonResponse.get("webhooks");
-					if (webhooksListJson.size() > 0) {
-						for (JsonNode webhookNode : webhooksListJson) {
-							String entryURL = webhookNode.get("url").textValue();
-							if (entryURL.equals(ciNotificationUrl)) {
-								return webhookNode.get("key").textValue();
-							}
-						}
-					}
-					return null;
-				} else {
-					String errorMessage = ""
-							.concat("failed to get webhook key from sonarqube with notification URL: ")
-							.concat(ciNotificationUrl)
-							.concat(" with status code: ").concat(String.valueOf(response.getStatusLine().getStatusCode()))
-							.concat(" with errors: ").concat(jsonResponse.get("errors").toString());
-					throw new SonarIntegrationException(errorMessage);
+			SonarClient.setTokenInHttpRequest(request, token);
 
-				}
+			try (CloseableHttpResponse response = SonarClient.getInstance().getHttpClient().execute(request)) {
+				return getWebhookKey(ciNotificationUrl, response);
 			}
-			return null;
 		} catch (SonarIntegrationException e) {
 			logger.error(configurer.octaneConfiguration.getLocationForLog() + e.getMessage(), e);
 			throw e;
@@ -311,46 +285,46 @@ public class SonarServiceImpl implements SonarService {
 		}
 	}
 
-	private InputStream getPageFromSonar(SonarBuildCoverageQueueItem queueItem, Integer page) {
-		String sonarURL = queueItem.sonarURL;
-		String projectKey = queueItem.projectKey;
-		String token = queueItem.sonarToken;
-		StringBuilder errorMessage = new StringBuilder()
-				.append("failed to get data from sonar for project key: ")
-				.append(projectKey);
-		try {
-
-			URIBuilder uriBuilder = new URIBuilder(sonarURL + COMPONENT_TREE_URI);
-			uriBuilder.setParameter("metricKeys", "lines_to_cover,uncovered_lines")
-					.setParameter("component", projectKey)
-					.setParameter("qualifiers", "FIL,TRK")
-					.setParameter("ps", "500")
-					.setParameter("p", page.toString());
-
-			HttpClient httpClient = HttpClientBuilder.create().build();
-			HttpGet request = new HttpGet(uriBuilder.build());
-			setTokenInHttpRequest(request, token);
-
-			HttpResponse httpResponse = httpClient.execute(request);
-			int statusCode = httpResponse.getStatusLine().getStatusCode();
-			if (statusCode != HttpStatus.SC_OK) {
-				errorMessage.append(" with status code: ").append(statusCode)
-						.append(" and response body: ").append(EntityUtils.toString(httpResponse.getEntity(), "UTF-8"));
-				throw new PermanentException(errorMessage.toString());
+	private String getWebhookKey(String ciNotificationUrl, HttpResponse response) throws IOException, SonarIntegrationException {
+		InputStream content = response.getEntity().getContent();
+		// if webhooks exist
+		if (content.available() != 0) {
+			JsonNode jsonResponse = CIPluginSDKUtils.getObjectMapper().readTree(content);
+			if (response.getStatusLine().getStatusCode() == HttpStatus.SC_OK) {
+				ArrayNode webhooksListJson = (ArrayNode) jsonResponse.get("webhooks");
+				if (webhooksListJson.size() > 0) {
+					for (JsonNode webhookNode : webhooksListJson) {
+						String entryURL = webhookNode.get("url").textValue();
+						if (entryURL.equals(ciNotificationUrl)) {
+							return webhookNode.get("key").textValue();
+						}
+					}
+				}
+				return null;
 			} else {
-				return httpResponse.getEntity().getContent();
+				String errorMessage = ""
+						.concat("failed to get webhook key from sonarqube with notification URL: ")
+						.concat(ciNotificationUrl)
+						.concat(" with status code: ").concat(String.valueOf(response.getStatusLine().getStatusCode()))
+						.concat(" with errors: ").concat(jsonResponse.get("errors").toString());
+				throw new SonarIntegrationException(errorMessage);
+
 			}
-		} catch (PermanentException e) {
-			throw e;
-		} catch (Exception e) {
-			logger.error(configurer.octaneConfiguration.getLocationForLog() + errorMessage.toString(), e);
-			throw new PermanentException(errorMessage.toString(), e);
 		}
+		return null;
 	}
 
-	private void setTokenInHttpRequest(HttpRequest request, String token) throws AuthenticationException {
-		UsernamePasswordCredentials creds = new UsernamePasswordCredentials(token, "");
-		request.addHeader(new BasicScheme().authenticate(creds, request, null));
+	private URIBuilder createCoverageQuery(SonarBuildCoverageQueueItem queueItem, int page) {
+		try {
+			return new URIBuilder(queueItem.sonarURL + COMPONENT_TREE_URI)
+					.setParameter("metricKeys", "lines_to_cover,uncovered_lines")
+					.setParameter("component", queueItem.projectKey)
+					.setParameter("qualifiers", "FIL,TRK")
+					.setParameter("ps", String.valueOf(COMPONENT_TREE_PAGE_SIZE))
+					.setParameter("p", String.valueOf(page));
+		} catch (URISyntaxException e) {
+			throw new PermanentException("failed to create sonar coverage query for project key: " + queueItem.projectKey, e);
+		}
 	}
 
 	@Override
@@ -397,15 +371,4 @@ public class SonarServiceImpl implements SonarService {
 			return "'" + jobId + " #" + buildId + "'";
 		}
 	}
-
-	private static final class SonarIntegrationWorkerThreadFactory implements ThreadFactory {
-
-		@Override
-		public Thread newThread(Runnable runnable) {
-			Thread result = new Thread(runnable);
-			result.setName("SonarIntegrationWorker-" + result.getId());
-			result.setDaemon(true);
-			return result;
-		}
-	}
 }
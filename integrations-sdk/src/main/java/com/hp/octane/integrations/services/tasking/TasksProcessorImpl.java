@@ -318,6 +318,7 @@ final class TasksProcessorImpl implements TasksProcessor {
 			result.setBody(dtoFactory.dtoToJson(content));
 			result.getHeaders().put(HttpHeaders.CONTENT_TYPE, ContentType.APPLICATION_JSON.getMimeType());
 			configurationService.addToOctaneRootsCache(jobId);//update cache that new pipeline root is added
+			configurationService.getPreflightCache().invalidate();//preflight answers of the pipeline's jobs are changed
 		} else {
 			result.setStatus(HttpStatus.SC_NOT_FOUND);
 		}
@@ -326,6 +327,7 @@ final class TasksProcessorImpl implements TasksProcessor {
 	private void executePipelineRunExecuteRequest(OctaneResultAbridged result, String jobId, String originalBody) {
 		logger.info(configurer.octaneConfiguration.getLocationForLog() + "RunExecute job " + jobId);
 		configurationService.addToOctaneRootsCache(jobId);//test runner started from here, so it will be added to cache
+		configurationService.getPreflightCache().invalidate();
 		CIParameters ciParameters = originalBody != null ? DTOFactory.getInstance().dtoFromJson(originalBody, CIParameters.class) : null;
 		configurer.pluginServices.runPipeline(jobId, ciParameters);
 		result.setStatus(HttpStatus.SC_CREATED);
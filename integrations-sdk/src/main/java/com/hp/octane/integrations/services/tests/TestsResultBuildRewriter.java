@@ -0,0 +1,168 @@
+/*
+ *     Copyright 2017 EntIT Software LLC, a Micro Focus company, L.P.
+ *     Licensed under the Apache License, Version 2.0 (the "License");
+ *     you may not use this file except in compliance with the License.
+ *     You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *     Unless required by applicable law or agreed to in writing, software
+ *     distributed under the License is distributed on an "AS IS" BASIS,
+ *     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *     See the License for the specific language governing permissions and
+ *     limitations under the License.
+ */
+
+package com.hp.octane.integrations.services.tests;
+
+import com.hp.octane.integrations.exceptions.PermanentException;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.XMLStreamWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Streaming rewriter of the test results XML for Octane versions prior to 15.1.60, where the CI server instance ID is part of the results body
+ * - every 'build' element is replaced by an empty one, carrying the server, job and build IDs as attributes; its closing tag is dropped
+ * - all the other content is copied as is, event by event (cursor API, no per event objects), so the memory footprint does not depend on the size of the results
+ */
+
+final class TestsResultBuildRewriter {
+	private static final String BUILD_ELEMENT = "build";
+	private static final XMLInputFactory inputFactory = XMLInputFactory.newInstance();
+	private static final XMLOutputFactory outputFactory = XMLOutputFactory.newInstance();
+
+	static {
+		inputFactory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+		inputFactory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+	}
+
+	private final String serverId;
+	private final String jobId;
+	private final String buildId;
+
+	TestsResultBuildRewriter(String serverId, String jobId, String buildId) {
+		this.serverId = serverId;
+		this.jobId = jobId;
+		this.buildId = buildId;
+	}
+
+	/**
+	 * Copies the test results from source to target, rewriting the build elements on the fly
+	 * Target is written in UTF-8 and is flushed, but NOT closed
+	 *
+	 * @param source test results XML
+	 * @param target stream to write the rewritten XML into
+	 * @throws IOException        failure to read or write the XML
+	 * @throws PermanentException  the test results are not a well formed XML
+	 */
+	void rewrite(InputStream source, OutputStream target) throws IOException {
+		XMLStreamReader reader = null;
+		XMLStreamWriter writer = null;
+		try {
+			reader = inputFactory.createXMLStreamReader(source);
+			writer = outputFactory.createXMLStreamWriter(target, StandardCharsets.UTF_8.name());
+			writer.writeStartDocument(StandardCharsets.UTF_8.name(), reader.getVersion() != null ? reader.getVersion() : "1.0");
+			while (reader.hasNext()) {
+				copyEvent(reader.next(), reader, writer);
+			}
+			writer.flush();
+		} catch (XMLStreamException xmlse) {
+			if (xmlse.getNestedException() instanceof IOException) {
+				throw (IOException) xmlse.getNestedException();
+			}
+			throw new PermanentException("failed to update ci server instance ID in the test results XML", xmlse);
+		} finally {
+			close(reader, writer);
+		}
+	}
+
+	private void copyEvent(int event, XMLStreamReader reader, XMLStreamWriter writer) throws XMLStreamException {
+		switch (event) {
+			case XMLStreamConstants.START_ELEMENT:
+				if (BUILD_ELEMENT.equals(reader.getLocalName())) {
+					writer.writeEmptyElement(BUILD_ELEMENT);
+					writer.writeAttribute("server_id", serverId);
+					writer.writeAttribute("job_id", jobId);
+					writer.writeAttribute("build_id", buildId);
+				} else {
+					copyStartElement(reader, writer);
+				}
+				break;
+			case XMLStreamConstants.END_ELEMENT:
+				//  the rewritten build element is an empty one, already closed
+				if (!BUILD_ELEMENT.equals(reader.getLocalName())) {
+					writer.writeEndElement();
+				}
+				break;
+			case XMLStreamConstants.CHARACTERS:
+			case XMLStreamConstants.SPACE:
+				writer.writeCharacters(reader.getTextCharacters(), reader.getTextStart(), reader.getTextLength());
+				break;
+			case XMLStreamConstants.CDATA:
+				writer.writeCData(reader.getText());
+				break;
+			case XMLStreamConstants.COMMENT:
+				writer.writeComment(reader.getText());
+				break;
+			case XMLStreamConstants.PROCESSING_INSTRUCTION:
+				writer.writeProcessingInstruction(reader.getPITarget(), reader.getPIData());
+				break;
+			case XMLStreamConstants.ENTITY_REFERENCE:
+				writer.writeEntityRef(reader.getLocalName());
+				break;
+			case XMLStreamConstants.END_DOCUMENT:
+				writer.writeEndDocument();
+				break;
+			default:
+				//  DTD is not supported (and not expected) in the test results
+				break;
+		}
+	}
+
+	private static void copyStartElement(XMLStreamReader reader, XMLStreamWriter writer) throws XMLStreamException {
+		String prefix = reader.getPrefix();
+		String namespace = reader.getNamespaceURI();
+		if (namespace != null && !namespace.isEmpty()) {
+			writer.writeStartElement(prefix != null ? prefix : "", reader.getLocalName(), namespace);
+		} else {
+			writer.writeStartElement(reader.getLocalName());
+		}
+		for (int i = 0; i < reader.getNamespaceCount(); i++) {
+			String namespacePrefix = reader.getNamespacePrefix(i);
+			if (namespacePrefix == null || namespacePrefix.isEmpty()) {
+				writer.writeDefaultNamespace(reader.getNamespaceURI(i));
+			} else {
+				writer.writeNamespace(namespacePrefix, reader.getNamespaceURI(i));
+			}
+		}
+		for (int i = 0; i < reader.getAttributeCount(); i++) {
+			String attributeNamespace = reader.getAttributeNamespace(i);
+			if (attributeNamespace != null && !attributeNamespace.isEmpty()) {
+				writer.writeAttribute(reader.getAttributePrefix(i), attributeNamespace, reader.getAttributeLocalName(i), reader.getAttributeValue(i));
+			} else {
+				writer.writeAttribute(reader.getAttributeLocalName(i), reader.getAttributeValue(i));
+			}
+		}
+	}
+
+	private static void close(XMLStreamReader reader, XMLStreamWriter writer) {
+		try {
+			if (writer != null) {
+				writer.close();
+			}
+			if (reader != null) {
+				reader.close();
+			}
+		} catch (XMLStreamException ignored) {
+			//  neither of them closes the underlying streams, nothing to release here
+		}
+	}
+}
@@ -0,0 +1,94 @@
+/*
+ *     Copyright 2017 EntIT Software LLC, a Micro Focus company, L.P.
+ *     Licensed under the Apache License, Version 2.0 (the "License");
+ *     you may not use this file except in compliance with the License.
+ *     You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *     Unless required by applicable law or agreed to in writing, software
+ *     distributed under the License is distributed on an "AS IS" BASIS,
+ *     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *     See the License for the specific language governing permissions and
+ *     limitations under the License.
+ */
+
+package com.hp.octane.integrations.services.tests;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * In-order mirror of the head of the durable tests results queue (tape exposes the head only), pushed in batches
+ * - items of a batch may be acknowledged in any order, only the acknowledged prefix of the queue may be removed
+ * - batches are taken from the first batchSize items of the queue only: acknowledgements are kept in memory,
+ *   so after a restart at most batchSize - 1 items acknowledged behind a not yet acknowledged head are pushed again
+ * Not thread safe, guarded by the owner together with the queue itself
+ *
+ * @param <T> type of the queued items
+ */
+
+final class TestsResultPushWindow<T> {
+	private final int batchSize;
+	private final LinkedList<T> queuedItems = new LinkedList<>();
+	private final Set<T> acknowledgedItems = Collections.newSetFromMap(new IdentityHashMap<>());
+
+	TestsResultPushWindow(int batchSize) {
+		this.batchSize = Math.max(1, batchSize);
+	}
+
+	//  to be called when the item is added to the queue (including the replay of the persisted items)
+	void added(T item) {
+		queuedItems.add(item);
+	}
+
+	//  to be called when the head of the queue is removed
+	void removed() {
+		acknowledgedItems.remove(queuedItems.poll());
+	}
+
+	/**
+	 * @return the items of the first batchSize items of the queue, that are not acknowledged yet, in the queue order
+	 */
+	List<T> peekBatch() {
+		List<T> result = new ArrayList<>();
+		int position = 0;
+		for (T item : queuedItems) {
+			if (position++ >= batchSize) {
+				break;
+			}
+			if (!acknowledgedItems.contains(item)) {
+				result.add(item);
+			}
+		}
+		return result;
+	}
+
+	void acknowledge(T item) {
+		if (queuedItems.contains(item)) {
+			acknowledgedItems.add(item);
+		}
+	}
+
+	/**
+	 * @return number of the acknowledged items at the head of the queue, that may be removed from it
+	 */
+	int getAcknowledgedPrefixSize() {
+		int result = 0;
+		for (T item : queuedItems) {
+			if (!acknowledgedItems.contains(item)) {
+				break;
+			}
+			result++;
+		}
+		return result;
+	}
+
+	int getAcknowledgedCount() {
+		return acknowledgedItems.size();
+	}
+}
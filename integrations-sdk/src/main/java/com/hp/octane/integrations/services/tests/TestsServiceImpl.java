@@ -24,12 +24,15 @@ import com.hp.octane.integrations.dto.tests.TestsResult;
 import com.hp.octane.integrations.exceptions.PermanentException;
 import com.hp.octane.integrations.exceptions.RequestTimeoutException;
 import com.hp.octane.integrations.exceptions.TemporaryException;
+import com.hp.octane.integrations.services.QueueWorkersScheduler;
 import com.hp.octane.integrations.services.WorkerPreflight;
 import com.hp.octane.integrations.services.configuration.ConfigurationService;
 import com.hp.octane.integrations.services.configuration.ConfigurationServiceImpl;
+import com.hp.octane.integrations.services.configuration.PreflightCache;
 import com.hp.octane.integrations.services.configurationparameters.factory.ConfigurationParameterFactory;
 import com.hp.octane.integrations.services.queueing.QueueingService;
-import com.hp.octane.integrations.services.rest.OctaneRestClient;
+import com.hp.octane.integrations.services.rest.OctaneChunkedUpload;
+import com.hp.octane.integrations.services.rest.OctaneRequestBodyWriter;
 import com.hp.octane.integrations.services.rest.RestService;
 import com.hp.octane.integrations.utils.CIPluginSDKUtils;
 import com.squareup.tape.ObjectQueue;
@@ -45,13 +48,20 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.InterruptedIOException;
 import java.net.URISyntaxException;
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 import static com.hp.octane.integrations.services.rest.RestService.CORRELATION_ID_HEADER;
 
@@ -60,6 +70,9 @@ import static com.hp.octane.integrations.services.rest.RestService.CORRELATION_I
  * Handled by
  * com.hp.mqm.analytics.devops.insights.resources.DevopsInsightsSSAResource#isTestResultNeeded
  * com.hp.mqm.testbox.rest.TestResultCIPushResource#pushXml
+ * Queue items are pushed in batches: preflight is resolved once per distinct job/root job of the batch,
+ * pushes run on a bounded pool and an item is removed from the queue only once it and all the items before it are acknowledged
+ * (acknowledgements are not persisted, so after a restart the items acknowledged behind the head, less than a batch of them, are pushed again)
  */
 
 final class TestsServiceImpl implements TestsService {
@@ -68,8 +81,17 @@ final class TestsServiceImpl implements TestsService {
 	private static final String TESTS_RESULTS_QUEUE_FILE = "test-results-queue.dat";
 	public static int TEMPORARY_ERROR_BREATHE_INTERVAL = 15000;
 
-	private final ExecutorService testsPushExecutor = Executors.newSingleThreadExecutor(new TestsResultPushWorkerThreadFactory());
+	private final int PUSH_BATCH_SIZE = System.getProperty("octane.sdk.tests.push-batch-size") != null ? Integer.parseInt(System.getProperty("octane.sdk.tests.push-batch-size")) : 20;
+	private final int PUSH_PARALLELISM = System.getProperty("octane.sdk.tests.push-parallelism") != null ? Integer.parseInt(System.getProperty("octane.sdk.tests.push-parallelism")) : 4;
+	//  chunked upload (see OctaneChunkedUpload) of the test results, disabled by default as it requires the server side support
+	private final int CHUNKED_UPLOAD_PART_SIZE = System.getProperty("octane.sdk.tests.chunked-upload-part-size") != null ? Integer.parseInt(System.getProperty("octane.sdk.tests.chunked-upload-part-size")) : 0;
+
+	private final ThreadPoolExecutor testsPushPool = new ThreadPoolExecutor(Math.max(1, PUSH_PARALLELISM), Math.max(1, PUSH_PARALLELISM), 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), new TestsResultPushPoolThreadFactory());
 	private final ObjectQueue<TestsResultQueueItem> testResultsQueue;
+	private final Object QUEUE_LOCK = new Object();
+
+	//  in-order mirror of the queue and the items already handled but still waiting for the ones before them, guarded by QUEUE_LOCK
+	private final TestsResultPushWindow<TestsResultQueueItem> pushWindow = new TestsResultPushWindow<>(PUSH_BATCH_SIZE);
 	private final OctaneSDK.SDKServicesConfigurer configurer;
 	private final RestService restService;
 	private final WorkerPreflight workerPreflight;
@@ -78,6 +100,8 @@ final class TestsServiceImpl implements TestsService {
 	//Metrics
 	private long requestTimeoutCount = 0;
 	private long lastRequestTimeoutTime = 0;
+	private volatile int lastBatchSize = 0;
+	private final AtomicLong preflightRequestsSavedCount = new AtomicLong();
 
 	TestsServiceImpl(OctaneSDK.SDKServicesConfigurer configurer, QueueingService queueingService, RestService restService, ConfigurationService configurationService) {
 		if (configurer == null) {
@@ -99,14 +123,31 @@ final class TestsServiceImpl implements TestsService {
 		} else {
 			testResultsQueue = queueingService.initMemoQueue();
 		}
+		//  setting the listener replays the items already persisted in the queue
+		synchronized (QUEUE_LOCK) {
+			testResultsQueue.setListener(new ObjectQueue.Listener<TestsResultQueueItem>() {
+				@Override
+				public void onAdd(ObjectQueue<TestsResultQueueItem> queue, TestsResultQueueItem item) {
+					pushWindow.added(item);
+				}
+
+				@Override
+				public void onRemove(ObjectQueue<TestsResultQueueItem> queue) {
+					pushWindow.removed();
+				}
+			});
+		}
 
 		this.configurer = configurer;
 		this.restService = restService;
 		this.configurationService = configurationService;
 		this.workerPreflight = new WorkerPreflight(this, configurationService, logger);
 
+		//  pool threads are started only when there are results to push
+		testsPushPool.allowCoreThreadTimeOut(true);
+
 		logger.info(configurer.octaneConfiguration.getLocationForLog() + "starting background worker...");
-		testsPushExecutor.execute(this::worker);
+		workerPreflight.start("TestsResultPushWorker", this::worker);
 		logger.info(configurer.octaneConfiguration.getLocationForLog() + "initialized SUCCESSFULLY (backed by " + testResultsQueue.getClass().getSimpleName() + ")");
 	}
 
@@ -116,6 +157,12 @@ final class TestsServiceImpl implements TestsService {
 			throw new IllegalArgumentException("job CI ID MUST NOT be null nor empty");
 		}
 
+		return configurationService.getPreflightCache().get(PreflightCache.Kind.TESTS, serverCiId, jobId, rootJobId,
+				() -> testsResultPreflightRequest(serverCiId, jobId, rootJobId), relevant -> !relevant);
+	}
+
+	private boolean testsResultPreflightRequest(String serverCiId, String jobId, String rootJobId) {
+
 		boolean base64 = isEncodeBase64();
 		String jobIdEncoded = base64 ? CIPluginSDKUtils.urlEncodeBase64(jobId) : CIPluginSDKUtils.urlEncodePathParam(jobId);
 		String rootJobIdEncoded = base64 ? CIPluginSDKUtils.urlEncodeBase64(rootJobId) : CIPluginSDKUtils.urlEncodeQueryParam(rootJobId);
@@ -187,7 +234,43 @@ final class TestsServiceImpl implements TestsService {
 			throw new IllegalArgumentException("build ID MUST NOT be null nor empty");
 		}
 
-		OctaneRestClient octaneRestClient = restService.obtainOctaneRestClient();
+		OctaneRequest request = createPushTestsResultRequest(jobId, buildId).setBody(testsResult);
+		try {
+			return restService.obtainOctaneRestClient().execute(request);
+		} catch (InterruptedIOException ie) {
+			throw new RequestTimeoutException("!!!!!!!!!!!!!!!!!!! request timeout during pushTestsResult : " + ie.getClass().getCanonicalName() + " - " + ie.getMessage());
+		}
+	}
+
+	//  streams the test results from the body writer right into the (compressed) request, without buffering them
+	private OctaneResponse pushTestsResult(OctaneRequestBodyWriter testsResultWriter, String jobId, String buildId) throws IOException {
+		OctaneRequest request = createPushTestsResultRequest(jobId, buildId);
+		try {
+			return restService.obtainOctaneRestClient().execute(request, testsResultWriter, (response, body) ->
+					response.setBody(body != null ? CIPluginSDKUtils.inputStreamToUTF8String(body) : ""));
+		} catch (InterruptedIOException ie) {
+			throw new RequestTimeoutException("!!!!!!!!!!!!!!!!!!! request timeout during pushTestsResult : " + ie.getClass().getCanonicalName() + " - " + ie.getMessage());
+		}
+	}
+
+	//  uploads the test results part by part, resuming from the checkpoint kept with the queue item
+	private OctaneResponse pushTestsResultChunked(TestsResultQueueItem queueItem) throws IOException {
+		OctaneRequest request = createPushTestsResultRequest(queueItem.jobId, queueItem.buildId);
+		OctaneChunkedUpload upload = new OctaneChunkedUpload(queueItem.getUploadId(), CHUNKED_UPLOAD_PART_SIZE, queueItem.getUploadedParts(), () -> {
+			InputStream testsResult = configurer.pluginServices.getTestsResult(queueItem.jobId, queueItem.buildId);
+			if (testsResult == null) {
+				throw new IOException("test result of " + queueItem + " resolved to be NULL on re-read");
+			}
+			return testsResult;
+		}, queueItem::setUploadedParts);
+		try {
+			return restService.obtainOctaneRestClient().executeChunked(request, upload);
+		} catch (InterruptedIOException ie) {
+			throw new RequestTimeoutException("!!!!!!!!!!!!!!!!!!! request timeout during pushTestsResult of part " + upload.getAcknowledgedParts() + " : " + ie.getClass().getCanonicalName() + " - " + ie.getMessage());
+		}
+	}
+
+	private OctaneRequest createPushTestsResultRequest(String jobId, String buildId) {
 		Map<String, String> headers = new HashMap<>();
 		headers.put(RestService.CONTENT_TYPE_HEADER, ContentType.APPLICATION_XML.getMimeType());
 		headers.put(CORRELATION_ID_HEADER, CIPluginSDKUtils.getNextCorrelationId());
@@ -213,18 +296,11 @@ final class TestsServiceImpl implements TestsService {
 		if (base64) {
 			uri = CIPluginSDKUtils.addParameterEncode64ToUrl(uri);
 		}
-		OctaneRequest request = dtoFactory.newDTO(OctaneRequest.class)
+		return dtoFactory.newDTO(OctaneRequest.class)
 				.setMethod(HttpMethod.POST)
 				.setUrl(uri)
 				.setHeaders(headers)
-				.setBody(testsResult)
 				.setTimeoutSec(60 * 2);//give 2 min for case of big number of tests
-
-		try {
-			return octaneRestClient.execute(request);
-		} catch (InterruptedIOException ie) {
-			throw new RequestTimeoutException("!!!!!!!!!!!!!!!!!!! request timeout during pushTestsResult : " + ie.getClass().getCanonicalName() + " - " + ie.getMessage());
-		}
 	}
 
 	@Override
@@ -243,51 +319,103 @@ final class TestsServiceImpl implements TestsService {
 			return;
 		}
 
-		testResultsQueue.add(new TestsResultQueueItem(jobId, buildId, rootJobId));
+		synchronized (QUEUE_LOCK) {
+			testResultsQueue.add(new TestsResultQueueItem(jobId, buildId, rootJobId));
+		}
 		workerPreflight.itemAddedToQueue();
 	}
 
 	@Override
 	public void shutdown() {
-		testsPushExecutor.shutdown();
+		workerPreflight.shutdown();
+		testsPushPool.shutdown();
 	}
 
 	@Override
 	public boolean isShutdown() {
-		return testsPushExecutor.isShutdown();
+		return workerPreflight.isShutdown();
 	}
 
-	//  infallible everlasting background worker
-	private void worker() {
-		while (!testsPushExecutor.isShutdown()) {
-			if(!workerPreflight.preflight()){
-				continue;
-			}
+	//  infallible background worker step, scheduled by the worker preflight
+	private long worker() {
+		try {
+			List<TestsResultQueueItem> batch = peekBatch();
+			return batch.isEmpty() ? QueueWorkersScheduler.NO_PAUSE : pushBatch(batch);
+		} catch (Throwable t) {
+			logger.error(configurer.octaneConfiguration.getLocationForLog() + "unexpected error while pushing test results batch", t);
+			return workerPreflight.backoff(TEMPORARY_ERROR_BREATHE_INTERVAL);
+		}
+	}
 
-			TestsResultQueueItem testsResultQueueItem = null;
+	private List<TestsResultQueueItem> peekBatch() {
+		synchronized (QUEUE_LOCK) {
+			return pushWindow.peekBatch();
+		}
+	}
+
+	private long pushBatch(List<TestsResultQueueItem> batch) {
+		lastBatchSize = batch.size();
+
+		//  preflight once per distinct job / root job, then push each item as soon as its preflight is resolved
+		Map<String, CompletableFuture<Boolean>> preflights = new HashMap<>();
+		List<CompletableFuture<Void>> pushes = new ArrayList<>(batch.size());
+		for (TestsResultQueueItem item : batch) {
+			CompletableFuture<Boolean> preflight = preflights.computeIfAbsent(item.jobId + "\n" + item.rootJobId, key ->
+					CompletableFuture.supplyAsync(() -> isTestsResultRelevant(item.jobId, item.rootJobId), testsPushPool));
+			pushes.add(preflight.thenAcceptAsync(isRelevant -> doPushTestResult(item, isRelevant), testsPushPool));
+		}
+		preflightRequestsSavedCount.addAndGet(batch.size() - preflights.size());
+
+		boolean temporaryFailure = false;
+		for (int i = 0; i < batch.size(); i++) {
+			TestsResultQueueItem testsResultQueueItem = batch.get(i);
 			try {
-				testsResultQueueItem = testResultsQueue.peek();
-				doPreflightAndPushTestResult(testsResultQueueItem);
-				testResultsQueue.remove();
-			} catch (RequestTimeoutException rte){
-				requestTimeoutCount++;
-				lastRequestTimeoutTime = System.currentTimeMillis();
-				logger.error(configurer.octaneConfiguration.getLocationForLog() + rte.getMessage());
-				CIPluginSDKUtils.doWait(TEMPORARY_ERROR_BREATHE_INTERVAL);
-			} catch (TemporaryException tque) {
-				logger.error(configurer.octaneConfiguration.getLocationForLog() + "temporary error on " + testsResultQueueItem + ", breathing " + TEMPORARY_ERROR_BREATHE_INTERVAL + "ms and retrying", tque);
-				CIPluginSDKUtils.doWait(TEMPORARY_ERROR_BREATHE_INTERVAL);
-			} catch (PermanentException pqie) {
-				logger.error(configurer.octaneConfiguration.getLocationForLog() + "permanent error on " + testsResultQueueItem + ", passing over", pqie);
-				testResultsQueue.remove();
-			} catch (Throwable t) {
-				logger.error(configurer.octaneConfiguration.getLocationForLog() + "unexpected error on build log item '" + testsResultQueueItem + "', passing over", t);
+				pushes.get(i).join();
+				acknowledge(testsResultQueueItem);
+			} catch (CompletionException ce) {
+				Throwable cause = ce.getCause() != null ? ce.getCause() : ce;
+				if (cause instanceof RequestTimeoutException) {
+					requestTimeoutCount++;
+					lastRequestTimeoutTime = System.currentTimeMillis();
+					logger.error(configurer.octaneConfiguration.getLocationForLog() + cause.getMessage());
+					temporaryFailure = true;
+				} else if (cause instanceof TemporaryException) {
+					logger.error(configurer.octaneConfiguration.getLocationForLog() + "temporary error on " + testsResultQueueItem + ", will be retried", cause);
+					temporaryFailure = true;
+				} else if (cause instanceof PermanentException) {
+					logger.error(configurer.octaneConfiguration.getLocationForLog() + "permanent error on " + testsResultQueueItem + ", passing over", cause);
+					acknowledge(testsResultQueueItem);
+				} else {
+					logger.error(configurer.octaneConfiguration.getLocationForLog() + "unexpected error on test result item '" + testsResultQueueItem + "', passing over", cause);
+					acknowledge(testsResultQueueItem);
+				}
+			}
+		}
+		removeAcknowledged();
+
+		if (temporaryFailure) {
+			logger.error(configurer.octaneConfiguration.getLocationForLog() + "some of the test results failed temporarily, breathing " + TEMPORARY_ERROR_BREATHE_INTERVAL + "ms and retrying");
+			return workerPreflight.backoff(TEMPORARY_ERROR_BREATHE_INTERVAL);
+		}
+		return QueueWorkersScheduler.NO_PAUSE;
+	}
+
+	private void acknowledge(TestsResultQueueItem item) {
+		synchronized (QUEUE_LOCK) {
+			pushWindow.acknowledge(item);
+		}
+	}
+
+	//  the queue is durable and ordered, so only the acknowledged prefix of it can be removed
+	private void removeAcknowledged() {
+		synchronized (QUEUE_LOCK) {
+			for (int i = pushWindow.getAcknowledgedPrefixSize(); i > 0; i--) {
 				testResultsQueue.remove();
 			}
 		}
 	}
 
-	private void doPreflightAndPushTestResult(TestsResultQueueItem queueItem) {
+	private void doPushTestResult(TestsResultQueueItem queueItem, boolean isRelevant) {
 
 		//  validate test result - first to be done as it is the cheapest to 'fail fast'
 		InputStream testsResultA = configurer.pluginServices.getTestsResult(queueItem.jobId, queueItem.buildId);
@@ -296,34 +424,32 @@ final class TestsServiceImpl implements TestsService {
 			return;
 		}
 		try {
-			//  preflight
-			InputStream testsResultB;
-			boolean isRelevant = isTestsResultRelevant(queueItem.jobId, queueItem.rootJobId);
+			//  preflight, resolved for the whole batch
 			logger.info(configurer.octaneConfiguration.getLocationForLog() + "test results preflight " + queueItem + " = " + isRelevant);
 			if (!isRelevant) {
 				return;
 			}
 
-			if (!this.configurationService.isOctaneVersionGreaterOrEqual("15.1.60")) {
-				try {
-					//for 15.1.60 - instance id is passed by query param
-					//for earlier version - instance id is part of test result body
-					String testResultXML = CIPluginSDKUtils.inputStreamToUTF8String(testsResultA);
-					testResultXML = testResultXML.replaceAll("<build.*?>",
-							"<build server_id=\"" + configurer.octaneConfiguration.getInstanceId() + "\" job_id=\"" + queueItem.jobId + "\" build_id=\"" + queueItem.buildId + "\"/>")
-							.replace("</build>", "");//remove closing build element if exist
-
-					testsResultB = new ByteArrayInputStream(testResultXML.getBytes(Charsets.UTF_8));
-				} catch (Exception e) {
-					throw new PermanentException("failed to update ci server instance ID in the test results XML");
-				}
-			} else {
-				testsResultB = testsResultA;
-			}
-
 			//  push
 			try {
-				OctaneResponse response = pushTestsResult(testsResultB, queueItem.jobId, queueItem.buildId);
+				OctaneResponse response;
+				if (!this.configurationService.isOctaneVersionGreaterOrEqual("15.1.60")) {
+					//for 15.1.60 - instance id is passed by query param
+					//for earlier version - instance id is part of test result body, rewritten while streaming; the writer re-reads the results if the request is re-attempted
+					TestsResultBuildRewriter rewriter = new TestsResultBuildRewriter(configurer.octaneConfiguration.getInstanceId(), queueItem.jobId, queueItem.buildId);
+					response = pushTestsResult(outputStream -> {
+						try (InputStream testsResult = configurer.pluginServices.getTestsResult(queueItem.jobId, queueItem.buildId)) {
+							if (testsResult == null) {
+								throw new IOException("test result of " + queueItem + " resolved to be NULL on re-read");
+							}
+							rewriter.rewrite(testsResult, outputStream);
+						}
+					}, queueItem.jobId, queueItem.buildId);
+				} else if (CHUNKED_UPLOAD_PART_SIZE > 0) {
+					response = pushTestsResultChunked(queueItem);
+				} else {
+					response = pushTestsResult(testsResultA, queueItem.jobId, queueItem.buildId);
+				}
 				if (response.getStatus() == HttpStatus.SC_ACCEPTED) {
 					logger.info(configurer.octaneConfiguration.getLocationForLog() + "successfully pushed test results for " + queueItem + "; status: " + response.getStatus() +
 							", response: " + response.getBody() + ", CorrelationId - " + response.getCorrelationId());
@@ -334,12 +460,6 @@ final class TestsServiceImpl implements TestsService {
 				}
 			} catch (IOException ioe) {
 				throw new TemporaryException("failed to perform push test results request for " + queueItem, ioe);
-			} finally {
-				try {
-					testsResultB.close();
-				} catch (IOException e) {
-					logger.warn(configurer.octaneConfiguration.getLocationForLog() + "failed to close test result file after push test for " + queueItem);
-				}
 			}
 		} finally {
 			try {
@@ -361,8 +481,10 @@ final class TestsServiceImpl implements TestsService {
 
 	@Override
 	public void clearQueue() {
-		while (testResultsQueue.size() > 0) {
-			testResultsQueue.remove();
+		synchronized (QUEUE_LOCK) {
+			while (testResultsQueue.size() > 0) {
+				testResultsQueue.remove();
+			}
 		}
 	}
 
@@ -374,6 +496,10 @@ final class TestsServiceImpl implements TestsService {
 		if (lastRequestTimeoutTime > 0) {
 			map.put("lastRequestTimeoutTime", new Date(lastRequestTimeoutTime));
 		}
+		map.put("pushBatchSize", PUSH_BATCH_SIZE);
+		map.put("pushParallelism", PUSH_PARALLELISM);
+		map.put("lastBatchSize", lastBatchSize);
+		map.put("preflightRequestsSavedCount", preflightRequestsSavedCount.get());
 		workerPreflight.addMetrics(map);
 		return map;
 	}
@@ -382,6 +508,10 @@ final class TestsServiceImpl implements TestsService {
 		private String jobId;
 		private String buildId;
 		private String rootJobId;
+		private String uploadId;
+
+		//  chunked upload checkpoint, unknown (-1) if the item is restored from the file queue
+		private transient volatile int uploadedParts = -1;
 
 		//  [YG] this constructor MUST be present
 		private TestsResultQueueItem() {
@@ -391,6 +521,25 @@ final class TestsServiceImpl implements TestsService {
 			this.jobId = jobId;
 			this.buildId = buildId;
 			this.rootJobId = rootJobId;
+			this.uploadId = UUID.randomUUID().toString();
+			this.uploadedParts = 0;
+		}
+
+		//  items queued by the previous versions have no upload ID, their uploads start anew
+		private synchronized String getUploadId() {
+			if (uploadId == null) {
+				uploadId = UUID.randomUUID().toString();
+				uploadedParts = 0;
+			}
+			return uploadId;
+		}
+
+		private int getUploadedParts() {
+			return uploadedParts;
+		}
+
+		private void setUploadedParts(int uploadedParts) {
+			this.uploadedParts = uploadedParts;
 		}
 
 		@Override
@@ -399,12 +548,12 @@ final class TestsServiceImpl implements TestsService {
 		}
 	}
 
-	private static final class TestsResultPushWorkerThreadFactory implements ThreadFactory {
+	private static final class TestsResultPushPoolThreadFactory implements ThreadFactory {
 
 		@Override
 		public Thread newThread(Runnable runnable) {
 			Thread result = new Thread(runnable);
-			result.setName("TestsResultPushWorker-" + result.getId());
+			result.setName("TestsResultPushPoolWorker-" + result.getId());
 			result.setDaemon(true);
 			return result;
 		}
@@ -19,7 +19,6 @@ import com.hp.octane.integrations.OctaneConfiguration;
 import com.hp.octane.integrations.dto.DTOFactory;
 import com.hp.octane.integrations.dto.connectivity.HttpMethod;
 import com.hp.octane.integrations.dto.connectivity.OctaneRequest;
-import com.hp.octane.integrations.dto.connectivity.OctaneResponse;
 import com.hp.octane.integrations.services.configurationparameters.factory.ConfigurationParameterFactory;
 import com.hp.octane.integrations.services.rest.OctaneRestClient;
 import com.hp.octane.integrations.services.rest.RestService;
@@ -75,15 +74,17 @@ public class ExistingIssuesInOctane {
                 .setHeaders(headers);
 
 
-        OctaneResponse response = octaneRestClient.execute(request);
-        logger.info(octaneConfiguration.getLocationForLog() + "vulnerabilities retrieve was completed; status: " + response.getStatus() + ", response: " + response.getBody());
-        if (response.getStatus() == HttpStatus.SC_OK) {
-            logger.info(octaneConfiguration.getLocationForLog() + "retrieved existing vulnerabilities from Octane.");
-        } else {
-            logger.error(octaneConfiguration.getLocationForLog() + "Error retrieving existing vulnerabilities from Octane.");
-            throw new IOException();
-        }
-        return CIPluginSDKUtils.getObjectMapper().readValue(response.getBody(), List.class);
+        //  list of the remote IDs may be large, so it's parsed straight from the response stream
+        return octaneRestClient.execute(request, null, (response, body) -> {
+            logger.info(octaneConfiguration.getLocationForLog() + "vulnerabilities retrieve was completed; status: " + response.getStatus());
+            if (response.getStatus() == HttpStatus.SC_OK && body != null) {
+                logger.info(octaneConfiguration.getLocationForLog() + "retrieved existing vulnerabilities from Octane.");
+                return (List<String>) CIPluginSDKUtils.getObjectMapper().readValue(body, List.class);
+            } else {
+                logger.error(octaneConfiguration.getLocationForLog() + "Error retrieving existing vulnerabilities from Octane, response: " + (body != null ? CIPluginSDKUtils.inputStreamToUTF8String(body) : null));
+                throw new IOException();
+            }
+        });
     }
 
     private String getOpenVulnerabilitiesContextPath(String octaneBaseUrl, String sharedSpaceId) {
@@ -0,0 +1,193 @@
+/*
+ *     Copyright 2017 EntIT Software LLC, a Micro Focus company, L.P.
+ *     Licensed under the Apache License, Version 2.0 (the "License");
+ *     you may not use this file except in compliance with the License.
+ *     You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *     Unless required by applicable law or agreed to in writing, software
+ *     distributed under the License is distributed on an "AS IS" BASIS,
+ *     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *     See the License for the specific language governing permissions and
+ *     limitations under the License.
+ *
+ */
+package com.hp.octane.integrations.services.vulnerabilities;
+
+import com.hp.octane.integrations.exceptions.TemporaryException;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+
+/**
+ * Fetches the extended data (details) of the issues from the security tool, one request per issue
+ * - requests are rate limited per tool (token bucket), the rate is slowed down when the tool throttles (TemporaryException, eg 429 or 503)
+ * - up to 'parallelism' requests of a fetch run concurrently
+ * - fetched details are kept in the checkpoint (held by the queue item), so the fetch retried after a temporary failure resumes where it stopped
+ * Rate and parallelism are configured per tool by system properties, eg octane.sdk.vulnerabilities.fod.details-rate (requests per second) and octane.sdk.vulnerabilities.fod.details-parallelism
+ */
+public final class ExtendedDataFetcher {
+    private static final Logger logger = LogManager.getLogger(ExtendedDataFetcher.class);
+    private static final ExecutorService fetchersPool = Executors.newCachedThreadPool(new ExtendedDataFetcherThreadFactory());
+    private static final int MAX_THROTTLED_RETRIES = 3;
+    private static final int PROGRESS_LOG_INTERVAL = 50;
+
+    private static final ExtendedDataFetcher SSC_FETCHER = new ExtendedDataFetcher(ToolType.SSC,
+            getProperty("octane.sdk.vulnerabilities.ssc.details-rate", 20), (int) getProperty("octane.sdk.vulnerabilities.ssc.details-parallelism", 4));
+    //  FoD's DOS filter blocks the bursts of requests, so FoD defaults are conservative; throttling slows the rate down further
+    private static final ExtendedDataFetcher FOD_FETCHER = new ExtendedDataFetcher(ToolType.FOD,
+            getProperty("octane.sdk.vulnerabilities.fod.details-rate", 1), (int) getProperty("octane.sdk.vulnerabilities.fod.details-parallelism", 2));
+
+    private final ToolType toolType;
+    private final RateLimiter rateLimiter;
+    private final int parallelism;
+
+    ExtendedDataFetcher(ToolType toolType, double requestsPerSecond, int parallelism) {
+        if (toolType == null) {
+            throw new IllegalArgumentException("tool type MUST NOT be null");
+        }
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("parallelism MUST be positive");
+        }
+        this.toolType = toolType;
+        this.rateLimiter = new RateLimiter(requestsPerSecond);
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * @param toolType SSC or FOD
+     * @return fetcher shared by all the clients, so the rate limit applies to all the requests to the tool
+     */
+    public static ExtendedDataFetcher forTool(ToolType toolType) {
+        switch (toolType) {
+            case SSC:
+                return SSC_FETCHER;
+            case FOD:
+                return FOD_FETCHER;
+            default:
+                throw new IllegalArgumentException(toolType + " has no extended data fetcher");
+        }
+    }
+
+    /**
+     * Fetches the details of the issues not in the checkpoint yet
+     * Issue whose fetch fails permanently is passed over (logged), it is sent to Octane without the extended data
+     *
+     * @param issues     issues requiring the extended data
+     * @param keyFunc    key of the issue in the result
+     * @param fetchFunc  request for the issue details, null result is not kept
+     * @param checkpoint details fetched so far, updated as the details arrive; MUST be thread safe
+     * @param <I>        issue type
+     * @param <K>        key type
+     * @param <V>        details type
+     * @return the checkpoint, holding the details of all the issues
+     * @throws TemporaryException if the tool keeps throttling the requests; fetched details are kept in the checkpoint
+     */
+    public <I, K, V> Map<K, V> fetch(List<I> issues, Function<I, K> keyFunc, Function<I, V> fetchFunc, Map<K, V> checkpoint) {
+        List<I> pending = new ArrayList<>(issues.size());
+        for (I issue : issues) {
+            K key = keyFunc.apply(issue);
+            if (key != null && !checkpoint.containsKey(key)) {
+                pending.add(issue);
+            }
+        }
+        if (pending.isEmpty()) {
+            return checkpoint;
+        }
+        logger.info(toolType + " extended data: fetching " + pending.size() + " of " + issues.size() + " issues, rate " + rateLimiter.getRate() + "/s, parallelism " + parallelism);
+
+        AtomicInteger nextIndex = new AtomicInteger();
+        AtomicInteger doneCount = new AtomicInteger();
+        AtomicReference<RuntimeException> failure = new AtomicReference<>();
+        int workers = Math.min(parallelism, pending.size());
+        CountDownLatch finished = new CountDownLatch(workers);
+        for (int w = 0; w < workers; w++) {
+            fetchersPool.execute(() -> {
+                try {
+                    int index;
+                    while (failure.get() == null && (index = nextIndex.getAndIncrement()) < pending.size()) {
+                        I issue = pending.get(index);
+                        V details = fetchOne(issue, fetchFunc);
+                        if (details != null) {
+                            checkpoint.put(keyFunc.apply(issue), details);
+                        }
+                        int done = doneCount.incrementAndGet();
+                        if (done % PROGRESS_LOG_INTERVAL == 0) {
+                            logger.info(toolType + " extended data: " + done + "/" + pending.size() + " is done, rate " + rateLimiter.getRate() + "/s");
+                        }
+                    }
+                } catch (RuntimeException re) {
+                    failure.compareAndSet(null, re);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    failure.compareAndSet(null, new TemporaryException(ie));
+                } finally {
+                    finished.countDown();
+                }
+            });
+        }
+
+        try {
+            finished.await();
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            failure.compareAndSet(null, new TemporaryException(ie));
+        }
+        if (failure.get() != null) {
+            logger.warn(toolType + " extended data: fetch stopped after " + doneCount.get() + "/" + pending.size() + " issues, will be resumed");
+            throw failure.get();
+        }
+        return checkpoint;
+    }
+
+    static void addMetrics(Map<String, Object> metricsMap) {
+        metricsMap.put("extendedDataFetcher_sscRate", SSC_FETCHER.rateLimiter.getRate());
+        metricsMap.put("extendedDataFetcher_fodRate", FOD_FETCHER.rateLimiter.getRate());
+    }
+
+    private <I, V> V fetchOne(I issue, Function<I, V> fetchFunc) throws InterruptedException {
+        for (int attempt = 0; ; attempt++) {
+            rateLimiter.acquire();
+            try {
+                V result = fetchFunc.apply(issue);
+                rateLimiter.onSuccess();
+                return result;
+            } catch (TemporaryException te) {
+                rateLimiter.onThrottled();
+                if (attempt >= MAX_THROTTLED_RETRIES) {
+                    throw te;
+                }
+                logger.warn(toolType + " extended data: request throttled (" + te.getMessage() + "), slowing down to " + rateLimiter.getRate() + "/s");
+            } catch (RuntimeException re) {
+                logger.error(toolType + " extended data: failed to fetch the details of " + issue + ", passing over", re);
+                return null;
+            }
+        }
+    }
+
+    private static double getProperty(String name, double defaultValue) {
+        return System.getProperty(name) != null ? Double.parseDouble(System.getProperty(name)) : defaultValue;
+    }
+
+    private static final class ExtendedDataFetcherThreadFactory implements ThreadFactory {
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread result = new Thread(runnable);
+            result.setName("ExtendedDataFetcherWorker-" + result.getId());
+            result.setDaemon(true);
+            return result;
+        }
+    }
+}
@@ -15,7 +15,11 @@
 package com.hp.octane.integrations.services.vulnerabilities;
 
 import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
 import com.hp.octane.integrations.dto.securityscans.OctaneIssue;
 import com.hp.octane.integrations.exceptions.OctaneSDKGeneralException;
 import com.hp.octane.integrations.exceptions.PermanentException;
@@ -24,22 +28,23 @@ import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 import java.io.*;
+import java.nio.file.Files;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
 public class IssuesFileSerializer {
     private static final Logger logger = LogManager.getLogger(IssuesFileSerializer.class);
+    private static final ObjectMapper issuesMapper = new ObjectMapper().setSerializationInclusion(JsonInclude.Include.NON_NULL);
+    private static final ObjectWriter issueWriter = issuesMapper.writer().without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
 
     public static InputStream serializeIssues(List<OctaneIssue> octaneIssues) {
         try {
             Map<String, List<OctaneIssue>> dataFormat = new HashMap<>();
             dataFormat.put("data", octaneIssues);
-            ObjectMapper mapper = new ObjectMapper();
-            mapper.setSerializationInclusion(JsonInclude.Include.NON_NULL);
 
             ByteArrayOutputStream baos = new ByteArrayOutputStream();
-            mapper.writeValue(baos, dataFormat);
+            issuesMapper.writeValue(baos, dataFormat);
             InputStream is = new ByteArrayInputStream(baos.toByteArray());
             return is;
 
@@ -84,13 +89,11 @@ public class IssuesFileSerializer {
                 validateFolderExists(targetDir);
                 Map<String, List<OctaneIssue>> dataFormat = new HashMap<>();
                 dataFormat.put("data", octaneIssues);
-                ObjectMapper mapper = new ObjectMapper();
-                mapper.setSerializationInclusion(JsonInclude.Include.NON_NULL);
                 //send to cache
 
                 String vulnerabilitiesScanFilePath = targetDir + File.separator + SSCHandler.SCAN_RESULT_FILE;
                 PrintWriter fw = new PrintWriter(vulnerabilitiesScanFilePath, "UTF-8");
-                mapper.writeValue(fw, dataFormat);
+                issuesMapper.writeValue(fw, dataFormat);
                 fw.flush();
                 fw.close();
             }
@@ -117,4 +120,57 @@ public class IssuesFileSerializer {
         return directoryToBeDeleted.delete();
     }
 
+    /**
+     * Opens the spooled scan result, the file is deleted once the stream is closed (eg after it was sent to Octane)
+     *
+     * @param spoolFile scan result written by IssuesStreamWriter
+     * @return stream of the file
+     * @throws IOException if the file can not be opened
+     */
+    public static InputStream openSpooledScanResult(File spoolFile) throws IOException {
+        return new FileInputStream(spoolFile) {
+            @Override
+            public void close() throws IOException {
+                try {
+                    super.close();
+                } finally {
+                    Files.deleteIfExists(spoolFile.toPath());
+                }
+            }
+        };
+    }
+
+    /**
+     * Writes the issues one by one, in the format of serializeIssues; only the issue being written is held in memory
+     */
+    public static final class IssuesStreamWriter implements Closeable {
+        private final JsonGenerator generator;
+        private int count;
+
+        public IssuesStreamWriter(OutputStream outputStream) throws IOException {
+            generator = issuesMapper.getFactory().createGenerator(outputStream, JsonEncoding.UTF8);
+            generator.writeStartObject();
+            generator.writeFieldName("data");
+            generator.writeStartArray();
+        }
+
+        public void write(OctaneIssue octaneIssue) throws IOException {
+            issueWriter.writeValue(generator, octaneIssue);
+            count++;
+        }
+
+        public int getCount() {
+            return count;
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                generator.writeEndArray();
+                generator.writeEndObject();
+            } finally {
+                generator.close();
+            }
+        }
+    }
 }
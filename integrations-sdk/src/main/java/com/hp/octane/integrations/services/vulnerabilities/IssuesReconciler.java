@@ -0,0 +1,158 @@
+/*
+ *     Copyright 2017 EntIT Software LLC, a Micro Focus company, L.P.
+ *     Licensed under the Apache License, Version 2.0 (the "License");
+ *     you may not use this file except in compliance with the License.
+ *     You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *     Unless required by applicable law or agreed to in writing, software
+ *     distributed under the License is distributed on an "AS IS" BASIS,
+ *     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *     See the License for the specific language governing permissions and
+ *     limitations under the License.
+ *
+ */
+package com.hp.octane.integrations.services.vulnerabilities;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * Reconciles the issues reported by the security tool (SSC, FoD, Sonar) with the remote IDs of the issues open in Octane
+ * Both sides are hash indexed by the remote ID, so the classification is one linear pass over each side:
+ * - new: reported as new by the tool
+ * - missing: not new, but not known to Octane either (eg baseline moved, Octane issue removed)
+ * - updated: known to Octane
+ * - closed: open in Octane, not reported by the tool anymore
+ *
+ * @param <T> raw issue type of the tool
+ */
+public final class IssuesReconciler<T> {
+    private final Function<T, String> keyExtractor;
+    private final Predicate<T> isNew;
+
+    /**
+     * @param keyExtractor remote ID of the raw issue, as kept by Octane
+     * @param isNew        whether the tool reports the raw issue as new
+     */
+    public IssuesReconciler(Function<T, String> keyExtractor, Predicate<T> isNew) {
+        if (keyExtractor == null) {
+            throw new IllegalArgumentException("key extractor MUST NOT be null");
+        }
+        if (isNew == null) {
+            throw new IllegalArgumentException("is new predicate MUST NOT be null");
+        }
+        this.keyExtractor = keyExtractor;
+        this.isNew = isNew;
+    }
+
+    public static <T extends RawVulnerability> IssuesReconciler<T> forRawVulnerabilities() {
+        return new IssuesReconciler<>(RawVulnerability::getRemoteId, RawVulnerability::isNew);
+    }
+
+    public Result<T> reconcile(Collection<T> rawIssues, Collection<String> octaneIssues) {
+        Session session = startSession(octaneIssues);
+        Result<T> result = new Result<>(rawIssues.size());
+
+        for (T issue : rawIssues) {
+            result.openIssues.add(issue);
+            switch (session.classify(issue)) {
+                case NEW:
+                    result.newIssues.add(issue);
+                    result.newOrMissingIssues.add(issue);
+                    break;
+                case MISSING:
+                    result.missingIssues.add(issue);
+                    result.newOrMissingIssues.add(issue);
+                    break;
+                default:
+                    result.updatedIssues.add(issue);
+            }
+        }
+
+        result.closedRemoteIds.addAll(session.getClosedRemoteIds());
+        return result;
+    }
+
+    /**
+     * Starts the incremental reconciliation, for the tool's issues read page by page; only the remote IDs are held
+     *
+     * @param octaneIssues remote IDs of the issues open in Octane
+     * @return session to classify the tool's issues with
+     */
+    public Session startSession(Collection<String> octaneIssues) {
+        return new Session(octaneIssues);
+    }
+
+    public enum Classification {
+        NEW, MISSING, UPDATED
+    }
+
+    public final class Session {
+        private final Collection<String> octaneIssues;
+        private final Set<String> octaneKeys;
+        private final Set<String> rawKeys = new HashSet<>();
+
+        private Session(Collection<String> octaneIssues) {
+            this.octaneIssues = octaneIssues;
+            this.octaneKeys = new HashSet<>(octaneIssues);
+        }
+
+        public Classification classify(T issue) {
+            String key = keyExtractor.apply(issue);
+            rawKeys.add(key);
+            if (isNew.test(issue)) {
+                return Classification.NEW;
+            } else if (!octaneKeys.contains(key)) {
+                return Classification.MISSING;
+            } else {
+                return Classification.UPDATED;
+            }
+        }
+
+        /**
+         * @return remote IDs open in Octane and not reported by the tool, in Octane's order; to be called once all the tool's issues are classified
+         */
+        public List<String> getClosedRemoteIds() {
+            List<String> result = new ArrayList<>();
+            Set<String> closed = new HashSet<>();
+            for (String octaneKey : octaneIssues) {
+                if (!rawKeys.contains(octaneKey) && closed.add(octaneKey)) {
+                    result.add(octaneKey);
+                }
+            }
+            return result;
+        }
+    }
+
+    public static final class Result<T> {
+        public final List<T> openIssues;
+        public final List<T> newIssues = new ArrayList<>();
+        public final List<T> missingIssues = new ArrayList<>();
+        public final List<T> updatedIssues = new ArrayList<>();
+        public final List<String> closedRemoteIds = new ArrayList<>();
+        private final List<T> newOrMissingIssues = new ArrayList<>();
+
+        private Result(int rawIssuesCount) {
+            openIssues = new ArrayList<>(rawIssuesCount);
+        }
+
+        /**
+         * @param considerMissing whether the missing issues are to be created in Octane as well
+         * @return issues to be created in Octane, these need the extended data (details) from the tool; in the order reported by the tool
+         */
+        public List<T> getIssuesRequiredExtendedData(boolean considerMissing) {
+            return considerMissing ? newOrMissingIssues : newIssues;
+        }
+
+        public boolean isEmpty() {
+            return openIssues.isEmpty() && closedRemoteIds.isEmpty();
+        }
+    }
+}
@@ -49,35 +49,16 @@ public class PackIssuesToOctaneUtils {
         if (rawIssues.size() == 0 && octaneIssues.size() == 0) {
             throw new PermanentException("This job run has no issues.");
         }
-        List<T> issuesRequiredExtendedData = rawIssues.stream().filter(
-                t -> {
-                    boolean isMissing = false;
-                    if (calcMissing) {
-                        isMissing = !octaneIssues.contains(t.getRemoteId());
-                    }
-                    return t.isNew() || isMissing;
-                }).collect(
-                Collectors.toList());
-
-        List<String> remoteIdsOfRawIssues =
-                rawIssues.stream().map(t -> t.getRemoteId()).collect(Collectors.toList());
-
-        List<String> remoteIdsToCloseInOctane = octaneIssues.stream()
-                .filter(t -> !remoteIdsOfRawIssues.contains(t))
-                .collect(Collectors.toList());
+        IssuesReconciler.Result<T> reconciled = IssuesReconciler.<T>forRawVulnerabilities().reconcile(rawIssues, octaneIssues);
 
         //Make Octane issue from remote id's.
-        List<OctaneIssue> closedOctaneIssues = remoteIdsToCloseInOctane.stream()
+        List<OctaneIssue> closedOctaneIssues = reconciled.closedRemoteIds.stream()
                 .map(VulnerabilitiesGeneralUtils::createClosedOctaneIssue).collect(Collectors.toList());
 
-        //Issues that are not closed , packed to update/create.
-        List<T> issuesToUpdate = rawIssues.stream()
-                .filter(t -> !remoteIdsToCloseInOctane.contains(t.getRemoteId()))
-                .collect(Collectors.toList());
-        if(issuesToUpdate.size() == 0 && closedOctaneIssues.size() == 0) {
+        if (reconciled.isEmpty()) {
             throw new PermanentException("This job run has no issues.");
         }
-        return new SortedIssues<>(issuesToUpdate, closedOctaneIssues, issuesRequiredExtendedData);
+        return new SortedIssues<>(reconciled.openIssues, closedOctaneIssues, reconciled.getIssuesRequiredExtendedData(calcMissing));
     }
 
 }
@@ -0,0 +1,93 @@
+/*
+ *     Copyright 2017 EntIT Software LLC, a Micro Focus company, L.P.
+ *     Licensed under the Apache License, Version 2.0 (the "License");
+ *     you may not use this file except in compliance with the License.
+ *     You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *     Unless required by applicable law or agreed to in writing, software
+ *     distributed under the License is distributed on an "AS IS" BASIS,
+ *     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *     See the License for the specific language governing permissions and
+ *     limitations under the License.
+ *
+ */
+package com.hp.octane.integrations.services.vulnerabilities;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Token bucket limiting the rate of the requests to the security tool
+ * - bucket holds up to one second worth of tokens, so short bursts after an idle period are allowed
+ * - rate adapts to the tool's throttling: halved on each throttled request (down to 1/16 of the configured rate), then increased back by 1/20 of the configured rate on each successful one
+ */
+final class RateLimiter {
+    private static final int MIN_RATE_DIVISOR = 16;
+    private static final int RATE_RECOVERY_STEPS = 20;
+
+    private final double configuredRate;
+    private double rate;
+    private double tokens;
+    private long lastRefill;
+
+    /**
+     * @param permitsPerSecond configured (max) rate, permits per second
+     */
+    RateLimiter(double permitsPerSecond) {
+        if (!(permitsPerSecond > 0)) {
+            throw new IllegalArgumentException("rate MUST be positive");
+        }
+        this.configuredRate = permitsPerSecond;
+        this.rate = permitsPerSecond;
+        this.tokens = 1;
+        this.lastRefill = System.nanoTime();
+    }
+
+    /**
+     * Blocks until the permit is available; permits are handed out in the order of the calls
+     *
+     * @throws InterruptedException if interrupted while waiting
+     */
+    void acquire() throws InterruptedException {
+        long waitNanos = reserve();
+        if (waitNanos > 0) {
+            TimeUnit.NANOSECONDS.sleep(waitNanos);
+        }
+    }
+
+    /**
+     * Request was throttled by the tool (eg 429, 503)
+     */
+    synchronized void onThrottled() {
+        refill(System.nanoTime());
+        rate = Math.max(configuredRate / MIN_RATE_DIVISOR, rate / 2);
+        tokens = Math.min(tokens, 0);
+    }
+
+    /**
+     * Request was served by the tool
+     */
+    synchronized void onSuccess() {
+        if (rate < configuredRate) {
+            refill(System.nanoTime());
+            rate = Math.min(configuredRate, rate + configuredRate / RATE_RECOVERY_STEPS);
+        }
+    }
+
+    synchronized double getRate() {
+        return rate;
+    }
+
+    //  takes the token, tokens go negative for the reservations ahead of the refill; returns time to wait for the taken token
+    private synchronized long reserve() {
+        refill(System.nanoTime());
+        tokens -= 1;
+        return tokens >= 0 ? 0 : (long) (-tokens / rate * TimeUnit.SECONDS.toNanos(1));
+    }
+
+    private void refill(long now) {
+        tokens = Math.min(Math.max(1, rate), tokens + (now - lastRefill) * rate / TimeUnit.SECONDS.toNanos(1));
+        lastRefill = now;
+    }
+}
@@ -0,0 +1,54 @@
+/*
+ *     Copyright 2017 EntIT Software LLC, a Micro Focus company, L.P.
+ *     Licensed under the Apache License, Version 2.0 (the "License");
+ *     you may not use this file except in compliance with the License.
+ *     You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *     Unless required by applicable law or agreed to in writing, software
+ *     distributed under the License is distributed on an "AS IS" BASIS,
+ *     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *     See the License for the specific language governing permissions and
+ *     limitations under the License.
+ *
+ */
+package com.hp.octane.integrations.services.vulnerabilities;
+
+/**
+ * Spaces out the re-checks of the parked queue items (scan not ready yet), at most one re-check per interval
+ * - each parked item takes the next free slot, so with N parked items each of them is re-checked every N intervals, as when the items were cycled through the queue tail
+ * - items that were never parked are not delayed
+ */
+final class RecheckSchedule {
+    private final long interval;
+    private long lastSlot;
+
+    /**
+     * @param interval min time in millis between two re-checks
+     */
+    RecheckSchedule(long interval) {
+        if (interval <= 0) {
+            throw new IllegalArgumentException("interval MUST be positive");
+        }
+        this.interval = interval;
+    }
+
+    /**
+     * Takes the next free slot for the item being parked
+     *
+     * @param now current time in millis
+     * @return delay in millis until the item should be re-checked
+     */
+    synchronized long nextDelay(long now) {
+        lastSlot = Math.max(now, lastSlot) + interval;
+        return lastSlot - now;
+    }
+
+    /**
+     * Releases all the taken slots, eg when the queue is cleared
+     */
+    synchronized void reset() {
+        lastSlot = 0;
+    }
+}
@@ -15,11 +15,19 @@
 
 package com.hp.octane.integrations.services.vulnerabilities;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.hp.octane.integrations.services.queueing.QueueingService;
+import com.hp.octane.integrations.utils.CIPluginSDKUtils;
 
+import java.io.IOException;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class VulnerabilitiesQueueItem implements QueueingService.QueueItem {
     private String jobId;
@@ -31,6 +39,11 @@ public class VulnerabilitiesQueueItem implements QueueingService.QueueItem {
     private Date baselineDate;
     private Map<String,String> additionalProperties = new HashMap<>();
 
+    //  extended data fetched from the tool so far, kept across the re-deliveries of the item and persisted with it (as JSON, see getExtendedData)
+    private transient Map<Object, Object> extendedDataCheckpoint;
+    //  persisted extended data as read, converted to the checkpoint on its first use (the types of the details are known only then)
+    private Map<String, JsonNode> extendedDataRead;
+
     public String getJobId() {
         return jobId;
     }
@@ -95,6 +108,64 @@ public class VulnerabilitiesQueueItem implements QueueingService.QueueItem {
         this.baselineDate = baselineDate != null ? new Date(baselineDate.getTime()) : null;
     }
 
+    /**
+     * @param keyType     type of the issue key
+     * @param detailsType type of the issue details
+     * @param <K>         issue key type
+     * @param <V>         issue details type
+     * @return extended data (issue details) fetched for this item so far, see ExtendedDataFetcher; persisted extended data that can't be read is fetched again
+     */
+    @JsonIgnore
+    @SuppressWarnings("unchecked")
+    public synchronized <K, V> Map<K, V> getExtendedDataCheckpoint(Class<K> keyType, Class<V> detailsType) {
+        if (extendedDataCheckpoint == null) {
+            extendedDataCheckpoint = new ConcurrentHashMap<>();
+            if (extendedDataRead != null) {
+                ObjectMapper objectMapper = CIPluginSDKUtils.getObjectMapper();
+                try {
+                    for (Map.Entry<String, JsonNode> entry : extendedDataRead.entrySet()) {
+                        extendedDataCheckpoint.put(objectMapper.convertValue(entry.getKey(), keyType), objectMapper.treeToValue(entry.getValue(), detailsType));
+                    }
+                } catch (IOException | IllegalArgumentException e) {
+                    extendedDataCheckpoint.clear();
+                }
+                extendedDataRead = null;
+            }
+        }
+        return (Map<K, V>) extendedDataCheckpoint;
+    }
+
+    /**
+     * @return count of the issues whose extended data is fetched already
+     */
+    @JsonIgnore
+    public synchronized int getExtendedDataCheckpointSize() {
+        if (extendedDataCheckpoint != null) {
+            return extendedDataCheckpoint.size();
+        }
+        return extendedDataRead != null ? extendedDataRead.size() : 0;
+    }
+
+    //  serialized form of the checkpoint, keys as strings and details as JSON
+    @JsonProperty("extendedData")
+    public synchronized Map<String, JsonNode> getExtendedData() {
+        if (extendedDataCheckpoint == null) {
+            return extendedDataRead;
+        }
+        ObjectMapper objectMapper = CIPluginSDKUtils.getObjectMapper();
+        Map<String, JsonNode> result = new LinkedHashMap<>();
+        for (Map.Entry<Object, Object> entry : extendedDataCheckpoint.entrySet()) {
+            result.put(String.valueOf(entry.getKey()), objectMapper.valueToTree(entry.getValue()));
+        }
+        return result;
+    }
+
+    @JsonProperty("extendedData")
+    public synchronized void setExtendedData(Map<String, JsonNode> extendedData) {
+        this.extendedDataRead = extendedData;
+        this.extendedDataCheckpoint = null;
+    }
+
     //  [YG] this constructor MUST be present, don't remove
     public VulnerabilitiesQueueItem() {
     }
@@ -22,11 +22,14 @@ import com.hp.octane.integrations.dto.connectivity.OctaneRequest;
 import com.hp.octane.integrations.dto.connectivity.OctaneResponse;
 import com.hp.octane.integrations.exceptions.PermanentException;
 import com.hp.octane.integrations.exceptions.TemporaryException;
+import com.hp.octane.integrations.services.QueueWorkersScheduler;
 import com.hp.octane.integrations.services.WorkerPreflight;
 import com.hp.octane.integrations.services.configuration.ConfigurationService;
 import com.hp.octane.integrations.services.configuration.ConfigurationServiceImpl;
+import com.hp.octane.integrations.services.configuration.PreflightCache;
 import com.hp.octane.integrations.services.configurationparameters.FortifySSCFetchTimeoutParameter;
 import com.hp.octane.integrations.services.configurationparameters.factory.ConfigurationParameterFactory;
+import com.hp.octane.integrations.services.queueing.LeasedQueue;
 import com.hp.octane.integrations.services.queueing.QueueingService;
 import com.hp.octane.integrations.services.rest.OctaneRestClient;
 import com.hp.octane.integrations.services.rest.RestService;
@@ -35,7 +38,6 @@ import com.hp.octane.integrations.services.vulnerabilities.fod.dto.FodConnection
 import com.hp.octane.integrations.services.vulnerabilities.sonar.SonarVulnerabilitiesService;
 import com.hp.octane.integrations.services.vulnerabilities.ssc.SSCService;
 import com.hp.octane.integrations.utils.CIPluginSDKUtils;
-import com.squareup.tape.ObjectQueue;
 import org.apache.http.HttpStatus;
 import org.apache.http.entity.ContentType;
 import org.apache.logging.log4j.LogManager;
@@ -46,8 +48,16 @@ import java.io.InputStream;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.concurrent.*;
+import java.util.Objects;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Default implementation of vulnerabilities service
@@ -59,8 +69,7 @@ public class VulnerabilitiesServiceImpl implements VulnerabilitiesService {
 	private static final Logger logger = LogManager.getLogger(VulnerabilitiesServiceImpl.class);
 	private static final String VULNERABILITIES_QUEUE_FILE = "vulnerabilities-queue.dat";
 
-	private final ExecutorService vulnerabilitiesProcessingExecutor = Executors.newSingleThreadExecutor(new VulnerabilitiesPushWorkerThreadFactory());
-	private final ObjectQueue<VulnerabilitiesQueueItem> vulnerabilitiesQueue;
+	private final LeasedQueue<VulnerabilitiesQueueItem> vulnerabilitiesQueue;
 	protected final RestService restService;
 	protected final ConfigurationService configurationService;
 	protected final OctaneSDK.SDKServicesConfigurer configurer;
@@ -72,9 +81,15 @@ public class VulnerabilitiesServiceImpl implements VulnerabilitiesService {
 	private int TEMPORARY_ERROR_BREATHE_INTERVAL = 15000;
 
 	private int SKIP_QUEUE_ITEM_INTERVAL = 5000;
+	private long QUEUE_ITEM_VISIBILITY_TIMEOUT = 60 * 60 * 1000L;
 	private Long DEFAULT_TIMEOUT_FOR_QUEUE_ITEM = FortifySSCFetchTimeoutParameter.DEFAULT_TIMEOUT * 60 * 60 * 1000L;
-	private CompletableFuture<Boolean> workerExited;
+	//  items processed at once, a slow item (eg long fetch from the tool) holds only its own slot
+	private final int MAX_PARALLEL_ITEMS = System.getProperty("octane.sdk.vulnerabilities.max-parallel-items") != null ? Math.max(1, Integer.parseInt(System.getProperty("octane.sdk.vulnerabilities.max-parallel-items"))) : 4;
 	private final WorkerPreflight workerPreflight;
+	private final ThreadPoolExecutor vulnerabilitiesPushPool = new ThreadPoolExecutor(MAX_PARALLEL_ITEMS, MAX_PARALLEL_ITEMS, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), new VulnerabilitiesPushPoolThreadFactory());
+	private final AtomicInteger itemsInFlight = new AtomicInteger();
+	private final AtomicBoolean temporaryFailure = new AtomicBoolean();
+	private final RecheckSchedule recheckSchedule = new RecheckSchedule(SKIP_QUEUE_ITEM_INTERVAL);
 
 	public VulnerabilitiesServiceImpl(QueueingService queueingService, VulnerabilitiesToolService[] vulnerabilitiesToolServices,
 									  OctaneSDK.SDKServicesConfigurer configurer, RestService restService, ConfigurationService configurationService) {
@@ -110,13 +125,15 @@ public class VulnerabilitiesServiceImpl implements VulnerabilitiesService {
 		}
 
 		if (queueingService.isPersistenceEnabled()) {
-			vulnerabilitiesQueue = queueingService.initFileQueue(VULNERABILITIES_QUEUE_FILE, VulnerabilitiesQueueItem.class);
+			vulnerabilitiesQueue = queueingService.initLeasedFileQueue(VULNERABILITIES_QUEUE_FILE, VulnerabilitiesQueueItem.class);
 		} else {
-			vulnerabilitiesQueue = queueingService.initMemoQueue();
+			vulnerabilitiesQueue = queueingService.initLeasedMemoQueue();
 		}
 
+		vulnerabilitiesPushPool.allowCoreThreadTimeOut(true);
+
 		logger.info(configurer.octaneConfiguration.getLocationForLog() + "starting background worker...");
-		vulnerabilitiesProcessingExecutor.execute(this::worker);
+		workerPreflight.start("VulnerabilitiesPushWorker", this::worker);
 		logger.info(configurer.octaneConfiguration.getLocationForLog() + "initialized SUCCESSFULLY (backed by " + vulnerabilitiesQueue.getClass().getSimpleName() + ")");
 	}
 
@@ -148,50 +165,85 @@ public class VulnerabilitiesServiceImpl implements VulnerabilitiesService {
 
 	@Override
 	public void shutdown() {
-		workerExited = new CompletableFuture<>();
-		vulnerabilitiesProcessingExecutor.shutdown();
+		workerPreflight.shutdown();
+		vulnerabilitiesPushPool.shutdown();
 	}
 
 	@Override
 	public boolean isShutdown() {
-		return vulnerabilitiesProcessingExecutor.isShutdown();
+		return workerPreflight.isShutdown();
 	}
 
 	//  TODO: implement retries counter per item and strategy of discard
 	//  TODO: consider moving the overall queue managing logic to some generic location
-	//  infallible everlasting background worker
-	private void worker() {
-		while (!vulnerabilitiesProcessingExecutor.isShutdown()) {
-			if(!workerPreflight.preflight()){
-				continue;
-			}
+	//  infallible background worker step, scheduled by the worker preflight
+	//  hands out the visible items to the push pool, up to MAX_PARALLEL_ITEMS in flight; woken up when an item is done
+	//  items whose scan is not ready yet are parked in place, so they don't hold the items behind them; parked items are re-checked one per SKIP_QUEUE_ITEM_INTERVAL
+	private long worker() {
+		if (temporaryFailure.getAndSet(false)) {
+			logger.error(configurer.octaneConfiguration.getLocationForLog() + "temporary error on vulnerabilities push, breathing " + TEMPORARY_ERROR_BREATHE_INTERVAL + "ms and retrying");
+			return workerPreflight.backoff(TEMPORARY_ERROR_BREATHE_INTERVAL);
+		}
+
+		int freeSlots = MAX_PARALLEL_ITEMS - itemsInFlight.get();
+		if (freeSlots <= 0) {
+			return QueueWorkersScheduler.breakablePause(SKIP_QUEUE_ITEM_INTERVAL);
+		}
+		List<LeasedQueue.Lease<VulnerabilitiesQueueItem>> leases = vulnerabilitiesQueue.lease(freeSlots, QUEUE_ITEM_VISIBILITY_TIMEOUT);
+		if (leases.isEmpty()) {
+			//  all the items are parked or in flight, woken up earlier on enqueue or when an item is done
+			long nextVisibleIn = vulnerabilitiesQueue.nextVisibleIn();
+			return nextVisibleIn > 0 ? QueueWorkersScheduler.breakablePause(nextVisibleIn) : QueueWorkersScheduler.NO_PAUSE;
+		}
 
-			VulnerabilitiesQueueItem queueItem = null;
+		for (LeasedQueue.Lease<VulnerabilitiesQueueItem> lease : leases) {
+			itemsInFlight.incrementAndGet();
 			try {
-				queueItem = vulnerabilitiesQueue.peek();
-				if (processPushVulnerabilitiesQueueItem(queueItem)) {
-					vulnerabilitiesQueueItemCleanUp(queueItem);
-					vulnerabilitiesQueue.remove();
-				} else {
-					reEnqueueItem(queueItem);
-				}
-			} catch (TemporaryException tque) {
-				logger.error(configurer.octaneConfiguration.getLocationForLog() + "temporary error on " + queueItem + ", breathing " + TEMPORARY_ERROR_BREATHE_INTERVAL + "ms and retrying", tque);
-				if (queueItem != null) {
-					reEnqueueItem(queueItem);
-				}
-				CIPluginSDKUtils.doWait(TEMPORARY_ERROR_BREATHE_INTERVAL);
-			} catch (PermanentException pqie) {
-				logger.error(configurer.octaneConfiguration.getLocationForLog() + "permanent error on " + queueItem + ", passing over", pqie);
-				vulnerabilitiesQueueItemCleanUp(queueItem);
-				vulnerabilitiesQueue.remove();
-			} catch (Throwable t) {
-				logger.error(configurer.octaneConfiguration.getLocationForLog() + "unexpected error on build log item '" + queueItem + "', passing over", t);
+				vulnerabilitiesPushPool.execute(() -> {
+					try {
+						processLease(lease);
+					} finally {
+						itemsInFlight.decrementAndGet();
+						workerPreflight.wakeUp();
+					}
+				});
+			} catch (RejectedExecutionException ree) {
+				//  shutting down, the item stays in the queue
+				itemsInFlight.decrementAndGet();
+				vulnerabilitiesQueue.nack(lease, 0);
+			}
+		}
+		return QueueWorkersScheduler.breakablePause(SKIP_QUEUE_ITEM_INTERVAL);
+	}
+
+	//  acks or nacks the item on its own, temporary error backs off the worker
+	private void processLease(LeasedQueue.Lease<VulnerabilitiesQueueItem> lease) {
+		VulnerabilitiesQueueItem queueItem = lease.getItem();
+		//  relevance and baseline date found by the preflight, and the extended data fetched so far, are persisted with the parked item,
+		//  so that neither the preflight nor the fetched part of the extended data is repeated after restart
+		boolean wasRelevant = queueItem.isRelevant();
+		int extendedDataFetched = queueItem.getExtendedDataCheckpointSize();
+		try {
+			if (processPushVulnerabilitiesQueueItem(queueItem)) {
 				vulnerabilitiesQueueItemCleanUp(queueItem);
-				vulnerabilitiesQueue.remove();
+				vulnerabilitiesQueue.ack(lease);
+			} else {
+				reEnqueueItem(lease, queueItem.isRelevant() != wasRelevant || queueItem.getExtendedDataCheckpointSize() != extendedDataFetched);
 			}
+			workerPreflight.resetBackoff();
+		} catch (TemporaryException tque) {
+			logger.error(configurer.octaneConfiguration.getLocationForLog() + "temporary error on " + queueItem + ", will be retried", tque);
+			reEnqueueItem(lease, queueItem.isRelevant() != wasRelevant || queueItem.getExtendedDataCheckpointSize() != extendedDataFetched);
+			temporaryFailure.set(true);
+		} catch (PermanentException pqie) {
+			logger.error(configurer.octaneConfiguration.getLocationForLog() + "permanent error on " + queueItem + ", passing over", pqie);
+			vulnerabilitiesQueueItemCleanUp(queueItem);
+			vulnerabilitiesQueue.ack(lease);
+		} catch (Throwable t) {
+			logger.error(configurer.octaneConfiguration.getLocationForLog() + "unexpected error on build log item '" + queueItem + "', passing over", t);
+			vulnerabilitiesQueueItemCleanUp(queueItem);
+			vulnerabilitiesQueue.ack(lease);
 		}
-		workerExited.complete(true);
 	}
 
 
@@ -201,7 +253,9 @@ public class VulnerabilitiesServiceImpl implements VulnerabilitiesService {
 			//  if this is the first time in the queue , check if vulnerabilities relevant to octane, and if not remove it from the queue.
 			if (!queueItem.isRelevant()) {
 
-				Date relevant =  vulnerabilitiesPreflightRequest(queueItem.getJobId(), queueItem.getBuildId());
+				//  negative answer is cached per job, positive one carries the baseline date of the build
+				Date relevant = configurationService.getPreflightCache().get(PreflightCache.Kind.VULNERABILITIES, configurer.octaneConfiguration.getInstanceId(), queueItem.getJobId(), null,
+						() -> vulnerabilitiesPreflightRequest(queueItem.getJobId(), queueItem.getBuildId()), Objects::isNull);
 				if (relevant != null) {
 					logger.debug(configurer.octaneConfiguration.getLocationForLog() + queueItem.toString() + " , Relevant:" + relevant);
 					//  set queue item value relevancy to true and continue
@@ -279,9 +333,14 @@ public class VulnerabilitiesServiceImpl implements VulnerabilitiesService {
 		}
 	}
 
-	private Date vulnerabilitiesPreflightRequest(String jobId, String buildId) throws IOException {
+	private Date vulnerabilitiesPreflightRequest(String jobId, String buildId) {
 
-		OctaneResponse response = getBaselineDateFromOctane(jobId, buildId);
+		OctaneResponse response;
+		try {
+			response = getBaselineDateFromOctane(jobId, buildId);
+		} catch (IOException e) {
+			throw new PermanentException(e);
+		}
 
 		if (response.getStatus() == HttpStatus.SC_OK) {
 			if (response.getBody()==null || "".equals(response.getBody())) {
@@ -305,15 +364,15 @@ public class VulnerabilitiesServiceImpl implements VulnerabilitiesService {
 	}
 
 
-	private void reEnqueueItem(VulnerabilitiesQueueItem vulnerabilitiesQueueItem) {
+	private void reEnqueueItem(LeasedQueue.Lease<VulnerabilitiesQueueItem> lease, boolean changed) {
+		VulnerabilitiesQueueItem vulnerabilitiesQueueItem = lease.getItem();
 		Long timePass = System.currentTimeMillis() - vulnerabilitiesQueueItem.getStartTime();
-		vulnerabilitiesQueue.remove();
 		if (timePass < vulnerabilitiesQueueItem.getTimeout()) {
-			vulnerabilitiesQueue.add(vulnerabilitiesQueueItem);
+			vulnerabilitiesQueue.nack(lease, recheckSchedule.nextDelay(System.currentTimeMillis()), changed);
 		} else {
+			vulnerabilitiesQueue.ack(lease);
 			logger.info(configurer.octaneConfiguration.getLocationForLog() + vulnerabilitiesQueueItem.getBuildId() + "/" + vulnerabilitiesQueueItem.getJobId() + " was removed from queue after timeout in queue is over");
 		}
-		CIPluginSDKUtils.doWait(SKIP_QUEUE_ITEM_INTERVAL);
 	}
 
 	private OctaneResponse getBaselineDateFromOctane(String jobId, String buildId) throws IOException {
@@ -346,30 +405,21 @@ public class VulnerabilitiesServiceImpl implements VulnerabilitiesService {
 
 	@Override
 	public void clearQueue() {
-		while (vulnerabilitiesQueue.size() > 0) {
-			vulnerabilitiesQueue.remove();
-		}
+		vulnerabilitiesQueue.clear();
+		recheckSchedule.reset();
 	}
 
 	@Override
 	public Map<String, Object> getMetrics() {
 		Map<String, Object> map = new LinkedHashMap<>();
 		map.put("queueSize", this.getQueueSize());
+		map.put("maxParallelItems", MAX_PARALLEL_ITEMS);
+		map.put("itemsInFlight", itemsInFlight.get());
+		ExtendedDataFetcher.addMetrics(map);
 		workerPreflight.addMetrics(map);
 		return map;
 	}
 
-	private static final class VulnerabilitiesPushWorkerThreadFactory implements ThreadFactory {
-
-		@Override
-		public Thread newThread(Runnable runnable) {
-			Thread result = new Thread(runnable);
-			result.setName("VulnerabilitiesPushWorker-" + result.getId());
-			result.setDaemon(true);
-			return result;
-		}
-	}
-
 	private String getVulnerabilitiesContextPath(String octaneBaseUrl, String sharedSpaceId) {
 		return octaneBaseUrl + RestService.SHARED_SPACE_API_PATH_PART + sharedSpaceId + RestService.VULNERABILITIES;
 	}
@@ -378,5 +428,14 @@ public class VulnerabilitiesServiceImpl implements VulnerabilitiesService {
 		return octaneBaseUrl + RestService.SHARED_SPACE_API_PATH_PART + sharedSpaceId + RestService.VULNERABILITIES_PRE_FLIGHT;
 	}
 
+	private static final class VulnerabilitiesPushPoolThreadFactory implements ThreadFactory {
 
+		@Override
+		public Thread newThread(Runnable runnable) {
+			Thread result = new Thread(runnable);
+			result.setName("VulnerabilitiesPushPoolWorker-" + result.getId());
+			result.setDaemon(true);
+			return result;
+		}
+	}
 }
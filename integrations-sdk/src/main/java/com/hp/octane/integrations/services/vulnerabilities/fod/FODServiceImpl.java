@@ -19,7 +19,9 @@ import com.hp.octane.integrations.dto.securityscans.OctaneIssue;
 import com.hp.octane.integrations.exceptions.PermanentException;
 import com.hp.octane.integrations.services.rest.RestService;
 import com.hp.octane.integrations.services.vulnerabilities.ExistingIssuesInOctane;
+import com.hp.octane.integrations.services.vulnerabilities.ExtendedDataFetcher;
 import com.hp.octane.integrations.services.vulnerabilities.PackIssuesToOctaneUtils;
+import com.hp.octane.integrations.services.vulnerabilities.ToolType;
 import com.hp.octane.integrations.services.vulnerabilities.VulnerabilitiesQueueItem;
 import com.hp.octane.integrations.services.vulnerabilities.fod.dto.pojos.Scan;
 import com.hp.octane.integrations.services.vulnerabilities.fod.dto.pojos.Vulnerability;
@@ -36,7 +38,6 @@ import java.util.stream.Collectors;
 
 import static com.hp.octane.integrations.services.vulnerabilities.IssuesFileSerializer.*;
 import static com.hp.octane.integrations.services.vulnerabilities.fod.FODValuesConverter.sameDay;
-import static com.hp.octane.integrations.utils.CIPluginSDKUtils.doWait;
 
 public class FODServiceImpl implements FODService {
 
@@ -183,7 +184,7 @@ public class FODServiceImpl implements FODService {
 
         FODValuesConverter securityIssueValuesHelper = new FODValuesConverter();
         securityIssueValuesHelper.init();
-        Map<String, VulnerabilityAllData> idToAllData = getVulnerabilityAllDataMap(getRelease(queueItem),
+        Map<String, VulnerabilityAllData> idToAllData = getVulnerabilityAllDataMap(queueItem,
                 sortedIssues.issuesRequiredExtendedData);
 
         List<OctaneIssue> octaneIssuesToUpdate =
@@ -198,27 +199,15 @@ public class FODServiceImpl implements FODService {
         return total;
     }
 
-    private Map<String, VulnerabilityAllData> getVulnerabilityAllDataMap(Long releaseId, List<Vulnerability> requiredExtendedData) {
-        long SLEEP_MS = 2000;
-        long EXPECTED_REQUEST_TIME_MS = 1000;//used to compute waiting time
-        logger.warn(configurer.octaneConfiguration.getLocationForLog() + String.format("getVulnerabilityAllDataMap, requiredExtendedData.size=%s, expected processing duration is %s sec",
-                requiredExtendedData.size(), requiredExtendedData.size() * (SLEEP_MS + EXPECTED_REQUEST_TIME_MS) / 1000));
-        Map<String, VulnerabilityAllData> idToAllData = new HashMap<>();
-
-        for (int i = 0; i < requiredExtendedData.size(); i++) {
-            Vulnerability t = requiredExtendedData.get(i);
-            if (i > 0) {
-                //adding sleep in order to avoid FOD DOS filter that might block our requests
-                doWait(SLEEP_MS);
-            }
-            if (i > 0 && i % 50 == 0) {
-                logger.warn(configurer.octaneConfiguration.getLocationForLog() + String.format("getVulnerabilityAllDataMap, %s/%s is done, remaining processing duration is %s sec",
-                        i, requiredExtendedData.size(), (requiredExtendedData.size() - i) * (SLEEP_MS + EXPECTED_REQUEST_TIME_MS) / 1000));
-            }
+    private Map<String, VulnerabilityAllData> getVulnerabilityAllDataMap(VulnerabilitiesQueueItem queueItem, List<Vulnerability> requiredExtendedData) {
+        Long releaseId = getRelease(queueItem);
+        logger.warn(configurer.octaneConfiguration.getLocationForLog() + String.format("getVulnerabilityAllDataMap, requiredExtendedData.size=%s", requiredExtendedData.size()));
 
-            idToAllData.put(t.id, FODVulnerabilityService.getSingleVulnAlldata(releaseId, t.vulnId));
-        }
-        return idToAllData;
+        //  rate limited (FoD DOS filter might block our requests), resumed from the checkpoint after the temporary failure of the item
+        return ExtendedDataFetcher.forTool(ToolType.FOD).fetch(requiredExtendedData,
+                t -> t.id,
+                t -> FODVulnerabilityService.getSingleVulnAlldata(releaseId, t.vulnId),
+                queueItem.getExtendedDataCheckpoint(String.class, VulnerabilityAllData.class));
     }
 
     private List<Vulnerability> filterOutBeforeBaselineIssues(Date baseline,
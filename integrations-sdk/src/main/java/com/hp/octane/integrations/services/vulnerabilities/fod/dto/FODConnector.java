@@ -20,8 +20,10 @@ import com.fasterxml.jackson.databind.type.TypeFactory;
 import com.hp.octane.integrations.OctaneSDK;
 import com.hp.octane.integrations.dto.configuration.CIProxyConfiguration;
 import com.hp.octane.integrations.exceptions.PermanentException;
+import com.hp.octane.integrations.exceptions.TemporaryException;
 import org.apache.http.HttpEntity;
 import org.apache.http.HttpHost;
+import org.apache.http.HttpStatus;
 import org.apache.http.client.methods.CloseableHttpResponse;
 import org.apache.http.client.methods.HttpGet;
 import org.apache.http.client.methods.HttpPost;
@@ -50,6 +52,7 @@ import java.util.function.Predicate;
 public class FODConnector implements FODSource {
 
 	private static final Logger logger = LogManager.getLogger(FODConnector.class);
+	private static final int TOO_MANY_REQUESTS = 429;
 	private CloseableHttpClient httpClient;
 	private String access_token;
 	private long accessTokenTime;
@@ -132,6 +135,8 @@ public class FODConnector implements FODSource {
 					TypeFactory.defaultInstance().constructType((fetchedEntityInstance).getClass()));
 
 			return entityFetched;
+		} catch (TemporaryException e) {
+			throw e;
 		} catch (InstantiationException e) {
 			e.printStackTrace();
 		} catch (IllegalAccessException e) {
@@ -169,6 +174,9 @@ public class FODConnector implements FODSource {
 				//retry.
 				response = httpClient.execute(httpGet);
 			}
+			if (response.getStatusLine().getStatusCode() == HttpStatus.SC_SERVICE_UNAVAILABLE || response.getStatusLine().getStatusCode() == TOO_MANY_REQUESTS) {
+				throw new TemporaryException("FOD is throttling the requests: " + response.getStatusLine().getStatusCode());
+			}
 			return isToString(response.getEntity().getContent());
 		} catch (IOException e) {
 			e.printStackTrace();
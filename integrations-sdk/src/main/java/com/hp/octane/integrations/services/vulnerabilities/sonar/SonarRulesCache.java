@@ -0,0 +1,104 @@
+/*
+ *     Copyright 2017 EntIT Software LLC, a Micro Focus company, L.P.
+ *     Licensed under the Apache License, Version 2.0 (the "License");
+ *     you may not use this file except in compliance with the License.
+ *     You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *     Unless required by applicable law or agreed to in writing, software
+ *     distributed under the License is distributed on an "AS IS" BASIS,
+ *     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *     See the License for the specific language governing permissions and
+ *     limitations under the License.
+ */
+
+package com.hp.octane.integrations.services.vulnerabilities.sonar;
+
+import com.hp.octane.integrations.services.vulnerabilities.sonar.dto.SonarRule;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+
+/**
+ * Process-wide cache of the Sonar rules metadata, by Sonar server; rules change rarely while the same rules are reported by every scan
+ * Entries expire after the TTL, so that the rules updated on the server are picked up eventually
+ */
+final class SonarRulesCache {
+    private static final int MAX_ENTRIES = 10000;
+    private static final long TTL = System.getProperty("octane.sdk.sonar.rules-cache-ttl") != null ? Long.parseLong(System.getProperty("octane.sdk.sonar.rules-cache-ttl")) : 3600000;
+
+    private static final SonarRulesCache instance = new SonarRulesCache(TTL, System::currentTimeMillis);
+
+    private final long ttl;
+    private final LongSupplier clock;
+    private final Map<String, CachedRule> rules = new ConcurrentHashMap<>();
+
+    SonarRulesCache(long ttl, LongSupplier clock) {
+        this.ttl = ttl;
+        this.clock = clock;
+    }
+
+    static SonarRulesCache getInstance() {
+        return instance;
+    }
+
+    /**
+     * @param sonarURL Sonar server the rules belong to
+     * @param ruleKeys keys of the rules required
+     * @param loader   loads the rules missing in the cache (or expired), by rule key
+     * @return rules found, by rule key
+     */
+    Map<String, SonarRule> getRules(String sonarURL, Set<String> ruleKeys, Function<Set<String>, Map<String, SonarRule>> loader) {
+        Map<String, SonarRule> result = new HashMap<>();
+        Set<String> missingKeys = new HashSet<>();
+        long now = clock.getAsLong();
+        for (String ruleKey : ruleKeys) {
+            CachedRule cachedRule = rules.get(cacheKey(sonarURL, ruleKey));
+            if (cachedRule != null && cachedRule.expiresAt > now) {
+                result.put(ruleKey, cachedRule.rule);
+            } else {
+                missingKeys.add(ruleKey);
+            }
+        }
+
+        if (!missingKeys.isEmpty()) {
+            Map<String, SonarRule> loaded = loader.apply(missingKeys);
+            if (rules.size() + loaded.size() > MAX_ENTRIES) {
+                rules.values().removeIf(cachedRule -> cachedRule.expiresAt <= now);
+                if (rules.size() + loaded.size() > MAX_ENTRIES) {
+                    rules.clear();
+                }
+            }
+            long expiresAt = now + ttl;
+            loaded.forEach((ruleKey, rule) -> {
+                rules.put(cacheKey(sonarURL, ruleKey), new CachedRule(rule, expiresAt));
+                result.put(ruleKey, rule);
+            });
+        }
+        return result;
+    }
+
+    int size() {
+        return rules.size();
+    }
+
+    private static String cacheKey(String sonarURL, String ruleKey) {
+        return sonarURL + "|" + ruleKey;
+    }
+
+    private static final class CachedRule {
+        private final SonarRule rule;
+        private final long expiresAt;
+
+        private CachedRule(SonarRule rule, long expiresAt) {
+            this.rule = rule;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
@@ -28,7 +28,7 @@ import com.hp.octane.integrations.dto.securityscans.impl.OctaneIssueImpl;
 import com.hp.octane.integrations.exceptions.PermanentException;
 import com.hp.octane.integrations.services.queueing.QueueingService;
 import com.hp.octane.integrations.services.rest.RestService;
-import com.hp.octane.integrations.services.sonar.SonarUtils;
+import com.hp.octane.integrations.services.sonar.SonarClient;
 import com.hp.octane.integrations.services.vulnerabilities.*;
 import com.hp.octane.integrations.services.vulnerabilities.sonar.dto.SonarIssue;
 import com.hp.octane.integrations.services.vulnerabilities.sonar.dto.SonarRule;
@@ -42,7 +42,6 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.net.URISyntaxException;
 import java.util.*;
-import java.util.function.Function;
 import java.util.stream.Collectors;
 
 import static com.hp.octane.integrations.services.vulnerabilities.OctaneIssueConsts.ISSUE_STATE_CLOSED;
@@ -51,6 +50,7 @@ public class SonarVulnerabilitiesServiceImpl implements  SonarVulnerabilitiesSer
 
     private static final String ISSUES_SEARCH_URI = "/api/issues/search";
     private static final String RULES_SEARCH_URI = "/api/rules/search";
+    private static final int ISSUES_PAGE_SIZE = 500;
 
     private String PROJECT_KEY_KEY = "PROJECT_KEY";
     private String SONAR_URL_KEY = "SONAR_URL";
@@ -105,14 +105,13 @@ public class SonarVulnerabilitiesServiceImpl implements  SonarVulnerabilitiesSer
 
         List<String> octaneExistsIssuesIdsList = getRemoteIdsOfExistIssuesFromOctane(queueItem, queueItem.getAdditionalProperties().get(REMOTE_TAG_KEY));
 
-        List<SonarIssue> issuesRequiredExtendedData = issuesFromSecurityTool.stream()
-                .filter(issue -> !octaneExistsIssuesIdsList.contains(issue.getKey()))
-                .collect(Collectors.toList());
+        //  Sonar does not flag the new issues, all the issues not known to Octane need the extended data
+        IssuesReconciler.Result<SonarIssue> reconciled = new IssuesReconciler<SonarIssue>(SonarIssue::getKey, issue -> false)
+                .reconcile(issuesFromSecurityTool, octaneExistsIssuesIdsList);
 
-        Set<String> issuesRequiredExtendedDataKeys = issuesRequiredExtendedData.stream().map(SonarIssue::getKey).collect(Collectors.toSet());
+        Set<String> issuesRequiredExtendedDataKeys = reconciled.getIssuesRequiredExtendedData(true).stream().map(SonarIssue::getKey).collect(Collectors.toSet());
 
-        return packAllIssues(issuesFromSecurityTool,
-                octaneExistsIssuesIdsList,
+        return packAllIssues(reconciled,
                 issuesRequiredExtendedDataKeys,
                 rules, queueItem);
     }
@@ -131,21 +130,19 @@ public class SonarVulnerabilitiesServiceImpl implements  SonarVulnerabilitiesSer
 
             List<SonarIssue> sonarIssues = new ArrayList<>();
 
-            //  retrieve coverage report from Sonar
-            Integer pageIndex = 0;
-            JsonNode jsonReport;
-            do {
-                pageIndex++;
-                URIBuilder vulnerabilityQuery = createQueryForSonarVulnerability(pageIndex, queueItem);
-                InputStream reportStream = SonarUtils.getDataFromSonar(projectKey, sonarToken, vulnerabilityQuery);
-                jsonReport = CIPluginSDKUtils.getObjectMapper().readTree(reportStream);
-                sonarIssues.addAll(getSonarIssuesFromReport(jsonReport));
-            } while (SonarUtils.sonarReportHasAnotherPage(pageIndex, jsonReport));
+            //  retrieve vulnerabilities report from Sonar, the pages are fetched in parallel and added in order
+            SonarClient.getInstance().fetchPages(projectKey, sonarToken,
+                    page -> createQueryForSonarVulnerability(page, queueItem), ISSUES_PAGE_SIZE,
+                    content -> {
+                        SonarClient.Page<JsonNode> jsonReport = SonarClient.readJsonPage(content);
+                        return new SonarClient.Page<>(getSonarIssuesFromReport(jsonReport.getContent()), jsonReport.getTotal());
+                    },
+                    sonarIssues::addAll);
             return sonarIssues;
 
-        } catch (IOException e) {
+        } catch (RuntimeException e) {
             logger.error(errorMessage, e);
-            throw new PermanentException(e);
+            throw e;
         }
     }
 
@@ -154,18 +151,12 @@ public class SonarVulnerabilitiesServiceImpl implements  SonarVulnerabilitiesSer
         String sonarURL = queueItem.getAdditionalProperties().get(SONAR_URL_KEY);
         String sonarToken = queueItem.getAdditionalProperties().get(SONAR_TOKEN_KEY);
 
-        List<SonarRule> sonarRules = new ArrayList<>();
-
-        //  retrieve coverage report from Sonar
-        JsonNode jsonReport;
-
-        for (String ruleKey : sonarRulesKeys) {
-            URIBuilder ruleQuery = createQueryForSonarRule(sonarURL, ruleKey);
-            InputStream reportStream = SonarUtils.getDataFromSonar(projectKey, sonarToken, ruleQuery);
-            jsonReport = CIPluginSDKUtils.getObjectMapper().readTree(reportStream);
-            sonarRules.add(getSonarRuleFromReport(jsonReport));
-        }
-        return sonarRules.stream().collect(Collectors.toMap(SonarRule::getKey, Function.identity()));
+        //  rules search filters by a single rule key, the rules missing in the cache are looked up concurrently
+        SonarClient sonarClient = SonarClient.getInstance();
+        return SonarRulesCache.getInstance().getRules(sonarURL, sonarRulesKeys, missingRulesKeys ->
+                sonarClient.getAll(missingRulesKeys, ruleKey ->
+                        sonarClient.get(projectKey, sonarToken, createQueryForSonarRule(sonarURL, ruleKey),
+                                content -> getSonarRuleFromReport(CIPluginSDKUtils.getObjectMapper().readTree(content)))));
     }
 
 
@@ -190,7 +181,7 @@ public class SonarVulnerabilitiesServiceImpl implements  SonarVulnerabilitiesSer
         JsonNode issues = jsonReport.get("issues");
 
         try {
-            sonarIssues = mapper.readValue(issues.toString(), new TypeReference<List<SonarIssue>>() {
+            sonarIssues = mapper.readValue(mapper.treeAsTokens(issues), new TypeReference<List<SonarIssue>>() {
             });
         } catch (IOException e) {
             throw new RuntimeException(e);
@@ -222,7 +213,7 @@ public class SonarVulnerabilitiesServiceImpl implements  SonarVulnerabilitiesSer
             uriBuilder.setParameter("types", "VULNERABILITY")
                     .setParameter("componentKeys", projectKey)
                     .setParameter("severities", "MINOR,MAJOR,CRITICAL,BLOCKER")
-                    .setParameter("ps", "500")
+                    .setParameter("ps", String.valueOf(ISSUES_PAGE_SIZE))
                     .setParameter("p", page.toString());
 
             if (queueItem.getBaselineDate() != null) {
@@ -237,30 +228,20 @@ public class SonarVulnerabilitiesServiceImpl implements  SonarVulnerabilitiesSer
     }
 
 
-    private List<OctaneIssue> packAllIssues(List<SonarIssue> sonarIssues, List<String> octaneIssues, Set<String> issuesRequiredExtendedDataKeys, Map<String, SonarRule> rules, VulnerabilitiesQueueItem queueItem) {
+    private List<OctaneIssue> packAllIssues(IssuesReconciler.Result<SonarIssue> reconciled, Set<String> issuesRequiredExtendedDataKeys, Map<String, SonarRule> rules, VulnerabilitiesQueueItem queueItem) {
         String sonarURL =  queueItem.getAdditionalProperties().get(SONAR_URL_KEY);
         String remoteTag =  queueItem.getAdditionalProperties().get(REMOTE_TAG_KEY);
 
-        if (sonarIssues.size() == 0 && octaneIssues.size() == 0) {
+        if (reconciled.isEmpty()) {
             return new ArrayList<>();
         }
-        List<String> remoteIssuesKeys =
-                sonarIssues.stream().map(SonarIssue::getKey).collect(Collectors.toList());
-
-        List<String> remoteIdsToCloseInOctane = octaneIssues.stream()
-                .filter(oIssue -> !remoteIssuesKeys.contains(oIssue))
-                .collect(Collectors.toList());
 
         //Make Octane issue from remote id's.
-        List<OctaneIssue> closedOctaneIssues = remoteIdsToCloseInOctane.stream()
+        List<OctaneIssue> closedOctaneIssues = reconciled.closedRemoteIds.stream()
                 .map(this::createClosedOctaneIssue).collect(Collectors.toList());
 
         //Issues that are not closed , packed to update/create.
-        List<SonarIssue> issuesToUpdate = sonarIssues.stream()
-                .filter(sonarIssue -> !remoteIdsToCloseInOctane.contains(sonarIssue.getKey()))
-                .collect(Collectors.toList());
-        //Issues.Issue
-        List<OctaneIssue> openOctaneIssues = SonarToOctaneIssueUtil.createOctaneIssues(issuesToUpdate,remoteTag, sonarURL, issuesRequiredExtendedDataKeys, rules);
+        List<OctaneIssue> openOctaneIssues = SonarToOctaneIssueUtil.createOctaneIssues(reconciled.openIssues, remoteTag, sonarURL, issuesRequiredExtendedDataKeys, rules);
         List<OctaneIssue> total = new ArrayList<>();
         total.addAll(openOctaneIssues);
         total.addAll(closedOctaneIssues);
@@ -19,6 +19,8 @@ import com.hp.octane.integrations.dto.securityscans.SSCProjectConfiguration;
 import com.hp.octane.integrations.exceptions.PermanentException;
 import com.hp.octane.integrations.services.rest.SSCRestClient;
 import com.hp.octane.integrations.services.vulnerabilities.DateUtils;
+import com.hp.octane.integrations.services.vulnerabilities.ExtendedDataFetcher;
+import com.hp.octane.integrations.services.vulnerabilities.ToolType;
 import com.hp.octane.integrations.services.vulnerabilities.VulnerabilitiesQueueItem;
 import com.hp.octane.integrations.services.vulnerabilities.ssc.dto.Artifacts;
 import com.hp.octane.integrations.services.vulnerabilities.ssc.dto.IssueDetails;
@@ -28,6 +30,7 @@ import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Created by hijaziy on 7/23/2018.
@@ -38,6 +41,7 @@ public class SSCHandler {
     private SSCProjectConnector sscProjectConnector;
     private ProjectVersions.ProjectVersion projectVersion;
     private long runStartTime;
+    private VulnerabilitiesQueueItem queueItem;
 
     public static final String SCAN_RESULT_FILE = "securityScan.json";
 
@@ -102,6 +106,7 @@ public class SSCHandler {
         logger.debug("real initializing code");
 
         this.runStartTime = vulnerabilitiesQueueItem.getStartTime();
+        this.queueItem = vulnerabilitiesQueueItem;
 
         if (!sscProjectConfiguration.isValid()) {
             throw new PermanentException("SSC configuration invalid, will not continue connecting to the server");
@@ -120,18 +125,22 @@ public class SSCHandler {
         return Optional.of(issues);
     }
 
+    /**
+     * Reads the issues of the run page by page, to be called once the scan process is finished
+     *
+     * @param pageConsumer handler of the pages
+     */
+    public void streamIssues(SSCProjectConnector.PageConsumer<Issues.Issue> pageConsumer) {
+        sscProjectConnector.streamIssues(projectVersion.id, pageConsumer);
+    }
+
     public Map<Integer, IssueDetails> getIssuesExtendedData(List<Issues.Issue> issues) {
-        HashMap<Integer,IssueDetails> idToDetails = new HashMap<>();
-        try {
-            for (Issues.Issue issue : issues) {
-                    IssueDetails issueDetails = sscProjectConnector.getIssueDetails(issue.id);
-                    idToDetails.put(issue.id, issueDetails);
-               
-            }
-        }catch (Exception e){
-            logger.error("failed to add extended data for issues",e);
-        }
-        return idToDetails;
+        //  details fetched before the temporary failure of the item are not fetched again
+        Map<Integer, IssueDetails> idToDetails = queueItem != null ? queueItem.getExtendedDataCheckpoint(Integer.class, IssueDetails.class) : new ConcurrentHashMap<>();
+        return ExtendedDataFetcher.forTool(ToolType.SSC).fetch(issues,
+                issue -> issue.id,
+                issue -> sscProjectConnector.getIssueDetails(issue.id),
+                idToDetails);
     }
 }
 
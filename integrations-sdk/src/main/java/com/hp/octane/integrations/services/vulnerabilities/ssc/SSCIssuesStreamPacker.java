@@ -0,0 +1,134 @@
+/*
+ *     Copyright 2017 EntIT Software LLC, a Micro Focus company, L.P.
+ *     Licensed under the Apache License, Version 2.0 (the "License");
+ *     you may not use this file except in compliance with the License.
+ *     You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *     Unless required by applicable law or agreed to in writing, software
+ *     distributed under the License is distributed on an "AS IS" BASIS,
+ *     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *     See the License for the specific language governing permissions and
+ *     limitations under the License.
+ */
+
+package com.hp.octane.integrations.services.vulnerabilities.ssc;
+
+import com.hp.octane.integrations.dto.securityscans.OctaneIssue;
+import com.hp.octane.integrations.exceptions.PermanentException;
+import com.hp.octane.integrations.services.vulnerabilities.DateUtils;
+import com.hp.octane.integrations.services.vulnerabilities.IssuesFileSerializer;
+import com.hp.octane.integrations.services.vulnerabilities.IssuesReconciler;
+import com.hp.octane.integrations.services.vulnerabilities.VulnerabilitiesGeneralUtils;
+import com.hp.octane.integrations.services.vulnerabilities.ssc.dto.IssueDetails;
+import com.hp.octane.integrations.services.vulnerabilities.ssc.dto.Issues;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Packs the SSC issues to be sent to Octane while they are read page by page, the Octane issues are written right away
+ * Only the current page and the remote IDs (of Octane and of the issues read so far) are held in memory
+ */
+class SSCIssuesStreamPacker {
+
+    private static final Logger logger = LogManager.getLogger(SSCIssuesStreamPacker.class);
+
+    private final SSCHandler sscHandler;
+    private final List<String> octaneIssues;
+    private final String remoteTag;
+    private final Date baselineDate;
+
+    SSCIssuesStreamPacker(SSCHandler sscHandler, List<String> octaneIssues, String remoteTag, Date baselineDate) {
+        this.sscHandler = sscHandler;
+        this.octaneIssues = octaneIssues;
+        this.remoteTag = remoteTag;
+        this.baselineDate = baselineDate;
+    }
+
+    /**
+     * Packs the issues into the spool file next to the scan result, that is deleted on failure
+     *
+     * @param scanResultFile cached scan result, the spool file is moved to once complete; NULL if the issues are not cached,
+     *                       then the temp spool file is deleted once the returned stream is closed
+     * @return stream of the packed issues, in the format of IssuesFileSerializer#serializeIssues
+     * @throws IOException if writing fails
+     */
+    InputStream packToFile(File scanResultFile) throws IOException {
+        File spoolFile = scanResultFile != null
+                ? new File(scanResultFile.getParentFile(), scanResultFile.getName() + ".tmp")
+                : File.createTempFile("securityScan", ".json");
+        try {
+            int issuesCount;
+            try (IssuesFileSerializer.IssuesStreamWriter writer = new IssuesFileSerializer.IssuesStreamWriter(new BufferedOutputStream(new FileOutputStream(spoolFile)))) {
+                issuesCount = pack(writer);
+            }
+            logger.debug("packed " + issuesCount + " issues");
+            if (issuesCount == 0) {
+                throw new PermanentException("This scan has no issues.");
+            }
+            if (scanResultFile == null) {
+                return IssuesFileSerializer.openSpooledScanResult(spoolFile);
+            }
+            Files.move(spoolFile.toPath(), scanResultFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            return new FileInputStream(scanResultFile);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(spoolFile.toPath());
+            throw e;
+        }
+    }
+
+    /**
+     * @param writer target of the Octane issues
+     * @return number of the Octane issues written, open and closed
+     * @throws IOException if writing fails
+     */
+    int pack(IssuesFileSerializer.IssuesStreamWriter writer) throws IOException {
+        IssuesReconciler<Issues.Issue>.Session session = IssuesReconciler.<Issues.Issue>forRawVulnerabilities().startSession(octaneIssues);
+        //  missing issues are created in Octane only when the scan is compared to the baseline
+        boolean considerMissing = baselineDate != null;
+
+        sscHandler.streamIssues(page -> {
+            List<Issues.Issue> openIssues = new ArrayList<>(page.size());
+            List<Issues.Issue> issuesRequiredExtendedData = new ArrayList<>();
+            for (Issues.Issue issue : page) {
+                //  in case we have the baselineDate - we should filter by it to have more optimal payload
+                if (baselineDate != null && DateUtils.getDateFromUTCString(issue.foundDate, DateUtils.sscFormat).compareTo(baselineDate) < 0) {
+                    continue;
+                }
+                openIssues.add(issue);
+                IssuesReconciler.Classification classification = session.classify(issue);
+                if (classification == IssuesReconciler.Classification.NEW ||
+                        (considerMissing && classification == IssuesReconciler.Classification.MISSING)) {
+                    issuesRequiredExtendedData.add(issue);
+                }
+            }
+            if (openIssues.isEmpty()) {
+                return;
+            }
+            Map<Integer, IssueDetails> issuesWithExtendedData = sscHandler.getIssuesExtendedData(issuesRequiredExtendedData);
+            for (OctaneIssue octaneIssue : SSCToOctaneIssueUtil.createOctaneIssues(openIssues, remoteTag, issuesWithExtendedData)) {
+                writer.write(octaneIssue);
+            }
+            logger.debug("packed page of " + page.size() + " SSC issues, " + writer.getCount() + " Octane issues so far");
+        });
+
+        for (String closedRemoteId : session.getClosedRemoteIds()) {
+            writer.write(VulnerabilitiesGeneralUtils.createClosedOctaneIssue(closedRemoteId));
+        }
+        return writer.getCount();
+    }
+}
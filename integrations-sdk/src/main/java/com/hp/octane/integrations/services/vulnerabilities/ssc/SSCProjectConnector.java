@@ -15,7 +15,10 @@
 
 package com.hp.octane.integrations.services.vulnerabilities.ssc;
 
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
 import com.fasterxml.jackson.databind.type.TypeFactory;
 import com.hp.octane.integrations.dto.securityscans.SSCProjectConfiguration;
 import com.hp.octane.integrations.services.rest.SSCRestClient;
@@ -31,6 +34,14 @@ import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 
 /**
  * Created by hijaziy on 7/12/2018.
@@ -39,6 +50,10 @@ public class SSCProjectConnector {
     private final SSCProjectConfiguration sscProjectConfiguration;
     private final SSCRestClient sscRestClient;
     private final static Logger logger = LogManager.getLogger(SSCProjectConnector.class);
+    private final static int TOO_MANY_REQUESTS = 429;
+    private final static ObjectMapper objectMapper = new ObjectMapper();
+    private final static ObjectReader issueReader = objectMapper.readerFor(Issues.Issue.class);
+    private final static ExecutorService pagesPrefetchExecutor = Executors.newCachedThreadPool(new SSCPagesPrefetchThreadFactory());
 
     public SSCProjectConnector(SSCProjectConfiguration sscProjectConfiguration, SSCRestClient sscRestClient) {
         this.sscProjectConfiguration = sscProjectConfiguration;
@@ -46,16 +61,26 @@ public class SSCProjectConnector {
     }
 
     private String sendGetEntity(String urlSuffix) {
+        return sendGetEntity(urlSuffix, CIPluginSDKUtils::inputStreamToUTF8String);
+    }
+
+    private <R> R sendGetEntity(String urlSuffix, ResponseReader<R> responseReader) {
         String url = sscProjectConfiguration.getSSCUrl() + "/api/v1/" + urlSuffix;
         CloseableHttpResponse response = sscRestClient.sendGetRequest(sscProjectConfiguration, url);
 
-        if (response.getStatusLine().getStatusCode() == HttpStatus.SC_SERVICE_UNAVAILABLE) {
-            throw new TemporaryException("SSC Server is not available:" + response.getStatusLine().getStatusCode());
-        } else if (response.getStatusLine().getStatusCode() != HttpStatus.SC_OK) {
-            throw new PermanentException("Error from SSC:" + response.getStatusLine().getStatusCode());
+        int statusCode = response.getStatusLine().getStatusCode();
+        if (statusCode != HttpStatus.SC_OK) {
+            //  connection is released before the (throttled) request is retried
+            EntityUtils.consumeQuietly(response.getEntity());
+            HttpClientUtils.closeQuietly(response);
+        }
+        if (statusCode == HttpStatus.SC_SERVICE_UNAVAILABLE || statusCode == TOO_MANY_REQUESTS) {
+            throw new TemporaryException("SSC Server is not available:" + statusCode);
+        } else if (statusCode != HttpStatus.SC_OK) {
+            throw new PermanentException("Error from SSC:" + statusCode);
         }
         try {
-            return CIPluginSDKUtils.inputStreamToUTF8String(response.getEntity().getContent());
+            return responseReader.read(response.getEntity().getContent());
         } catch (IOException e) {
             throw new PermanentException(e);
         } finally {
@@ -93,7 +118,7 @@ public class SSCProjectConnector {
             return null;
         }
         try {
-            return new ObjectMapper().readValue(response,
+            return objectMapper.readValue(response,
                     TypeFactory.defaultInstance().constructType(type));
         } catch (IOException e) {
             throw new PermanentException(e);
@@ -105,6 +130,16 @@ public class SSCProjectConnector {
         return readPagedEntities(urlSuffix, Issues.class);
     }
 
+    /**
+     * Reads the issues of the project version page by page, the next page is fetched while the consumer handles the current one
+     *
+     * @param projectVersionId project version
+     * @param pageConsumer     handler of the pages, called in order and on the calling thread
+     */
+    public void streamIssues(int projectVersionId, PageConsumer<Issues.Issue> pageConsumer) {
+        streamPagedEntities(getIssuesURL(projectVersionId), issueReader, pageConsumer);
+    }
+
     public IssueDetails getIssueDetails(Integer id) {
         String urlForIssueDetails = getURLForIssueDetails(id);
         String rawResponse = sendGetEntity(urlForIssueDetails);
@@ -137,6 +172,78 @@ public class SSCProjectConnector {
         }
     }
 
+    public <T> void streamPagedEntities(String url, ObjectReader itemReader, PageConsumer<T> pageConsumer) {
+        Page<T> page = readPage(url, 0, itemReader);
+        int fetched = 0;
+        while (true) {
+            fetched += page.items.size();
+            Future<Page<T>> nextPage = null;
+            if (!page.items.isEmpty() && fetched < page.count) {
+                int startIndex = fetched;
+                nextPage = pagesPrefetchExecutor.submit(() -> readPage(url, startIndex, itemReader));
+            }
+            try {
+                pageConsumer.accept(page.items);
+            } catch (IOException e) {
+                cancel(nextPage);
+                throw new PermanentException("Failed to process page of " + url, e);
+            } catch (RuntimeException e) {
+                cancel(nextPage);
+                throw e;
+            }
+            if (nextPage == null) {
+                return;
+            }
+            page = awaitPage(nextPage);
+        }
+    }
+
+    private <T> Page<T> readPage(String url, int startIndex, ObjectReader itemReader) {
+        return sendGetEntity(getPagedURL(url, startIndex), content -> {
+            Page<T> page = new Page<>();
+            try (JsonParser parser = objectMapper.getFactory().createParser(content)) {
+                if (parser.nextToken() != JsonToken.START_OBJECT) {
+                    throw new PermanentException("Unexpected response from SSC for " + url);
+                }
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    String fieldName = parser.getCurrentName();
+                    JsonToken valueToken = parser.nextToken();
+                    if ("data".equals(fieldName) && valueToken == JsonToken.START_ARRAY) {
+                        while (parser.nextToken() == JsonToken.START_OBJECT) {
+                            page.items.add(itemReader.readValue(parser));
+                        }
+                    } else if ("count".equals(fieldName) && valueToken == JsonToken.VALUE_NUMBER_INT) {
+                        page.count = parser.getIntValue();
+                    } else {
+                        parser.skipChildren();
+                    }
+                }
+            }
+            return page;
+        });
+    }
+
+    private static <T> Page<T> awaitPage(Future<Page<T>> nextPage) {
+        try {
+            return nextPage.get();
+        } catch (InterruptedException e) {
+            nextPage.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new TemporaryException("Interrupted while fetching page from SSC", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new PermanentException(e.getCause());
+        }
+    }
+
+    private static void cancel(Future<?> nextPage) {
+        if (nextPage != null) {
+            nextPage.cancel(true);
+        }
+    }
+
     private String getPagedURL(String url, int startIndex) {
 
         if (url.contains("?")) {
@@ -175,5 +282,32 @@ public class SSCProjectConnector {
         return "issueDetails/" + issuesId;
     }
 
+    /**
+     * Handler of the entities of one page
+     */
+    @FunctionalInterface
+    public interface PageConsumer<T> {
+        void accept(List<T> page) throws IOException;
+    }
+
+    @FunctionalInterface
+    private interface ResponseReader<R> {
+        R read(InputStream content) throws IOException;
+    }
+
+    private static final class Page<T> {
+        private final List<T> items = new ArrayList<>();
+        private int count;
+    }
+
+    private static final class SSCPagesPrefetchThreadFactory implements ThreadFactory {
 
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread result = new Thread(runnable);
+            result.setName("SSCPagesPrefetchWorker-" + result.getId());
+            result.setDaemon(true);
+            return result;
+        }
+    }
 }
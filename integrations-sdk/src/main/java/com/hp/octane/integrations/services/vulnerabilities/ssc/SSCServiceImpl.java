@@ -16,23 +16,16 @@
 package com.hp.octane.integrations.services.vulnerabilities.ssc;
 
 import com.hp.octane.integrations.OctaneSDK;
-import com.hp.octane.integrations.dto.securityscans.OctaneIssue;
 import com.hp.octane.integrations.dto.securityscans.SSCProjectConfiguration;
 import com.hp.octane.integrations.services.rest.RestService;
-import com.hp.octane.integrations.services.vulnerabilities.DateUtils;
-import com.hp.octane.integrations.services.vulnerabilities.IssuesFileSerializer;
 import com.hp.octane.integrations.services.vulnerabilities.VulnerabilitiesQueueItem;
-import com.hp.octane.integrations.services.vulnerabilities.ssc.dto.Issues;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
-import java.util.Date;
 import java.util.List;
-import java.util.Optional;
-import java.util.stream.Collectors;
 
 import static com.hp.octane.integrations.services.vulnerabilities.IssuesFileSerializer.*;
 
@@ -80,13 +73,9 @@ public class SSCServiceImpl implements SSCService{
                 logger.warn(configurer.octaneConfiguration.getLocationForLog() + "Results are cached.");
                 return cachedScanResult;
             }
-            List<OctaneIssue> octaneIssues = getNonCacheVulnerabilitiesScanResultStream(queueItem);
+            InputStream scanResult = getNonCacheVulnerabilitiesScanResultStream(queueItem, targetDir);
             logger.debug(configurer.octaneConfiguration.getLocationForLog() + "Done retrieving non-cached.");
-            if(octaneIssues==null){
-                return null;
-            }
-            cacheIssues(targetDir,octaneIssues);
-            return  IssuesFileSerializer.serializeIssues(octaneIssues);
+            return scanResult;
         }
         catch (IOException e){
             throw new RuntimeException(e);
@@ -106,8 +95,8 @@ public class SSCServiceImpl implements SSCService{
     }
 
 
-    private List<OctaneIssue> getNonCacheVulnerabilitiesScanResultStream(VulnerabilitiesQueueItem queueItem
-                                                                         ) throws IOException {
+    //  issues are written to the scan result file (the cache) while read from SSC, the file is then sent to Octane as is
+    private InputStream getNonCacheVulnerabilitiesScanResultStream(VulnerabilitiesQueueItem queueItem, String targetDir) throws IOException {
 
         SSCProjectConfiguration sscProjectConfiguration = configurer.pluginServices.getSSCProjectConfiguration(queueItem.getJobId(), queueItem.getBuildId());
         if (sscProjectConfiguration == null || !sscProjectConfiguration.isValid()) {
@@ -121,46 +110,28 @@ public class SSCServiceImpl implements SSCService{
                 sscProjectConfiguration,
                 this.restService.obtainSSCRestClient());
 
-        logger.debug(configurer.octaneConfiguration.getLocationForLog() + "retrieve issues from SSC");
-        List<Issues.Issue> issuesFromSecurityTool = getIssuesFromSSC(sscHandler,queueItem);
-        if(issuesFromSecurityTool==null){
+        if (!sscHandler.isScanProcessFinished()) {
+            logger.debug(queueItem.toString() + " not completed yet");
             return null;
         }
-        logger.debug(configurer.octaneConfiguration.getLocationForLog() + "retrieve octane remote ids");
+        logger.debug(queueItem.toString() + " completed SSC scan.");
 
+        logger.debug(configurer.octaneConfiguration.getLocationForLog() + "retrieve octane remote ids");
         List<String> octaneExistsIssuesIdsList = getRemoteIdsOfExistIssuesFromOctane(queueItem, sscProjectConfiguration.getRemoteTag());
         logger.debug(configurer.octaneConfiguration.getLocationForLog() + "done retrieveing octane remote ids");
 
-        PackSSCIssuesToSendToOctane packSSCIssuesToSendToOctane = new PackSSCIssuesToSendToOctane();
-        packSSCIssuesToSendToOctane.setConsiderMissing(queueItem.getBaselineDate() != null);
-        packSSCIssuesToSendToOctane.setOctaneIssues(octaneExistsIssuesIdsList);
-        packSSCIssuesToSendToOctane.setRemoteTag(sscProjectConfiguration.getRemoteTag());
-        packSSCIssuesToSendToOctane.setSscHandler(sscHandler);
-        packSSCIssuesToSendToOctane.setSscIssues(issuesFromSecurityTool);
-
-        return packSSCIssuesToSendToOctane.packToOctaneIssues();
-    }
-
-    //return issues from security tool (or null if scan not completed)
-    private List<Issues.Issue> getIssuesFromSSC(SSCHandler sscHandler, VulnerabilitiesQueueItem vulnerabilitiesQueueItem) {
+        SSCIssuesStreamPacker packer = new SSCIssuesStreamPacker(sscHandler,
+                octaneExistsIssuesIdsList,
+                sscProjectConfiguration.getRemoteTag(),
+                queueItem.getBaselineDate());
 
-        Optional<Issues> allIssues = sscHandler.getIssuesIfScanCompleted();
-        if (!allIssues.isPresent()) {
-            logger.debug( vulnerabilitiesQueueItem.toString() + " not completed yet");
-            return null;
-        }
-        logger.debug( vulnerabilitiesQueueItem.toString() + " completed SSC scan.");
-        List<Issues.Issue> filterIssuesByBaseLine = allIssues.get().getData();
-        //in case we have the baselineDate - we should filter by it to have more optimal payload
-        if(vulnerabilitiesQueueItem.getBaselineDate()!=null) {
-            filterIssuesByBaseLine = allIssues.get().getData().stream().filter(issue -> {
-                Date foundDate = DateUtils.getDateFromUTCString(issue.foundDate, DateUtils.sscFormat);
-                return foundDate.compareTo(vulnerabilitiesQueueItem.getBaselineDate()) >= 0;
-            }).collect(Collectors.toList());
+        File scanResultFile = null;
+        if (targetDir != null) {
+            validateFolderExists(targetDir);
+            scanResultFile = new File(targetDir, SSCHandler.SCAN_RESULT_FILE);
         }
-        logger.debug(configurer.octaneConfiguration.getLocationForLog() + "filterIssuesByBaseLine.size():" + filterIssuesByBaseLine.size());
-        return filterIssuesByBaseLine;
+        InputStream result = packer.packToFile(scanResultFile);
+        logger.debug(configurer.octaneConfiguration.getLocationForLog() + "packed the issues of " + queueItem);
+        return result;
     }
-
-
 }
@@ -40,7 +40,7 @@ public class SSCToOctaneIssueUtil {
         if (issues == null) {
             return new ArrayList<>();
         }
-        logger.warn("SSCToOctane.createOctaneIssues");
+        logger.debug("SSCToOctane.createOctaneIssues");
         DTOFactory dtoFactory = DTOFactory.getInstance();
         List<OctaneIssue> octaneIssues = new ArrayList<>();
         for (Issues.Issue issue : issues) {
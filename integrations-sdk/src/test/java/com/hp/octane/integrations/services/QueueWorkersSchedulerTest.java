@@ -0,0 +1,133 @@
+/*
+ *     Copyright 2017 EntIT Software LLC, a Micro Focus company, L.P.
+ *     Licensed under the Apache License, Version 2.0 (the "License");
+ *     you may not use this file except in compliance with the License.
+ *     You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *     Unless required by applicable law or agreed to in writing, software
+ *     distributed under the License is distributed on an "AS IS" BASIS,
+ *     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *     See the License for the specific language governing permissions and
+ *     limitations under the License.
+ */
+
+package com.hp.octane.integrations.services;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class QueueWorkersSchedulerTest {
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testNegativeA() {
+		QueueWorkersScheduler.getInstance().register("negative", null);
+	}
+
+	@Test(timeout = 10000)
+	public void testWakeUpCutsBreakablePause() throws InterruptedException {
+		AtomicInteger steps = new AtomicInteger();
+		CountDownLatch secondStep = new CountDownLatch(2);
+		QueueWorkersScheduler.Worker worker = QueueWorkersScheduler.getInstance().register("breakable", () -> {
+			steps.incrementAndGet();
+			secondStep.countDown();
+			return QueueWorkersScheduler.breakablePause(60000);
+		});
+		waitFor(() -> steps.get() == 1);
+		worker.wakeUp();
+		Assert.assertTrue(secondStep.await(5, TimeUnit.SECONDS));
+		worker.shutdown();
+	}
+
+	@Test(timeout = 10000)
+	public void testWakeUpDoesNotCutPause() throws InterruptedException {
+		AtomicInteger steps = new AtomicInteger();
+		QueueWorkersScheduler.Worker worker = QueueWorkersScheduler.getInstance().register("unbreakable", () -> {
+			steps.incrementAndGet();
+			return QueueWorkersScheduler.pause(500);
+		});
+		waitFor(() -> steps.get() == 1);
+		long started = System.currentTimeMillis();
+		worker.wakeUp();
+		worker.wakeUp();
+		Thread.sleep(200);
+		Assert.assertEquals(1, steps.get());
+
+		//  pause is still honored and then the worker resumes on its own
+		waitFor(() -> steps.get() >= 2);
+		Assert.assertTrue(System.currentTimeMillis() - started >= 250);
+		worker.shutdown();
+	}
+
+	@Test(timeout = 10000)
+	public void testStepsNeverRunConcurrently() throws InterruptedException {
+		AtomicBoolean running = new AtomicBoolean();
+		AtomicBoolean overlapped = new AtomicBoolean();
+		AtomicInteger steps = new AtomicInteger();
+		QueueWorkersScheduler.Worker worker = QueueWorkersScheduler.getInstance().register("exclusive", () -> {
+			if (!running.compareAndSet(false, true)) {
+				overlapped.set(true);
+			}
+			try {
+				Thread.sleep(1);
+			} catch (InterruptedException ie) {
+				Thread.currentThread().interrupt();
+			}
+			running.set(false);
+			steps.incrementAndGet();
+			return QueueWorkersScheduler.breakablePause(60000);
+		});
+		//  wake ups while the step is queued are (rightly) merged into it, so keep waking up until several steps ran
+		while (steps.get() < 5) {
+			worker.wakeUp();
+			Thread.yield();
+		}
+		worker.shutdown();
+		Assert.assertFalse(overlapped.get());
+	}
+
+	@Test(timeout = 10000)
+	public void testShutdownStopsWorker() throws InterruptedException {
+		AtomicInteger steps = new AtomicInteger();
+		QueueWorkersScheduler.Worker worker = QueueWorkersScheduler.getInstance().register("stopped", () -> {
+			steps.incrementAndGet();
+			return QueueWorkersScheduler.NO_PAUSE;
+		});
+		waitFor(() -> steps.get() > 10);
+		worker.shutdown();
+		Assert.assertTrue(worker.isShutdown());
+		Thread.sleep(100);
+		int stepsAfterShutdown = steps.get();
+		Thread.sleep(200);
+		Assert.assertEquals(stepsAfterShutdown, steps.get());
+	}
+
+	@Test(timeout = 10000)
+	public void testFailingStepIsRetried() throws InterruptedException {
+		AtomicInteger steps = new AtomicInteger();
+		QueueWorkersScheduler.Worker worker = QueueWorkersScheduler.getInstance().register("failing", () -> {
+			if (steps.incrementAndGet() == 1) {
+				throw new IllegalStateException("first step fails");
+			}
+			return QueueWorkersScheduler.breakablePause(60000);
+		});
+		waitFor(() -> steps.get() == 2);
+		worker.shutdown();
+	}
+
+	private static void waitFor(Condition condition) throws InterruptedException {
+		while (!condition.met()) {
+			Thread.sleep(10);
+		}
+	}
+
+	private interface Condition {
+		boolean met();
+	}
+}
@@ -0,0 +1,117 @@
+/*
+ *     Copyright 2017 EntIT Software LLC, a Micro Focus company, L.P.
+ *     Licensed under the Apache License, Version 2.0 (the "License");
+ *     you may not use this file except in compliance with the License.
+ *     You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *     Unless required by applicable law or agreed to in writing, software
+ *     distributed under the License is distributed on an "AS IS" BASIS,
+ *     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *     See the License for the specific language governing permissions and
+ *     limitations under the License.
+ */
+
+package com.hp.octane.integrations.services;
+
+import com.hp.octane.integrations.OctaneConfiguration;
+import com.hp.octane.integrations.services.configuration.ConfigurationService;
+import org.apache.logging.log4j.LogManager;
+import org.easymock.Capture;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.easymock.EasyMock.*;
+
+public class WorkerPreflightTest {
+
+	@Test
+	public void testBackoffGrowsWithJitterAndIsCapped() {
+		WorkerPreflight preflight = new WorkerPreflight(new TestQueueService(), mockConfigurationService(new AtomicBoolean(true), newCapture()), LogManager.getLogger(WorkerPreflightTest.class));
+		for (int failure = 1; failure <= 30; failure++) {
+			long pause = -preflight.backoff(1000);
+			long interval = Math.min(300000, 1000L << Math.min(failure - 1, 16));
+			Assert.assertTrue("failure " + failure + " paused " + pause, pause >= interval / 2 && pause <= interval);
+		}
+	}
+
+	@Test(timeout = 10000)
+	public void testDrainsBacklogWithoutPauses() throws InterruptedException {
+		TestQueueService queue = new TestQueueService();
+		queue.size.set(200);
+		WorkerPreflight preflight = new WorkerPreflight(queue, mockConfigurationService(new AtomicBoolean(true), newCapture()), LogManager.getLogger(WorkerPreflightTest.class));
+		long started = System.currentTimeMillis();
+		preflight.start("draining", () -> {
+			queue.size.decrementAndGet();
+			return QueueWorkersScheduler.NO_PAUSE;
+		});
+		while (queue.size.get() > 0) {
+			Thread.sleep(10);
+		}
+		preflight.shutdown();
+		//  used to be at least 400ms per item
+		Assert.assertTrue(System.currentTimeMillis() - started < 5000);
+
+		Map<String, Object> metrics = new LinkedHashMap<>();
+		preflight.addMetrics(metrics);
+		Assert.assertEquals(200L, metrics.get("drainedItemsCount"));
+	}
+
+	@Test(timeout = 10000)
+	public void testWokenUpOnReconnection() throws InterruptedException {
+		TestQueueService queue = new TestQueueService();
+		queue.size.set(1);
+		AtomicBoolean connected = new AtomicBoolean(false);
+		Capture<ConfigurationService.ConnectivityListener> listener = newCapture();
+		WorkerPreflight preflight = new WorkerPreflight(queue, mockConfigurationService(connected, listener), LogManager.getLogger(WorkerPreflightTest.class));
+		preflight.setWaitAfterConnection(false);
+		AtomicInteger steps = new AtomicInteger();
+		preflight.start("reconnecting", () -> {
+			steps.incrementAndGet();
+			queue.size.set(0);
+			return QueueWorkersScheduler.NO_PAUSE;
+		});
+
+		Thread.sleep(200);
+		Assert.assertEquals(0, steps.get());
+
+		//  the worker waits 30 seconds when not connected, transition cuts it short
+		connected.set(true);
+		listener.getValue().onConnectivityChanged(true);
+		while (steps.get() == 0) {
+			Thread.sleep(10);
+		}
+		preflight.shutdown();
+	}
+
+	private static ConfigurationService mockConfigurationService(AtomicBoolean connected, Capture<ConfigurationService.ConnectivityListener> listener) {
+		ConfigurationService configurationService = niceMock(ConfigurationService.class);
+		expect(configurationService.getConfiguration()).andReturn(new OctaneConfiguration("instance")).anyTimes();
+		expect(configurationService.isConnected()).andAnswer(connected::get).anyTimes();
+		configurationService.addConnectivityListener(capture(listener));
+		expectLastCall().anyTimes();
+		replay(configurationService);
+		return configurationService;
+	}
+
+	private static final class TestQueueService implements HasQueueService {
+		private final AtomicLong size = new AtomicLong();
+
+		@Override
+		public long getQueueSize() {
+			return size.get();
+		}
+
+		@Override
+		public void clearQueue() {
+			size.set(0);
+		}
+	}
+}
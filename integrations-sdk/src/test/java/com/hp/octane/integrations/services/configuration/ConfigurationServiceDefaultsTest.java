@@ -0,0 +1,145 @@
+/*
+ *     Copyright 2017 EntIT Software LLC, a Micro Focus company, L.P.
+ *     Licensed under the Apache License, Version 2.0 (the "License");
+ *     you may not use this file except in compliance with the License.
+ *     You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *     Unless required by applicable law or agreed to in writing, software
+ *     distributed under the License is distributed on an "AS IS" BASIS,
+ *     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *     See the License for the specific language governing permissions and
+ *     limitations under the License.
+ */
+
+package com.hp.octane.integrations.services.configuration;
+
+import com.hp.octane.integrations.OctaneConfiguration;
+import com.hp.octane.integrations.dto.DTOFactory;
+import com.hp.octane.integrations.dto.causes.CIEventCause;
+import com.hp.octane.integrations.dto.causes.CIEventCauseType;
+import com.hp.octane.integrations.dto.general.OctaneConnectivityStatus;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Default methods of ConfigurationService, as seen by the implementations written before these methods were added
+ */
+public class ConfigurationServiceDefaultsTest {
+	private static final DTOFactory dtoFactory = DTOFactory.getInstance();
+
+	@Test
+	public void testConnectivityListenersDefault() {
+		ConfigurationService service = new LegacyConfigurationService();
+		ConfigurationService.ConnectivityListener listener = connected -> Assert.fail("default implementation MUST NOT notify");
+
+		service.addConnectivityListener(listener);
+		service.removeConnectivityListener(listener);
+		service.removeConnectivityListener(listener);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testConnectivityListenerNull() {
+		new LegacyConfigurationService().addConnectivityListener(null);
+	}
+
+	@Test
+	public void testPreflightCacheDefault() {
+		PreflightCache cache = new LegacyConfigurationService().getPreflightCache();
+		AtomicInteger loads = new AtomicInteger();
+
+		for (int i = 0; i < 3; i++) {
+			Assert.assertTrue(cache.get(PreflightCache.Kind.TESTS, "instance", "job", "root", () -> loads.incrementAndGet() > 0, relevant -> !relevant));
+		}
+		Assert.assertEquals(3, loads.get());
+		Assert.assertEquals(0, cache.size());
+	}
+
+	@Test
+	public void testRelevanceByCausesDefault() {
+		ConfigurationService service = new LegacyConfigurationService();
+		service.addToOctaneRootsCache("root");
+
+		CIEventCause userCause = dtoFactory.newDTO(CIEventCause.class).setType(CIEventCauseType.USER);
+		CIEventCause upstreamCause = dtoFactory.newDTO(CIEventCause.class)
+				.setType(CIEventCauseType.UPSTREAM)
+				.setProject("root")
+				.setCauses(Collections.singletonList(userCause));
+
+		Assert.assertTrue(service.isRelevantForOctane("root", Collections.singletonList(userCause)));
+		Assert.assertTrue(service.isRelevantForOctane("child", Collections.singletonList(upstreamCause)));
+		Assert.assertFalse(service.isRelevantForOctane("other", Collections.singletonList(userCause)));
+		Assert.assertFalse(service.isRelevantForOctane("other", null));
+	}
+
+	private static final class LegacyConfigurationService implements ConfigurationService {
+		private final Set<String> roots = new HashSet<>();
+
+		@Override
+		public OctaneConfiguration getConfiguration() {
+			return null;
+		}
+
+		@Override
+		public OctaneConnectivityStatus getOctaneConnectivityStatus() {
+			return null;
+		}
+
+		@Override
+		public OctaneConnectivityStatus validateConfigurationAndGetConnectivityStatus() {
+			return null;
+		}
+
+		@Override
+		public boolean isOctaneVersionGreaterOrEqual(String version) {
+			return true;
+		}
+
+		@Override
+		public boolean isConnected() {
+			return true;
+		}
+
+		@Override
+		public Collection<String> getOctaneRootsCacheCollection() {
+			return Collections.unmodifiableSet(roots);
+		}
+
+		@Override
+		public Future<Boolean> resetOctaneRootsCache() {
+			roots.clear();
+			return CompletableFuture.completedFuture(true);
+		}
+
+		@Override
+		public void addToOctaneRootsCache(String rootJob) {
+			roots.add(rootJob);
+		}
+
+		@Override
+		public boolean removeFromOctaneRoots(String rootJob) {
+			return roots.remove(rootJob);
+		}
+
+		@Override
+		public boolean isRelevantForOctane(Collection<String> rootJobs) {
+			return rootJobs != null && rootJobs.stream().anyMatch(roots::contains);
+		}
+
+		@Override
+		public Map<String, Object> getMetrics() {
+			return new HashMap<>();
+		}
+	}
+}
@@ -0,0 +1,216 @@
+/*
+ *     Copyright 2017 EntIT Software LLC, a Micro Focus company, L.P.
+ *     Licensed under the Apache License, Version 2.0 (the "License");
+ *     you may not use this file except in compliance with the License.
+ *     You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *     Unless required by applicable law or agreed to in writing, software
+ *     distributed under the License is distributed on an "AS IS" BASIS,
+ *     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *     See the License for the specific language governing permissions and
+ *     limitations under the License.
+ */
+
+package com.hp.octane.integrations.services.configuration;
+
+import com.hp.octane.integrations.dto.DTOFactory;
+import com.hp.octane.integrations.dto.causes.CIEventCause;
+import com.hp.octane.integrations.dto.causes.CIEventCauseType;
+import com.hp.octane.integrations.utils.CIPluginSDKUtils;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class OctaneRootsCacheTest {
+	private static final DTOFactory dtoFactory = DTOFactory.getInstance();
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testNegativeA() {
+		new OctaneRootsCache(null);
+	}
+
+	@Test
+	public void testNotLoaded() {
+		OctaneRootsCache cache = new OctaneRootsCache(job -> null);
+		Assert.assertFalse(cache.isLoaded());
+		Assert.assertTrue(cache.isRelevant(Collections.singleton("job")));
+		Assert.assertFalse(cache.add("job"));
+		Assert.assertTrue(cache.getSortedRoots().isEmpty());
+	}
+
+	@Test
+	public void testRefresh() {
+		OctaneRootsCache cache = new OctaneRootsCache(job -> null);
+		Assert.assertEquals(-1, cache.replace(Arrays.asList("root-b", "root-a"), "v1"));
+		Assert.assertTrue(cache.isLoaded());
+		Assert.assertEquals("v1", cache.getVersion());
+		Assert.assertEquals(Arrays.asList("root-a", "root-b"), cache.getSortedRoots());
+
+		Assert.assertEquals(0, cache.replace(Arrays.asList("root-a", "root-b"), "v2"));
+		Assert.assertEquals("v2", cache.getVersion());
+		Assert.assertEquals(2, cache.replace(Arrays.asList("root-a", "root-c"), "v3"));
+		Assert.assertEquals(Arrays.asList("root-a", "root-c"), cache.getSortedRoots());
+
+		Assert.assertTrue(cache.isRelevant(Arrays.asList("other", "root-c")));
+		Assert.assertFalse(cache.isRelevant(Collections.singleton("root-b")));
+		Assert.assertTrue(cache.isRelevant(Collections.emptyList()));
+
+		cache.clear();
+		Assert.assertFalse(cache.isLoaded());
+		Assert.assertNull(cache.getVersion());
+	}
+
+	@Test
+	public void testCopyOnWrite() {
+		OctaneRootsCache cache = new OctaneRootsCache(job -> null);
+		cache.replace(Collections.singleton("root-a"), "v1");
+		List<String> before = cache.getSortedRoots();
+
+		Assert.assertTrue(cache.add("root-b"));
+		Assert.assertFalse(cache.add("root-b"));
+		Assert.assertNull(cache.getVersion());
+		Assert.assertEquals(Collections.singletonList("root-a"), before);
+		Assert.assertEquals(Arrays.asList("root-a", "root-b"), cache.getSortedRoots());
+
+		Assert.assertTrue(cache.remove("root-a"));
+		Assert.assertFalse(cache.remove("root-a"));
+		Assert.assertEquals(Collections.singletonList("root-b"), cache.getSortedRoots());
+	}
+
+	@Test
+	public void testMultibranchParentMemoized() {
+		AtomicInteger lookups = new AtomicInteger();
+		OctaneRootsCache cache = new OctaneRootsCache(job -> {
+			lookups.incrementAndGet();
+			return job.startsWith("multibranch/") ? "multibranch" : null;
+		});
+		cache.replace(Collections.singleton("multibranch"), null);
+
+		for (int i = 0; i < 3; i++) {
+			Assert.assertFalse(cache.isRelevant(Collections.singleton("plain")));
+		}
+		Assert.assertEquals(1, lookups.get());
+
+		//  branch of the root is added as a root itself
+		Assert.assertTrue(cache.isRelevant(Collections.singleton("multibranch/master")));
+		Assert.assertTrue(cache.isRelevant(Collections.singleton("multibranch/master")));
+		Assert.assertEquals(2, lookups.get());
+		Assert.assertTrue(cache.getSortedRoots().contains("multibranch/master"));
+
+		Map<String, Object> metrics = new LinkedHashMap<>();
+		cache.addMetrics(metrics);
+		Assert.assertEquals(2L, metrics.get("octaneRootsCache_hitsCount"));
+		Assert.assertEquals(3L, metrics.get("octaneRootsCache_missesCount"));
+		Assert.assertEquals(2L, metrics.get("octaneRootsCache_parentLookupsCount"));
+	}
+
+	@Test
+	public void testRelevanceByCauses() {
+		OctaneRootsCache cache = new OctaneRootsCache(job -> null);
+		cache.replace(Collections.singleton("root"), null);
+
+		//  no causes / no root jobs
+		Assert.assertTrue(cache.isRelevant("job", null));
+		Assert.assertTrue(cache.isRelevant(null, Collections.singletonList(userCause())));
+
+		Assert.assertTrue(cache.isRelevant("root", Collections.singletonList(userCause())));
+		Assert.assertFalse(cache.isRelevant("job", Collections.singletonList(userCause())));
+		Assert.assertTrue(cache.isRelevant("job", Arrays.asList(
+				upstreamCause("other", userCause()),
+				upstreamCause("middle", upstreamCause("root", userCause())))));
+		Assert.assertFalse(cache.isRelevant("job", Collections.singletonList(
+				upstreamCause("middle", upstreamCause("other", userCause())))));
+	}
+
+	@Test
+	public void testRelevanceByCausesSameAsByRootJobs() {
+		OctaneRootsCache cache = new OctaneRootsCache(job -> null);
+		cache.replace(Arrays.asList("job-1", "job-7"), null);
+		Random random = new Random(1);
+		for (int i = 0; i < 500; i++) {
+			String jobId = "job-" + random.nextInt(10);
+			List<CIEventCause> causes = randomCauses(random, 4);
+			Set<String> rootJobs = new HashSet<>();
+			CIPluginSDKUtils.getRootJobCiIds(jobId, causes, rootJobs);
+			Assert.assertEquals(cache.isRelevant(rootJobs), cache.isRelevant(jobId, causes));
+		}
+	}
+
+	@Test(timeout = 20000)
+	public void testConcurrentReadersAndWriters() throws InterruptedException {
+		OctaneRootsCache cache = new OctaneRootsCache(job -> null);
+		cache.replace(Collections.singleton("stable-root"), null);
+		AtomicBoolean failed = new AtomicBoolean();
+		Map<String, Boolean> added = new ConcurrentHashMap<>();
+
+		Thread[] threads = new Thread[8];
+		for (int t = 0; t < threads.length; t++) {
+			int threadIndex = t;
+			threads[t] = new Thread(() -> {
+				for (int i = 0; i < 2000; i++) {
+					if (threadIndex % 2 == 0) {
+						String root = "root-" + threadIndex + "-" + i;
+						cache.add(root);
+						added.put(root, true);
+						if (i % 3 == 0) {
+							cache.remove(root);
+							added.remove(root);
+						}
+					} else if (!cache.isRelevant(Collections.singleton("stable-root"))) {
+						failed.set(true);
+					} else {
+						cache.getSortedRoots();
+					}
+				}
+			});
+			threads[t].start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+
+		Assert.assertFalse(failed.get());
+		Assert.assertEquals(added.size() + 1, cache.size());
+	}
+
+	private static List<CIEventCause> randomCauses(Random random, int depth) {
+		List<CIEventCause> result = new ArrayList<>();
+		int count = random.nextInt(3);
+		for (int i = 0; i < count; i++) {
+			if (depth > 0 && random.nextBoolean()) {
+				result.add(dtoFactory.newDTO(CIEventCause.class)
+						.setType(CIEventCauseType.UPSTREAM)
+						.setProject("job-" + random.nextInt(10))
+						.setCauses(randomCauses(random, depth - 1)));
+			} else {
+				result.add(userCause());
+			}
+		}
+		return result;
+	}
+
+	private static CIEventCause upstreamCause(String project, CIEventCause cause) {
+		return dtoFactory.newDTO(CIEventCause.class)
+				.setType(CIEventCauseType.UPSTREAM)
+				.setProject(project)
+				.setCauses(Collections.singletonList(cause));
+	}
+
+	private static CIEventCause userCause() {
+		return dtoFactory.newDTO(CIEventCause.class).setType(CIEventCauseType.USER);
+	}
+}
@@ -0,0 +1,152 @@
+/*
+ *     Copyright 2017 EntIT Software LLC, a Micro Focus company, L.P.
+ *     Licensed under the Apache License, Version 2.0 (the "License");
+ *     you may not use this file except in compliance with the License.
+ *     You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *     Unless required by applicable law or agreed to in writing, software
+ *     distributed under the License is distributed on an "AS IS" BASIS,
+ *     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *     See the License for the specific language governing permissions and
+ *     limitations under the License.
+ */
+
+package com.hp.octane.integrations.services.configuration;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class PreflightCacheTest {
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testNegativeA() {
+		new PreflightCache(-1, 0, 10);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testNegativeB() {
+		new PreflightCache(1000, 0, 0);
+	}
+
+	@Test
+	public void testCachedPerKey() {
+		PreflightCache cache = new PreflightCache(60000, 60000, 100);
+		AtomicInteger loads = new AtomicInteger();
+
+		for (int i = 0; i < 5; i++) {
+			Assert.assertTrue(cache.get(PreflightCache.Kind.TESTS, "instance", "job", "root", () -> loads.incrementAndGet() > 0, relevant -> !relevant));
+		}
+		Assert.assertEquals(1, loads.get());
+
+		//  any part of the key differs
+		cache.get(PreflightCache.Kind.LOGS, "instance", "job", "root", () -> loads.incrementAndGet() > 0, relevant -> !relevant);
+		cache.get(PreflightCache.Kind.TESTS, "other-instance", "job", "root", () -> loads.incrementAndGet() > 0, relevant -> !relevant);
+		cache.get(PreflightCache.Kind.TESTS, "instance", "other-job", "root", () -> loads.incrementAndGet() > 0, relevant -> !relevant);
+		cache.get(PreflightCache.Kind.TESTS, "instance", "job", null, () -> loads.incrementAndGet() > 0, relevant -> !relevant);
+		Assert.assertEquals(5, loads.get());
+		Assert.assertEquals(5, cache.size());
+	}
+
+	@Test
+	public void testExpiration() throws InterruptedException {
+		PreflightCache cache = new PreflightCache(60000, 50, 100);
+		AtomicInteger loads = new AtomicInteger();
+
+		cache.get(PreflightCache.Kind.COVERAGE, "instance", "relevant", null, () -> loads.incrementAndGet() > 0, relevant -> !relevant);
+		cache.get(PreflightCache.Kind.COVERAGE, "instance", "not-relevant", null, () -> loads.incrementAndGet() < 0, relevant -> !relevant);
+		Thread.sleep(100);
+
+		//  negative answer expired, positive one is still valid
+		cache.get(PreflightCache.Kind.COVERAGE, "instance", "relevant", null, () -> loads.incrementAndGet() > 0, relevant -> !relevant);
+		cache.get(PreflightCache.Kind.COVERAGE, "instance", "not-relevant", null, () -> loads.incrementAndGet() < 0, relevant -> !relevant);
+		Assert.assertEquals(3, loads.get());
+	}
+
+	@Test
+	public void testPositiveNotCachedForVulnerabilities() {
+		PreflightCache cache = new PreflightCache(60000, 60000, 100);
+		AtomicInteger loads = new AtomicInteger();
+
+		for (int i = 0; i < 3; i++) {
+			cache.get(PreflightCache.Kind.VULNERABILITIES, "instance", "relevant", null, () -> "baseline-" + loads.incrementAndGet(), baseline -> baseline == null);
+			cache.get(PreflightCache.Kind.VULNERABILITIES, "instance", "not-relevant", null, () -> {
+				loads.incrementAndGet();
+				return null;
+			}, baseline -> baseline == null);
+		}
+		Assert.assertEquals(3 + 1, loads.get());
+	}
+
+	@Test
+	public void testLRUEviction() {
+		PreflightCache cache = new PreflightCache(60000, 60000, 2);
+		AtomicInteger loads = new AtomicInteger();
+
+		cache.get(PreflightCache.Kind.TESTS, "instance", "job-a", null, () -> loads.incrementAndGet() > 0, relevant -> !relevant);
+		cache.get(PreflightCache.Kind.TESTS, "instance", "job-b", null, () -> loads.incrementAndGet() > 0, relevant -> !relevant);
+		//  job-a used recently, job-b is the one evicted
+		cache.get(PreflightCache.Kind.TESTS, "instance", "job-a", null, () -> loads.incrementAndGet() > 0, relevant -> !relevant);
+		cache.get(PreflightCache.Kind.TESTS, "instance", "job-c", null, () -> loads.incrementAndGet() > 0, relevant -> !relevant);
+		Assert.assertEquals(3, loads.get());
+		Assert.assertEquals(2, cache.size());
+
+		cache.get(PreflightCache.Kind.TESTS, "instance", "job-a", null, () -> loads.incrementAndGet() > 0, relevant -> !relevant);
+		Assert.assertEquals(3, loads.get());
+		cache.get(PreflightCache.Kind.TESTS, "instance", "job-b", null, () -> loads.incrementAndGet() > 0, relevant -> !relevant);
+		Assert.assertEquals(4, loads.get());
+	}
+
+	@Test
+	public void testInvalidation() {
+		PreflightCache cache = new PreflightCache(60000, 60000, 100);
+		AtomicInteger loads = new AtomicInteger();
+
+		cache.get(PreflightCache.Kind.LOGS, "instance", "job", "root", () -> new String[]{"1001"}, wss -> wss.length == 0);
+		cache.invalidate();
+		Assert.assertEquals(0, cache.size());
+
+		//  answer loaded across the invalidation is not cached
+		cache.get(PreflightCache.Kind.LOGS, "instance", "job", "root", () -> {
+			loads.incrementAndGet();
+			cache.invalidate();
+			return new String[]{"1001"};
+		}, wss -> wss.length == 0);
+		Assert.assertEquals(0, cache.size());
+		cache.get(PreflightCache.Kind.LOGS, "instance", "job", "root", () -> {
+			loads.incrementAndGet();
+			return new String[]{"1001"};
+		}, wss -> wss.length == 0);
+		Assert.assertEquals(2, loads.get());
+		Assert.assertEquals(1, cache.size());
+	}
+
+	@Test
+	public void testFailureNotCached() {
+		PreflightCache cache = new PreflightCache(60000, 60000, 100);
+		try {
+			cache.get(PreflightCache.Kind.TESTS, "instance", "job", null, () -> {
+				throw new IllegalStateException("preflight failed");
+			}, relevant -> !(Boolean) relevant);
+			Assert.fail("failure expected");
+		} catch (IllegalStateException ise) {
+			Assert.assertEquals("preflight failed", ise.getMessage());
+		}
+		Assert.assertEquals(0, cache.size());
+		Assert.assertTrue(cache.get(PreflightCache.Kind.TESTS, "instance", "job", null, () -> true, relevant -> !relevant));
+	}
+
+	@Test
+	public void testDisabled() {
+		PreflightCache cache = new PreflightCache(0, 60000, 100);
+		AtomicInteger loads = new AtomicInteger();
+		for (int i = 0; i < 3; i++) {
+			cache.get(PreflightCache.Kind.TESTS, "instance", "job", null, () -> loads.incrementAndGet() > 0, relevant -> !relevant);
+		}
+		Assert.assertEquals(3, loads.get());
+		Assert.assertEquals(0, cache.size());
+	}
+}
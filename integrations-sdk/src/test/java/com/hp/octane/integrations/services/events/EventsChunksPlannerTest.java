@@ -0,0 +1,252 @@
+/*
+ *     Copyright 2017 EntIT Software LLC, a Micro Focus company, L.P.
+ *     Licensed under the Apache License, Version 2.0 (the "License");
+ *     you may not use this file except in compliance with the License.
+ *     You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *     Unless required by applicable law or agreed to in writing, software
+ *     distributed under the License is distributed on an "AS IS" BASIS,
+ *     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *     See the License for the specific language governing permissions and
+ *     limitations under the License.
+ */
+
+package com.hp.octane.integrations.services.events;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Events are written as "keys:name", keys separated by comma; "!" at the end of the name marks the barrier (multibranch child start)
+ */
+
+public class EventsChunksPlannerTest {
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testNegativeA() {
+		new EventsChunksPlanner<String>(0, EventsChunksPlannerTest::keys, EventsChunksPlannerTest::isBarrier);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testNegativeB() {
+		new EventsChunksPlanner<String>(2, null, EventsChunksPlannerTest::isBarrier);
+	}
+
+	@Test
+	public void testIndependentKeysGoToSeparateChunks() {
+		EventsRingBuffer<String> buffer = buffer("A:1", "B:1", "C:1", "A:2");
+		EventsChunksPlanner<String> planner = planner(3);
+
+		List<EventsChunksPlanner.Chunk<String>> chunks = planner.plan(10, buffer::peek);
+		Assert.assertEquals(Arrays.asList(
+				Arrays.asList("A:1", "A:2"),
+				Collections.singletonList("B:1"),
+				Collections.singletonList("C:1")), items(chunks));
+	}
+
+	@Test
+	public void testEventJoiningTwoChunksWaits() {
+		EventsRingBuffer<String> buffer = buffer("A:1", "B:1", "A,B:2", "C:1", "A:3");
+		EventsChunksPlanner<String> planner = planner(3);
+
+		//  A,B:2 depends on two chunks, so it and A:3 after it wait for the next round
+		List<EventsChunksPlanner.Chunk<String>> chunks = planner.plan(10, buffer::peek);
+		Assert.assertEquals(Arrays.asList(
+				Collections.singletonList("A:1"),
+				Collections.singletonList("B:1"),
+				Collections.singletonList("C:1")), items(chunks));
+
+		chunks.forEach(chunk -> complete(buffer, planner, chunk));
+		chunks = planner.plan(10, buffer::peek);
+		Assert.assertEquals(Collections.singletonList(Arrays.asList("A,B:2", "A:3")), items(chunks));
+	}
+
+	@Test
+	public void testNoFreeSlotsNoPeek() {
+		EventsRingBuffer<String> buffer = buffer("A:1", "B:1");
+		EventsChunksPlanner<String> planner = planner(1);
+
+		List<EventsChunksPlanner.Chunk<String>> chunks = planner.plan(1, buffer::peek);
+		Assert.assertEquals(1, chunks.size());
+		planner.dispatched(chunks.get(0));
+		Assert.assertTrue(planner.plan(1, max -> {
+			throw new IllegalStateException("events MUST NOT be peeked while all slots are in flight");
+		}).isEmpty());
+		Assert.assertEquals(1, planner.getChunksInFlightCount());
+		Assert.assertEquals(1, planner.getEventsInFlightCount());
+	}
+
+	@Test
+	public void testOutOfOrderCompletion() {
+		EventsRingBuffer<String> buffer = buffer("A:1", "A:2", "B:1", "B:2");
+		EventsChunksPlanner<String> planner = planner(2);
+
+		List<EventsChunksPlanner.Chunk<String>> chunks = planner.plan(1, buffer::peek);
+		Assert.assertEquals(Arrays.asList(
+				Collections.singletonList("A:1"),
+				Collections.singletonList("B:1")), items(chunks));
+		chunks.forEach(planner::dispatched);
+		Assert.assertTrue(planner.plan(1, buffer::peek).isEmpty());
+
+		//  B:1 completes before A:1 - B:2 may go, A:2 still waits for A:1
+		complete(buffer, planner, chunks.get(1));
+		List<EventsChunksPlanner.Chunk<String>> next = planner.plan(1, buffer::peek);
+		Assert.assertEquals(Collections.singletonList(Collections.singletonList("B:2")), items(next));
+		next.forEach(planner::dispatched);
+
+		complete(buffer, planner, chunks.get(0));
+		Assert.assertEquals(Collections.singletonList(Collections.singletonList("A:2")), items(planner.plan(1, buffer::peek)));
+	}
+
+	@Test
+	public void testFailedChunkIsPlannedAgainInOrder() {
+		EventsRingBuffer<String> buffer = buffer("A:1", "A:2", "B:1");
+		EventsChunksPlanner<String> planner = planner(2);
+
+		List<EventsChunksPlanner.Chunk<String>> chunks = planner.plan(1, buffer::peek);
+		Assert.assertEquals(Arrays.asList(
+				Collections.singletonList("A:1"),
+				Collections.singletonList("B:1")), items(chunks));
+		chunks.forEach(planner::dispatched);
+
+		//  A:1 failed temporarily (released without ack) - it is planned again before A:2
+		planner.released(chunks.get(0));
+		Assert.assertEquals(Collections.singletonList(Collections.singletonList("A:1")), items(planner.plan(1, buffer::peek)));
+	}
+
+	@Test
+	public void testMultiBranchBarrierMixedWithOrdinaryEvents() {
+		EventsRingBuffer<String> buffer = buffer("A:1", "M:start!", "B:1", "A:2");
+		EventsChunksPlanner<String> planner = planner(3);
+
+		//  the barrier closes its chunk, nothing after it is planned
+		List<EventsChunksPlanner.Chunk<String>> chunks = planner.plan(10, buffer::peek);
+		Assert.assertEquals(Arrays.asList(
+				Collections.singletonList("A:1"),
+				Collections.singletonList("M:start!")), items(chunks));
+		Assert.assertFalse(chunks.get(0).isBarrier());
+		Assert.assertTrue(chunks.get(1).isBarrier());
+		chunks.forEach(planner::dispatched);
+
+		//  nothing is dispatched while the barrier is in flight, even after the other chunk completes
+		Assert.assertTrue(planner.plan(10, buffer::peek).isEmpty());
+		complete(buffer, planner, chunks.get(0));
+		Assert.assertTrue(planner.plan(10, buffer::peek).isEmpty());
+
+		complete(buffer, planner, chunks.get(1));
+		Assert.assertEquals(Arrays.asList(
+				Collections.singletonList("B:1"),
+				Collections.singletonList("A:2")), items(planner.plan(10, buffer::peek)));
+	}
+
+	@Test
+	public void testNoSharedKeysInFlightOnRandomCompletions() {
+		Random random = new Random(17);
+		List<String> published = new ArrayList<>();
+		String[] lanes = {"A", "B", "C", "D", "E"};
+		for (int i = 0; i < 300; i++) {
+			String keys = lanes[random.nextInt(lanes.length)];
+			if (random.nextInt(5) == 0) {
+				keys += "," + lanes[random.nextInt(lanes.length)];
+			}
+			published.add(keys + ":" + i + (random.nextInt(30) == 0 ? "!" : ""));
+		}
+		EventsRingBuffer<String> buffer = buffer(published.toArray(new String[0]));
+		EventsChunksPlanner<String> planner = planner(4);
+
+		List<EventsChunksPlanner.Chunk<String>> inFlight = new ArrayList<>();
+		List<String> sent = new ArrayList<>();
+		int rounds = 0;
+		while (buffer.size() > 0) {
+			Assert.assertTrue("planning does not progress", rounds++ < 10000);
+			List<EventsChunksPlanner.Chunk<String>> chunks = planner.plan(3, buffer::peek);
+			if (!chunks.isEmpty()) {
+				for (EventsChunksPlanner.Chunk<String> other : inFlight) {
+					Assert.assertFalse("barrier " + items(other) + " is in flight while " + items(chunks) + " are planned", other.isBarrier());
+				}
+			}
+			for (EventsChunksPlanner.Chunk<String> chunk : chunks) {
+				planner.dispatched(chunk);
+				inFlight.add(chunk);
+			}
+			for (int i = 0; i < inFlight.size(); i++) {
+				for (int j = i + 1; j < inFlight.size(); j++) {
+					Assert.assertTrue(items(inFlight.get(i)) + " shares keys with " + items(inFlight.get(j)) + " in flight",
+							Collections.disjoint(inFlight.get(i).getKeys(), inFlight.get(j).getKeys()));
+				}
+			}
+			Assert.assertFalse(inFlight.isEmpty());
+
+			EventsChunksPlanner.Chunk<String> done = inFlight.remove(random.nextInt(inFlight.size()));
+			if (random.nextInt(4) == 0) {
+				planner.released(done);
+			} else {
+				sent.addAll(items(done));
+				complete(buffer, planner, done);
+			}
+		}
+
+		//  all events sent exactly once and in the published order within each key
+		Assert.assertEquals(new HashSet<>(published), new HashSet<>(sent));
+		Assert.assertEquals(published.size(), sent.size());
+		Map<String, List<String>> publishedByKey = byKey(published);
+		Map<String, List<String>> sentByKey = byKey(sent);
+		Assert.assertEquals(publishedByKey, sentByKey);
+		Assert.assertEquals(0, planner.getChunksInFlightCount());
+		Assert.assertEquals(0, planner.getEventsInFlightCount());
+	}
+
+	private static EventsChunksPlanner<String> planner(int maxChunksInFlight) {
+		return new EventsChunksPlanner<>(maxChunksInFlight, EventsChunksPlannerTest::keys, EventsChunksPlannerTest::isBarrier);
+	}
+
+	private static EventsRingBuffer<String> buffer(String... events) {
+		EventsRingBuffer<String> buffer = new EventsRingBuffer<>(512, EventsRingBuffer.OverflowPolicy.DROP_NEWEST, 0);
+		for (String event : events) {
+			Assert.assertTrue(buffer.offer(event));
+		}
+		return buffer;
+	}
+
+	private static void complete(EventsRingBuffer<String> buffer, EventsChunksPlanner<String> planner, EventsChunksPlanner.Chunk<String> chunk) {
+		chunk.getEntries().forEach(node -> buffer.ack(node.getSeq()));
+		planner.released(chunk);
+	}
+
+	private static Set<String> keys(String event) {
+		return new HashSet<>(Arrays.asList(event.substring(0, event.indexOf(':')).split(",")));
+	}
+
+	private static boolean isBarrier(String event) {
+		return event.endsWith("!");
+	}
+
+	private static List<String> items(EventsChunksPlanner.Chunk<String> chunk) {
+		return chunk.getEntries().stream().map(EventsRingBuffer.Node::getItem).collect(Collectors.toList());
+	}
+
+	private static List<List<String>> items(List<EventsChunksPlanner.Chunk<String>> chunks) {
+		return chunks.stream().map(EventsChunksPlannerTest::items).collect(Collectors.toList());
+	}
+
+	private static Map<String, List<String>> byKey(List<String> events) {
+		Map<String, List<String>> result = new HashMap<>();
+		for (String event : events) {
+			keys(event).forEach(key -> result.computeIfAbsent(key, k -> new ArrayList<>()).add(event));
+		}
+		return result;
+	}
+}
@@ -0,0 +1,195 @@
+/*
+ *     Copyright 2017 EntIT Software LLC, a Micro Focus company, L.P.
+ *     Licensed under the Apache License, Version 2.0 (the "License");
+ *     you may not use this file except in compliance with the License.
+ *     You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *     Unless required by applicable law or agreed to in writing, software
+ *     distributed under the License is distributed on an "AS IS" BASIS,
+ *     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *     See the License for the specific language governing permissions and
+ *     limitations under the License.
+ */
+
+package com.hp.octane.integrations.services.events;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+public class EventsJournalTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testNegativeA() throws IOException {
+		new EventsJournal(null, 1024, 50);
+	}
+
+	@Test
+	public void testAppendAckAndReplay() throws IOException {
+		File directory = folder.newFolder();
+		EventsJournal journal = new EventsJournal(directory, 1024 * 1024, 10000);
+		Assert.assertTrue(journal.replay().isEmpty());
+		long seq0 = journal.append(bytes("e0"));
+		long seq1 = journal.append(bytes("e1"));
+		long seq2 = journal.append(bytes("e2"));
+		journal.ack(seq1);
+		journal.close();
+
+		EventsJournal reopened = new EventsJournal(directory, 1024 * 1024, 10000);
+		LinkedHashMap<Long, byte[]> pending = reopened.replay();
+		Assert.assertEquals(2, pending.size());
+		List<Long> seqs = new ArrayList<>(pending.keySet());
+		Assert.assertEquals(seq0, (long) seqs.get(0));
+		Assert.assertEquals(seq2, (long) seqs.get(1));
+		Assert.assertEquals("e2", string(pending.get(seq2)));
+
+		//  sequences keep growing after the replay
+		Assert.assertTrue(reopened.append(bytes("e3")) > seq2);
+		reopened.close();
+	}
+
+	@Test
+	public void testReleasedSegmentsDeleted() throws IOException {
+		File directory = folder.newFolder();
+		EventsJournal journal = new EventsJournal(directory, 100, 10000);
+		journal.replay();
+		List<Long> seqs = new ArrayList<>();
+		for (int i = 0; i < 20; i++) {
+			seqs.add(journal.append(bytes("event number " + i)));
+			journal.flush();
+		}
+		Assert.assertTrue(journal.getSegmentsCount() > 2);
+
+		//  acking the newer events does not release the oldest segment
+		for (int i = 1; i < 20; i++) {
+			journal.ack(seqs.get(i));
+		}
+		journal.flush();
+		Assert.assertTrue(journal.getSegmentsCount() > 1);
+
+		journal.ack(seqs.get(0));
+		journal.flush();
+		Assert.assertEquals(1, journal.getSegmentsCount());
+		journal.close();
+
+		EventsJournal reopened = new EventsJournal(directory, 100, 10000);
+		Assert.assertTrue(reopened.replay().isEmpty());
+		reopened.close();
+	}
+
+	@Test
+	public void testTornTailIgnored() throws IOException {
+		File directory = folder.newFolder();
+		EventsJournal journal = new EventsJournal(directory, 1024 * 1024, 10000);
+		journal.replay();
+		journal.append(bytes("e0"));
+		journal.append(bytes("e1"));
+		journal.close();
+
+		File[] segments = directory.listFiles();
+		Assert.assertNotNull(segments);
+		Assert.assertEquals(1, segments.length);
+		try (RandomAccessFile raf = new RandomAccessFile(segments[0], "rw")) {
+			raf.setLength(raf.length() - 3);
+		}
+
+		EventsJournal reopened = new EventsJournal(directory, 1024 * 1024, 10000);
+		LinkedHashMap<Long, byte[]> pending = reopened.replay();
+		Assert.assertEquals(1, pending.size());
+		Assert.assertEquals("e0", string(pending.values().iterator().next()));
+
+		//  new records are appended right after the last valid one
+		reopened.append(bytes("e2"));
+		reopened.close();
+		EventsJournal again = new EventsJournal(directory, 1024 * 1024, 10000);
+		List<String> payloads = new ArrayList<>();
+		for (Map.Entry<Long, byte[]> entry : again.replay().entrySet()) {
+			payloads.add(string(entry.getValue()));
+		}
+		Assert.assertEquals("[e0, e2]", payloads.toString());
+		again.close();
+	}
+
+	@Test
+	public void testAcksAcrossRolloverNotReplayed() throws IOException {
+		File directory = folder.newFolder();
+		EventsJournal journal = new EventsJournal(directory, 100, 10000);
+		journal.replay();
+		List<Long> seqs = new ArrayList<>();
+		for (int i = 0; i < 20; i++) {
+			seqs.add(journal.append(bytes("event number " + i)));
+			journal.flush();
+		}
+		//  acknowledgements of the events of the older segments roll over to the new segments
+		List<Long> acked = new ArrayList<>();
+		for (int i = 1; i < 20; i += 2) {
+			journal.ack(seqs.get(i));
+			acked.add(seqs.get(i));
+			journal.flush();
+		}
+		long appendedAfterAcks = journal.append(bytes("appended after the acknowledgements"));
+		journal.flush();
+		Assert.assertTrue(journal.getSegmentsCount() > 2);
+		journal.close();
+
+		EventsJournal reopened = new EventsJournal(directory, 100, 10000);
+		LinkedHashMap<Long, byte[]> pending = reopened.replay();
+		for (Long seq : acked) {
+			Assert.assertFalse("acknowledged event " + seq + " is replayed", pending.containsKey(seq));
+		}
+		Assert.assertEquals(seqs.size() - acked.size() + 1, pending.size());
+		Assert.assertEquals(appendedAfterAcks, (long) new ArrayList<>(pending.keySet()).get(pending.size() - 1));
+
+		//  segments created after the reopening keep the order
+		reopened.ack(seqs.get(0));
+		reopened.flush();
+		reopened.close();
+		EventsJournal again = new EventsJournal(directory, 100, 10000);
+		pending = again.replay();
+		Assert.assertFalse(pending.containsKey(seqs.get(0)));
+		Assert.assertTrue(pending.containsKey(appendedAfterAcks));
+		again.close();
+	}
+
+	@Test(timeout = 10000)
+	public void testBackgroundGroupCommit() throws Exception {
+		File directory = folder.newFolder();
+		EventsJournal journal = new EventsJournal(directory, 1024 * 1024, 20);
+		journal.replay();
+		for (int i = 0; i < 1000; i++) {
+			journal.append(bytes("e" + i));
+		}
+		while (journal.getFlushCount() == 0) {
+			Thread.sleep(10);
+		}
+		Assert.assertTrue(journal.getFlushCount() < 1000);
+		journal.close();
+
+		EventsJournal reader = new EventsJournal(directory, 1024 * 1024, 10000);
+		Assert.assertEquals(1000, reader.replay().size());
+		reader.close();
+	}
+
+	private static byte[] bytes(String value) {
+		return value.getBytes(StandardCharsets.UTF_8);
+	}
+
+	private static String string(byte[] value) {
+		return new String(value, StandardCharsets.UTF_8);
+	}
+}
@@ -0,0 +1,202 @@
+/*
+ *     Copyright 2017 EntIT Software LLC, a Micro Focus company, L.P.
+ *     Licensed under the Apache License, Version 2.0 (the "License");
+ *     you may not use this file except in compliance with the License.
+ *     You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *     Unless required by applicable law or agreed to in writing, software
+ *     distributed under the License is distributed on an "AS IS" BASIS,
+ *     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *     See the License for the specific language governing permissions and
+ *     limitations under the License.
+ */
+
+package com.hp.octane.integrations.services.events;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+public class EventsRingBufferTest {
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testNegativeA() {
+		new EventsRingBuffer<String>(0, EventsRingBuffer.OverflowPolicy.DROP_OLDEST, 0);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testNegativeB() {
+		new EventsRingBuffer<String>(10, null, 0);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testNegativeC() {
+		new EventsRingBuffer<String>(10, EventsRingBuffer.OverflowPolicy.DROP_OLDEST, 0).offer(null);
+	}
+
+	@Test
+	public void testPeekAndAckInOrder() {
+		EventsRingBuffer<String> buffer = new EventsRingBuffer<>(5, EventsRingBuffer.OverflowPolicy.DROP_NEWEST, 0);
+		for (int i = 0; i < 5; i++) {
+			Assert.assertTrue(buffer.offer("e" + i));
+		}
+		Assert.assertEquals(5, buffer.size());
+
+		List<EventsRingBuffer.Node<String>> chunk = buffer.peek(3);
+		Assert.assertEquals(3, chunk.size());
+		Assert.assertEquals("e0", chunk.get(0).getItem());
+		Assert.assertEquals("e2", chunk.get(2).getItem());
+		chunk.forEach(node -> buffer.ack(node.getSeq()));
+		Assert.assertEquals(2, buffer.size());
+
+		chunk = buffer.peek(10);
+		Assert.assertEquals(2, chunk.size());
+		Assert.assertEquals("e3", chunk.get(0).getItem());
+		Assert.assertEquals("e4", chunk.get(1).getItem());
+	}
+
+	@Test
+	public void testAckOutOfOrder() {
+		EventsRingBuffer<String> buffer = new EventsRingBuffer<>(4, EventsRingBuffer.OverflowPolicy.DROP_NEWEST, 0);
+		for (int i = 0; i < 4; i++) {
+			buffer.offer("e" + i);
+		}
+		List<EventsRingBuffer.Node<String>> all = buffer.peek(4);
+
+		//  acking the middle ones does not free the head, so the buffer is still full
+		buffer.ack(all.get(1).getSeq());
+		buffer.ack(all.get(2).getSeq());
+		buffer.ack(all.get(2).getSeq());
+		Assert.assertEquals(2, buffer.size());
+		Assert.assertEquals(2, buffer.peek(10).size());
+		Assert.assertFalse(buffer.offer("e4"));
+
+		//  acking the head releases all the acknowledged slots behind it
+		buffer.ack(all.get(0).getSeq());
+		Assert.assertTrue(buffer.offer("e4"));
+		Assert.assertTrue(buffer.offer("e5"));
+		Assert.assertTrue(buffer.offer("e6"));
+		Assert.assertEquals(
+				"e3,e4,e5,e6",
+				buffer.peek(10).stream().map(EventsRingBuffer.Node::getItem).collect(Collectors.joining(",")));
+	}
+
+	@Test
+	public void testDropOldest() {
+		EventsRingBuffer<String> buffer = new EventsRingBuffer<>(3, EventsRingBuffer.OverflowPolicy.DROP_OLDEST, 0);
+		for (int i = 0; i < 5; i++) {
+			Assert.assertTrue(buffer.offer("e" + i));
+		}
+		Assert.assertEquals(3, buffer.size());
+		Assert.assertEquals(2, buffer.getDroppedOldestCount());
+		List<EventsRingBuffer.Node<String>> all = buffer.peek(10);
+		Assert.assertEquals("e2", all.get(0).getItem());
+
+		//  late ack of a dropped item is ignored
+		buffer.ack(0);
+		Assert.assertEquals(3, buffer.size());
+	}
+
+	@Test
+	public void testDropNewest() {
+		EventsRingBuffer<String> buffer = new EventsRingBuffer<>(3, EventsRingBuffer.OverflowPolicy.DROP_NEWEST, 0);
+		for (int i = 0; i < 5; i++) {
+			buffer.offer("e" + i);
+		}
+		Assert.assertEquals(3, buffer.size());
+		Assert.assertEquals(2, buffer.getDroppedNewestCount());
+		Assert.assertEquals("e0", buffer.peek(1).get(0).getItem());
+	}
+
+	@Test
+	public void testBlockWithTimeout() throws InterruptedException {
+		EventsRingBuffer<String> buffer = new EventsRingBuffer<>(1, EventsRingBuffer.OverflowPolicy.BLOCK, 2000);
+		buffer.offer("e0");
+
+		ExecutorService consumer = Executors.newSingleThreadExecutor();
+		consumer.execute(() -> {
+			try {
+				Thread.sleep(200);
+			} catch (InterruptedException ie) {
+				Thread.currentThread().interrupt();
+			}
+			buffer.ack(buffer.peek(1).get(0).getSeq());
+		});
+		Assert.assertTrue(buffer.offer("e1"));
+		Assert.assertEquals("e1", buffer.peek(1).get(0).getItem());
+		consumer.shutdown();
+
+		EventsRingBuffer<String> shortBlock = new EventsRingBuffer<>(1, EventsRingBuffer.OverflowPolicy.BLOCK, 50);
+		shortBlock.offer("e0");
+		Assert.assertFalse(shortBlock.offer("e1"));
+		Assert.assertEquals(1, shortBlock.getDroppedOnBlockTimeoutCount());
+	}
+
+	@Test
+	public void testClear() {
+		EventsRingBuffer<String> buffer = new EventsRingBuffer<>(3, EventsRingBuffer.OverflowPolicy.DROP_NEWEST, 0);
+		buffer.offer("e0");
+		buffer.offer("e1");
+		buffer.clear();
+		Assert.assertEquals(0, buffer.size());
+		Assert.assertTrue(buffer.peek(10).isEmpty());
+		Assert.assertTrue(buffer.offer("e2"));
+		Assert.assertTrue(buffer.offer("e3"));
+		Assert.assertTrue(buffer.offer("e4"));
+	}
+
+	@Test(timeout = 20000)
+	public void testConcurrentProducers() throws InterruptedException {
+		int producers = 8;
+		int perProducer = 5000;
+		EventsRingBuffer<String> buffer = new EventsRingBuffer<>(64, EventsRingBuffer.OverflowPolicy.BLOCK, 10000);
+		ExecutorService executor = Executors.newFixedThreadPool(producers);
+		CountDownLatch latch = new CountDownLatch(producers);
+		for (int p = 0; p < producers; p++) {
+			int producer = p;
+			executor.execute(() -> {
+				for (int i = 0; i < perProducer; i++) {
+					buffer.offer(producer + ":" + i);
+				}
+				latch.countDown();
+			});
+		}
+
+		Set<String> consumed = new HashSet<>();
+		int[] lastPerProducer = new int[producers];
+		Arrays.fill(lastPerProducer, -1);
+		while (consumed.size() < producers * perProducer) {
+			List<EventsRingBuffer.Node<String>> chunk = buffer.peek(16);
+			List<Long> seqs = new ArrayList<>();
+			for (EventsRingBuffer.Node<String> node : chunk) {
+				String[] parts = node.getItem().split(":");
+				int producer = Integer.parseInt(parts[0]);
+				int index = Integer.parseInt(parts[1]);
+				Assert.assertTrue("per producer order must be kept", index > lastPerProducer[producer]);
+				lastPerProducer[producer] = index;
+				Assert.assertTrue(consumed.add(node.getItem()));
+				seqs.add(node.getSeq());
+			}
+			//  ack in reverse order to exercise the out of order acknowledgement
+			for (int i = seqs.size() - 1; i >= 0; i--) {
+				buffer.ack(seqs.get(i));
+			}
+		}
+		Assert.assertTrue(latch.await(5, TimeUnit.SECONDS));
+		executor.shutdown();
+		Assert.assertEquals(0, buffer.size());
+		Assert.assertEquals(0, buffer.getDroppedOnBlockTimeoutCount());
+	}
+}
@@ -0,0 +1,123 @@
+/*
+ *     Copyright 2017 EntIT Software LLC, a Micro Focus company, L.P.
+ *     Licensed under the Apache License, Version 2.0 (the "License");
+ *     you may not use this file except in compliance with the License.
+ *     You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *     Unless required by applicable law or agreed to in writing, software
+ *     distributed under the License is distributed on an "AS IS" BASIS,
+ *     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *     See the License for the specific language governing permissions and
+ *     limitations under the License.
+ */
+
+package com.hp.octane.integrations.services.logs;
+
+import com.hp.octane.integrations.utils.CIPluginSDKUtils;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPInputStream;
+
+public class BuildLogSpoolTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testNegativeA() throws IOException {
+		BuildLogSpool.spool(null, null, 1024);
+	}
+
+	@Test
+	public void testSmallLogKeptInMemory() throws IOException {
+		File directory = folder.newFolder();
+		String log = buildLog(100);
+		BuildLogSpool spool = BuildLogSpool.spool(stream(log), directory, 1024 * 1024);
+		Assert.assertFalse(spool.isSpilled());
+		Assert.assertTrue(spool.isGzipped());
+		Assert.assertEquals(log.length(), spool.getLogSize());
+		Assert.assertTrue(spool.getCompressedSize() < spool.getLogSize());
+		Assert.assertEquals(0, directory.list().length);
+		Assert.assertEquals(log, unzip(spool));
+		spool.close();
+	}
+
+	@Test
+	public void testBigLogSpilledToFile() throws IOException {
+		File directory = folder.newFolder();
+		String log = buildLog(50000);
+		BuildLogSpool spool = BuildLogSpool.spool(stream(log), directory, 1024);
+		Assert.assertTrue(spool.isSpilled());
+		Assert.assertEquals(1, directory.list().length);
+
+		//  same content on each write, as for each workspace
+		Assert.assertEquals(log, unzip(spool));
+		Assert.assertEquals(log, unzip(spool));
+
+		spool.close();
+		Assert.assertEquals(0, directory.list().length);
+	}
+
+	@Test
+	public void testLeftoversDeleted() throws IOException {
+		File directory = folder.newFolder();
+		BuildLogSpool.spool(stream(buildLog(50000)), directory, 1024);
+		File unrelated = new File(directory, "unrelated.txt");
+		Assert.assertTrue(unrelated.createNewFile());
+
+		BuildLogSpool.deleteLeftovers(directory);
+		Assert.assertArrayEquals(new String[]{"unrelated.txt"}, directory.list());
+	}
+
+	@Test
+	public void testFailedReadLeavesNoFile() throws IOException {
+		File directory = folder.newFolder();
+		InputStream failing = new InputStream() {
+			private int count;
+
+			@Override
+			public int read() throws IOException {
+				if (count++ > 100000) {
+					throw new IOException("log is gone");
+				}
+				return 'a' + count % 26;
+			}
+		};
+		try {
+			BuildLogSpool.spool(failing, directory, 1024);
+			Assert.fail("failure to read the log expected");
+		} catch (IOException ioe) {
+			Assert.assertEquals(0, directory.list().length);
+		}
+	}
+
+	private static String buildLog(int lines) {
+		StringBuilder result = new StringBuilder();
+		for (int i = 0; i < lines; i++) {
+			result.append("[INFO] line ").append(i).append(" of the build log\n");
+		}
+		return result.toString();
+	}
+
+	private static InputStream stream(String log) {
+		return new ByteArrayInputStream(log.getBytes(StandardCharsets.UTF_8));
+	}
+
+	private static String unzip(BuildLogSpool spool) throws IOException {
+		ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+		spool.writeTo(compressed);
+		Assert.assertEquals(spool.getCompressedSize(), compressed.size());
+		return CIPluginSDKUtils.inputStreamToUTF8String(new GZIPInputStream(new ByteArrayInputStream(compressed.toByteArray())));
+	}
+}
@@ -0,0 +1,194 @@
+/*
+ *     Copyright 2017 EntIT Software LLC, a Micro Focus company, L.P.
+ *     Licensed under the Apache License, Version 2.0 (the "License");
+ *     you may not use this file except in compliance with the License.
+ *     You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *     Unless required by applicable law or agreed to in writing, software
+ *     distributed under the License is distributed on an "AS IS" BASIS,
+ *     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *     See the License for the specific language governing permissions and
+ *     limitations under the License.
+ */
+
+package com.hp.octane.integrations.services.queueing;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+public class LeasedQueueImplTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testNegativeA() {
+		new LeasedQueueImpl<String>(null);
+	}
+
+	@Test
+	public void testLeaseAndAck() {
+		LeasedQueue<String> queue = new LeasedQueueImpl<>(new LeasedQueueImpl.MemoryStore<>());
+		Assert.assertEquals(-1, queue.nextVisibleIn());
+		queue.add("a");
+		queue.add("b");
+		queue.add("c");
+		Assert.assertEquals(0, queue.nextVisibleIn());
+
+		List<LeasedQueue.Lease<String>> leases = queue.lease(2, 60000);
+		Assert.assertEquals(Arrays.asList("a", "b"), items(leases));
+		Assert.assertEquals(1, leases.get(0).getDeliveryCount());
+
+		//  leased items are not delivered again, the rest is
+		Assert.assertEquals(Arrays.asList("c"), items(queue.lease(10, 60000)));
+		Assert.assertTrue(queue.lease(10, 60000).isEmpty());
+		Assert.assertTrue(queue.nextVisibleIn() > 0);
+
+		//  acked out of order
+		queue.ack(leases.get(1));
+		queue.ack(leases.get(1));
+		Assert.assertEquals(2, queue.size());
+		queue.ack(leases.get(0));
+		Assert.assertEquals(1, queue.size());
+	}
+
+	@Test
+	public void testNackParksItemInPlace() throws InterruptedException {
+		LeasedQueue<String> queue = new LeasedQueueImpl<>(new LeasedQueueImpl.MemoryStore<>());
+		queue.add("not ready");
+		queue.add("ready");
+
+		LeasedQueue.Lease<String> notReady = queue.lease(1, 60000).get(0);
+		queue.nack(notReady, 200);
+
+		//  the parked head does not block the items behind it
+		LeasedQueue.Lease<String> ready = queue.lease(1, 60000).get(0);
+		Assert.assertEquals("ready", ready.getItem());
+		queue.ack(ready);
+		Assert.assertTrue(queue.lease(1, 60000).isEmpty());
+		Assert.assertTrue(queue.nextVisibleIn() > 0 && queue.nextVisibleIn() <= 200);
+
+		Thread.sleep(250);
+		LeasedQueue.Lease<String> redelivered = queue.lease(1, 60000).get(0);
+		Assert.assertEquals("not ready", redelivered.getItem());
+		Assert.assertEquals(2, redelivered.getDeliveryCount());
+	}
+
+	@Test
+	public void testVisibilityTimeout() throws InterruptedException {
+		LeasedQueue<String> queue = new LeasedQueueImpl<>(new LeasedQueueImpl.MemoryStore<>());
+		queue.add("a");
+		Assert.assertEquals(1, queue.lease(1, 100).size());
+		Assert.assertTrue(queue.lease(1, 100).isEmpty());
+		Thread.sleep(150);
+		List<LeasedQueue.Lease<String>> redelivered = queue.lease(1, 100);
+		Assert.assertEquals(1, redelivered.size());
+		Assert.assertEquals(2, redelivered.get(0).getDeliveryCount());
+	}
+
+	@Test
+	public void testClear() {
+		LeasedQueue<String> queue = new LeasedQueueImpl<>(new LeasedQueueImpl.MemoryStore<>());
+		queue.add("a");
+		queue.add("b");
+		queue.lease(1, 60000);
+		queue.clear();
+		Assert.assertEquals(0, queue.size());
+		Assert.assertTrue(queue.lease(10, 60000).isEmpty());
+	}
+
+	@Test
+	public void testFileStoreKeepsOrderAndAcks() throws IOException {
+		File directory = folder.newFolder();
+		SegmentedFileObjectQueue<String> store = new SegmentedFileObjectQueue<>(directory, new StringConverter(), 64);
+		LeasedQueue<String> queue = new LeasedQueueImpl<>(store);
+		for (int i = 0; i < 10; i++) {
+			queue.add("item " + i);
+		}
+		List<LeasedQueue.Lease<String>> leases = queue.lease(10, 60000);
+		queue.nack(leases.get(0), 60000);
+		for (int i = 1; i < 10; i += 2) {
+			queue.ack(leases.get(i));
+		}
+		store.close();
+
+		//  acks behind the parked head are kept by the file, nack is not
+		LeasedQueue<String> reopened = new LeasedQueueImpl<>(new SegmentedFileObjectQueue<>(directory, new StringConverter(), 64));
+		Assert.assertEquals(5, reopened.size());
+		Assert.assertEquals(Arrays.asList("item 0", "item 2", "item 4", "item 6", "item 8"), items(reopened.lease(10, 60000)));
+	}
+
+	@Test
+	public void testNackWithRewrite() throws IOException {
+		File directory = folder.newFolder();
+		SegmentedFileObjectQueue<StringBuilder> store = new SegmentedFileObjectQueue<>(directory, new StringBuilderConverter(), 64);
+		LeasedQueue<StringBuilder> queue = new LeasedQueueImpl<>(store);
+		queue.add(new StringBuilder("a"));
+		queue.add(new StringBuilder("b"));
+		queue.add(new StringBuilder("c"));
+
+		List<LeasedQueue.Lease<StringBuilder>> leases = queue.lease(3, 60000);
+		leases.get(0).getItem().append(" relevant");
+		queue.nack(leases.get(0), 60000, true);
+		leases.get(1).getItem().append(" relevant");
+		queue.nack(leases.get(1), 60000);
+		Assert.assertEquals(3, queue.size());
+
+		//  rewritten item keeps its place and lease while the queue is open
+		queue.ack(leases.get(0));
+		Assert.assertEquals(2, queue.size());
+		leases.get(2).getItem().append(" relevant");
+		queue.nack(leases.get(2), 0, true);
+		Assert.assertEquals("c relevant", queue.lease(1, 60000).get(0).getItem().toString());
+		store.close();
+
+		//  only the rewritten change survives the restart
+		LeasedQueue<StringBuilder> reopened = new LeasedQueueImpl<>(new SegmentedFileObjectQueue<>(directory, new StringBuilderConverter(), 64));
+		Assert.assertEquals(2, reopened.size());
+		Assert.assertEquals(Arrays.asList("b", "c relevant"), reopened.lease(10, 60000).stream()
+				.map(lease -> lease.getItem().toString())
+				.collect(Collectors.toList()));
+	}
+
+	private static List<String> items(List<LeasedQueue.Lease<String>> leases) {
+		return leases.stream().map(LeasedQueue.Lease::getItem).collect(Collectors.toList());
+	}
+
+	private static final class StringBuilderConverter implements SegmentedFileObjectQueue.Converter<StringBuilder> {
+
+		@Override
+		public StringBuilder from(byte[] bytes, int offset, int length) {
+			return new StringBuilder(new String(bytes, offset, length, StandardCharsets.UTF_8));
+		}
+
+		@Override
+		public void toStream(StringBuilder item, OutputStream outputStream) throws IOException {
+			outputStream.write(item.toString().getBytes(StandardCharsets.UTF_8));
+		}
+	}
+
+	private static final class StringConverter implements SegmentedFileObjectQueue.Converter<String> {
+
+		@Override
+		public String from(byte[] bytes, int offset, int length) {
+			return new String(bytes, offset, length, StandardCharsets.UTF_8);
+		}
+
+		@Override
+		public void toStream(String item, OutputStream outputStream) throws IOException {
+			outputStream.write(item.getBytes(StandardCharsets.UTF_8));
+		}
+	}
+}
@@ -0,0 +1,244 @@
+/*
+ *     Copyright 2017 EntIT Software LLC, a Micro Focus company, L.P.
+ *     Licensed under the Apache License, Version 2.0 (the "License");
+ *     you may not use this file except in compliance with the License.
+ *     You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *     Unless required by applicable law or agreed to in writing, software
+ *     distributed under the License is distributed on an "AS IS" BASIS,
+ *     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *     See the License for the specific language governing permissions and
+ *     limitations under the License.
+ */
+
+package com.hp.octane.integrations.services.queueing;
+
+import com.squareup.tape.FileObjectQueue;
+import com.squareup.tape.ObjectQueue;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+public class SegmentedFileObjectQueueTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testNegativeA() throws IOException {
+		new SegmentedFileObjectQueue<>(null, new StringConverter(), 1024);
+	}
+
+	@Test(expected = NoSuchElementException.class)
+	public void testNegativeB() throws IOException {
+		SegmentedFileObjectQueue<String> queue = new SegmentedFileObjectQueue<>(folder.newFolder(), new StringConverter(), 1024);
+		queue.add("a");
+		queue.remove(2);
+	}
+
+	@Test
+	public void testFifoAndBatches() throws IOException {
+		SegmentedFileObjectQueue<String> queue = new SegmentedFileObjectQueue<>(folder.newFolder(), new StringConverter(), 1024);
+		Assert.assertNull(queue.peek());
+		queue.add("a");
+		queue.addAll(Arrays.asList("b", "c", "d"));
+		Assert.assertEquals(4, queue.size());
+		Assert.assertEquals("a", queue.peek());
+		Assert.assertEquals(Arrays.asList("a", "b"), queue.peek(2));
+		Assert.assertEquals(Arrays.asList("a", "b", "c", "d"), queue.peek(10));
+
+		queue.remove();
+		Assert.assertEquals("b", queue.peek());
+		queue.remove(2);
+		Assert.assertEquals(1, queue.size());
+		Assert.assertEquals("d", queue.peek());
+		queue.remove();
+		Assert.assertEquals(0, queue.size());
+		Assert.assertTrue(queue.peek(10).isEmpty());
+	}
+
+	@Test
+	public void testReopen() throws IOException {
+		File directory = folder.newFolder();
+		SegmentedFileObjectQueue<String> queue = new SegmentedFileObjectQueue<>(directory, new StringConverter(), 64);
+		for (int i = 0; i < 20; i++) {
+			queue.add("item " + i);
+		}
+		queue.remove(5);
+		queue.close();
+
+		SegmentedFileObjectQueue<String> reopened = new SegmentedFileObjectQueue<>(directory, new StringConverter(), 64);
+		Assert.assertEquals(15, reopened.size());
+		Assert.assertEquals("item 5", reopened.peek());
+
+		//  new items go after the recovered ones
+		reopened.add("item 20");
+		Assert.assertEquals("item 20", reopened.peek(100).get(15));
+		reopened.close();
+	}
+
+	@Test
+	public void testConsumedSegmentsDeleted() throws IOException {
+		File directory = folder.newFolder();
+		SegmentedFileObjectQueue<String> queue = new SegmentedFileObjectQueue<>(directory, new StringConverter(), 64);
+		for (int i = 0; i < 50; i++) {
+			queue.add("item " + i);
+		}
+		queue.flush();
+		Assert.assertTrue(queue.getSegmentsCount() > 10);
+		Assert.assertEquals(queue.getSegmentsCount(), segmentFiles(directory).length);
+
+		queue.remove(49);
+		Assert.assertEquals(1, queue.getSegmentsCount());
+		queue.flush();
+		Assert.assertEquals(1, segmentFiles(directory).length);
+		Assert.assertEquals("item 49", queue.peek());
+
+		queue.remove();
+		queue.add("item 50");
+		queue.close();
+		SegmentedFileObjectQueue<String> reopened = new SegmentedFileObjectQueue<>(directory, new StringConverter(), 64);
+		Assert.assertEquals(Arrays.asList("item 50"), reopened.peek(10));
+		reopened.close();
+	}
+
+	@Test
+	public void testItemLargerThanSegment() throws IOException {
+		File directory = folder.newFolder();
+		char[] chars = new char[1000];
+		Arrays.fill(chars, 'x');
+		String large = new String(chars);
+		SegmentedFileObjectQueue<String> queue = new SegmentedFileObjectQueue<>(directory, new StringConverter(), 64);
+		queue.addAll(Arrays.asList("small", large, "small again"));
+		queue.close();
+
+		SegmentedFileObjectQueue<String> reopened = new SegmentedFileObjectQueue<>(directory, new StringConverter(), 64);
+		Assert.assertEquals(Arrays.asList("small", large, "small again"), reopened.peek(10));
+		reopened.close();
+	}
+
+	@Test
+	public void testTornRecordIgnored() throws IOException {
+		File directory = folder.newFolder();
+		SegmentedFileObjectQueue<String> queue = new SegmentedFileObjectQueue<>(directory, new StringConverter(), 1024);
+		queue.addAll(Arrays.asList("a", "b"));
+		queue.close();
+
+		//  corrupt the payload of the second record
+		try (RandomAccessFile raf = new RandomAccessFile(segmentFiles(directory)[0], "rw")) {
+			raf.seek(8 + 1 + 8);
+			raf.write('z');
+		}
+
+		SegmentedFileObjectQueue<String> reopened = new SegmentedFileObjectQueue<>(directory, new StringConverter(), 1024);
+		Assert.assertEquals(Arrays.asList("a"), reopened.peek(10));
+		reopened.add("c");
+		reopened.close();
+		SegmentedFileObjectQueue<String> again = new SegmentedFileObjectQueue<>(directory, new StringConverter(), 1024);
+		Assert.assertEquals(Arrays.asList("a", "c"), again.peek(10));
+		again.close();
+	}
+
+	@Test
+	public void testDeleteOutOfOrder() throws IOException {
+		File directory = folder.newFolder();
+		SegmentedFileObjectQueue<String> queue = new SegmentedFileObjectQueue<>(directory, new StringConverter(), 64);
+		queue.addAll(Arrays.asList("a", "b", "c", "d"));
+		List<Long> keys = queue.keys();
+		Assert.assertTrue(queue.delete(keys.get(2)));
+		Assert.assertFalse(queue.delete(keys.get(2)));
+		Assert.assertTrue(queue.delete(keys.get(1)));
+		Assert.assertEquals(2, queue.size());
+		Assert.assertEquals("d", queue.read(keys.get(3)));
+		Assert.assertNull(queue.read(keys.get(1)));
+		Assert.assertEquals(Arrays.asList("a", "d"), queue.peek(10));
+
+		//  head removal skips the deleted records
+		queue.remove();
+		Assert.assertEquals("d", queue.peek());
+		queue.addAll(Arrays.asList("e", "f"));
+		Assert.assertTrue(queue.delete(queue.keys().get(1)));
+		queue.close();
+
+		SegmentedFileObjectQueue<String> reopened = new SegmentedFileObjectQueue<>(directory, new StringConverter(), 64);
+		Assert.assertEquals(Arrays.asList("d", "f"), reopened.peek(10));
+		reopened.close();
+	}
+
+	@Test
+	public void testListener() throws IOException {
+		SegmentedFileObjectQueue<String> queue = new SegmentedFileObjectQueue<>(folder.newFolder(), new StringConverter(), 1024);
+		queue.addAll(Arrays.asList("a", "b"));
+		List<String> events = new ArrayList<>();
+		queue.setListener(new ObjectQueue.Listener<String>() {
+			@Override
+			public void onAdd(ObjectQueue<String> objectQueue, String item) {
+				events.add("add " + item);
+			}
+
+			@Override
+			public void onRemove(ObjectQueue<String> objectQueue) {
+				events.add("remove");
+			}
+		});
+		queue.add("c");
+		queue.remove(2);
+		Assert.assertEquals(Arrays.asList("add a", "add b", "add c", "remove", "remove"), events);
+	}
+
+	@Test
+	public void testLegacyQueueMigration() throws IOException {
+		File legacyFile = new File(folder.getRoot(), "legacy-queue.dat");
+		FileObjectQueue<String> legacyQueue = new FileObjectQueue<>(legacyFile, new StringConverter());
+		legacyQueue.add("old 0");
+		legacyQueue.add("old 1");
+		legacyQueue.add("old 2");
+		legacyQueue.remove();
+		legacyQueue.close();
+
+		SegmentedFileObjectQueue<String> queue = new SegmentedFileObjectQueue<>(folder.newFolder(), new StringConverter(), 1024);
+		queue.add("new 0");
+		Assert.assertEquals(2, queue.migrateLegacyQueue(legacyFile));
+		Assert.assertFalse(legacyFile.exists());
+		Assert.assertEquals(Arrays.asList("new 0", "old 1", "old 2"), queue.peek(10));
+		Assert.assertEquals(0, queue.migrateLegacyQueue(legacyFile));
+	}
+
+	private static File[] segmentFiles(File directory) {
+		File[] result = directory.listFiles((dir, name) -> name.startsWith("segment-"));
+		Assert.assertNotNull(result);
+		Arrays.sort(result);
+		return result;
+	}
+
+	private static final class StringConverter implements SegmentedFileObjectQueue.Converter<String>, FileObjectQueue.Converter<String> {
+
+		@Override
+		public String from(byte[] bytes) {
+			return new String(bytes, StandardCharsets.UTF_8);
+		}
+
+		@Override
+		public String from(byte[] bytes, int offset, int length) {
+			return new String(bytes, offset, length, StandardCharsets.UTF_8);
+		}
+
+		@Override
+		public void toStream(String item, OutputStream outputStream) throws IOException {
+			outputStream.write(item.getBytes(StandardCharsets.UTF_8));
+		}
+	}
+}
@@ -0,0 +1,146 @@
+/*
+ *     Copyright 2017 EntIT Software LLC, a Micro Focus company, L.P.
+ *     Licensed under the Apache License, Version 2.0 (the "License");
+ *     you may not use this file except in compliance with the License.
+ *     You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *     Unless required by applicable law or agreed to in writing, software
+ *     distributed under the License is distributed on an "AS IS" BASIS,
+ *     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *     See the License for the specific language governing permissions and
+ *     limitations under the License.
+ */
+
+package com.hp.octane.integrations.services.rest;
+
+import com.hp.octane.integrations.OctaneConfiguration;
+import com.hp.octane.integrations.dto.DTOFactory;
+import com.hp.octane.integrations.dto.connectivity.OctaneResponse;
+import com.hp.octane.integrations.end2end.basic.OctaneConfigurationBasicFunctionalityTest;
+import org.apache.http.cookie.Cookie;
+import org.apache.http.impl.cookie.BasicClientCookie;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class OctaneLoginSessionRegistryTest {
+
+	@Test
+	public void testSessionKey() {
+		OctaneConfiguration spA = new OctaneConfigurationBasicFunctionalityTest(UUID.randomUUID().toString(), "http://localhost:8080", "1001", "client", "secret");
+		OctaneConfiguration spB = new OctaneConfigurationBasicFunctionalityTest(UUID.randomUUID().toString(), "http://localhost:8080", "1002", "client", "secret");
+		OctaneConfiguration otherSecret = new OctaneConfigurationBasicFunctionalityTest(UUID.randomUUID().toString(), "http://localhost:8080", "1001", "client", "other");
+		OctaneConfiguration otherServer = new OctaneConfigurationBasicFunctionalityTest(UUID.randomUUID().toString(), "http://localhost:9090", "1001", "client", "secret");
+
+		Assert.assertEquals(OctaneLoginSessionRegistry.sessionKey(spA), OctaneLoginSessionRegistry.sessionKey(spB));
+		Assert.assertNotEquals(OctaneLoginSessionRegistry.sessionKey(spA), OctaneLoginSessionRegistry.sessionKey(otherSecret));
+		Assert.assertNotEquals(OctaneLoginSessionRegistry.sessionKey(spA), OctaneLoginSessionRegistry.sessionKey(otherServer));
+		Assert.assertFalse(OctaneLoginSessionRegistry.sessionKey(spA).contains("secret"));
+	}
+
+	@Test
+	public void testReuseAndReject() throws Exception {
+		OctaneLoginSessionRegistry registry = new OctaneLoginSessionRegistry();
+		AtomicInteger signIns = new AtomicInteger();
+		Assert.assertNull(registry.current("key"));
+
+		Assert.assertEquals(200, registry.login("key", null, () -> signIn(registry, "key", "token-1", signIns)).get().getStatus());
+		Assert.assertEquals(1, signIns.get());
+		Cookie copyA = registry.current("key");
+		Cookie copyB = registry.current("key");
+		Assert.assertEquals("token-1", copyA.getValue());
+		Assert.assertNotSame(copyA, copyB);
+
+		//  recent session is reused
+		Assert.assertEquals(200, registry.login("key", null, () -> signIn(registry, "key", "token-x", signIns)).get().getStatus());
+		Assert.assertEquals(1, signIns.get());
+		Assert.assertEquals(1, registry.getLoginsSavedCount());
+
+		//  token rejected by the server is not handed out anymore
+		Assert.assertEquals(200, registry.login("key", "token-1", () -> signIn(registry, "key", "token-2", signIns)).get().getStatus());
+		Assert.assertEquals(2, signIns.get());
+		Assert.assertEquals("token-2", registry.current("key").getValue());
+		Assert.assertEquals(1, registry.getSessionsCount());
+	}
+
+	@Test
+	public void testFailedSignIn() throws Exception {
+		OctaneLoginSessionRegistry registry = new OctaneLoginSessionRegistry();
+		CompletableFuture<OctaneResponse> failed = registry.login("key", null, () -> CompletableFuture.completedFuture(DTOFactory.getInstance().newDTO(OctaneResponse.class).setStatus(401)));
+		Assert.assertEquals(401, failed.get().getStatus());
+		Assert.assertNull(registry.current("key"));
+
+		CompletableFuture<OctaneResponse> broken = registry.login("key", null, () -> {
+			throw new IllegalStateException("broken");
+		});
+		Assert.assertTrue(broken.isCompletedExceptionally());
+		Assert.assertEquals(2L, registry.getMetrics().get("login.count"));
+		Assert.assertEquals(2L, registry.getMetrics().get("login.failuresCount"));
+	}
+
+	@Test(timeout = 20000)
+	public void testSingleFlight() throws Exception {
+		OctaneLoginSessionRegistry registry = new OctaneLoginSessionRegistry();
+		AtomicInteger signIns = new AtomicInteger();
+		CountDownLatch signInStarted = new CountDownLatch(1);
+		CountDownLatch releaseSignIn = new CountDownLatch(1);
+		int callers = 20;
+
+		ExecutorService executor = Executors.newFixedThreadPool(callers);
+		List<Future<OctaneResponse>> results = new ArrayList<>();
+		for (int i = 0; i < callers; i++) {
+			results.add(executor.submit(() -> registry.login("key", "expired-token", () -> {
+				signInStarted.countDown();
+				try {
+					releaseSignIn.await();
+				} catch (InterruptedException ie) {
+					Thread.currentThread().interrupt();
+				}
+				return signIn(registry, "key", "fresh-token", signIns);
+			}).get()));
+		}
+
+		Assert.assertTrue(signInStarted.await(5, TimeUnit.SECONDS));
+		while ((int) registry.getMetrics().get("login.parkedWaiters") < callers - 1) {
+			Thread.sleep(10);
+		}
+		releaseSignIn.countDown();
+
+		Set<OctaneResponse> responses = new HashSet<>();
+		for (Future<OctaneResponse> result : results) {
+			OctaneResponse response = result.get(5, TimeUnit.SECONDS);
+			Assert.assertEquals(200, response.getStatus());
+			responses.add(response);
+		}
+		executor.shutdown();
+
+		Assert.assertEquals(1, signIns.get());
+		Assert.assertEquals("each caller gets its own response", callers, responses.size());
+		Assert.assertEquals("fresh-token", registry.current("key").getValue());
+		Map<String, Object> metrics = registry.getMetrics();
+		Assert.assertEquals(1L, metrics.get("login.count"));
+		Assert.assertEquals(0, metrics.get("login.parkedWaiters"));
+		Assert.assertEquals((long) callers - 1, metrics.get("login.parkedWaitersTotal"));
+	}
+
+	private static CompletableFuture<OctaneResponse> signIn(OctaneLoginSessionRegistry registry, String sessionKey, String token, AtomicInteger signIns) {
+		signIns.incrementAndGet();
+		registry.update(sessionKey, new BasicClientCookie("LWSSO_COOKIE_KEY", token));
+		return CompletableFuture.completedFuture(DTOFactory.getInstance().newDTO(OctaneResponse.class).setStatus(200));
+	}
+}
@@ -0,0 +1,181 @@
+/*
+ *     Copyright 2017 EntIT Software LLC, a Micro Focus company, L.P.
+ *     Licensed under the Apache License, Version 2.0 (the "License");
+ *     you may not use this file except in compliance with the License.
+ *     You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *     Unless required by applicable law or agreed to in writing, software
+ *     distributed under the License is distributed on an "AS IS" BASIS,
+ *     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *     See the License for the specific language governing permissions and
+ *     limitations under the License.
+ */
+
+package com.hp.octane.integrations.services.rest;
+
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.client.methods.HttpPut;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+public class OctaneRequestDeadlineSchedulerTest {
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testNegativeA() {
+		new OctaneRequestDeadlineScheduler(0, 16, request -> {
+		});
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testNegativeB() {
+		new OctaneRequestDeadlineScheduler(10, 16, null);
+	}
+
+	@Test(timeout = 10000)
+	public void testExpiresAtDeadline() throws InterruptedException {
+		Map<HttpUriRequest, Long> expiredAt = new ConcurrentHashMap<>();
+		CountDownLatch expired = new CountDownLatch(1);
+		OctaneRequestDeadlineScheduler scheduler = new OctaneRequestDeadlineScheduler(10, 8, request -> {
+			expiredAt.put(request, System.nanoTime());
+			expired.countDown();
+		});
+
+		HttpUriRequest request = new HttpGet("http://localhost/analytics/ci/events");
+		long registeredAt = System.nanoTime();
+		OctaneRequestDeadlineScheduler.Deadline deadline = scheduler.register("events", request, 300);
+		Assert.assertTrue(expired.await(5, TimeUnit.SECONDS));
+		Assert.assertTrue(deadline.isExpired());
+
+		//  deadline is longer than a single wheel revolution (8 x 10ms), yet it is neither expired early nor much later
+		long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(expiredAt.get(request) - registeredAt);
+		Assert.assertTrue("expired too early: " + elapsedMillis, elapsedMillis >= 300);
+		Assert.assertTrue("expired too late: " + elapsedMillis, elapsedMillis < 1000);
+
+		//  late cancellation has no effect
+		deadline.cancel();
+		Map<String, Object> metrics = scheduler.getMetrics();
+		Assert.assertEquals(1L, metrics.get("deadlines.events.expired"));
+		Assert.assertEquals(0L, metrics.get("deadlines.events.completed"));
+		Assert.assertEquals(0, scheduler.getPendingCount());
+		scheduler.shutdown();
+	}
+
+	@Test(timeout = 10000)
+	public void testCancelledNotExpired() throws InterruptedException {
+		CountDownLatch expired = new CountDownLatch(1);
+		OctaneRequestDeadlineScheduler scheduler = new OctaneRequestDeadlineScheduler(10, 16, request -> expired.countDown());
+		OctaneRequestDeadlineScheduler.Deadline deadline = scheduler.register("login", new HttpPost("http://localhost/authentication/sign_in"), 100);
+		deadline.cancel();
+		deadline.cancel();
+		Assert.assertFalse(expired.await(300, TimeUnit.MILLISECONDS));
+		Assert.assertFalse(deadline.isExpired());
+
+		Map<String, Object> metrics = scheduler.getMetrics();
+		Assert.assertEquals(1L, metrics.get("deadlines.login.registered"));
+		Assert.assertEquals(1L, metrics.get("deadlines.login.completed"));
+		Assert.assertEquals(0L, metrics.get("deadlines.login.expired"));
+		Assert.assertEquals(0L, metrics.get("deadlines.expiredCount"));
+		scheduler.shutdown();
+	}
+
+	@Test(timeout = 20000)
+	public void testConcurrentRegistrations() throws InterruptedException {
+		int threads = 16;
+		int perThread = 2000;
+		CountDownLatch expired = new CountDownLatch(threads);
+		OctaneRequestDeadlineScheduler scheduler = new OctaneRequestDeadlineScheduler(5, 64, request -> expired.countDown());
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		for (int t = 0; t < threads; t++) {
+			executor.execute(() -> {
+				for (int i = 0; i < perThread; i++) {
+					scheduler.register("events", new HttpGet("http://localhost/analytics/ci/events"), 10000).cancel();
+				}
+				scheduler.register("test-results", new HttpGet("http://localhost/analytics/ci/test-results"), 50);
+			});
+		}
+		Assert.assertTrue(expired.await(10, TimeUnit.SECONDS));
+		executor.shutdown();
+
+		Map<String, Object> metrics = scheduler.getMetrics();
+		Assert.assertEquals((long) threads * perThread, metrics.get("deadlines.events.completed"));
+		Assert.assertEquals(0L, metrics.get("deadlines.events.expired"));
+		Assert.assertEquals((long) threads, metrics.get("deadlines.test-results.expired"));
+		Assert.assertEquals(0, scheduler.getPendingCount());
+		scheduler.shutdown();
+	}
+
+	@Test(timeout = 10000)
+	public void testNoTicksWhileIdle() throws InterruptedException {
+		CountDownLatch expired = new CountDownLatch(1);
+		OctaneRequestDeadlineScheduler scheduler = new OctaneRequestDeadlineScheduler(10, 16, request -> expired.countDown());
+		Thread.sleep(200);
+		Assert.assertEquals(0, scheduler.getTicksCount());
+
+		//  ticks while the deadline is pending, then parks again
+		scheduler.register("events", new HttpGet("http://localhost/analytics/ci/events"), 50);
+		Assert.assertTrue(expired.await(5, TimeUnit.SECONDS));
+		Thread.sleep(100);
+		long ticks = scheduler.getTicksCount();
+		Assert.assertTrue("no ticks while pending", ticks > 0);
+		Thread.sleep(200);
+		Assert.assertEquals(ticks, scheduler.getTicksCount());
+
+		//  cancelled deadline lets the worker park as well
+		scheduler.register("events", new HttpGet("http://localhost/analytics/ci/events"), 10000).cancel();
+		Thread.sleep(100);
+		ticks = scheduler.getTicksCount();
+		Thread.sleep(200);
+		Assert.assertEquals(ticks, scheduler.getTicksCount());
+		Assert.assertTrue(scheduler.shutdown().isEmpty());
+	}
+
+	@Test(timeout = 10000)
+	public void testExpiresAtDeadlineAfterIdle() throws InterruptedException {
+		CountDownLatch expired = new CountDownLatch(1);
+		OctaneRequestDeadlineScheduler scheduler = new OctaneRequestDeadlineScheduler(10, 8, request -> expired.countDown());
+		Thread.sleep(300);
+
+		//  the ticks skipped while idle do not expire the new deadline early
+		long registeredAt = System.nanoTime();
+		scheduler.register("events", new HttpGet("http://localhost/analytics/ci/events"), 200);
+		Assert.assertTrue(expired.await(5, TimeUnit.SECONDS));
+		long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - registeredAt);
+		Assert.assertTrue("expired too early: " + elapsedMillis, elapsedMillis >= 200);
+		Assert.assertTrue("expired too late: " + elapsedMillis, elapsedMillis < 1000);
+		scheduler.shutdown();
+	}
+
+	@Test
+	public void testShutdownReturnsPending() {
+		OctaneRequestDeadlineScheduler scheduler = new OctaneRequestDeadlineScheduler(10, 16, request -> {
+		});
+		HttpUriRequest pending = new HttpGet("http://localhost/analytics/ci/logs");
+		scheduler.register("logs", pending, TimeUnit.MINUTES.toMillis(2));
+		scheduler.register("logs", new HttpGet("http://localhost/analytics/ci/logs"), TimeUnit.MINUTES.toMillis(2)).cancel();
+		List<HttpUriRequest> ongoing = scheduler.shutdown();
+		Assert.assertEquals(1, ongoing.size());
+		Assert.assertSame(pending, ongoing.get(0));
+	}
+
+	@Test
+	public void testRequestKind() {
+		Assert.assertEquals("login", OctaneRestClientImpl.requestKind(new HttpPost("http://localhost:8080/authentication/sign_in")));
+		Assert.assertEquals("events", OctaneRestClientImpl.requestKind(new HttpPut("http://localhost/internal-api/shared_spaces/1001/analytics/ci/events")));
+		Assert.assertEquals("servers", OctaneRestClientImpl.requestKind(new HttpGet("http://localhost/internal-api/shared_spaces/1001/analytics/ci/servers/abc/tasks?self-type=jenkins")));
+		Assert.assertEquals("api", OctaneRestClientImpl.requestKind(new HttpGet("http://localhost/api/shared_spaces/1001/workspaces/1002/defects")));
+		Assert.assertEquals("internal-api", OctaneRestClientImpl.requestKind(new HttpGet("http://localhost/internal-api/shared_spaces/1001/workspaces")));
+		Assert.assertEquals("other", OctaneRestClientImpl.requestKind(new HttpGet("http://localhost/admin/server/version")));
+	}
+}
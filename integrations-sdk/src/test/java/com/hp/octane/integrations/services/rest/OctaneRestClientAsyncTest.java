@@ -0,0 +1,112 @@
+/*
+ *     Copyright 2017 EntIT Software LLC, a Micro Focus company, L.P.
+ *     Licensed under the Apache License, Version 2.0 (the "License");
+ *     you may not use this file except in compliance with the License.
+ *     You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *     Unless required by applicable law or agreed to in writing, software
+ *     distributed under the License is distributed on an "AS IS" BASIS,
+ *     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *     See the License for the specific language governing permissions and
+ *     limitations under the License.
+ */
+
+package com.hp.octane.integrations.services.rest;
+
+import com.hp.octane.integrations.OctaneClient;
+import com.hp.octane.integrations.OctaneSDK;
+import com.hp.octane.integrations.dto.DTOFactory;
+import com.hp.octane.integrations.dto.connectivity.HttpMethod;
+import com.hp.octane.integrations.dto.connectivity.OctaneRequest;
+import com.hp.octane.integrations.dto.connectivity.OctaneResponse;
+import com.hp.octane.integrations.end2end.basic.OctaneConfigurationBasicFunctionalityTest;
+import com.hp.octane.integrations.end2end.basic.PluginServicesBasicFunctionalityTest;
+import com.hp.octane.integrations.testhelpers.OctaneSPEndpointSimulator;
+import com.hp.octane.integrations.utils.CIPluginSDKUtils;
+import org.apache.http.HttpStatus;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Async (non-blocking) flavor of Octane REST client, running against the Octane endpoint simulator
+ */
+
+public class OctaneRestClientAsyncTest {
+	private static final DTOFactory dtoFactory = DTOFactory.getInstance();
+
+	@Test(timeout = 30000)
+	public void testExecuteAsync() throws Exception {
+		String spId = UUID.randomUUID().toString();
+		OctaneSPEndpointSimulator simulator = OctaneSPEndpointSimulator.addInstance(spId);
+		simulator.installApiHandler(org.eclipse.jetty.http.HttpMethod.PUT, "^.*echo$", request -> {
+			try {
+				String body = CIPluginSDKUtils.inputStreamToUTF8String(new GZIPInputStream(request.getInputStream()));
+				request.getResponse().setStatus(HttpStatus.SC_OK);
+				request.getResponse().getWriter().write(body);
+				request.getResponse().getWriter().flush();
+			} catch (IOException ioe) {
+				throw new RuntimeException(ioe);
+			}
+		});
+
+		OctaneClient client = null;
+		try {
+			client = OctaneSDK.addClient(
+					new OctaneConfigurationBasicFunctionalityTest(
+							UUID.randomUUID().toString(),
+							OctaneSPEndpointSimulator.getSimulatorUrl(),
+							spId,
+							"client_SP_A",
+							"secret_SP_A"),
+					PluginServicesBasicFunctionalityTest.class);
+			OctaneRestClient restClient = client.getRestService().obtainOctaneRestClient();
+			String baseUrl = OctaneSPEndpointSimulator.getSimulatorUrl() + RestService.SHARED_SPACE_INTERNAL_API_PATH_PART + spId + RestService.ANALYTICS_CI_PATH_PART;
+
+			//  GET, including the initial login
+			OctaneResponse response = restClient.executeAsync(dtoFactory.newDTO(OctaneRequest.class)
+					.setMethod(HttpMethod.GET)
+					.setUrl(baseUrl + "servers/connectivity/status"))
+					.get(10, TimeUnit.SECONDS);
+			Assert.assertEquals(HttpStatus.SC_OK, response.getStatus());
+			Assert.assertTrue(response.getBody().contains("octaneVersion"));
+
+			//  concurrent PUTs with compressed bodies
+			List<CompletableFuture<OctaneResponse>> futures = new ArrayList<>();
+			for (int i = 0; i < 20; i++) {
+				futures.add(restClient.executeAsync(dtoFactory.newDTO(OctaneRequest.class)
+						.setMethod(HttpMethod.PUT)
+						.setUrl(baseUrl + "echo")
+						.setBody(new ByteArrayInputStream(("{\"index\":" + i + "}").getBytes(StandardCharsets.UTF_8)))));
+			}
+			for (int i = 0; i < futures.size(); i++) {
+				OctaneResponse echo = futures.get(i).get(10, TimeUnit.SECONDS);
+				Assert.assertEquals(HttpStatus.SC_OK, echo.getStatus());
+				Assert.assertEquals("{\"index\":" + i + "}", echo.getBody());
+			}
+
+			//  not existing API
+			response = restClient.executeAsync(dtoFactory.newDTO(OctaneRequest.class)
+					.setMethod(HttpMethod.GET)
+					.setUrl(baseUrl + "non-existing"))
+					.get(10, TimeUnit.SECONDS);
+			Assert.assertEquals(HttpStatus.SC_NOT_FOUND, response.getStatus());
+		} finally {
+			if (client != null) {
+				OctaneSDK.removeClient(client);
+			}
+			OctaneSPEndpointSimulator.removeInstance(spId);
+		}
+	}
+}
@@ -0,0 +1,175 @@
+/*
+ *     Copyright 2017 EntIT Software LLC, a Micro Focus company, L.P.
+ *     Licensed under the Apache License, Version 2.0 (the "License");
+ *     you may not use this file except in compliance with the License.
+ *     You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *     Unless required by applicable law or agreed to in writing, software
+ *     distributed under the License is distributed on an "AS IS" BASIS,
+ *     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *     See the License for the specific language governing permissions and
+ *     limitations under the License.
+ */
+
+package com.hp.octane.integrations.services.rest;
+
+import com.hp.octane.integrations.OctaneClient;
+import com.hp.octane.integrations.OctaneSDK;
+import com.hp.octane.integrations.dto.DTOFactory;
+import com.hp.octane.integrations.dto.connectivity.HttpMethod;
+import com.hp.octane.integrations.dto.connectivity.OctaneRequest;
+import com.hp.octane.integrations.dto.connectivity.OctaneResponse;
+import com.hp.octane.integrations.end2end.basic.OctaneConfigurationBasicFunctionalityTest;
+import com.hp.octane.integrations.end2end.basic.PluginServicesBasicFunctionalityTest;
+import com.hp.octane.integrations.testhelpers.ChunkedUploadSimulator;
+import com.hp.octane.integrations.testhelpers.OctaneSPEndpointSimulator;
+import org.apache.http.HttpStatus;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Chunked (resumable) upload flavor of Octane REST client, running against the Octane endpoint simulator
+ */
+
+public class OctaneRestClientChunkedUploadTest {
+	private static final DTOFactory dtoFactory = DTOFactory.getInstance();
+	private static final int PART_SIZE = 1000;
+
+	private String spId;
+	private OctaneClient client;
+	private OctaneRestClient restClient;
+	private ChunkedUploadSimulator uploadSimulator;
+	private final List<byte[]> receivedPayloads = new ArrayList<>();
+
+	@Before
+	public void setUp() {
+		spId = UUID.randomUUID().toString();
+		OctaneSPEndpointSimulator simulator = OctaneSPEndpointSimulator.addInstance(spId);
+		uploadSimulator = new ChunkedUploadSimulator((request, payload) -> {
+			synchronized (receivedPayloads) {
+				receivedPayloads.add(payload);
+			}
+			request.getResponse().setStatus(HttpStatus.SC_ACCEPTED);
+		});
+		uploadSimulator.install(simulator, org.eclipse.jetty.http.HttpMethod.POST, "^.*upload$");
+
+		client = OctaneSDK.addClient(
+				new OctaneConfigurationBasicFunctionalityTest(
+						UUID.randomUUID().toString(),
+						OctaneSPEndpointSimulator.getSimulatorUrl(),
+						spId,
+						"client_SP_A",
+						"secret_SP_A"),
+				PluginServicesBasicFunctionalityTest.class);
+		restClient = client.getRestService().obtainOctaneRestClient();
+	}
+
+	@After
+	public void tearDown() {
+		if (client != null) {
+			OctaneSDK.removeClient(client);
+		}
+		OctaneSPEndpointSimulator.removeInstance(spId);
+	}
+
+	@Test(timeout = 30000)
+	public void testMultiPartUpload() throws Exception {
+		byte[] payload = createPayload(PART_SIZE * 3 + 10);
+		List<Integer> checkpoints = new ArrayList<>();
+		OctaneChunkedUpload upload = new OctaneChunkedUpload(UUID.randomUUID().toString(), PART_SIZE, 0, () -> new ByteArrayInputStream(payload), checkpoints::add);
+
+		OctaneResponse response = restClient.executeChunked(createRequest(), upload);
+		Assert.assertEquals(HttpStatus.SC_ACCEPTED, response.getStatus());
+		Assert.assertEquals(4, uploadSimulator.getReceivedPartsCount());
+		Assert.assertEquals(1, receivedPayloads.size());
+		Assert.assertArrayEquals(payload, receivedPayloads.get(0));
+		Assert.assertEquals("[1, 2, 3]", checkpoints.toString());
+	}
+
+	@Test(timeout = 30000)
+	public void testResumeFromCheckpoint() throws Exception {
+		byte[] payload = createPayload(PART_SIZE * 5);
+		int[] checkpoint = {0};
+		String uploadId = UUID.randomUUID().toString();
+		uploadSimulator.failPartOnce(3);
+
+		OctaneResponse response = restClient.executeChunked(createRequest(),
+				new OctaneChunkedUpload(uploadId, PART_SIZE, checkpoint[0], () -> new ByteArrayInputStream(payload), parts -> checkpoint[0] = parts));
+		Assert.assertEquals(HttpStatus.SC_SERVICE_UNAVAILABLE, response.getStatus());
+		Assert.assertEquals(3, checkpoint[0]);
+		Assert.assertTrue(receivedPayloads.isEmpty());
+
+		//  re-attempt sends only the parts not acknowledged yet
+		response = restClient.executeChunked(createRequest(),
+				new OctaneChunkedUpload(uploadId, PART_SIZE, checkpoint[0], () -> new ByteArrayInputStream(payload), parts -> checkpoint[0] = parts));
+		Assert.assertEquals(HttpStatus.SC_ACCEPTED, response.getStatus());
+		Assert.assertEquals(4 + 2, uploadSimulator.getReceivedPartsCount());
+		Assert.assertEquals(1, receivedPayloads.size());
+		Assert.assertArrayEquals(payload, receivedPayloads.get(0));
+	}
+
+	@Test(timeout = 30000)
+	public void testResumeFromServerStatus() throws Exception {
+		byte[] payload = createPayload(PART_SIZE * 4 + 1);
+		String uploadId = UUID.randomUUID().toString();
+		uploadSimulator.failPartOnce(2);
+
+		OctaneResponse response = restClient.executeChunked(createRequest(),
+				new OctaneChunkedUpload(uploadId, PART_SIZE, 0, () -> new ByteArrayInputStream(payload), null));
+		Assert.assertEquals(HttpStatus.SC_SERVICE_UNAVAILABLE, response.getStatus());
+
+		//  checkpoint lost (eg restart), the server tells how many parts it holds
+		OctaneChunkedUpload resumed = new OctaneChunkedUpload(uploadId, PART_SIZE, -1, () -> new ByteArrayInputStream(payload), null);
+		response = restClient.executeChunked(createRequest(), resumed);
+		Assert.assertEquals(HttpStatus.SC_ACCEPTED, response.getStatus());
+		Assert.assertEquals(3 + 3, uploadSimulator.getReceivedPartsCount());
+		Assert.assertEquals(4, resumed.getAcknowledgedParts());
+		Assert.assertArrayEquals(payload, receivedPayloads.get(0));
+
+		//  unknown upload starts from the first part
+		OctaneChunkedUpload unknown = new OctaneChunkedUpload(UUID.randomUUID().toString(), PART_SIZE, -1, () -> new ByteArrayInputStream(payload), null);
+		response = restClient.executeChunked(createRequest(), unknown);
+		Assert.assertEquals(HttpStatus.SC_ACCEPTED, response.getStatus());
+		Assert.assertEquals(6 + 5, uploadSimulator.getReceivedPartsCount());
+		Assert.assertArrayEquals(payload, receivedPayloads.get(1));
+	}
+
+	@Test(timeout = 30000)
+	public void testSinglePartUpload() throws Exception {
+		byte[] small = createPayload(PART_SIZE);
+		OctaneResponse response = restClient.executeChunked(createRequest(),
+				new OctaneChunkedUpload(UUID.randomUUID().toString(), PART_SIZE, 0, () -> new ByteArrayInputStream(small), null));
+		Assert.assertEquals(HttpStatus.SC_ACCEPTED, response.getStatus());
+
+		response = restClient.executeChunked(createRequest(),
+				new OctaneChunkedUpload(UUID.randomUUID().toString(), PART_SIZE, 0, () -> new ByteArrayInputStream(new byte[0]), null));
+		Assert.assertEquals(HttpStatus.SC_ACCEPTED, response.getStatus());
+
+		Assert.assertEquals(2, uploadSimulator.getReceivedPartsCount());
+		Assert.assertArrayEquals(small, receivedPayloads.get(0));
+		Assert.assertEquals(0, receivedPayloads.get(1).length);
+	}
+
+	private OctaneRequest createRequest() {
+		return dtoFactory.newDTO(OctaneRequest.class)
+				.setMethod(HttpMethod.POST)
+				.setUrl(OctaneSPEndpointSimulator.getSimulatorUrl() + RestService.SHARED_SPACE_INTERNAL_API_PATH_PART + spId + RestService.ANALYTICS_CI_PATH_PART + "upload");
+	}
+
+	private static byte[] createPayload(int size) {
+		byte[] result = new byte[size];
+		for (int i = 0; i < size; i++) {
+			result[i] = (byte) (i * 31 + i / 7);
+		}
+		return result;
+	}
+}
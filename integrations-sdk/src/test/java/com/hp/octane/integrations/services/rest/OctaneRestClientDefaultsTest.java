@@ -0,0 +1,203 @@
+/*
+ *     Copyright 2017 EntIT Software LLC, a Micro Focus company, L.P.
+ *     Licensed under the Apache License, Version 2.0 (the "License");
+ *     you may not use this file except in compliance with the License.
+ *     You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *     Unless required by applicable law or agreed to in writing, software
+ *     distributed under the License is distributed on an "AS IS" BASIS,
+ *     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *     See the License for the specific language governing permissions and
+ *     limitations under the License.
+ */
+
+package com.hp.octane.integrations.services.rest;
+
+import com.hp.octane.integrations.OctaneConfiguration;
+import com.hp.octane.integrations.dto.DTOFactory;
+import com.hp.octane.integrations.dto.connectivity.HttpMethod;
+import com.hp.octane.integrations.dto.connectivity.OctaneRequest;
+import com.hp.octane.integrations.dto.connectivity.OctaneResponse;
+import com.hp.octane.integrations.utils.CIPluginSDKUtils;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Clients implementing only the basic execute methods keep working with the methods added to the interface later on
+ */
+
+public class OctaneRestClientDefaultsTest {
+	private static final DTOFactory dtoFactory = DTOFactory.getInstance();
+
+	@Test
+	public void testStreamingExecuteDelegates() throws IOException {
+		BasicOctaneRestClient client = new BasicOctaneRestClient(200, "{\"data\":[]}");
+		OctaneRequest request = dtoFactory.newDTO(OctaneRequest.class)
+				.setMethod(HttpMethod.PUT)
+				.setUrl("http://localhost/analytics/ci/events");
+
+		String result = client.execute(request, outputStream -> outputStream.write("payload".getBytes(StandardCharsets.UTF_8)), (response, body) -> {
+			Assert.assertNull(response.getBody());
+			return response.getStatus() + ":" + CIPluginSDKUtils.inputStreamToUTF8String(body);
+		});
+		Assert.assertEquals("200:{\"data\":[]}", result);
+		Assert.assertEquals(Collections.singletonList("payload"), client.requestBodies);
+	}
+
+	@Test
+	public void testStreamingExecuteOfGzippedBody() throws IOException {
+		BasicOctaneRestClient client = new BasicOctaneRestClient(202, null);
+		OctaneRequest request = dtoFactory.newDTO(OctaneRequest.class)
+				.setMethod(HttpMethod.POST)
+				.setUrl("http://localhost/analytics/ci/test-results");
+
+		int status = client.execute(request, new OctaneRequestBodyWriter() {
+			@Override
+			public void writeTo(OutputStream outputStream) throws IOException {
+				GZIPOutputStream gzip = new GZIPOutputStream(outputStream);
+				gzip.write("payload".getBytes(StandardCharsets.UTF_8));
+				gzip.finish();
+			}
+
+			@Override
+			public boolean isGzipped() {
+				return true;
+			}
+		}, (response, body) -> {
+			Assert.assertNull(body);
+			return response.getStatus();
+		});
+		Assert.assertEquals(202, status);
+		Assert.assertEquals(Collections.singletonList("payload"), client.requestBodies);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testStreamingExecuteNegative() throws IOException {
+		new BasicOctaneRestClient(200, null).execute(dtoFactory.newDTO(OctaneRequest.class), null, null);
+	}
+
+	@Test
+	public void testAsyncExecuteDelegates() throws Exception {
+		BasicOctaneRestClient client = new BasicOctaneRestClient(200, "{}");
+		OctaneRequest request = dtoFactory.newDTO(OctaneRequest.class)
+				.setMethod(HttpMethod.GET)
+				.setUrl("http://localhost/analytics/ci/servers/abc/tasks");
+
+		OctaneResponse response = client.executeAsync(request).get(5, TimeUnit.SECONDS);
+		Assert.assertEquals(200, response.getStatus());
+		Assert.assertEquals("{}", response.getBody());
+	}
+
+	@Test
+	public void testAsyncExecuteFailure() throws InterruptedException, TimeoutException {
+		BasicOctaneRestClient client = new BasicOctaneRestClient(200, null);
+		client.failure = new IOException("connection refused");
+
+		CompletableFuture<OctaneResponse> future = client.executeAsync(dtoFactory.newDTO(OctaneRequest.class));
+		Assert.assertTrue(future.isCompletedExceptionally());
+		try {
+			future.get(5, TimeUnit.SECONDS);
+			Assert.fail("failure of the request MUST complete the future exceptionally");
+		} catch (ExecutionException ee) {
+			Assert.assertSame(client.failure, ee.getCause());
+		}
+	}
+
+	@Test
+	public void testChunkedExecuteSentAsWhole() throws IOException {
+		BasicOctaneRestClient client = new BasicOctaneRestClient(200, "{}");
+		OctaneRequest request = dtoFactory.newDTO(OctaneRequest.class)
+				.setMethod(HttpMethod.POST)
+				.setUrl("http://localhost/analytics/ci/test-results");
+		String payload = "0123456789abcdefghij0123456789abcdefghij0123456789";
+		List<Integer> checkpoints = new ArrayList<>();
+		OctaneChunkedUpload upload = new OctaneChunkedUpload("upload-1", 20, -1, () -> new ByteArrayInputStream(payload.getBytes(StandardCharsets.UTF_8)), checkpoints::add);
+
+		OctaneResponse response = client.executeChunked(request, upload);
+		Assert.assertEquals(200, response.getStatus());
+		Assert.assertEquals("{}", response.getBody());
+		Assert.assertEquals(Collections.singletonList(payload), client.requestBodies);
+		Assert.assertEquals(Collections.singletonList(3), checkpoints);
+		Assert.assertEquals(3, upload.getAcknowledgedParts());
+	}
+
+	@Test
+	public void testChunkedExecuteOfEmptyPayload() throws IOException {
+		BasicOctaneRestClient client = new BasicOctaneRestClient(200, null);
+		OctaneChunkedUpload upload = new OctaneChunkedUpload("upload-1", 20, 0, () -> new ByteArrayInputStream(new byte[0]), null);
+
+		Assert.assertEquals(200, client.executeChunked(dtoFactory.newDTO(OctaneRequest.class), upload).getStatus());
+		Assert.assertEquals(1, upload.getAcknowledgedParts());
+	}
+
+	@Test
+	public void testChunkedExecuteNotAcknowledged() throws IOException {
+		BasicOctaneRestClient client = new BasicOctaneRestClient(503, null);
+		List<Integer> checkpoints = new ArrayList<>();
+		OctaneChunkedUpload upload = new OctaneChunkedUpload("upload-1", 20, 0, () -> new ByteArrayInputStream(new byte[50]), checkpoints::add);
+
+		Assert.assertEquals(503, client.executeChunked(dtoFactory.newDTO(OctaneRequest.class), upload).getStatus());
+		Assert.assertTrue(checkpoints.isEmpty());
+		Assert.assertEquals(0, upload.getAcknowledgedParts());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testChunkedExecuteNegative() throws IOException {
+		new BasicOctaneRestClient(200, null).executeChunked(dtoFactory.newDTO(OctaneRequest.class), null);
+	}
+
+	private static final class BasicOctaneRestClient implements OctaneRestClient {
+		private final int status;
+		private final String body;
+		private final List<String> requestBodies = new ArrayList<>();
+		private IOException failure;
+
+		private BasicOctaneRestClient(int status, String body) {
+			this.status = status;
+			this.body = body;
+		}
+
+		@Override
+		public OctaneResponse execute(OctaneRequest request) throws IOException {
+			if (failure != null) {
+				throw failure;
+			}
+			if (request.getBody() != null) {
+				requestBodies.add(CIPluginSDKUtils.inputStreamToUTF8String(request.getBody()));
+			}
+			return dtoFactory.newDTO(OctaneResponse.class)
+					.setStatus(status)
+					.setBody(body);
+		}
+
+		@Override
+		public OctaneResponse execute(OctaneRequest request, OctaneConfiguration configuration) throws IOException {
+			return execute(request);
+		}
+
+		@Override
+		public void shutdown() {
+		}
+
+		@Override
+		public Map<String, Object> getMetrics() {
+			return Collections.emptyMap();
+		}
+	}
+}
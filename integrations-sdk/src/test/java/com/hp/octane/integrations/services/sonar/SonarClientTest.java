@@ -0,0 +1,163 @@
+/*
+ *     Copyright 2017 EntIT Software LLC, a Micro Focus company, L.P.
+ *     Licensed under the Apache License, Version 2.0 (the "License");
+ *     you may not use this file except in compliance with the License.
+ *     You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *     Unless required by applicable law or agreed to in writing, software
+ *     distributed under the License is distributed on an "AS IS" BASIS,
+ *     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *     See the License for the specific language governing permissions and
+ *     limitations under the License.
+ */
+package com.hp.octane.integrations.services.sonar;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.hp.octane.integrations.exceptions.PermanentException;
+import com.hp.octane.integrations.exceptions.TemporaryException;
+import org.apache.http.client.utils.URIBuilder;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.server.handler.AbstractHandler;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class SonarClientTest {
+	private static final int PAGE_SIZE = 10;
+
+	private Server server;
+	private String baseUrl;
+	private final AtomicInteger requestsCount = new AtomicInteger();
+	private volatile int total = 45;
+
+	@Before
+	public void startServer() throws Exception {
+		server = new Server(0);
+		server.setHandler(new AbstractHandler() {
+			@Override
+			public void handle(String target, Request baseRequest, HttpServletRequest request, HttpServletResponse response) throws IOException {
+				requestsCount.incrementAndGet();
+				String body;
+				if ("/api/items".equals(target)) {
+					int page = Integer.parseInt(request.getParameter("p"));
+					//  pages answer out of order
+					try {
+						Thread.sleep(ThreadLocalRandom.current().nextInt(20));
+					} catch (InterruptedException ie) {
+						Thread.currentThread().interrupt();
+					}
+					StringBuilder items = new StringBuilder();
+					for (int i = (page - 1) * PAGE_SIZE; i < Math.min(total, page * PAGE_SIZE); i++) {
+						items.append(items.length() == 0 ? "" : ",").append(i);
+					}
+					body = "{\"paging\":{\"pageIndex\":" + page + ",\"pageSize\":" + PAGE_SIZE + ",\"total\":" + total + "},\"items\":[" + items + "]}";
+				} else if ("/api/bad".equals(target)) {
+					response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+					baseRequest.setHandled(true);
+					return;
+				} else if ("/api/rule".equals(target)) {
+					body = "{\"key\":\"" + request.getParameter("key") + "\"}";
+				} else {
+					response.setStatus(HttpServletResponse.SC_NOT_FOUND);
+					baseRequest.setHandled(true);
+					return;
+				}
+				response.setStatus(HttpServletResponse.SC_OK);
+				response.getOutputStream().write(body.getBytes(StandardCharsets.UTF_8));
+				baseRequest.setHandled(true);
+			}
+		});
+		server.start();
+		baseUrl = "http://localhost:" + ((ServerConnector) server.getConnectors()[0]).getLocalPort();
+	}
+
+	@After
+	public void stopServer() throws Exception {
+		server.stop();
+	}
+
+	@Test
+	public void testPagesConsumedInOrder() {
+		SonarClient sonarClient = new SonarClient(4, 3);
+		List<Integer> items = new ArrayList<>();
+		sonarClient.fetchPages("project", "token", this::pageQuery, PAGE_SIZE, SonarClient::readJsonPage, page -> {
+			for (JsonNode item : page.get("items")) {
+				items.add(item.intValue());
+			}
+		});
+		Assert.assertEquals(5, requestsCount.get());
+		Assert.assertEquals(45, items.size());
+		for (int i = 0; i < items.size(); i++) {
+			Assert.assertEquals(i, (int) items.get(i));
+		}
+	}
+
+	@Test
+	public void testSinglePage() {
+		total = 3;
+		SonarClient sonarClient = new SonarClient(4, 3);
+		List<JsonNode> pages = new ArrayList<>();
+		sonarClient.fetchPages("project", null, this::pageQuery, PAGE_SIZE, SonarClient::readJsonPage, pages::add);
+		Assert.assertEquals(1, requestsCount.get());
+		Assert.assertEquals(1, pages.size());
+		Assert.assertEquals(3, pages.get(0).get("items").size());
+	}
+
+	@Test
+	public void testGetAll() {
+		SonarClient sonarClient = new SonarClient(4, 3);
+		Map<String, String> keys = sonarClient.getAll(Arrays.asList("a", "b", "c", "d", "e"), key ->
+				sonarClient.get("project", "token", query("/api/rule").setParameter("key", key),
+						content -> SonarClient.readJsonPage(content).getContent().get("key").textValue()));
+		Assert.assertEquals(5, keys.size());
+		Assert.assertEquals("c", keys.get("c"));
+		Assert.assertTrue(sonarClient.getAll(Collections.<String>emptyList(), key -> key).isEmpty());
+	}
+
+	@Test(expected = PermanentException.class)
+	public void testNotFoundIsPermanent() {
+		new SonarClient(4, 3).get("project", "token", query("/api/missing"), SonarClient::readJsonPage);
+	}
+
+	@Test(expected = TemporaryException.class)
+	public void testBadRequestIsTemporary() {
+		new SonarClient(4, 3).get("project", "token", query("/api/bad"), SonarClient::readJsonPage);
+	}
+
+	@Test(expected = TemporaryException.class)
+	public void testBadRequestOfPageIsTemporary() {
+		new SonarClient(4, 3).fetchPages("project", "token", page -> query(page == 1 ? "/api/items" : "/api/bad").setParameter("p", String.valueOf(page)),
+				PAGE_SIZE, SonarClient::readJsonPage, page -> {
+				});
+	}
+
+	private URIBuilder pageQuery(int page) {
+		return query("/api/items").setParameter("p", String.valueOf(page));
+	}
+
+	private URIBuilder query(String path) {
+		try {
+			return new URIBuilder(baseUrl + path);
+		} catch (URISyntaxException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+}
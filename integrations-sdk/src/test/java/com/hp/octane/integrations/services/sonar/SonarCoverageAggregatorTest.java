@@ -0,0 +1,108 @@
+/*
+ *     Copyright 2017 EntIT Software LLC, a Micro Focus company, L.P.
+ *     Licensed under the Apache License, Version 2.0 (the "License");
+ *     you may not use this file except in compliance with the License.
+ *     You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *     Unless required by applicable law or agreed to in writing, software
+ *     distributed under the License is distributed on an "AS IS" BASIS,
+ *     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *     See the License for the specific language governing permissions and
+ *     limitations under the License.
+ */
+package com.hp.octane.integrations.services.sonar;
+
+import com.hp.octane.integrations.dto.DTOFactory;
+import com.hp.octane.integrations.dto.coverage.BuildCoverage;
+import com.hp.octane.integrations.dto.coverage.FileCoverage;
+import com.hp.octane.integrations.utils.CIPluginSDKUtils;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+public class SonarCoverageAggregatorTest {
+	private static final DTOFactory dtoFactory = DTOFactory.getInstance();
+
+	private static final String PAGE_1 = "{\"paging\":{\"pageIndex\":1,\"pageSize\":2,\"total\":3}," +
+			"\"baseComponent\":{\"id\":\"p\",\"key\":\"proj\",\"name\":\"Project\",\"qualifier\":\"TRK\",\"measures\":[" +
+			"{\"metric\":\"uncovered_lines\",\"value\":\"40\",\"bestValue\":false},{\"metric\":\"lines_to_cover\",\"value\":\"100\"}]}," +
+			"\"components\":[" +
+			"{\"key\":\"proj:a\",\"name\":\"A.java\",\"qualifier\":\"FIL\",\"path\":\"src/A.java\",\"measures\":[" +
+			"{\"metric\":\"lines_to_cover\",\"value\":\"60\"},{\"metric\":\"uncovered_lines\",\"value\":\"10\",\"periods\":[{\"index\":1,\"value\":\"0\"}]}]}," +
+			"{\"key\":\"proj:b\",\"name\":\"B.java\",\"qualifier\":\"FIL\",\"path\":\"src/B.java\",\"measures\":[" +
+			"{\"metric\":\"uncovered_lines\",\"value\":\"30\"},{\"metric\":\"lines_to_cover\",\"value\":\"30\"}]}]}";
+	private static final String PAGE_2 = "{\"paging\":{\"pageIndex\":2,\"pageSize\":2,\"total\":3}," +
+			"\"baseComponent\":{\"id\":\"p\",\"key\":\"proj\",\"name\":\"Project\",\"qualifier\":\"TRK\",\"measures\":[" +
+			"{\"metric\":\"uncovered_lines\",\"value\":\"40\"},{\"metric\":\"lines_to_cover\",\"value\":\"100\"}]}," +
+			"\"components\":[" +
+			"{\"key\":\"proj:c\",\"name\":\"C.java\",\"qualifier\":\"FIL\",\"path\":\"src/C.java\",\"measures\":[" +
+			"{\"metric\":\"lines_to_cover\",\"value\":\"10\"}]}]}";
+
+	@Test
+	public void testSameAsTreeMerge() throws IOException {
+		BuildCoverage expected = dtoFactory.newDTO(BuildCoverage.class);
+		for (String page : Arrays.asList(PAGE_1, PAGE_2)) {
+			expected.mergeSonarCoverageReport(CIPluginSDKUtils.getObjectMapper().readTree(page));
+		}
+
+		BuildCoverage actual = aggregate(PAGE_1, PAGE_2);
+		Assert.assertEquals(expected.getProjectName(), actual.getProjectName());
+		Assert.assertEquals(expected.getSumOfCoveredLines(), actual.getSumOfCoveredLines());
+		Assert.assertEquals(expected.getTotalCoverableLines(), actual.getTotalCoverableLines());
+		List<FileCoverage> expectedFiles = expected.getFileCoverageList();
+		List<FileCoverage> actualFiles = actual.getFileCoverageList();
+		Assert.assertEquals(3, actualFiles.size());
+		for (int i = 0; i < expectedFiles.size(); i++) {
+			Assert.assertEquals(expectedFiles.get(i).getPath(), actualFiles.get(i).getPath());
+			Assert.assertEquals(expectedFiles.get(i).getSumOfCoveredLines(), actualFiles.get(i).getSumOfCoveredLines());
+			Assert.assertEquals(expectedFiles.get(i).getTotalCoverableLines(), actualFiles.get(i).getTotalCoverableLines());
+		}
+	}
+
+	@Test
+	public void testPagingTotalRead() throws IOException {
+		Assert.assertEquals(3, SonarCoverageAggregator.readPage(stream(PAGE_2)).getTotal());
+	}
+
+	@Test
+	public void testTotalsOfFilesWithoutProjectMeasures() throws IOException {
+		String page = "{\"components\":[" +
+				"{\"path\":\"a\",\"measures\":[{\"metric\":\"lines_to_cover\",\"value\":\"8\"},{\"metric\":\"uncovered_lines\",\"value\":\"3\"}]}," +
+				"{\"path\":\"b\",\"measures\":[{\"metric\":\"lines_to_cover\",\"value\":\"2\"}]}," +
+				"{\"name\":\"directory without path\",\"measures\":[]}]," +
+				"\"baseComponent\":{\"name\":\"Project\",\"measures\":[]},\"paging\":{\"total\":3}}";
+
+		BuildCoverage actual = aggregate(page);
+		Assert.assertEquals("Project", actual.getProjectName());
+		Assert.assertEquals(2, actual.getFileCoverageList().size());
+		Assert.assertEquals(10, (int) actual.getTotalCoverableLines());
+		Assert.assertEquals(7, (int) actual.getSumOfCoveredLines());
+	}
+
+	@Test(expected = IOException.class)
+	public void testInvalidPage() throws IOException {
+		SonarCoverageAggregator.readPage(stream("[]"));
+	}
+
+	private static BuildCoverage aggregate(String... pages) throws IOException {
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		try (SonarCoverageAggregator aggregator = new SonarCoverageAggregator(output)) {
+			for (String page : pages) {
+				aggregator.accept(SonarCoverageAggregator.readPage(stream(page)).getContent());
+			}
+		}
+		return dtoFactory.dtoFromJson(new String(output.toByteArray(), StandardCharsets.UTF_8), BuildCoverage.class);
+	}
+
+	private static ByteArrayInputStream stream(String content) {
+		return new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8));
+	}
+}
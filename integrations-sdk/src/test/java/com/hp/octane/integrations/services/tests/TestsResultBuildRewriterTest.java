@@ -0,0 +1,105 @@
+/*
+ *     Copyright 2017 EntIT Software LLC, a Micro Focus company, L.P.
+ *     Licensed under the Apache License, Version 2.0 (the "License");
+ *     you may not use this file except in compliance with the License.
+ *     You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *     Unless required by applicable law or agreed to in writing, software
+ *     distributed under the License is distributed on an "AS IS" BASIS,
+ *     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *     See the License for the specific language governing permissions and
+ *     limitations under the License.
+ */
+
+package com.hp.octane.integrations.services.tests;
+
+import com.hp.octane.integrations.exceptions.PermanentException;
+import org.junit.Assert;
+import org.junit.Test;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import javax.xml.parsers.DocumentBuilderFactory;
+
+public class TestsResultBuildRewriterTest {
+	private final TestsResultBuildRewriter rewriter = new TestsResultBuildRewriter("server-a", "job & a", "1");
+
+	@Test
+	public void testEmptyBuildElement() throws Exception {
+		Document result = rewrite("<?xml version=\"1.0\" encoding=\"UTF-8\"?>" +
+				"<test_result><build server_id=\"old\" job_id=\"old\" build_id=\"old\"/><test_runs><test_run name=\"a\"/></test_runs></test_result>");
+		Assert.assertEquals("build,test_runs", childrenNames(result.getDocumentElement()));
+		assertBuild(result);
+		Assert.assertEquals("a", ((Element) result.getElementsByTagName("test_run").item(0)).getAttribute("name"));
+	}
+
+	@Test
+	public void testBuildElementWithContent() throws Exception {
+		//  same as the former regex based rewrite: the content of the build element becomes its sibling
+		Document result = rewrite("<test_result><build job_id=\"old\"><test_fields/></build><test_runs/></test_result>");
+		Assert.assertEquals("build,test_fields,test_runs", childrenNames(result.getDocumentElement()));
+		assertBuild(result);
+		Assert.assertFalse(result.getElementsByTagName("build").item(0).hasChildNodes());
+	}
+
+	@Test
+	public void testOtherContentKept() throws Exception {
+		Document result = rewrite("<test_result><!-- comment --><test_runs><test_run name=\"a&lt;b\">ñ text</test_run></test_runs></test_result>");
+		Assert.assertEquals(Node.COMMENT_NODE, result.getDocumentElement().getFirstChild().getNodeType());
+		Element testRun = (Element) result.getElementsByTagName("test_run").item(0);
+		Assert.assertEquals("a<b", testRun.getAttribute("name"));
+		Assert.assertEquals("ñ text", testRun.getTextContent());
+		Assert.assertEquals(0, result.getElementsByTagName("build").getLength());
+	}
+
+	@Test
+	public void testNonUTF8SourceEncoding() throws Exception {
+		byte[] source = "<?xml version=\"1.0\" encoding=\"ISO-8859-1\"?><test_result><build/><test_run name=\"ñ\"/></test_result>".getBytes(StandardCharsets.ISO_8859_1);
+		ByteArrayOutputStream target = new ByteArrayOutputStream();
+		rewriter.rewrite(new ByteArrayInputStream(source), target);
+		Assert.assertTrue(new String(target.toByteArray(), StandardCharsets.UTF_8).contains("name=\"ñ\""));
+		Document result = parse(target.toByteArray());
+		Assert.assertEquals("ñ", ((Element) result.getElementsByTagName("test_run").item(0)).getAttribute("name"));
+	}
+
+	@Test(expected = PermanentException.class)
+	public void testMalformedXml() throws Exception {
+		rewrite("<test_result><build></test_result>");
+	}
+
+	private Document rewrite(String xml) throws Exception {
+		ByteArrayOutputStream target = new ByteArrayOutputStream();
+		rewriter.rewrite(new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8)), target);
+		return parse(target.toByteArray());
+	}
+
+	private static Document parse(byte[] xml) throws Exception {
+		return DocumentBuilderFactory.newInstance().newDocumentBuilder().parse(new ByteArrayInputStream(xml));
+	}
+
+	private static void assertBuild(Document document) {
+		NodeList builds = document.getElementsByTagName("build");
+		Assert.assertEquals(1, builds.getLength());
+		Element build = (Element) builds.item(0);
+		Assert.assertEquals("server-a", build.getAttribute("server_id"));
+		Assert.assertEquals("job & a", build.getAttribute("job_id"));
+		Assert.assertEquals("1", build.getAttribute("build_id"));
+	}
+
+	private static String childrenNames(Element element) {
+		StringBuilder result = new StringBuilder();
+		for (Node child = element.getFirstChild(); child != null; child = child.getNextSibling()) {
+			if (child.getNodeType() == Node.ELEMENT_NODE) {
+				result.append(result.length() > 0 ? "," : "").append(child.getNodeName());
+			}
+		}
+		return result.toString();
+	}
+}
@@ -0,0 +1,150 @@
+/*
+ *     Copyright 2017 EntIT Software LLC, a Micro Focus company, L.P.
+ *     Licensed under the Apache License, Version 2.0 (the "License");
+ *     you may not use this file except in compliance with the License.
+ *     You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *     Unless required by applicable law or agreed to in writing, software
+ *     distributed under the License is distributed on an "AS IS" BASIS,
+ *     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *     See the License for the specific language governing permissions and
+ *     limitations under the License.
+ */
+
+package com.hp.octane.integrations.services.tests;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedList;
+import java.util.List;
+
+public class TestsResultPushWindowTest {
+
+	@Test
+	public void testBatchesInQueueOrder() {
+		TestsResultPushWindow<String> window = new TestsResultPushWindow<>(3);
+		Assert.assertTrue(window.peekBatch().isEmpty());
+
+		LinkedList<String> queue = queue(window, "a", "b", "c", "d", "e");
+		Assert.assertEquals(Arrays.asList("a", "b", "c"), window.peekBatch());
+		ackAndRemove(window, queue, "a", "b", "c");
+		Assert.assertEquals(Arrays.asList("d", "e"), window.peekBatch());
+		ackAndRemove(window, queue, "d", "e");
+		Assert.assertTrue(window.peekBatch().isEmpty());
+		Assert.assertTrue(queue.isEmpty());
+		Assert.assertEquals(0, window.getAcknowledgedCount());
+	}
+
+	@Test
+	public void testAcknowledgedPrefixRemoval() {
+		TestsResultPushWindow<String> window = new TestsResultPushWindow<>(5);
+		LinkedList<String> queue = queue(window, "a", "b", "c", "d", "e");
+
+		//  acknowledged out of order - nothing to remove until the head is acknowledged
+		window.acknowledge("c");
+		window.acknowledge("e");
+		Assert.assertEquals(0, window.getAcknowledgedPrefixSize());
+		window.acknowledge("a");
+		Assert.assertEquals(1, window.getAcknowledgedPrefixSize());
+		window.acknowledge("b");
+		Assert.assertEquals(3, window.getAcknowledgedPrefixSize());
+
+		remove(window, queue);
+		Assert.assertEquals(Arrays.asList("d", "e"), queue);
+		Assert.assertEquals(Collections.singletonList("d"), window.peekBatch());
+		Assert.assertEquals(1, window.getAcknowledgedCount());
+
+		window.acknowledge("d");
+		remove(window, queue);
+		Assert.assertTrue(queue.isEmpty());
+		Assert.assertEquals(0, window.getAcknowledgedCount());
+	}
+
+	@Test
+	public void testPartialBatchFailure() {
+		TestsResultPushWindow<String> window = new TestsResultPushWindow<>(4);
+		LinkedList<String> queue = queue(window, "a", "b", "c", "d", "e", "f");
+
+		//  c failed temporarily, the rest of the batch is pushed
+		Assert.assertEquals(Arrays.asList("a", "b", "c", "d"), window.peekBatch());
+		ackAndRemove(window, queue, "a", "b", "d");
+		Assert.assertEquals(Arrays.asList("c", "d", "e", "f"), queue);
+
+		//  only the failed item and the ones entering the window are retried, d is not pushed again
+		Assert.assertEquals(Arrays.asList("c", "e", "f"), window.peekBatch());
+
+		//  c fails again, e and f are pushed
+		ackAndRemove(window, queue, "e", "f");
+		Assert.assertEquals(Arrays.asList("c", "d", "e", "f"), queue);
+		Assert.assertEquals(Collections.singletonList("c"), window.peekBatch());
+
+		ackAndRemove(window, queue, "c");
+		Assert.assertTrue(queue.isEmpty());
+		Assert.assertTrue(window.peekBatch().isEmpty());
+	}
+
+	@Test
+	public void testFailingHeadHoldsBackAtMostOneBatch() {
+		TestsResultPushWindow<String> window = new TestsResultPushWindow<>(3);
+		LinkedList<String> queue = queue(window, "a", "b", "c", "d", "e", "f");
+
+		//  the head keeps failing - the items behind it beyond the window are not pushed
+		for (int i = 0; i < 3; i++) {
+			List<String> batch = window.peekBatch();
+			Assert.assertEquals("a", batch.get(0));
+			batch.subList(1, batch.size()).forEach(window::acknowledge);
+			remove(window, queue);
+		}
+		Assert.assertEquals(2, window.getAcknowledgedCount());
+		Assert.assertEquals(6, queue.size());
+
+		//  after a restart the acknowledgements are gone, only the acknowledged items of the window are pushed again
+		TestsResultPushWindow<String> restarted = new TestsResultPushWindow<>(3);
+		queue.forEach(restarted::added);
+		Assert.assertEquals(Arrays.asList("a", "b", "c"), restarted.peekBatch());
+	}
+
+	@Test
+	public void testAcknowledgeOfRemovedItemIgnored() {
+		TestsResultPushWindow<String> window = new TestsResultPushWindow<>(3);
+		LinkedList<String> queue = queue(window, "a", "b");
+		List<String> batch = window.peekBatch();
+
+		//  queue cleared while the batch is pushed
+		while (!queue.isEmpty()) {
+			queue.poll();
+			window.removed();
+		}
+		batch.forEach(window::acknowledge);
+		Assert.assertEquals(0, window.getAcknowledgedCount());
+		Assert.assertEquals(0, window.getAcknowledgedPrefixSize());
+	}
+
+	private static LinkedList<String> queue(TestsResultPushWindow<String> window, String... items) {
+		LinkedList<String> queue = new LinkedList<>();
+		for (String item : items) {
+			queue.add(item);
+			window.added(item);
+		}
+		return queue;
+	}
+
+	private static void ackAndRemove(TestsResultPushWindow<String> window, LinkedList<String> queue, String... items) {
+		for (String item : items) {
+			window.acknowledge(item);
+		}
+		remove(window, queue);
+	}
+
+	private static void remove(TestsResultPushWindow<String> window, LinkedList<String> queue) {
+		for (int i = window.getAcknowledgedPrefixSize(); i > 0; i--) {
+			queue.poll();
+			window.removed();
+		}
+	}
+}
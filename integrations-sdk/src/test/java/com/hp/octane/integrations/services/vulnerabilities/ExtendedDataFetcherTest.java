@@ -0,0 +1,157 @@
+/*
+ *     Copyright 2017 EntIT Software LLC, a Micro Focus company, L.P.
+ *     Licensed under the Apache License, Version 2.0 (the "License");
+ *     you may not use this file except in compliance with the License.
+ *     You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *     Unless required by applicable law or agreed to in writing, software
+ *     distributed under the License is distributed on an "AS IS" BASIS,
+ *     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *     See the License for the specific language governing permissions and
+ *     limitations under the License.
+ */
+
+package com.hp.octane.integrations.services.vulnerabilities;
+
+import com.hp.octane.integrations.exceptions.PermanentException;
+import com.hp.octane.integrations.exceptions.TemporaryException;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+public class ExtendedDataFetcherTest {
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testNegativeA() {
+		new ExtendedDataFetcher(ToolType.SSC, 10, 0);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testNegativeB() {
+		new RateLimiter(0);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testNegativeC() {
+		ExtendedDataFetcher.forTool(ToolType.SONAR);
+	}
+
+	@Test(timeout = 10000)
+	public void testParallelFetch() {
+		ExtendedDataFetcher fetcher = new ExtendedDataFetcher(ToolType.SSC, 10000, 4);
+		Set<String> threads = ConcurrentHashMap.newKeySet();
+		AtomicInteger concurrent = new AtomicInteger();
+		AtomicInteger maxConcurrent = new AtomicInteger();
+		Map<Integer, String> result = fetcher.fetch(issues(100), Function.identity(), id -> {
+			threads.add(Thread.currentThread().getName());
+			maxConcurrent.accumulateAndGet(concurrent.incrementAndGet(), Math::max);
+			sleep(2);
+			concurrent.decrementAndGet();
+			return "details " + id;
+		}, new ConcurrentHashMap<>());
+
+		Assert.assertEquals(100, result.size());
+		Assert.assertEquals("details 42", result.get(42));
+		Assert.assertTrue(maxConcurrent.get() <= 4);
+		Assert.assertTrue(threads.size() > 1);
+	}
+
+	@Test(timeout = 10000)
+	public void testThrottledFetchResumed() {
+		ExtendedDataFetcher fetcher = new ExtendedDataFetcher(ToolType.FOD, 1000, 2);
+		Map<Integer, String> checkpoint = new ConcurrentHashMap<>();
+		AtomicInteger requests = new AtomicInteger();
+
+		//  tool keeps throttling from the 20th request on
+		try {
+			fetcher.fetch(issues(50), Function.identity(), id -> {
+				if (requests.incrementAndGet() > 20) {
+					throw new TemporaryException("429");
+				}
+				return "details " + id;
+			}, checkpoint);
+			Assert.fail("fetch should fail on throttling");
+		} catch (TemporaryException te) {
+			Assert.assertEquals("429", te.getMessage());
+		}
+		Assert.assertEquals(20, checkpoint.size());
+
+		//  retried fetch requests only the missing details
+		requests.set(0);
+		Map<Integer, String> result = fetcher.fetch(issues(50), Function.identity(), id -> {
+			requests.incrementAndGet();
+			return "details " + id;
+		}, checkpoint);
+		Assert.assertEquals(50, result.size());
+		Assert.assertEquals(30, requests.get());
+	}
+
+	@Test(timeout = 10000)
+	public void testPermanentFailurePassedOver() {
+		ExtendedDataFetcher fetcher = new ExtendedDataFetcher(ToolType.SSC, 10000, 2);
+		Map<Integer, String> result = fetcher.fetch(issues(10), Function.identity(), id -> {
+			if (id == 3) {
+				throw new PermanentException("404");
+			}
+			return id == 5 ? null : "details " + id;
+		}, new ConcurrentHashMap<>());
+
+		Assert.assertEquals(8, result.size());
+		Assert.assertFalse(result.containsKey(3));
+		Assert.assertFalse(result.containsKey(5));
+	}
+
+	@Test(timeout = 10000)
+	public void testRateLimit() throws InterruptedException {
+		RateLimiter rateLimiter = new RateLimiter(100);
+		long started = System.nanoTime();
+		for (int i = 0; i < 21; i++) {
+			rateLimiter.acquire();
+		}
+		//  first permit is free, the rest is paced at 100/s
+		Assert.assertTrue(System.nanoTime() - started >= 190_000_000L);
+	}
+
+	@Test
+	public void testRateAdapts() {
+		RateLimiter rateLimiter = new RateLimiter(100);
+		rateLimiter.onThrottled();
+		Assert.assertEquals(50, rateLimiter.getRate(), 0.001);
+		for (int i = 0; i < 10; i++) {
+			rateLimiter.onThrottled();
+		}
+		Assert.assertEquals(100 / 16.0, rateLimiter.getRate(), 0.001);
+
+		rateLimiter.onSuccess();
+		Assert.assertEquals(100 / 16.0 + 5, rateLimiter.getRate(), 0.001);
+		for (int i = 0; i < 100; i++) {
+			rateLimiter.onSuccess();
+		}
+		Assert.assertEquals(100, rateLimiter.getRate(), 0.001);
+	}
+
+	private static List<Integer> issues(int count) {
+		List<Integer> result = new ArrayList<>(count);
+		for (int i = 0; i < count; i++) {
+			result.add(i);
+		}
+		return result;
+	}
+
+	private static void sleep(long millis) {
+		try {
+			Thread.sleep(millis);
+		} catch (InterruptedException ie) {
+			Thread.currentThread().interrupt();
+		}
+	}
+}
@@ -0,0 +1,125 @@
+/*
+ *     Copyright 2017 EntIT Software LLC, a Micro Focus company, L.P.
+ *     Licensed under the Apache License, Version 2.0 (the "License");
+ *     you may not use this file except in compliance with the License.
+ *     You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *     Unless required by applicable law or agreed to in writing, software
+ *     distributed under the License is distributed on an "AS IS" BASIS,
+ *     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *     See the License for the specific language governing permissions and
+ *     limitations under the License.
+ */
+
+package com.hp.octane.integrations.services.vulnerabilities;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+public class IssuesReconcilerTest {
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testNegativeA() {
+		new IssuesReconciler<TestIssue>(null, TestIssue::isNew);
+	}
+
+	@Test
+	public void testClassification() {
+		List<TestIssue> rawIssues = Arrays.asList(
+				new TestIssue("a", true),
+				new TestIssue("b", false),
+				new TestIssue("c", false),
+				new TestIssue("d", true));
+		List<String> octaneIssues = Arrays.asList("b", "d", "x", "y");
+
+		IssuesReconciler.Result<TestIssue> result = IssuesReconciler.<TestIssue>forRawVulnerabilities().reconcile(rawIssues, octaneIssues);
+
+		Assert.assertEquals(Arrays.asList("a", "b", "c", "d"), keys(result.openIssues));
+		Assert.assertEquals(Arrays.asList("a", "d"), keys(result.newIssues));
+		Assert.assertEquals(Collections.singletonList("c"), keys(result.missingIssues));
+		Assert.assertEquals(Collections.singletonList("b"), keys(result.updatedIssues));
+		Assert.assertEquals(Arrays.asList("x", "y"), result.closedRemoteIds);
+		Assert.assertEquals(Arrays.asList("a", "d"), keys(result.getIssuesRequiredExtendedData(false)));
+		Assert.assertEquals(Arrays.asList("a", "c", "d"), keys(result.getIssuesRequiredExtendedData(true)));
+		Assert.assertFalse(result.isEmpty());
+	}
+
+	@Test
+	public void testCustomKeyExtractor() {
+		List<String> rawIssues = Arrays.asList("key-1", "key-2");
+		IssuesReconciler.Result<String> result = new IssuesReconciler<String>(issue -> issue.substring(4), issue -> false)
+				.reconcile(rawIssues, Arrays.asList("2", "3"));
+
+		Assert.assertEquals(Collections.singletonList("key-1"), result.missingIssues);
+		Assert.assertEquals(Collections.singletonList("key-2"), result.updatedIssues);
+		Assert.assertEquals(Collections.singletonList("3"), result.closedRemoteIds);
+	}
+
+	@Test
+	public void testDuplicatesClosedOnce() {
+		IssuesReconciler.Result<TestIssue> result = IssuesReconciler.<TestIssue>forRawVulnerabilities()
+				.reconcile(Collections.emptyList(), Arrays.asList("x", "y", "x"));
+
+		Assert.assertTrue(result.openIssues.isEmpty());
+		Assert.assertEquals(Arrays.asList("x", "y"), result.closedRemoteIds);
+	}
+
+	@Test
+	public void testEmpty() {
+		IssuesReconciler.Result<TestIssue> result = IssuesReconciler.<TestIssue>forRawVulnerabilities()
+				.reconcile(Collections.emptyList(), Collections.emptyList());
+
+		Assert.assertTrue(result.isEmpty());
+	}
+
+	@Test(timeout = 10000)
+	public void testLargeProject() {
+		int count = 100000;
+		List<TestIssue> rawIssues = new ArrayList<>(count);
+		List<String> octaneIssues = new ArrayList<>(count);
+		for (int i = 0; i < count; i++) {
+			rawIssues.add(new TestIssue("raw-" + i, i % 10 == 0));
+			octaneIssues.add("raw-" + (i + count / 2));
+		}
+
+		IssuesReconciler.Result<TestIssue> result = IssuesReconciler.<TestIssue>forRawVulnerabilities().reconcile(rawIssues, octaneIssues);
+
+		Assert.assertEquals(count, result.openIssues.size());
+		Assert.assertEquals(count / 2, result.closedRemoteIds.size());
+		Assert.assertEquals(count / 10, result.newIssues.size());
+		Assert.assertEquals(count / 2 - count / 20, result.missingIssues.size());
+		Assert.assertEquals(count / 2 - count / 20, result.updatedIssues.size());
+	}
+
+	private static List<String> keys(List<TestIssue> issues) {
+		return issues.stream().map(TestIssue::getRemoteId).collect(Collectors.toList());
+	}
+
+	private static final class TestIssue implements RawVulnerability {
+		private final String remoteId;
+		private final boolean isNew;
+
+		private TestIssue(String remoteId, boolean isNew) {
+			this.remoteId = remoteId;
+			this.isNew = isNew;
+		}
+
+		@Override
+		public boolean isNew() {
+			return isNew;
+		}
+
+		@Override
+		public String getRemoteId() {
+			return remoteId;
+		}
+	}
+}
@@ -0,0 +1,59 @@
+/*
+ *     Copyright 2017 EntIT Software LLC, a Micro Focus company, L.P.
+ *     Licensed under the Apache License, Version 2.0 (the "License");
+ *     you may not use this file except in compliance with the License.
+ *     You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *     Unless required by applicable law or agreed to in writing, software
+ *     distributed under the License is distributed on an "AS IS" BASIS,
+ *     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *     See the License for the specific language governing permissions and
+ *     limitations under the License.
+ *
+ */
+package com.hp.octane.integrations.services.vulnerabilities;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class RecheckScheduleTest {
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNegative() {
+        new RecheckSchedule(0);
+    }
+
+    @Test
+    public void testOneRecheckPerInterval() {
+        RecheckSchedule schedule = new RecheckSchedule(5000);
+
+        //  3 items parked at once are re-checked 5s apart
+        Assert.assertEquals(5000, schedule.nextDelay(1000));
+        Assert.assertEquals(10000, schedule.nextDelay(1000));
+        Assert.assertEquals(15000, schedule.nextDelay(1000));
+
+        //  first one is re-checked and parked again: behind the other two
+        Assert.assertEquals(15000, schedule.nextDelay(6000));
+    }
+
+    @Test
+    public void testIdleSlotsNotAccumulated() {
+        RecheckSchedule schedule = new RecheckSchedule(5000);
+
+        schedule.nextDelay(1000);
+        Assert.assertEquals(5000, schedule.nextDelay(60000));
+    }
+
+    @Test
+    public void testReset() {
+        RecheckSchedule schedule = new RecheckSchedule(5000);
+
+        for (int i = 0; i < 10; i++) {
+            schedule.nextDelay(1000);
+        }
+        schedule.reset();
+        Assert.assertEquals(5000, schedule.nextDelay(1000));
+    }
+}
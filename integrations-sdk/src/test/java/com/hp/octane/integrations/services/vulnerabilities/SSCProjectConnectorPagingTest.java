@@ -23,7 +23,9 @@ import com.hp.octane.integrations.services.vulnerabilities.ssc.dto.Issues;
 import org.junit.Assert;
 import org.junit.Test;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 
 import static org.easymock.EasyMock.*;
 
@@ -45,7 +47,28 @@ public class SSCProjectConnectorPagingTest {
         Assert.assertEquals("Issue 1",issues.getData().get(0).issueName);
         Assert.assertEquals("Issue 2",issues.getData().get(1).issueName);
         Assert.assertEquals("Issue 3",issues.getData().get(2).issueName);
+    }
+
+    @Test
+    public void streamingOfIssues() {
 
+        SSCProjectConfiguration configMock = createNiceMock(SSCProjectConfiguration.class);
+        expect(configMock.getSSCUrl()).andReturn("DummyURL").anyTimes();
+        replay(configMock);
+        SSCProjectConnector sscProjectConnector = new SSCProjectConnector(configMock,
+                new MockSSCRestClient(Arrays.asList(DummyContents.issuesPart1,
+                        DummyContents.issuesPart2,
+                        DummyContents.issuesPart3)));
+        List<Integer> pageSizes = new ArrayList<>();
+        List<String> names = new ArrayList<>();
+        sscProjectConnector.streamIssues(1, page -> {
+            pageSizes.add(page.size());
+            for (Issues.Issue issue : page) {
+                names.add(issue.issueName);
+            }
+        });
+        Assert.assertEquals(Arrays.asList(1, 1, 1), pageSizes);
+        Assert.assertEquals(Arrays.asList("Issue 1", "Issue 2", "Issue 3"), names);
     }
 
 }
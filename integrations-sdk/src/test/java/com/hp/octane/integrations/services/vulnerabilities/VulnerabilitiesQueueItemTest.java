@@ -0,0 +1,105 @@
+/*
+ *     Copyright 2017 EntIT Software LLC, a Micro Focus company, L.P.
+ *     Licensed under the Apache License, Version 2.0 (the "License");
+ *     you may not use this file except in compliance with the License.
+ *     You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *     Unless required by applicable law or agreed to in writing, software
+ *     distributed under the License is distributed on an "AS IS" BASIS,
+ *     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *     See the License for the specific language governing permissions and
+ *     limitations under the License.
+ */
+
+
+package com.hp.octane.integrations.services.vulnerabilities;
+
+import com.hp.octane.integrations.services.vulnerabilities.fod.dto.pojos.VulnerabilityAllData;
+import com.hp.octane.integrations.services.vulnerabilities.ssc.dto.IssueDetails;
+import com.hp.octane.integrations.utils.CIPluginSDKUtils;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+public class VulnerabilitiesQueueItemTest {
+
+    @Test
+    public void testExtendedDataPersistedMidFetch() throws IOException {
+        VulnerabilitiesQueueItem item = new VulnerabilitiesQueueItem("job", "1");
+        item.setToolType(ToolType.SSC);
+        item.setRelevant(true);
+        item.setBaselineDate(new Date(1000));
+        Map<Integer, IssueDetails> checkpoint = item.getExtendedDataCheckpoint(Integer.class, IssueDetails.class);
+        checkpoint.put(1, issueDetails("brief 1"));
+        checkpoint.put(2, issueDetails("brief 2"));
+        Assert.assertEquals(2, item.getExtendedDataCheckpointSize());
+
+        VulnerabilitiesQueueItem read = reread(item);
+        Assert.assertTrue(read.isRelevant());
+        Assert.assertEquals(new Date(1000), read.getBaselineDate());
+        Assert.assertEquals(2, read.getExtendedDataCheckpointSize());
+
+        //  fetch resumes: the details fetched before are there, the rest is fetched
+        List<Integer> fetched = new ArrayList<>();
+        Map<Integer, IssueDetails> resumed = new ExtendedDataFetcher(ToolType.SSC, 1000, 2).fetch(Arrays.asList(1, 2, 3), id -> id, id -> {
+            synchronized (fetched) {
+                fetched.add(id);
+            }
+            return issueDetails("brief " + id);
+        }, read.getExtendedDataCheckpoint(Integer.class, IssueDetails.class));
+        Assert.assertEquals(Arrays.asList(3), fetched);
+        Assert.assertEquals("brief 1", resumed.get(1).getData().brief);
+        Assert.assertEquals("brief 3", resumed.get(3).getData().brief);
+
+        //  and is persisted again as a whole
+        Assert.assertEquals(3, reread(read).getExtendedDataCheckpointSize());
+    }
+
+    @Test
+    public void testExtendedDataOfFod() throws IOException {
+        VulnerabilitiesQueueItem item = new VulnerabilitiesQueueItem("job", "1");
+        VulnerabilityAllData allData = new VulnerabilityAllData();
+        allData.details = new VulnerabilityAllData.VulnDetails();
+        allData.details.summary = "summary";
+        item.getExtendedDataCheckpoint(String.class, VulnerabilityAllData.class).put("vuln-1", allData);
+
+        Map<String, VulnerabilityAllData> read = reread(item).getExtendedDataCheckpoint(String.class, VulnerabilityAllData.class);
+        Assert.assertEquals(1, read.size());
+        Assert.assertEquals("summary", read.get("vuln-1").details.summary);
+    }
+
+    @Test
+    public void testNoExtendedData() throws IOException {
+        VulnerabilitiesQueueItem read = reread(new VulnerabilitiesQueueItem("job", "1"));
+        Assert.assertEquals(0, read.getExtendedDataCheckpointSize());
+        Assert.assertTrue(read.getExtendedDataCheckpoint(Integer.class, IssueDetails.class).isEmpty());
+    }
+
+    @Test
+    public void testUnreadableExtendedDataFetchedAgain() throws IOException {
+        VulnerabilitiesQueueItem item = new VulnerabilitiesQueueItem("job", "1");
+        item.getExtendedDataCheckpoint(String.class, String.class).put("not-a-number", "details");
+
+        Assert.assertTrue(reread(item).getExtendedDataCheckpoint(Integer.class, IssueDetails.class).isEmpty());
+    }
+
+    private static IssueDetails issueDetails(String brief) {
+        IssueDetails result = new IssueDetails();
+        result.setData(new IssueDetails.IssueDetailsData());
+        result.getData().brief = brief;
+        return result;
+    }
+
+    private static VulnerabilitiesQueueItem reread(VulnerabilitiesQueueItem item) throws IOException {
+        byte[] bytes = CIPluginSDKUtils.getObjectMapper().writeValueAsBytes(item);
+        return CIPluginSDKUtils.getObjectMapper().readValue(bytes, VulnerabilitiesQueueItem.class);
+    }
+}
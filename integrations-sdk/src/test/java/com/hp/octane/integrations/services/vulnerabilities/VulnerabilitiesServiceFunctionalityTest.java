@@ -46,6 +46,8 @@ import java.text.SimpleDateFormat;
 import java.util.*;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 import java.util.zip.GZIPInputStream;
 
 /**
@@ -62,6 +64,8 @@ public class VulnerabilitiesServiceFunctionalityTest {
     public void testVulnerabilitiesFunctional() {
         Map<String, OctaneSPEndpointSimulator> simulators = null;
 
+        //  one item at a time, so that the preflights arrive in queue order
+        System.setProperty("octane.sdk.vulnerabilities.max-parallel-items", "1");
         try {
             String spIdA = UUID.randomUUID().toString();
             String spIdB = UUID.randomUUID().toString();
@@ -130,6 +134,54 @@ public class VulnerabilitiesServiceFunctionalityTest {
             //  remove simulators
             if (simulators != null) removeSPEPSimulators(simulators.values());
             SSCServerSimulator.instance().endSimulation();
+            System.clearProperty("octane.sdk.vulnerabilities.max-parallel-items");
+        }
+    }
+
+    @Test(timeout = 20000)
+    public void testSlowItemDoesNotBlockItemsBehind() throws InterruptedException {
+        OctaneSPEndpointSimulator simulator = null;
+        CountDownLatch slowPreflightRelease = new CountDownLatch(1);
+
+        try {
+            String spId = UUID.randomUUID().toString();
+            List<String> preflightRequests = Collections.synchronizedList(new LinkedList<>());
+            simulator = OctaneSPEndpointSimulator.addInstance(spId);
+            simulator.installApiHandler(HttpMethod.GET, "^.*/vulnerabilities/preflight$", request -> {
+                try {
+                    request.mergeQueryParameters("", request.getQueryString(), false);
+                    String jobId = request.getQueryParameters().getString("job-ci-id");
+                    preflightRequests.add(jobId);
+                    if (jobId.contains("slow")) {
+                        slowPreflightRelease.await(15, TimeUnit.SECONDS);
+                    }
+                    request.getResponse().setStatus(HttpStatus.SC_OK);
+                    request.getResponse().getWriter().write("");
+                    request.getResponse().getWriter().flush();
+                } catch (IOException | InterruptedException e) {
+                    throw new OctaneSDKGeneralException("failed to write response", e);
+                }
+            });
+
+            OctaneConfiguration config = new OctaneConfigurationIntern(UUID.randomUUID().toString(), OctaneSPEndpointSimulator.getSimulatorUrl(), spId);
+            OctaneClient client = OctaneSDK.addClient(config, VulnerabilitiesServicePluginServicesTest.class);
+            VulnerabilitiesService vulnerabilitiesService = client.getVulnerabilitiesService();
+            vulnerabilitiesService.enqueueRetrieveAndPushVulnerabilities("job-slow", "1", ToolType.SSC, System.currentTimeMillis(), 1, null, null);
+            vulnerabilitiesService.enqueueRetrieveAndPushVulnerabilities("job-fast-a", "1", ToolType.SSC, System.currentTimeMillis(), 1, null, null);
+            vulnerabilitiesService.enqueueRetrieveAndPushVulnerabilities("job-fast-b", "1", ToolType.SSC, System.currentTimeMillis(), 1, null, null);
+
+            //  items behind the slow one are done while it is still in flight
+            GeneralTestUtils.waitAtMostFor(10000, () -> vulnerabilitiesService.getQueueSize() == 1 ? true : null);
+            Assert.assertEquals(1, vulnerabilitiesService.getQueueSize());
+            Assert.assertTrue(preflightRequests.containsAll(Arrays.asList("job-slow", "job-fast-a", "job-fast-b")));
+
+            slowPreflightRelease.countDown();
+            GeneralTestUtils.waitAtMostFor(10000, () -> vulnerabilitiesService.getQueueSize() == 0 ? true : null);
+            Assert.assertEquals(0, vulnerabilitiesService.getQueueSize());
+        } finally {
+            slowPreflightRelease.countDown();
+            OctaneSDK.getClients().forEach(OctaneSDK::removeClient);
+            if (simulator != null) removeSPEPSimulators(Collections.singleton(simulator));
         }
     }
 
@@ -0,0 +1,102 @@
+/*
+ *     Copyright 2017 EntIT Software LLC, a Micro Focus company, L.P.
+ *     Licensed under the Apache License, Version 2.0 (the "License");
+ *     you may not use this file except in compliance with the License.
+ *     You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *     Unless required by applicable law or agreed to in writing, software
+ *     distributed under the License is distributed on an "AS IS" BASIS,
+ *     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *     See the License for the specific language governing permissions and
+ *     limitations under the License.
+ */
+package com.hp.octane.integrations.services.vulnerabilities.sonar;
+
+import com.hp.octane.integrations.services.vulnerabilities.sonar.dto.SonarRule;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+public class SonarRulesCacheTest {
+
+	private final AtomicLong now = new AtomicLong(1000);
+	private final Set<String> loadedKeys = new HashSet<>();
+	private final Function<Set<String>, Map<String, SonarRule>> loader = keys -> {
+		Map<String, SonarRule> result = new HashMap<>();
+		for (String key : keys) {
+			loadedKeys.add(key);
+			if (!key.startsWith("unknown")) {
+				result.put(key, rule(key));
+			}
+		}
+		return result;
+	};
+
+	@Test
+	public void testOnlyMissingRulesLoaded() {
+		SonarRulesCache cache = new SonarRulesCache(60000, now::get);
+		Map<String, SonarRule> rules = cache.getRules("http://sonar", keys("r1", "r2"), loader);
+		Assert.assertEquals(keys("r1", "r2"), rules.keySet());
+		Assert.assertEquals(keys("r1", "r2"), loadedKeys);
+
+		loadedKeys.clear();
+		rules = cache.getRules("http://sonar", keys("r1", "r2", "r3"), loader);
+		Assert.assertEquals(keys("r1", "r2", "r3"), rules.keySet());
+		Assert.assertEquals("r2", rules.get("r2").getKey());
+		Assert.assertEquals(keys("r3"), loadedKeys);
+	}
+
+	@Test
+	public void testRulesCachedByServer() {
+		SonarRulesCache cache = new SonarRulesCache(60000, now::get);
+		cache.getRules("http://sonar-a", keys("r1"), loader);
+		loadedKeys.clear();
+		cache.getRules("http://sonar-b", keys("r1"), loader);
+		Assert.assertEquals(keys("r1"), loadedKeys);
+		Assert.assertEquals(2, cache.size());
+	}
+
+	@Test
+	public void testExpiredRulesReloaded() {
+		SonarRulesCache cache = new SonarRulesCache(60000, now::get);
+		cache.getRules("http://sonar", keys("r1"), loader);
+		now.addAndGet(59999);
+		loadedKeys.clear();
+		cache.getRules("http://sonar", keys("r1"), loader);
+		Assert.assertTrue(loadedKeys.isEmpty());
+
+		now.addAndGet(1);
+		cache.getRules("http://sonar", keys("r1"), loader);
+		Assert.assertEquals(keys("r1"), loadedKeys);
+	}
+
+	@Test
+	public void testUnknownRulesNotCached() {
+		SonarRulesCache cache = new SonarRulesCache(60000, now::get);
+		Map<String, SonarRule> rules = cache.getRules("http://sonar", keys("r1", "unknown1"), loader);
+		Assert.assertEquals(keys("r1"), rules.keySet());
+		loadedKeys.clear();
+		cache.getRules("http://sonar", keys("r1", "unknown1"), loader);
+		Assert.assertEquals(keys("unknown1"), loadedKeys);
+	}
+
+	private static Set<String> keys(String... keys) {
+		return new HashSet<>(Arrays.asList(keys));
+	}
+
+	private static SonarRule rule(String key) {
+		SonarRule rule = new SonarRule();
+		rule.setKey(key);
+		rule.setName("rule " + key);
+		return rule;
+	}
+}
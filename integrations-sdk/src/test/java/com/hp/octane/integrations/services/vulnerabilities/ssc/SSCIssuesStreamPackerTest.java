@@ -0,0 +1,290 @@
+/*
+ *     Copyright 2017 EntIT Software LLC, a Micro Focus company, L.P.
+ *     Licensed under the Apache License, Version 2.0 (the "License");
+ *     you may not use this file except in compliance with the License.
+ *     You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *     Unless required by applicable law or agreed to in writing, software
+ *     distributed under the License is distributed on an "AS IS" BASIS,
+ *     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *     See the License for the specific language governing permissions and
+ *     limitations under the License.
+ */
+
+package com.hp.octane.integrations.services.vulnerabilities.ssc;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.hp.octane.integrations.dto.securityscans.OctaneIssue;
+import com.hp.octane.integrations.exceptions.PermanentException;
+import com.hp.octane.integrations.exceptions.TemporaryException;
+import com.hp.octane.integrations.services.vulnerabilities.DateUtils;
+import com.hp.octane.integrations.services.vulnerabilities.IssuesFileSerializer;
+import com.hp.octane.integrations.services.vulnerabilities.PackIssuesToOctaneUtils;
+import com.hp.octane.integrations.services.vulnerabilities.ssc.dto.IssueDetails;
+import com.hp.octane.integrations.services.vulnerabilities.ssc.dto.Issues;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+public class SSCIssuesStreamPackerTest {
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+
+    private File targetDir;
+
+    @Before
+    public void prepareTargetDir() throws IOException {
+        targetDir = Files.createTempDirectory("sscPackerTest").toFile();
+    }
+
+    @After
+    public void removeTargetDir() {
+        IssuesFileSerializer.deleteDirectory(targetDir);
+    }
+
+    @Test
+    public void testSameAsPackingAllIssues() throws IOException {
+        List<List<Issues.Issue>> pages = Arrays.asList(
+                Arrays.asList(issue(1, "NEW", "2020-01-01T10:00:00"), issue(2, "UPDATED", "2020-01-02T10:00:00")),
+                Arrays.asList(issue(3, "UPDATED", "2020-01-03T10:00:00"), issue(4, "NEW", "2020-01-04T10:00:00")),
+                Collections.singletonList(issue(5, "UPDATED", "2020-01-05T10:00:00")));
+        List<String> octaneIssues = Arrays.asList("RemoteId2", "RemoteId3", "Closed1", "Closed2");
+
+        assertSameAsPackingAllIssues(pages, octaneIssues, null);
+    }
+
+    @Test
+    public void testSameAsPackingAllIssuesWithBaseline() throws IOException {
+        List<List<Issues.Issue>> pages = Arrays.asList(
+                Arrays.asList(issue(1, "NEW", "2020-01-01T10:00:00"), issue(2, "UPDATED", "2020-01-02T10:00:00")),
+                Arrays.asList(issue(3, "UPDATED", "2020-01-03T10:00:00"), issue(4, "UPDATED", "2020-01-04T10:00:00")),
+                Collections.singletonList(issue(5, "NEW", "2020-01-05T10:00:00")));
+        //  RemoteId4 is missing in Octane, RemoteId1 and RemoteId2 are found before the baseline
+        List<String> octaneIssues = Arrays.asList("RemoteId1", "RemoteId2", "RemoteId3", "Closed1");
+        Date baselineDate = DateUtils.getDateFromUTCString("2020-01-03T00:00:00", DateUtils.sscFormat);
+
+        JsonNode packed = assertSameAsPackingAllIssues(pages, octaneIssues, baselineDate);
+        Assert.assertEquals(Arrays.asList("RemoteId3", "RemoteId4", "RemoteId5", "RemoteId1", "RemoteId2", "Closed1"), remoteIds(packed));
+    }
+
+    @Test
+    public void testBaselineFiltering() throws IOException {
+        List<List<Issues.Issue>> pages = Arrays.asList(
+                Arrays.asList(issue(1, "UPDATED", "2020-01-01T10:00:00"), issue(2, "UPDATED", "2020-01-05T10:00:00")),
+                Collections.singletonList(issue(3, "NEW", "2020-01-02T10:00:00")));
+        Date baselineDate = DateUtils.getDateFromUTCString("2020-01-03T00:00:00", DateUtils.sscFormat);
+        StubSSCHandler sscHandler = new StubSSCHandler(pages);
+
+        JsonNode packed = pack(sscHandler, Collections.emptyList(), baselineDate);
+        //  issues found before the baseline are filtered out, the missing one needs the extended data
+        Assert.assertEquals(Collections.singletonList("RemoteId2"), remoteIds(packed));
+        Assert.assertEquals(Collections.singletonList(2), sscHandler.extendedDataRequested);
+    }
+
+    @Test
+    public void testClosedIssues() throws IOException {
+        List<List<Issues.Issue>> pages = Arrays.asList(
+                Collections.singletonList(issue(1, "UPDATED", "2020-01-01T10:00:00")),
+                Collections.emptyList());
+        StubSSCHandler sscHandler = new StubSSCHandler(pages);
+
+        //  closed are written after the open ones, in Octane's order
+        JsonNode packed = pack(sscHandler, Arrays.asList("Closed2", "RemoteId1", "Closed1", "Closed2"), null);
+        Assert.assertEquals(Arrays.asList("RemoteId1", "Closed2", "Closed1"), remoteIds(packed));
+        Assert.assertEquals("list_node.issue_state_node.closed", packed.get("data").get(1).get("state").get("id").asText());
+        Assert.assertEquals("list_node.issue_state_node.closed", packed.get("data").get(2).get("state").get("id").asText());
+        Assert.assertTrue(sscHandler.extendedDataRequested.isEmpty());
+    }
+
+    @Test
+    public void testOnlyClosedIssues() throws IOException {
+        StubSSCHandler sscHandler = new StubSSCHandler(Collections.singletonList(Collections.emptyList()));
+        JsonNode packed = pack(sscHandler, Collections.singletonList("Closed1"), null);
+        Assert.assertEquals(Collections.singletonList("Closed1"), remoteIds(packed));
+    }
+
+    @Test
+    public void testNoIssues() throws IOException {
+        File scanResultFile = new File(targetDir, SSCHandler.SCAN_RESULT_FILE);
+        SSCIssuesStreamPacker packer = new SSCIssuesStreamPacker(new StubSSCHandler(Collections.singletonList(Collections.emptyList())),
+                Collections.emptyList(), "Tag", null);
+        try {
+            packer.packToFile(scanResultFile);
+            Assert.fail("scan with no issues MUST NOT be packed");
+        } catch (PermanentException pe) {
+            Assert.assertEquals("This scan has no issues.", pe.getMessage());
+        }
+        Assert.assertFalse(scanResultFile.exists());
+        Assert.assertEquals(0, listFiles().size());
+    }
+
+    @Test
+    public void testSpoolFileDeletedOnFailure() {
+        File scanResultFile = new File(targetDir, SSCHandler.SCAN_RESULT_FILE);
+        List<List<Issues.Issue>> pages = Arrays.asList(
+                Collections.singletonList(issue(1, "NEW", "2020-01-01T10:00:00")),
+                Collections.singletonList(issue(2, "NEW", "2020-01-02T10:00:00")));
+        StubSSCHandler sscHandler = new StubSSCHandler(pages);
+        sscHandler.failOnPage = 1;
+
+        SSCIssuesStreamPacker packer = new SSCIssuesStreamPacker(sscHandler, Collections.emptyList(), "Tag", null);
+        try {
+            packer.packToFile(scanResultFile);
+            Assert.fail("failure of reading the issues MUST be propagated");
+        } catch (TemporaryException te) {
+            Assert.assertEquals("SSC Server is not available:503", te.getMessage());
+        } catch (IOException ioe) {
+            Assert.fail("unexpected " + ioe);
+        }
+        Assert.assertFalse(scanResultFile.exists());
+        Assert.assertEquals(0, listFiles().size());
+    }
+
+    @Test
+    public void testCachedScanResult() throws IOException {
+        File scanResultFile = new File(targetDir, SSCHandler.SCAN_RESULT_FILE);
+        StubSSCHandler sscHandler = new StubSSCHandler(Collections.singletonList(Collections.singletonList(issue(1, "NEW", "2020-01-01T10:00:00"))));
+        SSCIssuesStreamPacker packer = new SSCIssuesStreamPacker(sscHandler, Collections.emptyList(), "Tag", null);
+
+        JsonNode packed;
+        try (InputStream result = packer.packToFile(scanResultFile)) {
+            packed = objectMapper.readTree(result);
+        }
+        Assert.assertEquals(Collections.singletonList("RemoteId1"), remoteIds(packed));
+
+        //  spool file is moved to be the cached scan result, which is kept after it is sent
+        Assert.assertEquals(Collections.singletonList(SSCHandler.SCAN_RESULT_FILE), listFiles());
+        try (InputStream cached = IssuesFileSerializer.getCachedScanResult(targetDir.getPath())) {
+            Assert.assertEquals(packed, objectMapper.readTree(cached));
+        }
+    }
+
+    private JsonNode assertSameAsPackingAllIssues(List<List<Issues.Issue>> pages, List<String> octaneIssues, Date baselineDate) throws IOException {
+        StubSSCHandler sscHandler = new StubSSCHandler(pages);
+        JsonNode streamed = pack(sscHandler, octaneIssues, baselineDate);
+
+        //  issues read at once, filtered by the baseline, packed and serialized as a whole (as before the streaming)
+        List<Issues.Issue> allIssues = pages.stream()
+                .flatMap(List::stream)
+                .filter(issue -> baselineDate == null || DateUtils.getDateFromUTCString(issue.foundDate, DateUtils.sscFormat).compareTo(baselineDate) >= 0)
+                .collect(Collectors.toList());
+        PackIssuesToOctaneUtils.SortedIssues<Issues.Issue> sortedIssues = PackIssuesToOctaneUtils.packToOctaneIssues(allIssues, octaneIssues, baselineDate != null);
+        StubSSCHandler allIssuesHandler = new StubSSCHandler(Collections.emptyList());
+        Map<Integer, IssueDetails> issuesWithExtendedData = allIssuesHandler.getIssuesExtendedData(sortedIssues.issuesRequiredExtendedData);
+        List<OctaneIssue> total = new ArrayList<>(SSCToOctaneIssueUtil.createOctaneIssues(sortedIssues.issuesToUpdate, "Tag", issuesWithExtendedData));
+        total.addAll(sortedIssues.issuesToClose);
+        JsonNode serialized;
+        try (InputStream result = IssuesFileSerializer.serializeIssues(total)) {
+            serialized = objectMapper.readTree(result);
+        }
+
+        Assert.assertEquals(serialized, streamed);
+        Assert.assertEquals(allIssuesHandler.extendedDataRequested, sscHandler.extendedDataRequested);
+        return streamed;
+    }
+
+    private JsonNode pack(StubSSCHandler sscHandler, List<String> octaneIssues, Date baselineDate) throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        int count;
+        try (IssuesFileSerializer.IssuesStreamWriter writer = new IssuesFileSerializer.IssuesStreamWriter(outputStream)) {
+            count = new SSCIssuesStreamPacker(sscHandler, octaneIssues, "Tag", baselineDate).pack(writer);
+        }
+        JsonNode result = objectMapper.readTree(outputStream.toByteArray());
+        Assert.assertEquals(count, result.get("data").size());
+
+        //  temp spool file of the not cached scan result holds the same and is deleted once sent
+        List<String> tempSpoolFiles = listTempSpoolFiles();
+        try (InputStream spooled = new SSCIssuesStreamPacker(new StubSSCHandler(sscHandler.pages), octaneIssues, "Tag", baselineDate).packToFile(null)) {
+            Assert.assertEquals(tempSpoolFiles.size() + 1, listTempSpoolFiles().size());
+            Assert.assertEquals(result, objectMapper.readTree(spooled));
+        }
+        Assert.assertEquals(tempSpoolFiles, listTempSpoolFiles());
+        return result;
+    }
+
+    private List<String> listFiles() {
+        String[] names = targetDir.list();
+        return names == null ? Collections.emptyList() : Arrays.asList(names);
+    }
+
+    private static List<String> listTempSpoolFiles() {
+        String[] names = new File(System.getProperty("java.io.tmpdir")).list((dir, name) -> name.startsWith("securityScan") && name.endsWith(".json"));
+        return names == null ? Collections.emptyList() : Arrays.stream(names).sorted().collect(Collectors.toList());
+    }
+
+    private static List<String> remoteIds(JsonNode packed) {
+        List<String> result = new ArrayList<>();
+        packed.get("data").forEach(issue -> result.add(issue.get("remote_id").asText()));
+        return result;
+    }
+
+    private static Issues.Issue issue(int id, String scanStatus, String foundDate) {
+        Issues.Issue issue = new Issues.Issue();
+        issue.id = id;
+        issue.scanStatus = scanStatus;
+        issue.issueInstanceId = "RemoteId" + id;
+        issue.fullFileName = "\\ABC\\DEF\\Issue" + id + ".java";
+        issue.lineNumber = id;
+        issue.kingdom = "Kingdom" + id;
+        issue.issueName = "Issue" + id;
+        issue.foundDate = foundDate;
+        return issue;
+    }
+
+    private static final class StubSSCHandler extends SSCHandler {
+        private final List<List<Issues.Issue>> pages;
+        private final List<Integer> extendedDataRequested = new ArrayList<>();
+        private int failOnPage = -1;
+
+        private StubSSCHandler(List<List<Issues.Issue>> pages) {
+            this.pages = pages;
+        }
+
+        @Override
+        public void streamIssues(SSCProjectConnector.PageConsumer<Issues.Issue> pageConsumer) {
+            for (int i = 0; i < pages.size(); i++) {
+                if (i == failOnPage) {
+                    throw new TemporaryException("SSC Server is not available:503");
+                }
+                try {
+                    pageConsumer.accept(new ArrayList<>(pages.get(i)));
+                } catch (IOException ioe) {
+                    throw new PermanentException(ioe);
+                }
+            }
+        }
+
+        @Override
+        public Map<Integer, IssueDetails> getIssuesExtendedData(List<Issues.Issue> issues) {
+            Map<Integer, IssueDetails> result = new HashMap<>();
+            for (Issues.Issue issue : issues) {
+                extendedDataRequested.add(issue.id);
+                IssueDetails issueDetails = new IssueDetails();
+                issueDetails.setData(new IssueDetails.IssueDetailsData());
+                issueDetails.getData().brief = "summary" + issue.id;
+                issueDetails.getData().detail = "explanation" + issue.id;
+                issueDetails.getData().recommendation = "recommendations" + issue.id;
+                issueDetails.getData().tips = "tips" + issue.id;
+                result.put(issue.id, issueDetails);
+            }
+            return result;
+        }
+    }
+}
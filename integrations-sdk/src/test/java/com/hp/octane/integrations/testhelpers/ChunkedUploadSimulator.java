@@ -0,0 +1,141 @@
+/*
+ *     Copyright 2017 EntIT Software LLC, a Micro Focus company, L.P.
+ *     Licensed under the Apache License, Version 2.0 (the "License");
+ *     you may not use this file except in compliance with the License.
+ *     You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *     Unless required by applicable law or agreed to in writing, software
+ *     distributed under the License is distributed on an "AS IS" BASIS,
+ *     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *     See the License for the specific language governing permissions and
+ *     limitations under the License.
+ */
+
+package com.hp.octane.integrations.testhelpers;
+
+import com.hp.octane.integrations.services.rest.OctaneChunkedUpload;
+import org.apache.http.HttpStatus;
+import org.eclipse.jetty.http.HttpMethod;
+import org.eclipse.jetty.server.Request;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Server side of the chunked upload protocol (see OctaneChunkedUpload), installed on the Octane endpoint simulator
+ * Parts are assembled per upload ID, the assembled payload is handed to the payload handler on the last part; requests without upload ID are handed over as is
+ */
+
+public class ChunkedUploadSimulator {
+	private final BiConsumer<Request, byte[]> payloadHandler;
+	private final Map<String, List<byte[]>> uploads = new HashMap<>();
+	private final Set<Integer> partsToFail = new HashSet<>();
+	private final AtomicInteger receivedPartsCount = new AtomicInteger();
+
+	/**
+	 * @param payloadHandler handler of the whole payload, responsible for the response status
+	 */
+	public ChunkedUploadSimulator(BiConsumer<Request, byte[]> payloadHandler) {
+		this.payloadHandler = payloadHandler;
+	}
+
+	public void install(OctaneSPEndpointSimulator simulator, HttpMethod method, String pattern) {
+		simulator.installApiHandler(method, pattern, this::handlePayload);
+		simulator.installApiHandler(HttpMethod.GET, pattern, this::handleStatus);
+	}
+
+	/**
+	 * Fails the first attempt to upload the part with the given index with 503
+	 *
+	 * @param part index of the part to fail
+	 */
+	public synchronized void failPartOnce(int part) {
+		partsToFail.add(part);
+	}
+
+	public int getReceivedPartsCount() {
+		return receivedPartsCount.get();
+	}
+
+	private void handlePayload(Request request) {
+		try {
+			byte[] body = gunzip(request.getInputStream());
+			String uploadId = request.getHeader(OctaneChunkedUpload.UPLOAD_ID_HEADER);
+			if (uploadId == null) {
+				payloadHandler.accept(request, body);
+				return;
+			}
+
+			receivedPartsCount.incrementAndGet();
+			int part = Integer.parseInt(request.getHeader(OctaneChunkedUpload.UPLOAD_PART_HEADER));
+			boolean last = Boolean.parseBoolean(request.getHeader(OctaneChunkedUpload.UPLOAD_LAST_PART_HEADER));
+			byte[] payload = null;
+			synchronized (this) {
+				if (partsToFail.remove(part)) {
+					request.getResponse().setStatus(HttpStatus.SC_SERVICE_UNAVAILABLE);
+					return;
+				}
+				List<byte[]> parts = uploads.computeIfAbsent(uploadId, id -> new ArrayList<>());
+				if (part > parts.size()) {
+					request.getResponse().setStatus(HttpStatus.SC_CONFLICT);
+					return;
+				}
+				//  re-sent part replaces the one held and everything after it
+				while (parts.size() > part) {
+					parts.remove(parts.size() - 1);
+				}
+				parts.add(body);
+				if (last) {
+					uploads.remove(uploadId);
+					ByteArrayOutputStream assembled = new ByteArrayOutputStream();
+					for (byte[] bytes : parts) {
+						assembled.write(bytes);
+					}
+					payload = assembled.toByteArray();
+				} else {
+					request.getResponse().setHeader(OctaneChunkedUpload.UPLOAD_ACKNOWLEDGED_PARTS_HEADER, String.valueOf(parts.size()));
+					request.getResponse().setStatus(HttpStatus.SC_OK);
+				}
+			}
+			if (payload != null) {
+				payloadHandler.accept(request, payload);
+			}
+		} catch (IOException ioe) {
+			throw new RuntimeException(ioe);
+		}
+	}
+
+	private synchronized void handleStatus(Request request) {
+		List<byte[]> parts = uploads.get(request.getHeader(OctaneChunkedUpload.UPLOAD_ID_HEADER));
+		if (parts == null) {
+			request.getResponse().setStatus(HttpStatus.SC_NOT_FOUND);
+		} else {
+			request.getResponse().setHeader(OctaneChunkedUpload.UPLOAD_ACKNOWLEDGED_PARTS_HEADER, String.valueOf(parts.size()));
+			request.getResponse().setStatus(HttpStatus.SC_OK);
+		}
+	}
+
+	private static byte[] gunzip(InputStream inputStream) throws IOException {
+		ByteArrayOutputStream result = new ByteArrayOutputStream();
+		try (InputStream gzipped = new GZIPInputStream(inputStream)) {
+			byte[] buffer = new byte[4096];
+			int length;
+			while ((length = gzipped.read(buffer)) != -1) {
+				result.write(buffer, 0, length);
+			}
+		}
+		return result.toByteArray();
+	}
+}